@@ -9,6 +9,8 @@ import static org.assertj.core.api.Assertions.assertThat;
 
 import com.haiilo.supermarket.checkout.domain.Basket;
 import com.haiilo.supermarket.checkout.domain.Product;
+import com.haiilo.supermarket.checkout.dto.BasketItemDeltaDTO;
+import java.util.List;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.http.MediaType;
@@ -16,8 +18,8 @@ import reactor.core.publisher.Mono;
 
 class BasketControllerIntegrationTest extends BaseTest {
 
-  public static final Product PRODUCT_A = new Product(null, SKU_A, "Apple", 50, 3, 130);
-  public static final Product PRODUCT_B = new Product(null, SKU_B, "Banana", 30, 2, 50);
+  public static final Product PRODUCT_A = new Product(null, SKU_A, "Apple", 50, 3, 130, null);
+  public static final Product PRODUCT_B = new Product(null, SKU_B, "Banana", 30, 2, 50, null);
 
   @Test
   @DisplayName("POST /api/v1/baskets should create a new empty basket")
@@ -88,6 +90,40 @@ class BasketControllerIntegrationTest extends BaseTest {
         .expectBody(Integer.class).isEqualTo(100);
   }
 
+  @Test
+  @DisplayName("POST /api/v1/baskets/{id}/items should apply a batch atomically and reject it as a whole")
+  void addItems_Batch_Endpoint() {
+    Basket basket = webTestClient.post().uri(BASE_BASKET_URI)
+        .exchange()
+        .expectBody(Basket.class).returnResult().getResponseBody();
+    assertThat(basket).isNotNull();
+    String batchUri = BASE_BASKET_URI + "/" + basket.getId() + "/items";
+
+    webTestClient.post().uri(BASE_PRODUCT_URI).contentType(MediaType.APPLICATION_JSON)
+        .body(Mono.just(PRODUCT_A), Product.class).exchange().expectStatus().isCreated();
+    webTestClient.post().uri(BASE_PRODUCT_URI).contentType(MediaType.APPLICATION_JSON)
+        .body(Mono.just(PRODUCT_B), Product.class).exchange().expectStatus().isCreated();
+
+    // 3 x A for 130 plus 2 x B for 50
+    webTestClient.post().uri(batchUri).contentType(MediaType.APPLICATION_JSON)
+        .bodyValue(List.of(new BasketItemDeltaDTO(SKU_A, 3), new BasketItemDeltaDTO(SKU_B, 2)))
+        .exchange()
+        .expectStatus().isOk()
+        .expectBody(Integer.class).isEqualTo(180);
+
+    // Removing more B than the basket holds rejects the whole batch, including the A
+    webTestClient.post().uri(batchUri).contentType(MediaType.APPLICATION_JSON)
+        .bodyValue(List.of(new BasketItemDeltaDTO(SKU_A, 1), new BasketItemDeltaDTO(SKU_B, -3)))
+        .exchange()
+        .expectStatus().isNotFound();
+
+    webTestClient.get().uri(BASE_BASKET_URI + "/" + basket.getId())
+        .exchange()
+        .expectStatus().isOk()
+        .expectBody()
+        .jsonPath("$.totalPrice").isEqualTo(180);
+  }
+
   @Test
   @DisplayName("DELETE /api/v1/baskets/{id}/items/{sku} should remove one item and return updated total")
   void removeItem_FromBasket_Endpoint() {
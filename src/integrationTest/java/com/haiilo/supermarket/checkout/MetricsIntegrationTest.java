@@ -0,0 +1,37 @@
+package com.haiilo.supermarket.checkout;
+
+import static com.haiilo.supermarket.checkout.util.TestConstants.BASE_PRODUCT_URI;
+import static com.haiilo.supermarket.checkout.util.TestConstants.SKU_A;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.haiilo.supermarket.checkout.domain.Product;
+import com.haiilo.supermarket.checkout.util.DbUtils;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class MetricsIntegrationTest extends BaseTest {
+
+  @Test
+  @DisplayName("GET /actuator/prometheus should expose stage timers, cache counters and endpoint latency")
+  void prometheus_Endpoint() {
+    DbUtils.loadRecord(new Product(null, SKU_A, "Apple", 50, 3, 130, null), databaseClient);
+    webTestClient.get()
+        .uri(BASE_PRODUCT_URI + "/" + SKU_A)
+        .exchange()
+        .expectStatus().isOk();
+
+    String scrape = webTestClient.get()
+        .uri("/actuator/prometheus")
+        .exchange()
+        .expectStatus().isOk()
+        .expectBody(String.class)
+        .returnResult()
+        .getResponseBody();
+
+    assertThat(scrape)
+        .contains("checkout_stage_seconds_bucket{")
+        .contains("stage=\"product.db.find\"")
+        .contains("checkout_product_cache_total{")
+        .contains("http_server_requests_seconds_bucket{");
+  }
+}
@@ -0,0 +1,89 @@
+package com.haiilo.supermarket.checkout;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.output.MigrateResult;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+@Testcontainers
+class MigrationIntegrationTest {
+
+  // Not reused: the database must start out as init-db left it, without any migration applied
+  @Container
+  static PostgreSQLContainer<?> postgreSQLContainer = new PostgreSQLContainer<>("postgres:13")
+      .withDatabaseName("checkout_db")
+      .withUsername("postgres")
+      .withPassword("test123");
+
+  @Test
+  @DisplayName("Migrations should take over a database created by init-db and keep its orders")
+  void migrate_FromInitDbSchema() throws Exception {
+    execute(new ClassPathResource("db/init-db-before-migrations.sql")
+        .getContentAsString(StandardCharsets.UTF_8));
+    execute("""
+        INSERT INTO orders (final_price, created_at) VALUES (175, '2024-05-03 10:00:00');
+        INSERT INTO order_items (order_id, product_sku, quantity) VALUES (1, 'A', 3), (1, 'C', 2);
+        """);
+
+    MigrateResult result = Flyway.configure()
+        .dataSource(postgreSQLContainer.getJdbcUrl(), postgreSQLContainer.getUsername(),
+            postgreSQLContainer.getPassword())
+        .baselineOnMigrate(true)
+        .load()
+        .migrate();
+
+    assertThat(result.success).isTrue();
+    assertThat(result.migrations).extracting(migration -> migration.version)
+        .doesNotContain("1")
+        .isNotEmpty();
+    assertThat(query("SELECT id, checkout_key FROM orders"))
+        .containsExactly("1 order-1");
+    assertThat(query("SELECT product_sku, quantity, created_at FROM order_items ORDER BY id"))
+        .containsExactly("A 3 2024-05-03 10:00:00", "C 2 2024-05-03 10:00:00");
+    assertThat(query("SELECT checkout_key, order_id FROM checkout_keys"))
+        .containsExactly("order-1 1");
+    assertThat(query("SELECT DISTINCT price_version FROM products")).hasSize(4);
+  }
+
+  private void execute(String sql) throws SQLException {
+    try (Connection connection = connect(); Statement statement = connection.createStatement()) {
+      statement.execute(sql);
+    }
+  }
+
+  // Each row as its columns joined by spaces
+  private List<String> query(String sql) throws SQLException {
+    List<String> rows = new ArrayList<>();
+    try (Connection connection = connect(); Statement statement = connection.createStatement();
+        ResultSet resultSet = statement.executeQuery(sql)) {
+      int columns = resultSet.getMetaData().getColumnCount();
+      while (resultSet.next()) {
+        List<String> values = new ArrayList<>();
+        for (int column = 1; column <= columns; column++) {
+          values.add(resultSet.getString(column));
+        }
+        rows.add(String.join(" ", values));
+      }
+    }
+    return rows;
+  }
+
+  private static Connection connect() throws SQLException {
+    return DriverManager.getConnection(postgreSQLContainer.getJdbcUrl(),
+        postgreSQLContainer.getUsername(), postgreSQLContainer.getPassword());
+  }
+}
@@ -0,0 +1,186 @@
+package com.haiilo.supermarket.checkout;
+
+import static com.haiilo.supermarket.checkout.util.TestConstants.BASE_BASKET_URI;
+import static com.haiilo.supermarket.checkout.util.TestConstants.BASE_PRODUCT_URI;
+import static com.haiilo.supermarket.checkout.util.TestConstants.SKU_A;
+import static com.haiilo.supermarket.checkout.util.TestConstants.SKU_B;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+import com.haiilo.supermarket.checkout.domain.Basket;
+import com.haiilo.supermarket.checkout.domain.OrderItem;
+import com.haiilo.supermarket.checkout.domain.PricedLine;
+import com.haiilo.supermarket.checkout.domain.Product;
+import com.haiilo.supermarket.checkout.dto.OrderDTO;
+import com.haiilo.supermarket.checkout.util.DbUtils;
+import com.haiilo.supermarket.checkout.util.OrderHelper;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+
+@TestPropertySource(properties = "checkout.orders.export.page-size=2")
+class OrderControllerIntegrationTest extends BaseTest {
+
+  public static final String EXPORT_URI = "/api/v1/orders/export";
+
+  @Autowired
+  private OrderHelper orderHelper;
+
+  @Test
+  @DisplayName("GET /api/v1/orders/export should stream all orders with their items across pages")
+  void exportOrders_Endpoint() {
+    DbUtils.loadRecord(new Product(null, SKU_A, "Apple", 50, 3, 130, null), databaseClient);
+    List<Long> orderIds = new ArrayList<>();
+    for (int i = 1; i <= 5; i++) {
+      orderIds.add(checkout(i));
+    }
+
+    List<OrderDTO> exported = webTestClient.get().uri(EXPORT_URI)
+        .accept(MediaType.APPLICATION_NDJSON)
+        .exchange()
+        .expectStatus().isOk()
+        .returnResult(OrderDTO.class)
+        .getResponseBody()
+        .collectList()
+        .block();
+
+    assertThat(exported).extracting(OrderDTO::id).containsExactlyElementsOf(orderIds);
+    assertThat(exported).allSatisfy(order -> assertThat(order.items()).hasSize(1));
+    assertThat(exported.get(4).items().get(0).quantity()).isEqualTo(5);
+
+    // Resuming from the second order skips everything up to and including it
+    OrderDTO second = exported.get(1);
+    List<OrderDTO> resumed = webTestClient.get()
+        .uri(uriBuilder -> uriBuilder.path(EXPORT_URI)
+            .queryParam("from", second.createdAt())
+            .queryParam("afterId", second.id())
+            .build())
+        .accept(MediaType.APPLICATION_NDJSON)
+        .exchange()
+        .expectStatus().isOk()
+        .returnResult(OrderDTO.class)
+        .getResponseBody()
+        .collectList()
+        .block();
+
+    assertThat(resumed).extracting(OrderDTO::id).containsExactlyElementsOf(orderIds.subList(2, 5));
+  }
+
+  @Test
+  @DisplayName("Order lines should keep the prices they were charged at after a price change")
+  void exportOrders_keepsPriceSnapshots() {
+    DbUtils.loadRecord(new Product(null, SKU_A, "Apple", 50, 3, 130, null), databaseClient);
+    checkout(4);
+    Product before = webTestClient.get().uri(BASE_PRODUCT_URI + "/" + SKU_A)
+        .exchange()
+        .expectBody(Product.class)
+        .returnResult()
+        .getResponseBody();
+
+    Product after = webTestClient.put().uri(BASE_PRODUCT_URI + "/" + SKU_A)
+        .contentType(MediaType.APPLICATION_JSON)
+        .bodyValue(new Product(null, SKU_A, "Apple", 60, null, null, null))
+        .exchange()
+        .expectStatus().isOk()
+        .expectBody(Product.class)
+        .returnResult()
+        .getResponseBody();
+
+    List<OrderDTO> exported = webTestClient.get().uri(EXPORT_URI)
+        .accept(MediaType.APPLICATION_NDJSON)
+        .exchange()
+        .expectStatus().isOk()
+        .returnResult(OrderDTO.class)
+        .getResponseBody()
+        .collectList()
+        .block();
+
+    assertThat(after.priceVersion()).isNotEqualTo(before.priceVersion());
+    assertThat(exported).singleElement().satisfies(order -> {
+      OrderItem line = order.items().get(0);
+      assertThat(line.subtotal()).isEqualTo(180);
+      assertThat(line.unitPrice()).isEqualTo(50);
+      assertThat(line.offerQuantity()).isEqualTo(3);
+      assertThat(line.offerPrice()).isEqualTo(130);
+      assertThat(line.priceVersion()).isEqualTo(before.priceVersion());
+    });
+  }
+
+  @Test
+  @DisplayName("Saving an order should write all lines in one statement and only once per checkout key")
+  void saveOrder_roundTripsLinesOnce() {
+    Basket basket = new Basket("basket-1");
+    basket.addItem(SKU_A);
+    basket.addItem(SKU_A);
+    basket.addItem(SKU_B);
+    // SKU_B was never priced, so its subtotal and snapshot are stored as nulls
+    basket.getLines().put(SKU_A, new PricedLine(100, 7));
+    basket.setTotalPrice(100);
+    Map<String, Product> products = Map.of(SKU_A, new Product(1L, SKU_A, "Apple", 50, 3, 130, 7L));
+
+    OrderDTO saved = orderHelper.saveOrder(basket, products, "checkout-1").block();
+    OrderDTO stored = orderHelper.findOrder("checkout-1").block();
+
+    assertThat(saved).isNotNull();
+    assertThat(stored).isNotNull();
+    assertThat(stored.id()).isEqualTo(saved.id());
+    assertThat(stored.finalPrice()).isEqualTo(100);
+    assertThat(stored.items()).containsExactlyInAnyOrderElementsOf(saved.items());
+    assertThat(stored.items())
+        .extracting(OrderItem::orderId, OrderItem::productSku, OrderItem::quantity,
+            OrderItem::subtotal, OrderItem::unitPrice, OrderItem::offerQuantity,
+            OrderItem::offerPrice, OrderItem::priceVersion)
+        .containsExactlyInAnyOrder(
+            tuple(saved.id(), SKU_A, 2, 100, 50, 3, 130, 7L),
+            tuple(saved.id(), SKU_B, 1, null, null, null, null, null));
+
+    // A retry with the same key returns the stored order even if the basket has changed since
+    basket.addItem(SKU_A);
+    OrderDTO retried = orderHelper.saveOrder(basket, products, "checkout-1").block();
+
+    assertThat(retried).isNotNull();
+    assertThat(retried.id()).isEqualTo(saved.id());
+    assertThat(retried.items()).containsExactlyInAnyOrderElementsOf(saved.items());
+    assertThat(count("SELECT count(*) AS n FROM orders")).isEqualTo(1);
+    assertThat(count("SELECT count(*) AS n FROM order_items")).isEqualTo(2);
+    assertThat(count("SELECT count(*) AS n FROM checkout_keys")).isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("GET /api/v1/orders/export should reject a range where 'from' is not before 'to'")
+  void exportOrders_invalidRange() {
+    webTestClient.get().uri(EXPORT_URI + "?from=2024-01-02T00:00:00Z&to=2024-01-01T00:00:00Z")
+        .accept(MediaType.APPLICATION_NDJSON)
+        .exchange()
+        .expectStatus().isBadRequest();
+  }
+
+  private long count(String sql) {
+    return databaseClient.sql(sql)
+        .map((row, metadata) -> row.get("n", Long.class))
+        .one()
+        .block();
+  }
+
+  private Long checkout(int quantity) {
+    Basket basket = webTestClient.post().uri(BASE_BASKET_URI)
+        .exchange()
+        .expectBody(Basket.class).returnResult().getResponseBody();
+    assertThat(basket).isNotNull();
+    for (int i = 0; i < quantity; i++) {
+      webTestClient.post().uri(BASE_BASKET_URI + "/" + basket.getId() + "/items/" + SKU_A)
+          .exchange().expectStatus().isOk();
+    }
+    OrderDTO order = webTestClient.post().uri(BASE_BASKET_URI + "/" + basket.getId() + "/checkout")
+        .exchange()
+        .expectStatus().isOk()
+        .expectBody(OrderDTO.class).returnResult().getResponseBody();
+    assertThat(order).isNotNull();
+    return order.id();
+  }
+}
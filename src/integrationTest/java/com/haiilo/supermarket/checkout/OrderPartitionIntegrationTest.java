@@ -0,0 +1,47 @@
+package com.haiilo.supermarket.checkout;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.haiilo.supermarket.checkout.repository.OrderPartitionMaintainer;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+class OrderPartitionIntegrationTest extends BaseTest {
+
+  @Autowired
+  private OrderPartitionMaintainer maintainer;
+
+  @Test
+  @DisplayName("Maintenance should keep the upcoming months partitioned and prune old checkout keys")
+  void maintain_Partitions() {
+    databaseClient.sql("""
+            INSERT INTO checkout_keys (checkout_key, order_id, created_at)
+            VALUES ('old', 1, LOCALTIMESTAMP - INTERVAL '30 days'),
+                ('recent', 2, LOCALTIMESTAMP)
+            """)
+        .fetch().rowsUpdated().block();
+
+    maintainer.maintain().block();
+
+    List<String> partitions = databaseClient.sql("""
+            SELECT c.relname FROM pg_inherits
+            JOIN pg_class c ON c.oid = pg_inherits.inhrelid
+            WHERE pg_inherits.inhparent = 'orders'::regclass
+            """)
+        .map((row, metadata) -> row.get("relname", String.class))
+        .all().collectList().block();
+    LocalDateTime now = LocalDateTime.now();
+    for (int month = 0; month <= 3; month++) {
+      assertThat(partitions).contains(
+          "orders_p" + now.plusMonths(month).format(DateTimeFormatter.ofPattern("yyyyMM")));
+    }
+    List<String> keys = databaseClient.sql("SELECT checkout_key FROM checkout_keys")
+        .map((row, metadata) -> row.get("checkout_key", String.class))
+        .all().collectList().block();
+    assertThat(keys).containsExactly("recent");
+  }
+}
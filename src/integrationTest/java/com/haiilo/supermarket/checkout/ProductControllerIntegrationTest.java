@@ -17,7 +17,7 @@ class ProductControllerIntegrationTest extends BaseTest {
   @Test
   @DisplayName("POST /api/v1/products should create a new product")
   void createProduct_Endpoint() {
-    Product newProduct = new Product(null, SKU_A, "Apple", 50, 3, 130);
+    Product newProduct = new Product(null, SKU_A, "Apple", 50, 3, 130, null);
 
     webTestClient.post()
         .uri(BASE_PRODUCT_URI)
@@ -37,7 +37,7 @@ class ProductControllerIntegrationTest extends BaseTest {
   @Test
   @DisplayName("GET /api/v1/products/{sku} should return a product")
   void getProduct_Endpoint() {
-    Product existingProduct = new Product(null, SKU_B, "Banana", 30, 5, 100);
+    Product existingProduct = new Product(null, SKU_B, "Banana", 30, 5, 100, null);
     DbUtils.loadRecord(existingProduct, databaseClient);
 
     webTestClient.get()
@@ -56,10 +56,10 @@ class ProductControllerIntegrationTest extends BaseTest {
   @Test
   @DisplayName("PUT /api/v1/products/{sku} should update a product")
   void updateProduct_Endpoint() {
-    Product originalProduct = new Product(null, SKU_C, "Cherry", 60, 5, 400);
+    Product originalProduct = new Product(null, SKU_C, "Cherry", 60, 5, 400, null);
     DbUtils.loadRecord(originalProduct, databaseClient);
 
-    Product updatedInfo = new Product(null, SKU_C, "Sweet Cherry", 70, 4, 300);
+    Product updatedInfo = new Product(null, SKU_C, "Sweet Cherry", 70, 4, 300, null);
 
     webTestClient.put()
         .uri(BASE_PRODUCT_URI+ "/" + SKU_C)
@@ -72,13 +72,14 @@ class ProductControllerIntegrationTest extends BaseTest {
         .jsonPath("$.name").isEqualTo("Sweet Cherry")
         .jsonPath("$.unitPrice").isEqualTo(70)
         .jsonPath("$.offerQuantity").isEqualTo(4)
-        .jsonPath("$.offerPrice").isEqualTo(300);
+        .jsonPath("$.offerPrice").isEqualTo(300)
+        .jsonPath("$.priceVersion").isNumber();
   }
 
   @Test
   @DisplayName("DELETE /api/v1/products/{sku} should delete a product")
   void deleteProduct_Endpoint() {
-    Product productToDelete = new Product(null, "D", "Date", 100, 4, 300);
+    Product productToDelete = new Product(null, "D", "Date", 100, 4, 300, null);
     DbUtils.loadRecord(productToDelete, databaseClient);
 
     webTestClient.delete()
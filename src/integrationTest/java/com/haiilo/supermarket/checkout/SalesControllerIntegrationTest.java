@@ -0,0 +1,131 @@
+package com.haiilo.supermarket.checkout;
+
+import static com.haiilo.supermarket.checkout.util.TestConstants.BASE_BASKET_URI;
+import static com.haiilo.supermarket.checkout.util.TestConstants.SKU_A;
+import static com.haiilo.supermarket.checkout.util.TestConstants.SKU_B;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.haiilo.supermarket.checkout.domain.Basket;
+import com.haiilo.supermarket.checkout.domain.Product;
+import com.haiilo.supermarket.checkout.dto.BasketItemDeltaDTO;
+import com.haiilo.supermarket.checkout.pricing.PricingEngine;
+import com.haiilo.supermarket.checkout.repository.SalesRollupFlusher;
+import com.haiilo.supermarket.checkout.util.DbUtils;
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient.BodyContentSpec;
+
+// The queue is only flushed by the tests themselves
+@TestPropertySource(properties = "checkout.sales.flush-interval=PT1H")
+class SalesControllerIntegrationTest extends BaseTest {
+
+  public static final String BASE_SALES_URI = "/api/v1/sales";
+
+  @Autowired
+  private SalesRollupFlusher flusher;
+
+  @Autowired
+  private PricingEngine pricingEngine;
+
+  @AfterEach
+  void removePromotions() {
+    databaseClient.sql("DELETE FROM promotions").fetch().rowsUpdated().block();
+    pricingEngine.reload().block();
+  }
+
+  @Test
+  @DisplayName("Checkout should feed the sales rollups and a rebuild should reproduce them")
+  void salesRollups_Endpoint() {
+    DbUtils.loadRecord(new Product(null, SKU_A, "Apple", 50, 3, 130, null), databaseClient);
+    checkout(Map.of(SKU_A, 3));
+    checkout(Map.of(SKU_A, 1));
+    assertSales(SKU_A, "HOUR", 0, 0);
+
+    assertThat(flusher.flush().block()).isEqualTo(2L);
+    assertSales("HOUR", 4, 180);
+    assertSales("DAY", 4, 180);
+
+    databaseClient.sql("DELETE FROM sales_hourly; DELETE FROM sales_daily;")
+        .fetch().rowsUpdated().block();
+    webTestClient.post().uri(BASE_SALES_URI + "/rebuild")
+        .exchange()
+        .expectStatus().isOk()
+        .expectBody(Long.class).isEqualTo(1L);
+
+    assertSales("HOUR", 4, 180);
+    assertSales("DAY", 4, 180);
+    assertThat(flusher.flush().block()).isZero();
+  }
+
+  @Test
+  @DisplayName("Revenue should be each line's share of the promotional total")
+  void salesRollups_WithPromotion() {
+    DbUtils.loadRecord(new Product(null, SKU_A, "Apple", 50, 3, 130, null), databaseClient);
+    DbUtils.loadRecord(new Product(null, SKU_B, "Banana", 30, 2, 45, null), databaseClient);
+    databaseClient.sql("""
+            WITH bundle AS (
+                INSERT INTO promotions (type, price) VALUES ('BUNDLE', 60) RETURNING id
+            )
+            INSERT INTO promotion_items (promotion_id, product_sku, quantity)
+            SELECT id, sku, 1 FROM bundle, unnest(ARRAY['A', 'B']) AS sku
+            """)
+        .fetch().rowsUpdated().block();
+    pricingEngine.reload().block();
+
+    // Offers alone give 130 + 45; two bundles plus one apple give 120 + 50.
+    checkout(Map.of(SKU_A, 3, SKU_B, 2)).jsonPath("$.finalPrice").isEqualTo(170);
+    flusher.flush().block();
+
+    // Each bundle splits 37.5 + 22.5 by unit price
+    assertSales(SKU_A, "DAY", 3, 125);
+    assertSales(SKU_B, "DAY", 2, 45);
+
+    webTestClient.post().uri(BASE_SALES_URI + "/rebuild")
+        .exchange()
+        .expectStatus().isOk();
+    assertSales(SKU_A, "DAY", 3, 125);
+    assertSales(SKU_B, "DAY", 2, 45);
+  }
+
+  private void assertSales(String granularity, long units, long revenue) {
+    assertSales(SKU_A, granularity, units, revenue);
+  }
+
+  private void assertSales(String sku, String granularity, long units, long revenue) {
+    BodyContentSpec body = webTestClient.get()
+        .uri(BASE_SALES_URI + "/" + sku + "?granularity=" + granularity)
+        .exchange()
+        .expectStatus().isOk()
+        .expectBody();
+    if (units == 0) {
+      body.jsonPath("$.length()").isEqualTo(0);
+      return;
+    }
+    body.jsonPath("$.length()").isEqualTo(1)
+        .jsonPath("$[0].units").isEqualTo(units)
+        .jsonPath("$[0].revenue").isEqualTo(revenue);
+  }
+
+  private BodyContentSpec checkout(Map<String, Integer> items) {
+    Basket basket = webTestClient.post().uri(BASE_BASKET_URI)
+        .exchange()
+        .expectBody(Basket.class).returnResult().getResponseBody();
+    assertThat(basket).isNotNull();
+    webTestClient.post().uri(BASE_BASKET_URI + "/" + basket.getId() + "/items")
+        .contentType(MediaType.APPLICATION_JSON)
+        .bodyValue(items.entrySet().stream()
+            .map(item -> new BasketItemDeltaDTO(item.getKey(), item.getValue()))
+            .toList())
+        .exchange()
+        .expectStatus().isOk();
+    return webTestClient.post().uri(BASE_BASKET_URI + "/" + basket.getId() + "/checkout")
+        .exchange()
+        .expectStatus().isOk()
+        .expectBody();
+  }
+}
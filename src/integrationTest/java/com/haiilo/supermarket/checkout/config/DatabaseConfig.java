@@ -1,25 +0,0 @@
-package com.haiilo.supermarket.checkout.config;
-
-import io.r2dbc.spi.ConnectionFactory;
-import org.springframework.context.annotation.Bean;
-import org.springframework.context.annotation.Configuration;
-import org.springframework.core.io.ClassPathResource;
-import org.springframework.r2dbc.connection.init.CompositeDatabasePopulator;
-import org.springframework.r2dbc.connection.init.ConnectionFactoryInitializer;
-import org.springframework.r2dbc.connection.init.ResourceDatabasePopulator;
-
-@Configuration
-public class DatabaseConfig {
-
-  @Bean
-  public ConnectionFactoryInitializer initializer(ConnectionFactory connectionFactory) {
-    ConnectionFactoryInitializer initializer = new ConnectionFactoryInitializer();
-    initializer.setConnectionFactory(connectionFactory);
-
-    CompositeDatabasePopulator populator = new CompositeDatabasePopulator();
-    populator.addPopulators(new ResourceDatabasePopulator(new ClassPathResource("schema.sql")));
-    initializer.setDatabasePopulator(populator);
-
-    return initializer;
-  }
-}
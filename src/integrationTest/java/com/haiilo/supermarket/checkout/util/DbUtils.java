@@ -6,7 +6,7 @@ import org.springframework.r2dbc.core.DatabaseClient;
 public class DbUtils {
 
   public static final String PRODUCT_TABLE_NAME = "products";
-  public static final String DELETE_ALL = "DELETE from products; DELETE from order_items; DELETE from orders;";
+  public static final String DELETE_ALL = "DELETE from products; DELETE from order_items; DELETE from orders; DELETE from checkout_keys; DELETE from sales_hourly; DELETE from sales_daily; DELETE from sales_rollup_queue;";
   public static final String ID = "id";
 
   public static void cleanUp(DatabaseClient dbClient) {
@@ -0,0 +1,53 @@
+package com.haiilo.supermarket.checkout.benchmark;
+
+import com.haiilo.supermarket.checkout.domain.Basket;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BasketBenchmark {
+
+  private static final String NEW_SKU = "SKU-NEW";
+
+  @Param({"1", "10", "50"})
+  private int basketSize;
+
+  private Basket basket;
+  private String existingSku;
+
+  @Setup
+  public void setUp() {
+    basket = BenchmarkData.basket(basketSize, BenchmarkData.catalogue());
+    existingSku = basket.getItems().keySet().iterator().next();
+  }
+
+  // Each benchmark leaves the basket as it found it so iterations measure the same state.
+  @Benchmark
+  public Basket addAndRemoveExistingItem() {
+    basket.addItem(existingSku);
+    basket.removeItem(existingSku);
+    return basket;
+  }
+
+  @Benchmark
+  public Basket addAndRemoveNewItem() {
+    basket.addItem(NEW_SKU);
+    basket.removeItem(NEW_SKU);
+    return basket;
+  }
+}
@@ -0,0 +1,83 @@
+package com.haiilo.supermarket.checkout.benchmark;
+
+import com.haiilo.supermarket.checkout.domain.Basket;
+import com.haiilo.supermarket.checkout.domain.PricedLine;
+import com.haiilo.supermarket.checkout.domain.Product;
+import com.haiilo.supermarket.checkout.pricing.PricingRule;
+import com.haiilo.supermarket.checkout.pricing.PromotionType;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+// Seeded fixtures so every run, and every commit, measures the same catalogue and baskets.
+final class BenchmarkData {
+
+  static final int CATALOGUE_SIZE = 5_000;
+
+  private BenchmarkData() {
+  }
+
+  static String sku(int index) {
+    return "SKU-" + index;
+  }
+
+  static Map<String, Product> catalogue() {
+    Map<String, Product> products = new HashMap<>();
+    for (int i = 0; i < CATALOGUE_SIZE; i++) {
+      int unitPrice = 10 + i % 90;
+      boolean offer = i % 3 == 0;
+      products.put(sku(i), new Product((long) i, sku(i), "Product " + i, unitPrice,
+          offer ? 3 : null, offer ? unitPrice * 3 - 5 : null, 1L));
+    }
+    return products;
+  }
+
+  static Map<String, Integer> basketItems(int size, long seed) {
+    Random random = new Random(seed);
+    Map<String, Integer> items = new HashMap<>();
+    while (items.size() < size) {
+      items.put(sku(random.nextInt(CATALOGUE_SIZE)), 1 + random.nextInt(5));
+    }
+    return items;
+  }
+
+  static Basket basket(int size, Map<String, Product> products) {
+    Basket basket = new Basket("benchmark-basket");
+    basket.setItems(basketItems(size, 7));
+    int total = 0;
+    for (Map.Entry<String, Integer> item : basket.getItems().entrySet()) {
+      Product product = products.get(item.getKey());
+      int subtotal = product.unitPrice() * item.getValue();
+      basket.getLines().put(item.getKey(), new PricedLine(subtotal, product.priceVersion()));
+      total += subtotal;
+    }
+    basket.setTotalPrice(total);
+    return basket;
+  }
+
+  // Promotions are concentrated on the first tenth of the catalogue, like a weekly flyer, so
+  // baskets built from the same range exercise many overlapping deals.
+  static List<PricingRule> promotions(int count, long seed) {
+    Random random = new Random(seed);
+    int range = CATALOGUE_SIZE / 10;
+    List<PricingRule> rules = new ArrayList<>(count);
+    for (int id = 1; id <= count; id++) {
+      String first = sku(random.nextInt(range));
+      rules.add(switch (id % 3) {
+        case 0 -> new PricingRule(id, PromotionType.MULTIBUY, Map.of(first, 2 + random.nextInt(3)),
+            50 + random.nextInt(100), null, null, null);
+        case 1 -> {
+          String second = sku(random.nextInt(range));
+          yield new PricingRule(id, PromotionType.BUNDLE,
+              first.equals(second) ? Map.of(first, 2) : Map.of(first, 1, second, 1),
+              40 + random.nextInt(100), null, null, null);
+        }
+        default -> new PricingRule(id, PromotionType.PERCENTAGE, Map.of(first, 1), null,
+            5 + random.nextInt(30), null, null);
+      });
+    }
+    return rules;
+  }
+}
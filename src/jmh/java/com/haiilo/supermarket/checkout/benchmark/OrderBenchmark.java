@@ -0,0 +1,62 @@
+package com.haiilo.supermarket.checkout.benchmark;
+
+import com.haiilo.supermarket.checkout.domain.Basket;
+import com.haiilo.supermarket.checkout.domain.OrderItem;
+import com.haiilo.supermarket.checkout.dto.OrderDTO;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderBenchmark {
+
+  private static final long ORDER_ID = 42L;
+
+  @Param({"1", "10", "50"})
+  private int basketSize;
+
+  private Basket basket;
+  private Instant createdAt;
+
+  @Setup
+  public void setUp() {
+    basket = BenchmarkData.basket(basketSize, BenchmarkData.catalogue());
+    createdAt = Instant.now();
+  }
+
+  // Same shape as OrderHelper: one OrderItem per basket line, then the DTO around them.
+  @Benchmark
+  public OrderDTO buildOrder() {
+    List<OrderItem> items = new ArrayList<>(basket.getItems().size());
+    long itemId = 1;
+    for (Map.Entry<String, Integer> item : basket.getItems().entrySet()) {
+      items.add(OrderItem.builder()
+          .id(itemId++)
+          .orderId(ORDER_ID)
+          .productSku(item.getKey())
+          .quantity(item.getValue())
+          .build());
+    }
+    return OrderDTO.builder().id(ORDER_ID).items(items)
+        .finalPrice(basket.getTotalPrice()).createdAt(createdAt)
+        .build();
+  }
+}
@@ -0,0 +1,59 @@
+package com.haiilo.supermarket.checkout.benchmark;
+
+import com.haiilo.supermarket.checkout.domain.Product;
+import com.haiilo.supermarket.checkout.pricing.PricingRuleSet;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PricingBenchmark {
+
+  @Param({"1", "10", "50"})
+  private int basketSize;
+
+  @Param({"0", "3000"})
+  private int promotions;
+
+  private Map<String, Product> products;
+  private Map<String, Integer> items;
+  private PricingRuleSet ruleSet;
+  private Instant now;
+
+  @Setup
+  public void setUp() {
+    products = BenchmarkData.catalogue();
+    ruleSet = PricingRuleSet.compile(BenchmarkData.promotions(promotions, 42));
+    now = Instant.now();
+    // Draw basket SKUs from the promoted range so the rule index actually gets hit.
+    Random random = new Random(7);
+    items = new HashMap<>();
+    while (items.size() < basketSize) {
+      items.put(BenchmarkData.sku(random.nextInt(BenchmarkData.CATALOGUE_SIZE / 10)),
+          1 + random.nextInt(5));
+    }
+  }
+
+  @Benchmark
+  public int priceBasket() {
+    return ruleSet.price(items, products, now);
+  }
+}
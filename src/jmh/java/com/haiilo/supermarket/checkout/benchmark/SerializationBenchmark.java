@@ -0,0 +1,81 @@
+package com.haiilo.supermarket.checkout.benchmark;
+
+import com.haiilo.supermarket.checkout.domain.Basket;
+import com.haiilo.supermarket.checkout.domain.Product;
+import com.haiilo.supermarket.checkout.serializer.BasketBinarySerializer;
+import com.haiilo.supermarket.checkout.serializer.ProductBinarySerializer;
+import com.haiilo.supermarket.checkout.serializer.RedisSerializationMode;
+import com.haiilo.supermarket.checkout.serializer.VersionedBinarySerializer;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+  @Param({"JSON", "BINARY", "MIGRATION"})
+  private RedisSerializationMode mode;
+
+  @Param({"1", "10", "50"})
+  private int basketSize;
+
+  private RedisSerializer<Basket> basketSerializer;
+  private RedisSerializer<Product> productSerializer;
+  private Basket basket;
+  private Product product;
+  private byte[] basketBytes;
+  private byte[] productBytes;
+
+  @Setup
+  public void setUp() {
+    Map<String, Product> products = BenchmarkData.catalogue();
+    basketSerializer = serializer(Basket.class, new BasketBinarySerializer());
+    productSerializer = serializer(Product.class, new ProductBinarySerializer());
+    basket = BenchmarkData.basket(basketSize, products);
+    product = products.get(BenchmarkData.sku(0));
+    basketBytes = basketSerializer.serialize(basket);
+    productBytes = productSerializer.serialize(product);
+  }
+
+  @Benchmark
+  public byte[] serializeBasket() {
+    return basketSerializer.serialize(basket);
+  }
+
+  @Benchmark
+  public Basket deserializeBasket() {
+    return basketSerializer.deserialize(basketBytes);
+  }
+
+  @Benchmark
+  public byte[] serializeProduct() {
+    return productSerializer.serialize(product);
+  }
+
+  @Benchmark
+  public Product deserializeProduct() {
+    return productSerializer.deserialize(productBytes);
+  }
+
+  // Same serializers as RedisConfig so the numbers track what the templates actually use.
+  private <T> RedisSerializer<T> serializer(Class<T> type,
+      VersionedBinarySerializer<T> binarySerializer) {
+    return mode.serializer(type, binarySerializer);
+  }
+}
@@ -0,0 +1,116 @@
+package com.haiilo.supermarket.checkout.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+// Thin blocking client for the checkout API. Every call is timed under the given operation name;
+// a failed call, whether an error status or an I/O error, is recorded and returns null.
+class ApiClient {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+
+  // The client keeps its own executor; sharing the workers' pool would leave no thread to
+  // complete responses while every worker is blocked in send().
+  private final HttpClient client = HttpClient.newBuilder()
+      .connectTimeout(Duration.ofSeconds(5)).build();
+  private final String baseUrl;
+
+  ApiClient(String baseUrl) {
+    this.baseUrl = baseUrl;
+  }
+
+  String createBasket(LatencyRecorder recorder) {
+    JsonNode basket = readTree(send(recorder, "create", post("/api/v1/baskets")));
+    return basket == null ? null : basket.get("id").asText();
+  }
+
+  boolean addItem(LatencyRecorder recorder, String basketId, String sku) {
+    return send(recorder, "scan", post(basketPath(basketId) + "/items/" + sku)) != null;
+  }
+
+  boolean addItems(LatencyRecorder recorder, String basketId, String itemsJson) {
+    return send(recorder, "batch", request(basketPath(basketId) + "/items")
+        .header("Content-Type", "application/json")
+        .POST(HttpRequest.BodyPublishers.ofString(itemsJson))) != null;
+  }
+
+  boolean getBasket(LatencyRecorder recorder, String basketId) {
+    return send(recorder, "get", request(basketPath(basketId)).GET()) != null;
+  }
+
+  boolean checkout(LatencyRecorder recorder, String basketId) {
+    return send(recorder, "checkout", request(basketPath(basketId) + "/checkout")
+        .header("Idempotency-Key", basketId)
+        .POST(HttpRequest.BodyPublishers.noBody())) != null;
+  }
+
+  boolean cancel(LatencyRecorder recorder, String basketId) {
+    return send(recorder, "cancel", request(basketPath(basketId)).DELETE()) != null;
+  }
+
+  boolean getProduct(LatencyRecorder recorder, String sku) {
+    return send(recorder, "lookup", request("/api/v1/products/" + sku).GET()) != null;
+  }
+
+  // Unrecorded check used while seeding the catalog; an unknown SKU is answered with an empty
+  // body rather than a 404.
+  boolean productExists(String sku) throws Exception {
+    HttpResponse<String> response = client.send(request("/api/v1/products/" + sku).GET().build(),
+        HttpResponse.BodyHandlers.ofString());
+    return response.statusCode() == 200 && !response.body().isBlank();
+  }
+
+  int createProduct(String productJson) throws Exception {
+    return client.send(request("/api/v1/products")
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(productJson)).build(),
+        HttpResponse.BodyHandlers.discarding()).statusCode();
+  }
+
+  private String send(LatencyRecorder recorder, String operation, HttpRequest.Builder request) {
+    long start = System.nanoTime();
+    try {
+      HttpResponse<String> response = client.send(request.timeout(REQUEST_TIMEOUT).build(),
+          HttpResponse.BodyHandlers.ofString());
+      boolean success = response.statusCode() < 400;
+      recorder.record(operation, System.nanoTime() - start, success);
+      return success ? response.body() : null;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      recorder.record(operation, System.nanoTime() - start, false);
+      return null;
+    } catch (Exception e) {
+      recorder.record(operation, System.nanoTime() - start, false);
+      return null;
+    }
+  }
+
+  private HttpRequest.Builder post(String path) {
+    return request(path).POST(HttpRequest.BodyPublishers.noBody());
+  }
+
+  private HttpRequest.Builder request(String path) {
+    return HttpRequest.newBuilder(URI.create(baseUrl + path));
+  }
+
+  private static String basketPath(String basketId) {
+    return "/api/v1/baskets/" + basketId;
+  }
+
+  private static JsonNode readTree(String json) {
+    if (json == null) {
+      return null;
+    }
+    try {
+      return MAPPER.readTree(json);
+    } catch (Exception e) {
+      throw new IllegalStateException("Unexpected response: " + json, e);
+    }
+  }
+}
@@ -0,0 +1,53 @@
+package com.haiilo.supermarket.checkout.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Basket size distribution given as weighted ranges, e.g. "1-5:40,6-20:45,21-60:15": a range is
+// picked by weight and the size drawn uniformly within it.
+class BasketSizes {
+
+  private final List<int[]> ranges;
+  private final double[] cumulativeWeights;
+
+  private BasketSizes(List<int[]> ranges, double[] cumulativeWeights) {
+    this.ranges = ranges;
+    this.cumulativeWeights = cumulativeWeights;
+  }
+
+  static BasketSizes parse(String spec) {
+    List<int[]> ranges = new ArrayList<>();
+    List<Double> weights = new ArrayList<>();
+    for (String part : spec.split(",")) {
+      String[] rangeAndWeight = part.trim().split(":");
+      String[] bounds = rangeAndWeight[0].split("-");
+      int min = Integer.parseInt(bounds[0].trim());
+      int max = bounds.length > 1 ? Integer.parseInt(bounds[1].trim()) : min;
+      double weight = rangeAndWeight.length > 1 ? Double.parseDouble(rangeAndWeight[1]) : 1;
+      if (min < 1 || max < min || weight <= 0) {
+        throw new IllegalArgumentException("Invalid basket size range: " + part);
+      }
+      ranges.add(new int[] {min, max});
+      weights.add(weight);
+    }
+    double[] cumulativeWeights = new double[weights.size()];
+    double sum = 0;
+    for (int i = 0; i < weights.size(); i++) {
+      sum += weights.get(i);
+      cumulativeWeights[i] = sum;
+    }
+    return new BasketSizes(ranges, cumulativeWeights);
+  }
+
+  int sample() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    double pick = random.nextDouble() * cumulativeWeights[cumulativeWeights.length - 1];
+    int index = 0;
+    while (index < cumulativeWeights.length - 1 && pick >= cumulativeWeights[index]) {
+      index++;
+    }
+    int[] range = ranges.get(index);
+    return random.nextInt(range[0], range[1] + 1);
+  }
+}
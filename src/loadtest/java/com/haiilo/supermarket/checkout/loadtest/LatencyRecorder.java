@@ -0,0 +1,91 @@
+package com.haiilo.supermarket.checkout.loadtest;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Request latencies per operation. Each worker records into its own instance; the instances are
+// merged once the run is over, so recording needs no synchronization.
+class LatencyRecorder {
+
+  private final Map<String, Samples> operations = new LinkedHashMap<>();
+
+  void record(String operation, long latencyNanos, boolean success) {
+    operations.computeIfAbsent(operation, key -> new Samples()).add(latencyNanos, success);
+  }
+
+  void addAll(LatencyRecorder other) {
+    other.operations.forEach((operation, samples) ->
+        operations.computeIfAbsent(operation, key -> new Samples()).addAll(samples));
+  }
+
+  Map<String, Result> results() {
+    Map<String, Result> results = new TreeMap<>();
+    operations.forEach((operation, samples) -> results.put(operation, samples.toResult()));
+    return results;
+  }
+
+  Result total() {
+    Samples total = new Samples();
+    operations.values().forEach(total::addAll);
+    return total.toResult();
+  }
+
+  private static class Samples {
+
+    private long[] latencies = new long[1024];
+    private int count;
+    private long errors;
+
+    void add(long latencyNanos, boolean success) {
+      if (count == latencies.length) {
+        latencies = Arrays.copyOf(latencies, count * 2);
+      }
+      latencies[count++] = latencyNanos;
+      if (!success) {
+        errors++;
+      }
+    }
+
+    void addAll(Samples other) {
+      for (int i = 0; i < other.count; i++) {
+        add(other.latencies[i], true);
+      }
+      errors += other.errors;
+    }
+
+    Result toResult() {
+      long[] sorted = Arrays.copyOf(latencies, count);
+      Arrays.sort(sorted);
+      return new Result(sorted, errors);
+    }
+  }
+
+  record Result(long[] latencies, long errors) {
+
+    int count() {
+      return latencies.length;
+    }
+
+    double percentile(double quantile) {
+      if (latencies.length == 0) {
+        return 0;
+      }
+      int index = (int) Math.ceil(quantile * latencies.length) - 1;
+      return latencies[Math.max(0, index)] / 1_000_000.0;
+    }
+  }
+
+  static void printHeader() {
+    System.out.printf("%-12s %10s %8s %9s %8s %8s %8s %8s %8s%n", "", "requests", "errors",
+        "req/s", "p50 ms", "p95 ms", "p99 ms", "p99.9 ms", "max ms");
+  }
+
+  static void printRow(String name, Result result, double seconds) {
+    System.out.printf("%-12s %10d %8d %9.1f %8.2f %8.2f %8.2f %8.2f %8.2f%n", name,
+        result.count(), result.errors(), result.count() / seconds, result.percentile(0.50),
+        result.percentile(0.95), result.percentile(0.99), result.percentile(0.999),
+        result.percentile(1.0));
+  }
+}
@@ -0,0 +1,96 @@
+package com.haiilo.supermarket.checkout.loadtest;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Drives the same basket flow against several running instances, one after the other, with a
+// fixed number of closed-loop clients, and prints throughput and latency percentiles for each.
+// Start one instance per mode, e.g. the default on 8081 and --spring.profiles.active=blocking
+// on 8082, then run: ./gradlew compareModes -Ptargets=reactive=http://localhost:8081,...
+public class ModeComparison {
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> targets = parseTargets(
+        System.getProperty("targets", "reactive=http://localhost:8081"));
+    Duration warmUp = Duration.parse(System.getProperty("warmUp", "PT10S"));
+    Duration duration = Duration.parse(System.getProperty("duration", "PT30S"));
+    int clients = Integer.parseInt(System.getProperty("clients", "64"));
+    List<String> skus = Arrays.asList(System.getProperty("skus", "A,B,C,D").split(","));
+
+    ExecutorService executor = Executors.newFixedThreadPool(clients);
+    System.out.printf("%d clients, %s warm-up, %s measured, SKUs %s%n", clients, warmUp,
+        duration, skus);
+    LatencyRecorder.printHeader();
+    try {
+      for (Map.Entry<String, String> target : targets.entrySet()) {
+        ApiClient api = new ApiClient(target.getValue());
+        run(executor, api, skus, clients, warmUp);
+        LatencyRecorder recorder = run(executor, api, skus, clients, duration);
+        LatencyRecorder.printRow(target.getKey(), recorder.total(),
+            duration.toMillis() / 1000.0);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static LatencyRecorder run(ExecutorService executor, ApiClient api, List<String> skus,
+      int clients, Duration duration) throws Exception {
+    long deadline = System.nanoTime() + duration.toNanos();
+    List<Future<LatencyRecorder>> futures = new ArrayList<>();
+    for (int i = 0; i < clients; i++) {
+      futures.add(executor.submit(() -> {
+        LatencyRecorder recorder = new LatencyRecorder();
+        while (System.nanoTime() < deadline) {
+          runBasketFlow(api, skus, recorder);
+        }
+        return recorder;
+      }));
+    }
+    LatencyRecorder total = new LatencyRecorder();
+    for (Future<LatencyRecorder> future : futures) {
+      total.addAll(future.get());
+    }
+    return total;
+  }
+
+  // One shopper: create a basket, scan two items, add a small batch, look at the basket and
+  // check out. A failed step ends the flow so the next one starts from a fresh basket.
+  private static void runBasketFlow(ApiClient api, List<String> skus, LatencyRecorder recorder) {
+    String basketId = api.createBasket(recorder);
+    if (basketId == null
+        || !api.addItem(recorder, basketId, randomSku(skus))
+        || !api.addItem(recorder, basketId, randomSku(skus))) {
+      return;
+    }
+    String batch = "[{\"sku\":\"" + randomSku(skus) + "\",\"quantity\":2},{\"sku\":\""
+        + randomSku(skus) + "\",\"quantity\":1}]";
+    if (api.addItems(recorder, basketId, batch) && api.getBasket(recorder, basketId)) {
+      api.checkout(recorder, basketId);
+    }
+  }
+
+  private static String randomSku(List<String> skus) {
+    return skus.get(ThreadLocalRandom.current().nextInt(skus.size()));
+  }
+
+  private static Map<String, String> parseTargets(String targets) {
+    Map<String, String> parsed = new LinkedHashMap<>();
+    for (String target : targets.split(",")) {
+      String[] nameAndUrl = target.split("=", 2);
+      if (nameAndUrl.length != 2) {
+        throw new IllegalArgumentException("Targets must be name=url pairs: " + target);
+      }
+      parsed.put(nameAndUrl[0].trim(), nameAndUrl[1].trim());
+    }
+    return parsed;
+  }
+}
@@ -0,0 +1,219 @@
+package com.haiilo.supermarket.checkout.loadtest;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Simulates the tills of a store against one running instance. Every till serves customers back
+// to back: it opens a basket, scans items one at a time at the configured rate, optionally
+// looking each product up first, shows the basket and then checks out or cancels. Products are
+// picked from a seeded catalog with Zipf-distributed popularity, so a few SKUs are scanned far
+// more often than the rest. Run with e.g. ./gradlew simulateTills -Ptills=100 -PscanRate=2
+public class TillSimulation {
+
+  private final ApiClient api;
+  private final Config config;
+  private final List<String> skus;
+  private final ZipfSampler skuSampler;
+  private final BasketSizes basketSizes;
+
+  private TillSimulation(ApiClient api, Config config, List<String> skus) {
+    this.api = api;
+    this.config = config;
+    this.skus = skus;
+    this.skuSampler = new ZipfSampler(skus.size(), config.skew());
+    this.basketSizes = BasketSizes.parse(config.basketSizes());
+  }
+
+  public static void main(String[] args) throws Exception {
+    Config config = Config.fromSystemProperties();
+    ApiClient api = new ApiClient(config.baseUrl());
+    List<String> skus = seedCatalog(api, config.products(), config.skuPrefix());
+    System.out.printf("%d tills against %s, %s warm-up, %s measured%n", config.tills(),
+        config.baseUrl(), config.warmUp(), config.duration());
+    System.out.printf("%d SKUs with Zipf skew %.2f, basket sizes %s, %.2f scans/s per till,"
+            + " %.0f%% checked out, %.0f%% of scans looked up%n", skus.size(), config.skew(),
+        config.basketSizes(), config.scanRate(), config.checkoutRatio() * 100,
+        config.lookupRatio() * 100);
+    new TillSimulation(api, config, skus).run();
+  }
+
+  private void run() throws Exception {
+    long start = System.nanoTime();
+    long measureFrom = start + config.warmUp().toNanos();
+    long deadline = measureFrom + config.duration().toNanos();
+    ExecutorService executor = Executors.newFixedThreadPool(config.tills());
+    List<Future<Till>> futures = new ArrayList<>();
+    try {
+      for (int i = 0; i < config.tills(); i++) {
+        futures.add(executor.submit(() -> {
+          Till till = new Till(measureFrom);
+          till.serveCustomersUntil(deadline);
+          return till;
+        }));
+      }
+      LatencyRecorder recorder = new LatencyRecorder();
+      long checkouts = 0;
+      long cancellations = 0;
+      long failedBaskets = 0;
+      long scannedItems = 0;
+      for (Future<Till> future : futures) {
+        Till till = future.get();
+        recorder.addAll(till.recorder);
+        checkouts += till.checkouts;
+        cancellations += till.cancellations;
+        failedBaskets += till.failedBaskets;
+        scannedItems += till.scannedItems;
+      }
+      double seconds = config.duration().toMillis() / 1000.0;
+      LatencyRecorder.printHeader();
+      for (Map.Entry<String, LatencyRecorder.Result> operation : recorder.results().entrySet()) {
+        LatencyRecorder.printRow(operation.getKey(), operation.getValue(), seconds);
+      }
+      LatencyRecorder.printRow("total", recorder.total(), seconds);
+      long baskets = checkouts + cancellations;
+      System.out.printf("%d checkouts (%.1f/min), %d cancelled, %d abandoned after an error,"
+              + " %.1f items per basket%n", checkouts, checkouts * 60 / seconds, cancellations,
+          failedBaskets, baskets == 0 ? 0.0 : (double) scannedItems / baskets);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private class Till {
+
+    private final long measureFrom;
+    private final LatencyRecorder recorder = new LatencyRecorder();
+    private final LatencyRecorder warmUpRecorder = new LatencyRecorder();
+    private long checkouts;
+    private long cancellations;
+    private long failedBaskets;
+    private long scannedItems;
+
+    Till(long measureFrom) {
+      this.measureFrom = measureFrom;
+    }
+
+    void serveCustomersUntil(long deadline) throws InterruptedException {
+      while (System.nanoTime() < deadline) {
+        boolean measured = System.nanoTime() >= measureFrom;
+        if (!serveCustomer(deadline)) {
+          failedBaskets += measured ? 1 : 0;
+        }
+      }
+    }
+
+    // Returns false when a request failed; the basket is left to expire, as a till would after
+    // a crash.
+    private boolean serveCustomer(long deadline) throws InterruptedException {
+      boolean measured = System.nanoTime() >= measureFrom;
+      String basketId = api.createBasket(recorder());
+      if (basketId == null) {
+        return false;
+      }
+      int items = basketSizes.sample();
+      for (int i = 0; i < items; i++) {
+        if (!pauseBetweenScans(deadline)) {
+          return true;
+        }
+        String sku = skus.get(skuSampler.sample());
+        if (ThreadLocalRandom.current().nextDouble() < config.lookupRatio()
+            && !api.getProduct(recorder(), sku)) {
+          return false;
+        }
+        if (!api.addItem(recorder(), basketId, sku)) {
+          return false;
+        }
+      }
+      if (!api.getBasket(recorder(), basketId)) {
+        return false;
+      }
+      boolean checkout = ThreadLocalRandom.current().nextDouble() < config.checkoutRatio();
+      if (checkout ? !api.checkout(recorder(), basketId) : !api.cancel(recorder(), basketId)) {
+        return false;
+      }
+      if (measured) {
+        scannedItems += items;
+        if (checkout) {
+          checkouts++;
+        } else {
+          cancellations++;
+        }
+      }
+      return true;
+    }
+
+    // Exponentially distributed think time with a mean of 1 / scanRate; false once the run is
+    // over, so the basket in progress is dropped rather than finished after the deadline.
+    private boolean pauseBetweenScans(long deadline) throws InterruptedException {
+      if (config.scanRate() > 0) {
+        double seconds = -Math.log(1.0 - ThreadLocalRandom.current().nextDouble())
+            / config.scanRate();
+        long pauseNanos = Math.min((long) (seconds * 1e9), deadline - System.nanoTime());
+        if (pauseNanos > 0) {
+          TimeUnit.NANOSECONDS.sleep(pauseNanos);
+        }
+      }
+      return System.nanoTime() < deadline;
+    }
+
+    private LatencyRecorder recorder() {
+      return System.nanoTime() >= measureFrom ? recorder : warmUpRecorder;
+    }
+  }
+
+  // Makes sure SKUs <prefix>00001 .. <prefix>n exist, creating the missing ones with
+  // deterministic prices; every fourth product gets a multibuy offer.
+  private static List<String> seedCatalog(ApiClient api, int products, String prefix)
+      throws Exception {
+    Random random = new Random(42);
+    List<String> skus = new ArrayList<>(products);
+    int created = 0;
+    for (int i = 1; i <= products; i++) {
+      String sku = String.format("%s%05d", prefix, i);
+      int unitPrice = 10 + random.nextInt(490);
+      skus.add(sku);
+      if (!api.productExists(sku)) {
+        String offer = i % 4 == 0
+            ? ",\"offerQuantity\":3,\"offerPrice\":" + (unitPrice * 5 / 2)
+            : "";
+        String product = "{\"sku\":\"" + sku + "\",\"name\":\"Load test " + i
+            + "\",\"unitPrice\":" + unitPrice + offer + "}";
+        int status = api.createProduct(product);
+        if (status >= 400) {
+          throw new IllegalStateException("Could not seed product " + sku + ": HTTP " + status);
+        }
+        created++;
+      }
+    }
+    System.out.printf("Catalog ready: %d products, %d created%n", products, created);
+    return skus;
+  }
+
+  private record Config(String baseUrl, int tills, Duration warmUp, Duration duration,
+      String basketSizes, double scanRate, double checkoutRatio, double lookupRatio,
+      int products, String skuPrefix, double skew) {
+
+    static Config fromSystemProperties() {
+      return new Config(
+          System.getProperty("baseUrl", "http://localhost:8081"),
+          Integer.parseInt(System.getProperty("tills", "50")),
+          Duration.parse(System.getProperty("warmUp", "PT10S")),
+          Duration.parse(System.getProperty("duration", "PT60S")),
+          System.getProperty("basketSizes", "1-5:40,6-20:45,21-60:15"),
+          Double.parseDouble(System.getProperty("scanRate", "1")),
+          Double.parseDouble(System.getProperty("checkoutRatio", "0.9")),
+          Double.parseDouble(System.getProperty("lookupRatio", "0.1")),
+          Integer.parseInt(System.getProperty("products", "500")),
+          System.getProperty("skuPrefix", "LT-"),
+          Double.parseDouble(System.getProperty("skew", "1.0")));
+    }
+  }
+}
@@ -0,0 +1,32 @@
+package com.haiilo.supermarket.checkout.loadtest;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Samples ranks 0..n-1 where rank k is picked with probability proportional to 1 / (k + 1)^skew.
+// A skew of 0 is uniform; around 1 the most popular item is scanned about as often as the
+// next few together, as in typical retail sales.
+class ZipfSampler {
+
+  private final double[] cumulative;
+
+  ZipfSampler(int n, double skew) {
+    if (n <= 0 || skew < 0) {
+      throw new IllegalArgumentException("Need at least one item and a non-negative skew");
+    }
+    cumulative = new double[n];
+    double sum = 0;
+    for (int k = 0; k < n; k++) {
+      sum += 1.0 / Math.pow(k + 1, skew);
+      cumulative[k] = sum;
+    }
+    for (int k = 0; k < n; k++) {
+      cumulative[k] /= sum;
+    }
+  }
+
+  int sample() {
+    int index = Arrays.binarySearch(cumulative, ThreadLocalRandom.current().nextDouble());
+    return Math.min(index >= 0 ? index : -index - 1, cumulative.length - 1);
+  }
+}
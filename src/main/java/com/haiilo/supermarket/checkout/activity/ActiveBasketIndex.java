@@ -0,0 +1,242 @@
+package com.haiilo.supermarket.checkout.activity;
+
+import static com.haiilo.supermarket.checkout.util.AppConstants.BASKET_STORE;
+import static com.haiilo.supermarket.checkout.util.AppConstants.BASKET_TTL;
+
+import com.haiilo.supermarket.checkout.dto.BasketActivityDTO;
+import com.haiilo.supermarket.checkout.util.MetricsHelper;
+import com.haiilo.supermarket.checkout.util.RedisKeys;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Sorted sets of the Redis baskets by time of their last change and by number of lines, so live
+// and abandoned baskets can be counted and idle ones found without scanning the keyspace. Changes
+// are collected in process and written in one script call per flush interval, which keeps the
+// index off the request path; eviction checks the basket itself, so a lagging index is harmless.
+@Slf4j
+@Component
+@ConditionalOnProperty(name = BASKET_STORE, havingValue = "redis", matchIfMissing = true)
+public class ActiveBasketIndex {
+
+  // Lower bounds of the line count buckets reported by stats().
+  static final List<Integer> LINE_BUCKETS = List.of(0, 1, 6, 21, 61);
+  private static final int FLUSH_BATCH_SIZE = 1000;
+
+  private static final RedisScript<Long> UPDATE_SCRIPT =
+      RedisScript.of(new ClassPathResource("scripts/basket-index-update.lua"), Long.class);
+  private static final RedisScript<Long> EVICT_SCRIPT =
+      RedisScript.of(new ClassPathResource("scripts/basket-evict-idle.lua"), Long.class);
+  @SuppressWarnings("rawtypes")
+  private static final RedisScript<List> STATS_SCRIPT =
+      RedisScript.of(new ClassPathResource("scripts/basket-index-stats.lua"), List.class);
+
+  private final ReactiveStringRedisTemplate stringRedisTemplate;
+  private final MetricsHelper metricsHelper;
+  private final RedisKeys redisKeys;
+  private final Duration minIdleTimeout;
+  private final Duration maxIdleTimeout;
+  private final long targetLive;
+  private final Duration abandonedAfter;
+  private final Duration flushInterval;
+  private final Map<String, Touch> pendingTouches = new ConcurrentHashMap<>();
+  private final Set<String> pendingRemovals = ConcurrentHashMap.newKeySet();
+  private Disposable flusher;
+
+  public ActiveBasketIndex(ReactiveStringRedisTemplate stringRedisTemplate,
+      MetricsHelper metricsHelper, RedisKeys redisKeys,
+      @Value("${checkout.baskets.idle.min-timeout:PT20M}") Duration minIdleTimeout,
+      @Value("${checkout.baskets.idle.max-timeout:PT4H}") Duration maxIdleTimeout,
+      @Value("${checkout.baskets.idle.target-live:50000}") long targetLive,
+      @Value("${checkout.baskets.idle.abandoned-after:PT30M}") Duration abandonedAfter,
+      @Value("${checkout.baskets.index.flush-interval:PT1S}") Duration flushInterval) {
+    this.stringRedisTemplate = stringRedisTemplate;
+    this.metricsHelper = metricsHelper;
+    this.redisKeys = redisKeys;
+    this.maxIdleTimeout = maxIdleTimeout.compareTo(BASKET_TTL) < 0 ? maxIdleTimeout : BASKET_TTL;
+    this.minIdleTimeout = minIdleTimeout.compareTo(this.maxIdleTimeout) < 0
+        ? minIdleTimeout
+        : this.maxIdleTimeout;
+    this.targetLive = targetLive;
+    this.abandonedAfter = abandonedAfter;
+    this.flushInterval = flushInterval;
+  }
+
+  @PostConstruct
+  void start() {
+    flusher = Flux.interval(flushInterval, flushInterval)
+        .onBackpressureDrop()
+        .concatMap(tick -> flush()
+            .onErrorResume(e -> {
+              log.warn("Flushing the active-basket index failed.", e);
+              return Mono.empty();
+            }))
+        .subscribe();
+  }
+
+  @PreDestroy
+  void stop() {
+    if (flusher != null) {
+      flusher.dispose();
+    }
+    flush().block(flushInterval.plusSeconds(5));
+  }
+
+  public void touch(String basketId, int lines) {
+    pendingTouches.put(basketId, new Touch(Instant.now().toEpochMilli(), lines));
+  }
+
+  public void remove(String basketId) {
+    pendingTouches.remove(basketId);
+    pendingRemovals.add(basketId);
+  }
+
+  // A change recorded while the flush runs stays pending for the next one. Removals are applied
+  // after the touches, so a basket deleted right after a change does not stay in the index. Large
+  // flushes are split so no single script call holds up Redis for long.
+  public Mono<Void> flush() {
+    return Mono.defer(() -> {
+      List<Map.Entry<String, Touch>> touches = new ArrayList<>();
+      for (String basketId : pendingTouches.keySet()) {
+        Touch touch = pendingTouches.remove(basketId);
+        if (touch != null) {
+          touches.add(Map.entry(basketId, touch));
+        }
+      }
+      List<String> removals = new ArrayList<>();
+      for (String basketId : pendingRemovals) {
+        if (pendingRemovals.remove(basketId)) {
+          removals.add(basketId);
+        }
+      }
+      List<Mono<Void>> batches = new ArrayList<>();
+      for (int from = 0; from < touches.size(); from += FLUSH_BATCH_SIZE) {
+        batches.add(update(touches.subList(from,
+            Math.min(from + FLUSH_BATCH_SIZE, touches.size())), List.of()));
+      }
+      if (!removals.isEmpty()) {
+        batches.add(update(List.of(), removals));
+      }
+      if (batches.isEmpty()) {
+        return Mono.empty();
+      }
+      return metricsHelper.timed("basket.index.flush", Flux.concat(batches).then());
+    });
+  }
+
+  public Mono<Long> liveCount() {
+    return stringRedisTemplate.opsForZSet().size(redisKeys.activeBaskets());
+  }
+
+  // The full timeout up to the target number of live baskets. Beyond it the timeout shrinks in
+  // proportion, so Redis memory stays near the target at peak traffic, but never below the minimum.
+  public Duration idleTimeout(long live) {
+    if (live <= targetLive) {
+      return maxIdleTimeout;
+    }
+    long millis = maxIdleTimeout.toMillis() * targetLive / live;
+    return Duration.ofMillis(Math.max(minIdleTimeout.toMillis(), millis));
+  }
+
+  public Mono<BasketActivityDTO> stats() {
+    List<String> args = new ArrayList<>();
+    args.add(String.valueOf(Instant.now().minus(abandonedAfter).toEpochMilli()));
+    LINE_BUCKETS.forEach(bound -> args.add(String.valueOf(bound)));
+    return metricsHelper.timed("basket.index.stats",
+            stringRedisTemplate.execute(STATS_SCRIPT, indexKeys(), args).next())
+        .map(reply -> ((List<?>) reply).stream()
+            .map(count -> ((Number) count).longValue())
+            .toList())
+        .map(counts -> {
+          Map<String, Long> lines = new LinkedHashMap<>();
+          for (int i = 0; i < LINE_BUCKETS.size(); i++) {
+            lines.put(bucketLabel(i), counts.get(i + 2));
+          }
+          return BasketActivityDTO.builder()
+              .live(counts.get(0))
+              .abandoned(counts.get(1))
+              .abandonedAfter(abandonedAfter)
+              .idleTimeout(idleTimeout(counts.get(0)))
+              .lines(lines)
+              .build();
+        });
+  }
+
+  // Oldest first, so a sweep that stops at its batch limit evicts the longest idle baskets.
+  Flux<String> idleSince(Instant cutoff, int limit) {
+    return stringRedisTemplate.opsForZSet().rangeByScore(redisKeys.activeBaskets(),
+        Range.closed(0.0, (double) cutoff.toEpochMilli()), Limit.limit().count(limit));
+  }
+
+  // The basket's own TTL decides, checked atomically on the basket's slot, so a basket changed
+  // after it was picked from the index is kept. Returns 1 if the basket was evicted, 0 if it is
+  // still active and -1 if it had expired already. The index entry of an active basket is moved
+  // to its last change, otherwise it goes.
+  Mono<Long> evictIfIdle(String basketId, Duration idleTimeout) {
+    List<String> args = List.of(String.valueOf(BASKET_TTL.toMillis()),
+        String.valueOf(idleTimeout.toMillis()));
+    return stringRedisTemplate.execute(EVICT_SCRIPT, List.of(redisKeys.basket(basketId)), args)
+        .next()
+        .flatMap(result -> (result == 0 ? rescore(basketId) : update(List.of(), List.of(basketId)))
+            .thenReturn(result));
+  }
+
+  // Every change resets the basket's TTL, so the last change is as long before now as the TTL is
+  // short of the full one. The entry then lies past the sweep's cutoff and later batches of the
+  // same sweep do not pick it again. A basket without a TTL, or gone by now, leaves the index.
+  private Mono<Void> rescore(String basketId) {
+    return stringRedisTemplate.getExpire(redisKeys.basket(basketId))
+        .defaultIfEmpty(Duration.ZERO)
+        .flatMap(ttl -> ttl.isZero() || ttl.isNegative()
+            ? update(List.of(), List.of(basketId))
+            : stringRedisTemplate.opsForZSet().add(redisKeys.activeBaskets(), basketId,
+                Instant.now().minus(BASKET_TTL).plus(ttl).toEpochMilli()).then());
+  }
+
+  private Mono<Void> update(List<Map.Entry<String, Touch>> touches, List<String> removals) {
+    List<String> args = new ArrayList<>(1 + touches.size() * 3 + removals.size());
+    args.add(String.valueOf(touches.size()));
+    for (Map.Entry<String, Touch> touch : touches) {
+      args.add(touch.getKey());
+      args.add(String.valueOf(touch.getValue().at()));
+      args.add(String.valueOf(touch.getValue().lines()));
+    }
+    args.addAll(removals);
+    return stringRedisTemplate.execute(UPDATE_SCRIPT, indexKeys(), args).then();
+  }
+
+  private List<String> indexKeys() {
+    return List.of(redisKeys.activeBaskets(), redisKeys.basketLines());
+  }
+
+  private static String bucketLabel(int index) {
+    int lower = LINE_BUCKETS.get(index);
+    if (index == LINE_BUCKETS.size() - 1) {
+      return lower + "+";
+    }
+    int upper = LINE_BUCKETS.get(index + 1) - 1;
+    return lower == upper ? String.valueOf(lower) : lower + "-" + upper;
+  }
+
+  private record Touch(long at, int lines) {
+  }
+}
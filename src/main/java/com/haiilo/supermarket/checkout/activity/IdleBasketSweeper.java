@@ -0,0 +1,88 @@
+package com.haiilo.supermarket.checkout.activity;
+
+import com.haiilo.supermarket.checkout.util.MetricsHelper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Evicts Redis baskets that have been idle for longer than the adaptive idle timeout, well before
+// the one-day TTL would remove them.
+@Slf4j
+@Component
+@ConditionalOnExpression("'${checkout.baskets.store:redis}' == 'redis'"
+    + " and ${checkout.baskets.idle.enabled:true}")
+public class IdleBasketSweeper {
+
+  private final ActiveBasketIndex index;
+  private final MetricsHelper metricsHelper;
+  private final Duration interval;
+  private final int batchSize;
+  private Disposable sweeper;
+
+  public IdleBasketSweeper(ActiveBasketIndex index, MetricsHelper metricsHelper,
+      @Value("${checkout.baskets.idle.sweep-interval:PT1M}") Duration interval,
+      @Value("${checkout.baskets.idle.batch-size:500}") int batchSize) {
+    this.index = index;
+    this.metricsHelper = metricsHelper;
+    this.interval = interval;
+    this.batchSize = batchSize;
+  }
+
+  @PostConstruct
+  void start() {
+    sweeper = Flux.interval(interval, interval)
+        .onBackpressureDrop()
+        .concatMap(tick -> sweep()
+            .onErrorResume(e -> {
+              log.error("Idle basket sweep failed.", e);
+              return Mono.empty();
+            }))
+        .subscribe();
+  }
+
+  @PreDestroy
+  void stop() {
+    if (sweeper != null) {
+      sweeper.dispose();
+    }
+  }
+
+  // Works through the idle baskets in batches until a batch comes back short, i.e. the last idle
+  // basket was reached. Baskets that turn out to be active again are moved out of the range by
+  // evictIfIdle, so they neither end the sweep nor come back in its next batch.
+  public Mono<Long> sweep() {
+    return index.liveCount()
+        .flatMap(live -> {
+          Duration idleTimeout = index.idleTimeout(live);
+          Instant cutoff = Instant.now().minus(idleTimeout);
+          return metricsHelper.timed("basket.index.sweep", sweepBatch(cutoff, idleTimeout)
+                  .expand(batch -> batch.size() < batchSize
+                      ? Mono.empty()
+                      : sweepBatch(cutoff, idleTimeout))
+                  .map(batch -> batch.stream().filter(result -> result > 0).count())
+                  .reduce(0L, Long::sum))
+              .doOnNext(evicted -> {
+                metricsHelper.basketsEvicted(evicted);
+                if (evicted > 0) {
+                  log.info("Evicted {} of {} baskets after being idle for {}.", evicted, live,
+                      idleTimeout);
+                }
+              });
+        });
+  }
+
+  private Mono<List<Long>> sweepBatch(Instant cutoff, Duration idleTimeout) {
+    return index.idleSince(cutoff, batchSize)
+        .flatMap(basketId -> index.evictIfIdle(basketId, idleTimeout), 16)
+        .collectList();
+  }
+}
@@ -0,0 +1,113 @@
+package com.haiilo.supermarket.checkout.blocking;
+
+import static com.haiilo.supermarket.checkout.util.AppConstants.BLOCKING_PROFILE;
+import static com.haiilo.supermarket.checkout.util.AppConstants.IDEMPOTENCY_KEY_HEADER;
+
+import com.haiilo.supermarket.checkout.domain.Basket;
+import com.haiilo.supermarket.checkout.dto.BasketItemDeltaDTO;
+import com.haiilo.supermarket.checkout.dto.OrderDTO;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+// Same endpoints as BasketController; handlers are plain methods, which WebFlux runs on the
+// blocking executor configured in BlockingModeConfig.
+@RestController
+@Profile(BLOCKING_PROFILE)
+@RequestMapping("/api/v1/baskets")
+@RequiredArgsConstructor
+@Tag(name = "Basket Management", description = "API for managing shopping process")
+public class BlockingBasketController {
+
+  private final BlockingBasketService basketService;
+
+  @Operation(summary = "Create a new basket", description = "Creates a new empty shopping basket, optionally for a store")
+  @ApiResponse(responseCode = "201", description = "Basket created successfully")
+  @ApiResponse(responseCode = "400", description = "Invalid store ID")
+  @PostMapping
+  @ResponseStatus(HttpStatus.CREATED)
+  public Basket createBasket(
+      @Parameter(description = "Store the basket belongs to; prefixes the basket ID") @RequestParam(required = false) String storeId) {
+    return basketService.createBasket(storeId);
+  }
+
+  @Operation(summary = "Get basket by ID", description = "Retrieves a basket by its unique identifier")
+  @ApiResponse(responseCode = "200", description = "Basket found", content = @Content(schema = @Schema(implementation = Basket.class)))
+  @ApiResponse(responseCode = "404", description = "Basket not found")
+  @GetMapping("/{basketId}")
+  public Basket getBasketById(
+      @Parameter(description = "Unique identifier of the basket", required = true) @PathVariable String basketId) {
+    return basketService.getBasketById(basketId);
+  }
+
+  @Operation(summary = "Add item to basket", description = "Adds one unit of a product to the basket")
+  @ApiResponse(responseCode = "200", description = "Item added successfully", content = @Content(schema = @Schema(implementation = Integer.class)))
+  @ApiResponse(responseCode = "404", description = "Basket or product not found")
+  @PostMapping("/{basketId}/items/{sku}")
+  public int addItemToBasket(
+      @Parameter(description = "Unique identifier of the basket", required = true) @PathVariable String basketId,
+      @Parameter(description = "SKU (Stock Keeping Unit) of the product", required = true) @PathVariable String sku) {
+    return basketService.addItemToBasket(basketId, sku);
+  }
+
+  @Operation(summary = "Add items to basket in bulk", description = "Applies a list of quantity changes to the basket atomically and reprices it once; negative quantities remove items")
+  @ApiResponse(responseCode = "200", description = "Items applied successfully", content = @Content(schema = @Schema(implementation = Integer.class)))
+  @ApiResponse(responseCode = "400", description = "Empty, oversized or invalid batch")
+  @ApiResponse(responseCode = "404", description = "Basket, product or item to remove not found")
+  @PostMapping("/{basketId}/items")
+  public int addItemsToBasket(
+      @Parameter(description = "Unique identifier of the basket", required = true) @PathVariable String basketId,
+      @RequestBody List<BasketItemDeltaDTO> items) {
+    return basketService.addItemsToBasket(basketId, items);
+  }
+
+  @Operation(summary = "Remove item from basket", description = "Removes one unit of a product from the basket")
+  @ApiResponse(responseCode = "200", description = "Item removed successfully", content = @Content(schema = @Schema(implementation = Integer.class)))
+  @ApiResponse(responseCode = "404", description = "Basket or product not found")
+  @DeleteMapping("/{basketId}/items/{sku}")
+  public int removeItemFromBasket(
+      @Parameter(description = "Unique identifier of the basket", required = true) @PathVariable String basketId,
+      @Parameter(description = "SKU (Stock Keeping Unit) of the product", required = true) @PathVariable String sku) {
+    return basketService.removeItemFromBasket(basketId, sku);
+  }
+
+  @Operation(summary = "Cancel basket", description = "Cancels and deletes a basket with all its items")
+  @ApiResponse(responseCode = "204", description = "Basket cancelled successfully")
+  @ApiResponse(responseCode = "404", description = "Basket not found")
+  @DeleteMapping("/{basketId}")
+  @ResponseStatus(HttpStatus.NO_CONTENT)
+  public void cancelBasket(
+      @Parameter(description = "Unique identifier of the basket", required = true) @PathVariable String basketId) {
+    basketService.cancelBasket(basketId);
+  }
+
+  @Operation(summary = "Checkout basket", description = "Processes the checkout for a basket and creates an order")
+  @ApiResponse(responseCode = "200", description = "Checkout completed successfully", content = @Content(schema = @Schema(implementation = OrderDTO.class)))
+  @ApiResponse(responseCode = "404", description = "Basket not found")
+  @ApiResponse(responseCode = "400", description = "Basket is empty or invalid")
+  @PostMapping("/{basketId}/checkout")
+  public OrderDTO checkout(
+      @Parameter(description = "Unique identifier of the basket", required = true) @PathVariable String basketId,
+      @Parameter(description = "Client-generated key; retries with the same key return the stored order")
+      @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+    return basketService.checkout(basketId, idempotencyKey);
+  }
+
+}
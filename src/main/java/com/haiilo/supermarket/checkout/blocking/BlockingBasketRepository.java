@@ -0,0 +1,120 @@
+package com.haiilo.supermarket.checkout.blocking;
+
+import static com.haiilo.supermarket.checkout.util.AppConstants.BLOCKING_PROFILE;
+
+import com.haiilo.supermarket.checkout.activity.ActiveBasketIndex;
+import com.haiilo.supermarket.checkout.domain.Basket;
+import com.haiilo.supermarket.checkout.domain.BasketUpdate;
+import com.haiilo.supermarket.checkout.domain.Product;
+import com.haiilo.supermarket.checkout.repository.RedisBasketRepository;
+import com.haiilo.supermarket.checkout.domain.BasketUpdate.Status;
+import com.haiilo.supermarket.checkout.util.MetricsHelper;
+import com.haiilo.supermarket.checkout.util.RedisKeys;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Repository;
+
+// Runs the same Lua scripts as RedisBasketRepository over the blocking Redis client and feeds the
+// same activity index. Baskets under the pre-namespace key are moved like in reactive mode, but
+// baskets still stored in the pre-hash format are not migrated here; they are a reactive-mode
+// concern.
+@Repository
+@Profile(BLOCKING_PROFILE)
+@RequiredArgsConstructor
+public class BlockingBasketRepository {
+
+  private static final RedisScript<String> CREATE_SCRIPT =
+      RedisScript.of(new ClassPathResource("scripts/basket-create.lua"), String.class);
+  private static final RedisScript<String> UPDATE_ITEM_SCRIPT =
+      RedisScript.of(new ClassPathResource("scripts/basket-update-item.lua"), String.class);
+  private static final RedisScript<String> UPDATE_ITEMS_SCRIPT =
+      RedisScript.of(new ClassPathResource("scripts/basket-update-items.lua"), String.class);
+  private static final RedisScript<String> REPRICE_SCRIPT =
+      RedisScript.of(new ClassPathResource("scripts/basket-reprice.lua"), String.class);
+  private static final RedisScript<Long> MIGRATE_KEY_SCRIPT =
+      RedisScript.of(new ClassPathResource("scripts/basket-migrate-key.lua"), Long.class);
+
+  private final StringRedisTemplate stringRedisTemplate;
+  private final MetricsHelper metricsHelper;
+  private final RedisKeys redisKeys;
+  // Absent when baskets are configured for the embedded store, which this mode does not use
+  private final Optional<ActiveBasketIndex> activeBasketIndex;
+
+  public Basket create(String basketId) {
+    BasketUpdate update = execute("basket.redis.create", CREATE_SCRIPT, basketId,
+        List.of(RedisBasketRepository.ttlSeconds()));
+    activeBasketIndex.ifPresent(index -> index.touch(basketId, update.lines()));
+    return new Basket(basketId);
+  }
+
+  public Optional<Basket> findById(String basketId) {
+    Map<String, String> fields = metricsHelper.timed("basket.redis.find",
+        () -> stringRedisTemplate.<String, String>opsForHash()
+            .entries(redisKeys.basket(basketId)));
+    if (fields.isEmpty()) {
+      return migrateLegacyKey(basketId) ? findById(basketId) : Optional.empty();
+    }
+    return Optional.of(RedisBasketRepository.toBasket(basketId, fields));
+  }
+
+  public BasketUpdate updateItem(String basketId, Product product, int quantityDelta) {
+    return indexed(basketId, executeUpdate("basket.redis.update", UPDATE_ITEM_SCRIPT, basketId,
+        RedisBasketRepository.updateItemArgs(product, quantityDelta)));
+  }
+
+  public BasketUpdate updateItems(String basketId, Map<String, Integer> quantityDeltas,
+      Map<String, Product> products) {
+    return indexed(basketId, executeUpdate("basket.redis.update-batch", UPDATE_ITEMS_SCRIPT,
+        basketId, RedisBasketRepository.updateItemsArgs(quantityDeltas, products)));
+  }
+
+  public BasketUpdate reprice(String basketId, Collection<Product> products) {
+    return indexed(basketId, execute("basket.redis.reprice", REPRICE_SCRIPT, basketId,
+        RedisBasketRepository.repriceArgs(products)));
+  }
+
+  public boolean delete(String basketId) {
+    Long deleted = metricsHelper.timed("basket.redis.delete",
+        () -> stringRedisTemplate.delete(redisKeys.basketKeys(basketId)));
+    activeBasketIndex.ifPresent(index -> index.remove(basketId));
+    return deleted != null && deleted > 0;
+  }
+
+  // Only changes that were applied count as activity.
+  private BasketUpdate indexed(String basketId, BasketUpdate update) {
+    if (update.isApplied()) {
+      activeBasketIndex.ifPresent(index -> index.touch(basketId, update.lines()));
+    }
+    return update;
+  }
+
+  private BasketUpdate executeUpdate(String stage, RedisScript<String> script, String basketId,
+      List<String> args) {
+    BasketUpdate update = execute(stage, script, basketId, args);
+    return update.status() == Status.BASKET_NOT_FOUND && migrateLegacyKey(basketId)
+        ? execute(stage, script, basketId, args)
+        : update;
+  }
+
+  private BasketUpdate execute(String stage, RedisScript<String> script, String basketId,
+      List<String> args) {
+    return BasketUpdate.parse(metricsHelper.timed(stage, () -> stringRedisTemplate.execute(
+        script, List.of(redisKeys.basket(basketId)), args.toArray())));
+  }
+
+  private boolean migrateLegacyKey(String basketId) {
+    if (!redisKeys.legacyKeys()) {
+      return false;
+    }
+    Long moved = stringRedisTemplate.execute(MIGRATE_KEY_SCRIPT,
+        List.of(redisKeys.basket(basketId), RedisKeys.legacyBasket(basketId)));
+    return moved != null && moved == 1;
+  }
+}
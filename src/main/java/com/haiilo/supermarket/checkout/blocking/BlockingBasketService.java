@@ -0,0 +1,176 @@
+package com.haiilo.supermarket.checkout.blocking;
+
+import static com.haiilo.supermarket.checkout.util.AppConstants.BLOCKING_PROFILE;
+import static com.haiilo.supermarket.checkout.util.BasketHelper.hasStaleLines;
+import static com.haiilo.supermarket.checkout.util.BasketHelper.limitExceeded;
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+
+import com.haiilo.supermarket.checkout.domain.Basket;
+import com.haiilo.supermarket.checkout.domain.BasketUpdate;
+import com.haiilo.supermarket.checkout.domain.Product;
+import com.haiilo.supermarket.checkout.dto.BasketItemDeltaDTO;
+import com.haiilo.supermarket.checkout.dto.OrderDTO;
+import com.haiilo.supermarket.checkout.pricing.PricingEngine;
+import com.haiilo.supermarket.checkout.service.BasketService;
+import com.haiilo.supermarket.checkout.util.MetricsHelper;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+// The BasketService/BasketHelper use cases written as plain sequential code; responses and
+// error statuses are the same in both modes.
+@Slf4j
+@Service
+@Profile(BLOCKING_PROFILE)
+@RequiredArgsConstructor
+public class BlockingBasketService {
+
+  private final BlockingBasketRepository basketRepository;
+  private final BlockingProductCatalog productCatalog;
+  private final BlockingOrderRepository orderRepository;
+  private final PricingEngine pricingEngine;
+  private final MetricsHelper metricsHelper;
+
+  public Basket createBasket(String storeId) {
+    String basketId = BasketService.newBasketId(storeId);
+    log.info("Creating a new basket with ID '{}'", basketId);
+    return basketRepository.create(basketId);
+  }
+
+  public Basket getBasketById(String basketId) {
+    log.debug("Getting a basket by ID '{}'", basketId);
+    Basket basket = getBasket(basketId);
+    if (pricingEngine.hasRules() && !basket.getItems().isEmpty()) {
+      applyPromotions(basket, productCatalog.getProductsBySkus(basket.getItems().keySet()));
+    }
+    return basket;
+  }
+
+  public int addItemToBasket(String basketId, String sku) {
+    return applyUpdate(basketId,
+        basketRepository.updateItem(basketId, getProduct(sku), 1),
+        "Item with SKU " + sku + " not found in basket");
+  }
+
+  public int addItemsToBasket(String basketId, List<BasketItemDeltaDTO> items) {
+    Map<String, Integer> quantityDeltas = BasketService.mergeQuantityDeltas(items);
+    log.debug("Applying {} item changes to basket '{}'", quantityDeltas.size(), basketId);
+    if (quantityDeltas.isEmpty()) {
+      return getBasketById(basketId).getTotalPrice();
+    }
+    Map<String, Product> products = getProducts(quantityDeltas.keySet());
+    return applyUpdate(basketId,
+        basketRepository.updateItems(basketId, quantityDeltas, products),
+        "Cannot remove more items than the basket contains");
+  }
+
+  public int removeItemFromBasket(String basketId, String sku) {
+    log.debug("Removing one item with SKU '{}' from basket '{}'", sku, basketId);
+    return applyUpdate(basketId,
+        basketRepository.updateItem(basketId, getProduct(sku), -1),
+        "Item with SKU " + sku + " not found in basket");
+  }
+
+  public void cancelBasket(String basketId) {
+    basketRepository.delete(basketId);
+    log.info("Basket with Id '{}' have been successfully deleted.", basketId);
+  }
+
+  public OrderDTO checkout(String basketId, String idempotencyKey) {
+    log.info("Checking out basket with ID '{}'", basketId);
+    String checkoutKey = BasketService.checkoutKey(basketId, idempotencyKey);
+    Optional<Basket> found = basketRepository.findById(basketId);
+    if (found.isEmpty()) {
+      OrderDTO order = orderRepository.findByCheckoutKey(checkoutKey)
+          .orElseThrow(() -> basketNotFound(basketId));
+      log.info("Basket with Id '{}' was already checked out as order '{}'.", basketId,
+          order.id());
+      return order;
+    }
+    Basket basket = found.get();
+    if (basket.getItems().isEmpty()) {
+      throw new ResponseStatusException(BAD_REQUEST, "Cannot checkout an empty basket.");
+    }
+    Map<String, Product> products = productCatalog.getProductsBySkus(basket.getItems().keySet());
+    if (hasStaleLines(basket, products)) {
+      log.info("Basket with Id '{}' has outdated prices, repricing.", basketId);
+      reprice(basket, products);
+      basket = getBasket(basketId);
+    }
+    applyPromotions(basket, products);
+    OrderDTO order = orderRepository.insert(basket, products, checkoutKey);
+    basketRepository.delete(basketId);
+    log.info("Basket with Id '{}' have been successfully checkout.", basketId);
+    return order;
+  }
+
+  private int applyUpdate(String basketId, BasketUpdate update, String itemNotFoundMessage) {
+    int total = switch (update.status()) {
+      case UPDATED -> update.totalPrice();
+      case PRICE_CHANGED -> {
+        log.debug("Prices changed in basket '{}', repricing.", basketId);
+        Basket basket = getBasket(basketId);
+        yield reprice(basket, productCatalog.getProductsBySkus(basket.getItems().keySet()));
+      }
+      case BASKET_NOT_FOUND -> throw basketNotFound(basketId);
+      case ITEM_NOT_FOUND -> throw new ResponseStatusException(NOT_FOUND, itemNotFoundMessage);
+      case LIMIT_EXCEEDED -> throw limitExceeded();
+    };
+    if (pricingEngine.hasRules()) {
+      total = getBasketById(basketId).getTotalPrice();
+    }
+    log.debug("Basket with Id '{}' recalculated total price '{}'.", basketId, total);
+    return total;
+  }
+
+  private int reprice(Basket basket, Map<String, Product> products) {
+    for (String sku : basket.getItems().keySet()) {
+      if (!products.containsKey(sku)) {
+        throw new ResponseStatusException(NOT_FOUND, "Product with SKU " + sku + " not found");
+      }
+    }
+    BasketUpdate update = basketRepository.reprice(basket.getId(), products.values());
+    if (update.status() == BasketUpdate.Status.BASKET_NOT_FOUND) {
+      throw basketNotFound(basket.getId());
+    }
+    return update.totalPrice();
+  }
+
+  private void applyPromotions(Basket basket, Map<String, Product> products) {
+    if (pricingEngine.hasRules() && products.keySet().containsAll(basket.getItems().keySet())) {
+      metricsHelper.timed("pricing.evaluate", () -> pricingEngine.apply(basket, products));
+    }
+  }
+
+  private Basket getBasket(String basketId) {
+    return basketRepository.findById(basketId).orElseThrow(() -> basketNotFound(basketId));
+  }
+
+  private Product getProduct(String sku) {
+    Product product = productCatalog.getProductsBySkus(List.of(sku)).get(sku);
+    if (product == null) {
+      throw new ResponseStatusException(NOT_FOUND, "Product with SKU " + sku + " not found");
+    }
+    return product;
+  }
+
+  private Map<String, Product> getProducts(Collection<String> skus) {
+    Map<String, Product> products = productCatalog.getProductsBySkus(skus);
+    List<String> missing = skus.stream().filter(sku -> !products.containsKey(sku)).toList();
+    if (!missing.isEmpty()) {
+      throw new ResponseStatusException(NOT_FOUND, "Products with SKUs " + missing + " not found");
+    }
+    return products;
+  }
+
+  private static ResponseStatusException basketNotFound(String basketId) {
+    return new ResponseStatusException(NOT_FOUND, "Basket with ID " + basketId + " not found");
+  }
+}
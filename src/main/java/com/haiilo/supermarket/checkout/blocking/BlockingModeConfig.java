@@ -0,0 +1,67 @@
+package com.haiilo.supermarket.checkout.blocking;
+
+import static com.haiilo.supermarket.checkout.util.AppConstants.BLOCKING_PROFILE;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.reactive.config.BlockingExecutionConfigurer;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+
+// Serves the basket and checkout endpoints with blocking Redis and JDBC calls. Controller
+// methods with non-reactive return types are run by WebFlux on the executor below instead of
+// the event loop: one virtual thread per request on JDK 21+, otherwise a fixed pool of platform
+// threads.
+@Slf4j
+@Configuration
+@Profile(BLOCKING_PROFILE)
+@EnableConfigurationProperties(DataSourceProperties.class)
+public class BlockingModeConfig {
+
+  // DataSource auto-configuration backs off while an R2DBC ConnectionFactory exists, so the
+  // spring.datasource properties are bound here.
+  @Bean
+  @ConfigurationProperties("spring.datasource.hikari")
+  public HikariDataSource dataSource(DataSourceProperties properties) {
+    return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+  }
+
+  @Bean
+  public AsyncTaskExecutor blockingExecutor(
+      @Value("${checkout.blocking.virtual-threads:true}") boolean virtualThreads,
+      @Value("${checkout.blocking.platform-threads:200}") int platformThreads) {
+    if (virtualThreads && Runtime.version().feature() >= 21) {
+      SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("blocking-");
+      executor.setVirtualThreads(true);
+      log.info("Blocking execution mode runs requests on virtual threads.");
+      return executor;
+    }
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setThreadNamePrefix("blocking-");
+    executor.setCorePoolSize(platformThreads);
+    executor.setMaxPoolSize(platformThreads);
+    executor.initialize();
+    log.info("Blocking execution mode runs requests on {} platform threads (JDK {}).",
+        platformThreads, Runtime.version().feature());
+    return executor;
+  }
+
+  @Bean
+  public WebFluxConfigurer blockingExecutionConfigurer(AsyncTaskExecutor blockingExecutor) {
+    return new WebFluxConfigurer() {
+      @Override
+      public void configureBlockingExecution(BlockingExecutionConfigurer configurer) {
+        configurer.setExecutor(blockingExecutor);
+      }
+    };
+  }
+}
@@ -0,0 +1,122 @@
+package com.haiilo.supermarket.checkout.blocking;
+
+import static com.haiilo.supermarket.checkout.util.AppConstants.BLOCKING_PROFILE;
+import static java.time.ZoneOffset.UTC;
+
+import com.haiilo.supermarket.checkout.domain.Basket;
+import com.haiilo.supermarket.checkout.domain.OrderItem;
+import com.haiilo.supermarket.checkout.domain.PricedLine;
+import com.haiilo.supermarket.checkout.domain.Product;
+import com.haiilo.supermarket.checkout.dto.OrderDTO;
+import com.haiilo.supermarket.checkout.util.MetricsHelper;
+import com.haiilo.supermarket.checkout.util.OrderHelper;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+// Writes orders with the statement OrderHelper uses, so both modes store identical rows and
+// rollups. Orders are always written synchronously; write-behind is a reactive-mode feature.
+@Slf4j
+@Repository
+@Profile(BLOCKING_PROFILE)
+@RequiredArgsConstructor
+public class BlockingOrderRepository {
+
+  private final NamedParameterJdbcTemplate jdbcTemplate;
+  private final MetricsHelper metricsHelper;
+
+  public Optional<OrderDTO> findByCheckoutKey(String checkoutKey) {
+    return metricsHelper.timed("order.db.find", () -> jdbcTemplate.query(
+        OrderHelper.SELECT_ORDER_BY_CHECKOUT_KEY, Map.of("checkoutKey", checkoutKey), rows -> {
+          OrderDTO.OrderDTOBuilder order = null;
+          List<OrderItem> items = new ArrayList<>();
+          while (rows.next()) {
+            if (order == null) {
+              order = OrderDTO.builder()
+                  .id(rows.getLong("order_id"))
+                  .finalPrice(rows.getInt("final_price"))
+                  .createdAt(rows.getObject("created_at", OffsetDateTime.class).toInstant());
+            }
+            items.add(toOrderItem(rows, "item_id"));
+          }
+          return order == null
+              ? Optional.<OrderDTO>empty()
+              : Optional.of(order.items(items).build());
+        }));
+  }
+
+  public OrderDTO insert(Basket basket, Map<String, Product> products, String checkoutKey) {
+    Instant createdAt = Instant.now();
+    int size = basket.getItems().size();
+    String[] skus = new String[size];
+    Integer[] quantities = new Integer[size];
+    Integer[] subtotals = new Integer[size];
+    Integer[] unitPrices = new Integer[size];
+    Integer[] offerQuantities = new Integer[size];
+    Integer[] offerPrices = new Integer[size];
+    Long[] priceVersions = new Long[size];
+    int index = 0;
+    for (Map.Entry<String, Integer> item : basket.getItems().entrySet()) {
+      PricedLine line = basket.getLines().get(item.getKey());
+      Product product = products.get(item.getKey());
+      skus[index] = item.getKey();
+      quantities[index] = item.getValue();
+      subtotals[index] = line != null ? line.subtotal() : null;
+      if (product != null) {
+        unitPrices[index] = product.unitPrice();
+        offerQuantities[index] = product.offerQuantity();
+        offerPrices[index] = product.offerPrice();
+        priceVersions[index] = product.priceVersion();
+      }
+      index++;
+    }
+    MapSqlParameterSource parameters = new MapSqlParameterSource()
+        .addValue("finalPrice", basket.getTotalPrice())
+        .addValue("createdAt", OffsetDateTime.ofInstant(createdAt, UTC))
+        .addValue("checkoutKey", checkoutKey)
+        .addValue("skus", skus)
+        .addValue("quantities", quantities)
+        .addValue("subtotals", subtotals)
+        .addValue("unitPrices", unitPrices)
+        .addValue("offerQuantities", offerQuantities)
+        .addValue("offerPrices", offerPrices)
+        .addValue("priceVersions", priceVersions);
+    List<OrderItem> items = metricsHelper.timed("order.db.insert", () -> jdbcTemplate.query(
+        OrderHelper.INSERT_ORDER_WITH_ITEMS, parameters, (row, rowNum) -> toOrderItem(row, "id")));
+    if (items.isEmpty()) {
+      log.info("Order for checkout key '{}' already exists, returning stored order.",
+          checkoutKey);
+      return findByCheckoutKey(checkoutKey).orElseThrow();
+    }
+    log.info("Order with Id '{}' and {} items have been successfully saved.",
+        items.get(0).orderId(), items.size());
+    return OrderDTO.builder().id(items.get(0).orderId()).items(items)
+        .finalPrice(basket.getTotalPrice()).createdAt(createdAt)
+        .build();
+  }
+
+  private static OrderItem toOrderItem(ResultSet row, String idColumn) throws SQLException {
+    return OrderItem.builder()
+        .id(row.getLong(idColumn))
+        .orderId(row.getLong("order_id"))
+        .productSku(row.getString("product_sku"))
+        .quantity(row.getInt("quantity"))
+        .subtotal(row.getObject("subtotal", Integer.class))
+        .unitPrice(row.getObject("unit_price", Integer.class))
+        .offerQuantity(row.getObject("offer_quantity", Integer.class))
+        .offerPrice(row.getObject("offer_price", Integer.class))
+        .priceVersion(row.getObject("price_version", Long.class))
+        .build();
+  }
+}
@@ -0,0 +1,116 @@
+package com.haiilo.supermarket.checkout.blocking;
+
+import static com.haiilo.supermarket.checkout.util.AppConstants.BLOCKING_PROFILE;
+
+import com.haiilo.supermarket.checkout.cache.ProductNearCache;
+import com.haiilo.supermarket.checkout.domain.Product;
+import com.haiilo.supermarket.checkout.service.ProductService;
+import com.haiilo.supermarket.checkout.util.MetricsHelper;
+import com.haiilo.supermarket.checkout.util.RedisKeys;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+// Same lookup order as ProductService: near-cache, Redis, then the database.
+@Slf4j
+@Component
+@Profile(BLOCKING_PROFILE)
+@RequiredArgsConstructor
+public class BlockingProductCatalog {
+
+  private static final String SELECT_BY_SKUS = "SELECT * FROM products WHERE sku = ANY(:skus)";
+  private static final RowMapper<Product> PRODUCT_ROW_MAPPER = (row, rowNum) -> new Product(
+      row.getLong("id"), row.getString("sku"), row.getString("name"), row.getInt("unit_price"),
+      row.getObject("offer_quantity", Integer.class), row.getObject("offer_price", Integer.class),
+      row.getLong("price_version"));
+
+  private final NamedParameterJdbcTemplate jdbcTemplate;
+  private final RedisTemplate<String, Product> blockingProductRedisTemplate;
+  private final ProductNearCache nearCache;
+  private final MetricsHelper metricsHelper;
+  private final RedisKeys redisKeys;
+
+  public Map<String, Product> getProductsBySkus(Collection<String> skus) {
+    Map<String, Product> found = new HashMap<>();
+    List<String> remoteSkus = new ArrayList<>();
+    for (String sku : skus) {
+      Product local = nearCache.get(sku);
+      if (local != null) {
+        found.put(sku, local);
+      } else {
+        remoteSkus.add(sku);
+      }
+    }
+    metricsHelper.cacheLookups("near", found.size(), remoteSkus.size());
+    if (remoteSkus.isEmpty()) {
+      return found;
+    }
+    List<Product> cached;
+    try {
+      cached = metricsHelper.timed("product.redis.multiget",
+          () -> blockingProductRedisTemplate.opsForValue()
+              .multiGet(remoteSkus.stream().map(redisKeys::product).toList()));
+    } catch (SerializationException e) {
+      log.warn("Cached products with SKUs {} could not be read, reloading them.", remoteSkus, e);
+      cached = null;
+    }
+    List<String> missingSkus = new ArrayList<>();
+    for (int i = 0; i < remoteSkus.size(); i++) {
+      Product product = cached != null ? cached.get(i) : null;
+      if (ProductService.isVersioned(product)) {
+        found.put(product.sku(), product);
+        nearCache.put(product);
+      } else {
+        missingSkus.add(remoteSkus.get(i));
+      }
+    }
+    metricsHelper.cacheLookups("redis", remoteSkus.size() - missingSkus.size(),
+        missingSkus.size());
+    if (missingSkus.isEmpty()) {
+      return found;
+    }
+    log.info("Products with SKUs {} not found in cache. Fetching from DB.", missingSkus);
+    List<Product> loaded = metricsHelper.timed("product.db.find", () -> jdbcTemplate.query(
+        SELECT_BY_SKUS, Map.of("skus", missingSkus.toArray(String[]::new)), PRODUCT_ROW_MAPPER));
+    saveAllToCache(loaded);
+    loaded.forEach(product -> {
+      found.put(product.sku(), product);
+      nearCache.put(product);
+    });
+    return found;
+  }
+
+  private void saveAllToCache(List<Product> products) {
+    if (products.isEmpty()) {
+      return;
+    }
+    metricsHelper.timed("product.redis.set-batch",
+        () -> blockingProductRedisTemplate.executePipelined(new SessionCallback<Object>() {
+          // operations is the template itself, bound to the pipelined connection, so the typed
+          // template is used directly
+          @Override
+          public <K, V> Object execute(RedisOperations<K, V> operations)
+              throws DataAccessException {
+            ValueOperations<String, Product> values = blockingProductRedisTemplate.opsForValue();
+            for (Product product : products) {
+              values.set(redisKeys.product(product.sku()), product, ProductService.cacheTtl());
+            }
+            return null;
+          }
+        }));
+  }
+}
@@ -0,0 +1,25 @@
+package com.haiilo.supermarket.checkout.cache;
+
+import java.util.Optional;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+// Part of the readiness group, so load balancers hold traffic until the product cache is warm.
+// Always registered so the group stays valid when the warm-up is disabled.
+@Component
+@RequiredArgsConstructor
+public class ProductCacheWarmUpHealthIndicator implements HealthIndicator {
+
+  private final Optional<ProductCacheWarmer> productCacheWarmer;
+
+  @Override
+  public Health health() {
+    return productCacheWarmer
+        .map(warmer -> (warmer.isReady() ? Health.up() : Health.outOfService())
+            .withDetail("warm", warmer.isWarm()))
+        .orElseGet(() -> Health.up().withDetail("enabled", false))
+        .build();
+  }
+}
@@ -0,0 +1,122 @@
+package com.haiilo.supermarket.checkout.cache;
+
+import static com.haiilo.supermarket.checkout.util.AppConstants.PRODUCT_WARM_UP_ENABLED;
+
+import com.haiilo.supermarket.checkout.domain.Product;
+import com.haiilo.supermarket.checkout.repository.ProductRepository;
+import com.haiilo.supermarket.checkout.service.ProductService;
+import com.haiilo.supermarket.checkout.util.MetricsHelper;
+import com.haiilo.supermarket.checkout.util.RedisKeys;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@Slf4j
+@Component
+@ConditionalOnProperty(name = PRODUCT_WARM_UP_ENABLED, havingValue = "true", matchIfMissing = true)
+public class ProductCacheWarmer {
+
+  private final ProductRepository productRepository;
+  private final ProductService productService;
+  private final MetricsHelper metricsHelper;
+  private final ReactiveStringRedisTemplate stringRedisTemplate;
+  private final RedisKeys redisKeys;
+  private final String instanceId = UUID.randomUUID().toString();
+  private final int pageSize;
+  private final Duration interval;
+  private final Duration readinessTimeout;
+  private final Instant startedAt = Instant.now();
+  private volatile boolean warm;
+  private Disposable refresher;
+
+  public ProductCacheWarmer(ProductRepository productRepository, ProductService productService,
+      MetricsHelper metricsHelper, ReactiveStringRedisTemplate stringRedisTemplate,
+      RedisKeys redisKeys,
+      @Value("${checkout.product-cache.warm-up.page-size:1000}") int pageSize,
+      @Value("${checkout.product-cache.warm-up.interval:PT30M}") Duration interval,
+      @Value("${checkout.product-cache.warm-up.readiness-timeout:PT2M}") Duration readinessTimeout) {
+    this.productRepository = productRepository;
+    this.productService = productService;
+    this.metricsHelper = metricsHelper;
+    this.stringRedisTemplate = stringRedisTemplate;
+    this.redisKeys = redisKeys;
+    this.pageSize = pageSize;
+    this.interval = interval;
+    this.readinessTimeout = readinessTimeout;
+  }
+
+  // Runs once at startup on every instance and then periodically on one of them; with an
+  // interval shorter than the Redis TTL, entries that expired are back before most readers miss.
+  @PostConstruct
+  void start() {
+    refresher = Flux.interval(Duration.ZERO, interval)
+        .concatMap(tick -> (tick == 0 ? warmUp() : warmUpWithLease())
+            .onErrorResume(e -> {
+              log.error("Product cache warm-up failed.", e);
+              return Mono.empty();
+            }))
+        .subscribe();
+  }
+
+  @PreDestroy
+  void stop() {
+    if (refresher != null) {
+      refresher.dispose();
+    }
+  }
+
+  // Streams the catalog in id-ordered pages; each page is written to Redis as one pipelined
+  // batch before the next page is read, so memory stays bounded by the page size.
+  public Mono<Long> warmUp() {
+    Instant start = Instant.now();
+    return metricsHelper.timed("product.cache.warm-up", loadPage(0L)
+        .expand(page -> page.size() < pageSize
+            ? Mono.empty()
+            : loadPage(page.get(page.size() - 1).id()))
+        .map(List::size)
+        .reduce(0L, Long::sum))
+        .doOnNext(count -> {
+          if (!warm) {
+            log.info("Product cache warmed up with {} products in {} ms.", count,
+                Duration.between(start, Instant.now()).toMillis());
+          }
+          warm = true;
+        });
+  }
+
+  // The lease expires shortly before its holder's next run, so other instances skip the runs
+  // falling into the same interval and one of them takes over once the holder is gone.
+  Mono<Long> warmUpWithLease() {
+    Duration leaseTtl = interval.minus(interval.dividedBy(10));
+    return stringRedisTemplate.opsForValue()
+        .setIfAbsent(redisKeys.productWarmUpLease(), instanceId, leaseTtl)
+        .flatMap(acquired -> acquired ? warmUp() : Mono.empty());
+  }
+
+  // Readiness opens once the first warm-up completed, or after the timeout so an unreachable
+  // catalog only degrades the service to cold-cache latency instead of keeping it down.
+  public boolean isReady() {
+    return warm || Instant.now().isAfter(startedAt.plus(readinessTimeout));
+  }
+
+  public boolean isWarm() {
+    return warm;
+  }
+
+  private Mono<List<Product>> loadPage(long afterId) {
+    return productRepository.findPageAfter(afterId, pageSize)
+        .collectList()
+        .flatMap(page -> productService.preload(page).thenReturn(page));
+  }
+}
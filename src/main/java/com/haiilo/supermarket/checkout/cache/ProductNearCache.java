@@ -0,0 +1,97 @@
+package com.haiilo.supermarket.checkout.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.haiilo.supermarket.checkout.domain.Product;
+import com.haiilo.supermarket.checkout.dto.NearCacheStatsDTO;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+@Slf4j
+@Component
+public class ProductNearCache {
+
+  public static final String INVALIDATION_CHANNEL = "product-cache-invalidation";
+  // Separates the SKUs of one invalidation message; Postgres text cannot hold it, so no SKU does.
+  static final String SKU_SEPARATOR = "\0";
+
+  private final ReactiveStringRedisTemplate stringRedisTemplate;
+  private final Cache<String, Product> cache;
+  private Disposable subscription;
+
+  public ProductNearCache(ReactiveStringRedisTemplate stringRedisTemplate,
+      @Value("${checkout.product-cache.local.max-size:10000}") long maxSize,
+      @Value("${checkout.product-cache.local.ttl:PT30S}") Duration ttl) {
+    this.stringRedisTemplate = stringRedisTemplate;
+    this.cache = Caffeine.newBuilder()
+        .maximumSize(maxSize)
+        .expireAfterWrite(ttl)
+        .recordStats()
+        .build();
+  }
+
+  @PostConstruct
+  void subscribe() {
+    subscription = stringRedisTemplate.listenToChannel(INVALIDATION_CHANNEL)
+        .doOnNext(message -> cache.invalidateAll(
+            Arrays.asList(message.getMessage().split(SKU_SEPARATOR))))
+        .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+            .maxBackoff(Duration.ofSeconds(30)))
+        .subscribe(
+            message -> log.debug("Products with SKUs {} evicted from near-cache.",
+                Arrays.asList(message.getMessage().split(SKU_SEPARATOR))),
+            error -> log.error("Product near-cache invalidation listener stopped.", error));
+  }
+
+  @PreDestroy
+  void unsubscribe() {
+    if (subscription != null) {
+      subscription.dispose();
+    }
+  }
+
+  public Product get(String sku) {
+    return cache.getIfPresent(sku);
+  }
+
+  public void put(Product product) {
+    cache.put(product.sku(), product);
+  }
+
+  public Mono<Void> evict(String sku) {
+    cache.invalidate(sku);
+    return stringRedisTemplate.convertAndSend(INVALIDATION_CHANNEL, sku).then();
+  }
+
+  // Publishes a single message for the whole batch, e.g. one page of a product import.
+  public Mono<Void> evictAll(Collection<String> skus) {
+    if (skus.isEmpty()) {
+      return Mono.empty();
+    }
+    cache.invalidateAll(skus);
+    return stringRedisTemplate.convertAndSend(INVALIDATION_CHANNEL,
+        String.join(SKU_SEPARATOR, skus)).then();
+  }
+
+  public NearCacheStatsDTO stats() {
+    CacheStats stats = cache.stats();
+    return NearCacheStatsDTO.builder()
+        .size(cache.estimatedSize())
+        .hitCount(stats.hitCount())
+        .missCount(stats.missCount())
+        .evictionCount(stats.evictionCount())
+        .hitRate(stats.hitRate())
+        .build();
+  }
+}
@@ -0,0 +1,60 @@
+package com.haiilo.supermarket.checkout.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+// Deduplicates concurrent loads per key: callers arriving while a load is running subscribe to
+// the same result instead of starting their own. The entry is dropped once the load finishes,
+// so errors are not cached beyond the callers that were already waiting.
+public class SingleFlight<K, V> {
+
+  private final Map<K, Mono<V>> inFlight = new ConcurrentHashMap<>();
+
+  public Mono<V> execute(K key, Supplier<Mono<V>> loader) {
+    return Mono.defer(() -> inFlight.computeIfAbsent(key, k -> loader.get()
+        .doFinally(signal -> inFlight.remove(k))
+        .cache()));
+  }
+
+  // Batched variant: keys that are already loading, alone or in another batch, join those
+  // loads; the others are registered first and then loaded together in one call. Keys the
+  // loader does not return are missing from the result.
+  public Mono<Map<K, V>> executeAll(Collection<K> keys,
+      Function<List<K>, Mono<Map<K, V>>> loader) {
+    return Mono.defer(() -> {
+      Sinks.One<Map<K, V>> batch = Sinks.one();
+      List<K> started = new ArrayList<>();
+      Map<K, Mono<V>> loads = new LinkedHashMap<>();
+      for (K key : keys) {
+        loads.put(key, inFlight.computeIfAbsent(key, k -> {
+          started.add(k);
+          return batch.asMono().mapNotNull(loaded -> loaded.get(k));
+        }));
+      }
+      if (!started.isEmpty()) {
+        Map<K, Mono<V>> registered = new LinkedHashMap<>();
+        started.forEach(key -> registered.put(key, loads.get(key)));
+        loader.apply(started)
+            .doFinally(signal -> registered.forEach(inFlight::remove))
+            .subscribe(batch::tryEmitValue, batch::tryEmitError,
+                () -> batch.tryEmitValue(Map.of()));
+      }
+      return Flux.fromIterable(loads.entrySet())
+          .flatMap(load -> load.getValue().map(value -> Map.entry(load.getKey(), value)))
+          .collectMap(Map.Entry::getKey, Map.Entry::getValue);
+    });
+  }
+
+  public boolean isRunning(K key) {
+    return inFlight.containsKey(key);
+  }
+}
@@ -0,0 +1,27 @@
+package com.haiilo.supermarket.checkout.config;
+
+import com.haiilo.supermarket.checkout.database.TimedConnectionFactory;
+import com.haiilo.supermarket.checkout.util.MetricsHelper;
+import io.r2dbc.pool.ConnectionPool;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class DatabaseConfig {
+
+  // Boot builds the R2DBC pool from spring.r2dbc.pool without a hook for timing acquisitions,
+  // so the pool it creates is wrapped instead of being rebuilt here.
+  @Bean
+  public static BeanPostProcessor timedConnectionPool(ObjectProvider<MetricsHelper> metricsHelper) {
+    return new BeanPostProcessor() {
+      @Override
+      public Object postProcessAfterInitialization(Object bean, String beanName) {
+        return bean instanceof ConnectionPool pool
+            ? new TimedConnectionFactory(pool, metricsHelper.getObject())
+            : bean;
+      }
+    };
+  }
+}
@@ -1,23 +1,35 @@
 package com.haiilo.supermarket.checkout.config;
 
+import static com.haiilo.supermarket.checkout.util.AppConstants.BLOCKING_PROFILE;
 
 import com.haiilo.supermarket.checkout.domain.Basket;
 import com.haiilo.supermarket.checkout.domain.Product;
+import com.haiilo.supermarket.checkout.serializer.BasketBinarySerializer;
+import com.haiilo.supermarket.checkout.serializer.ProductBinarySerializer;
+import com.haiilo.supermarket.checkout.serializer.RedisSerializationMode;
+import com.haiilo.supermarket.checkout.serializer.VersionedBinarySerializer;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
 import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
-import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 @Configuration
 public class RedisConfig {
 
+  @Value("${checkout.redis.serialization:JSON}")
+  private RedisSerializationMode serializationMode;
+
   @Bean
   public ReactiveRedisTemplate<String, Basket> reactiveRedisTemplate(ReactiveRedisConnectionFactory factory) {
     StringRedisSerializer keySerializer = new StringRedisSerializer();
-    Jackson2JsonRedisSerializer<Basket> valueSerializer = new Jackson2JsonRedisSerializer<>(Basket.class);
+    RedisSerializer<Basket> valueSerializer = valueSerializer(Basket.class, new BasketBinarySerializer());
     RedisSerializationContext.RedisSerializationContextBuilder<String, Basket> builder =
         RedisSerializationContext.newSerializationContext(keySerializer);
     RedisSerializationContext<String, Basket> context = builder.value(valueSerializer).build();
@@ -27,10 +39,27 @@ public class RedisConfig {
   @Bean
   public ReactiveRedisTemplate<String, Product> productRedisTemplate(ReactiveRedisConnectionFactory factory) {
     StringRedisSerializer keySerializer = new StringRedisSerializer();
-    Jackson2JsonRedisSerializer<Product> valueSerializer = new Jackson2JsonRedisSerializer<>(Product.class);
+    RedisSerializer<Product> valueSerializer = valueSerializer(Product.class, new ProductBinarySerializer());
     RedisSerializationContext.RedisSerializationContextBuilder<String, Product> builder =
         RedisSerializationContext.newSerializationContext(keySerializer);
     RedisSerializationContext<String, Product> context = builder.value(valueSerializer).build();
     return new ReactiveRedisTemplate<>(factory, context);
   }
+
+  // Blocking client for the blocking execution mode; shares the Lettuce connection and the value
+  // format with the reactive template.
+  @Bean
+  @Profile(BLOCKING_PROFILE)
+  public RedisTemplate<String, Product> blockingProductRedisTemplate(RedisConnectionFactory factory) {
+    RedisTemplate<String, Product> template = new RedisTemplate<>();
+    template.setConnectionFactory(factory);
+    template.setKeySerializer(new StringRedisSerializer());
+    template.setValueSerializer(valueSerializer(Product.class, new ProductBinarySerializer()));
+    return template;
+  }
+
+  private <T> RedisSerializer<T> valueSerializer(Class<T> type,
+      VersionedBinarySerializer<T> binarySerializer) {
+    return serializationMode.serializer(type, binarySerializer);
+  }
 }
@@ -0,0 +1,34 @@
+package com.haiilo.supermarket.checkout.controller;
+
+import static com.haiilo.supermarket.checkout.util.AppConstants.BASKET_STORE;
+
+import com.haiilo.supermarket.checkout.activity.ActiveBasketIndex;
+import com.haiilo.supermarket.checkout.dto.BasketActivityDTO;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+@RestController
+@RequestMapping("/api/v1/baskets")
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = BASKET_STORE, havingValue = "redis", matchIfMissing = true)
+@Tag(name = "Basket Management", description = "API for managing shopping process")
+public class BasketActivityController {
+
+  private final ActiveBasketIndex activeBasketIndex;
+
+  @Operation(summary = "Get basket activity statistics", description = "Counts live and abandoned baskets and their distribution by number of lines, without scanning Redis")
+  @ApiResponse(responseCode = "200", description = "Statistics returned", content = @Content(schema = @Schema(implementation = BasketActivityDTO.class)))
+  @GetMapping("/stats")
+  public Mono<BasketActivityDTO> getBasketActivity() {
+    return activeBasketIndex.stats();
+  }
+}
@@ -1,8 +1,11 @@
 package com.haiilo.supermarket.checkout.controller;
 
 import static com.haiilo.supermarket.checkout.util.AppConstants.BASKET_ID;
+import static com.haiilo.supermarket.checkout.util.AppConstants.BLOCKING_PROFILE;
+import static com.haiilo.supermarket.checkout.util.AppConstants.IDEMPOTENCY_KEY_HEADER;
 
 import com.haiilo.supermarket.checkout.domain.Basket;
+import com.haiilo.supermarket.checkout.dto.BasketItemDeltaDTO;
 import com.haiilo.supermarket.checkout.dto.OrderDTO;
 import com.haiilo.supermarket.checkout.service.BasketService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -11,19 +14,25 @@ import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import java.util.List;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 import reactor.core.publisher.Mono;
 import reactor.util.context.Context;
 
 @RestController
+@Profile("!" + BLOCKING_PROFILE)
 @RequestMapping("/api/v1/baskets")
 @RequiredArgsConstructor
 @Tag(name = "Basket Management", description = "API for managing shopping process")
@@ -31,12 +40,14 @@ public class BasketController {
 
   private final BasketService basketService;
 
-  @Operation(summary = "Create a new basket", description = "Creates a new empty shopping basket")
+  @Operation(summary = "Create a new basket", description = "Creates a new empty shopping basket, optionally for a store")
   @ApiResponse(responseCode = "201", description = "Basket created successfully")
+  @ApiResponse(responseCode = "400", description = "Invalid store ID")
   @PostMapping
   @ResponseStatus(HttpStatus.CREATED)
-  public Mono<Basket> createBasket() {
-    return basketService.createBasket();
+  public Mono<Basket> createBasket(
+      @Parameter(description = "Store the basket belongs to; prefixes the basket ID") @RequestParam(required = false) String storeId) {
+    return basketService.createBasket(storeId);
   }
 
   @Operation(summary = "Get basket by ID", description = "Retrieves a basket by its unique identifier")
@@ -59,6 +70,18 @@ public class BasketController {
         .contextWrite(Context.of(BASKET_ID, basketId));
   }
 
+  @Operation(summary = "Add items to basket in bulk", description = "Applies a list of quantity changes to the basket atomically and reprices it once; negative quantities remove items")
+  @ApiResponse(responseCode = "200", description = "Items applied successfully", content = @Content(schema = @Schema(implementation = Integer.class)))
+  @ApiResponse(responseCode = "400", description = "Empty, oversized or invalid batch")
+  @ApiResponse(responseCode = "404", description = "Basket, product or item to remove not found")
+  @PostMapping("/{basketId}/items")
+  public Mono<Integer> addItemsToBasket(
+      @Parameter(description = "Unique identifier of the basket", required = true) @PathVariable String basketId,
+      @RequestBody List<BasketItemDeltaDTO> items) {
+    return basketService.addItemsToBasket(basketId, items)
+        .contextWrite(Context.of(BASKET_ID, basketId));
+  }
+
   @Operation(summary = "Remove item from basket", description = "Removes one unit of a product from the basket")
   @ApiResponse(responseCode = "200", description = "Item removed successfully", content = @Content(schema = @Schema(implementation = Integer.class)))
   @ApiResponse(responseCode = "404", description = "Basket or product not found")
@@ -86,8 +109,10 @@ public class BasketController {
   @ApiResponse(responseCode = "400", description = "Basket is empty or invalid")
   @PostMapping("/{basketId}/checkout")
   public Mono<OrderDTO> checkout(
-      @Parameter(description = "Unique identifier of the basket", required = true) @PathVariable String basketId) {
-    return basketService.checkout(basketId);
+      @Parameter(description = "Unique identifier of the basket", required = true) @PathVariable String basketId,
+      @Parameter(description = "Client-generated key; retries with the same key return the stored order")
+      @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+    return basketService.checkout(basketId, idempotencyKey);
   }
 
 }
@@ -0,0 +1,31 @@
+package com.haiilo.supermarket.checkout.controller;
+
+import com.haiilo.supermarket.checkout.database.ConnectionPoolAdvisor;
+import com.haiilo.supermarket.checkout.dto.ConnectionPoolStatsDTO;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+@RestController
+@RequestMapping("/api/v1/database")
+@RequiredArgsConstructor
+@Tag(name = "Database", description = "API for inspecting the database connection pool")
+public class DatabaseController {
+
+  private final ConnectionPoolAdvisor connectionPoolAdvisor;
+
+  @Operation(summary = "Get connection pool statistics", description = "Returns the current R2DBC pool usage, the demand sampled over the recent window and the recommended pool size")
+  @ApiResponse(responseCode = "200", description = "Statistics returned", content = @Content(schema = @Schema(implementation = ConnectionPoolStatsDTO.class)))
+  @ApiResponse(responseCode = "404", description = "Connection pool is disabled")
+  @GetMapping("/pool/stats")
+  public Mono<ConnectionPoolStatsDTO> getConnectionPoolStats() {
+    return Mono.fromSupplier(connectionPoolAdvisor::stats);
+  }
+}
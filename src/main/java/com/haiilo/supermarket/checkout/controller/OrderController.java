@@ -0,0 +1,38 @@
+package com.haiilo.supermarket.checkout.controller;
+
+import com.haiilo.supermarket.checkout.dto.OrderDTO;
+import com.haiilo.supermarket.checkout.service.OrderService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import java.time.Instant;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+
+@RestController
+@RequestMapping("/api/v1/orders")
+@RequiredArgsConstructor
+@Tag(name = "Order History", description = "API for reading completed orders")
+public class OrderController {
+
+  private final OrderService orderService;
+
+  @Operation(summary = "Export orders", description = "Streams orders with their items as newline-delimited JSON, oldest first")
+  @ApiResponse(responseCode = "200", description = "Orders streamed", content = @Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE, schema = @Schema(implementation = OrderDTO.class)))
+  @ApiResponse(responseCode = "400", description = "'from' is not before 'to'")
+  @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+  public Flux<OrderDTO> exportOrders(
+      @Parameter(description = "Include orders created at or after this instant") @RequestParam(required = false) Instant from,
+      @Parameter(description = "Resume after the order with this id created at 'from'") @RequestParam(required = false) Long afterId,
+      @Parameter(description = "Include orders created before this instant, defaults to now") @RequestParam(required = false) Instant to) {
+    return orderService.exportOrders(from, afterId, to);
+  }
+}
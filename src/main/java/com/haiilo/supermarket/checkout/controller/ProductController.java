@@ -1,6 +1,9 @@
 package com.haiilo.supermarket.checkout.controller;
 
 import com.haiilo.supermarket.checkout.domain.Product;
+import com.haiilo.supermarket.checkout.dto.NearCacheStatsDTO;
+import com.haiilo.supermarket.checkout.dto.ProductImportResultDTO;
+import com.haiilo.supermarket.checkout.service.ProductImportService;
 import com.haiilo.supermarket.checkout.service.ProductService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -10,15 +13,20 @@ import io.swagger.v3.oas.annotations.parameters.RequestBody;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @RestController
@@ -28,6 +36,7 @@ import reactor.core.publisher.Mono;
 public class ProductController {
 
   private final ProductService productService;
+  private final ProductImportService productImportService;
 
   @Operation(summary = "Create a new product", description = "Creates a new product with the provided details")
   @ApiResponse(responseCode = "201", description = "Product created successfully", content = @Content(schema = @Schema(implementation = Product.class)))
@@ -40,6 +49,24 @@ public class ProductController {
     return productService.createProduct(product);
   }
 
+  @Operation(summary = "Import products in bulk", description = "Streams a CSV file (header with sku, name, unitPrice and optionally offerQuantity, offerPrice) or NDJSON products and inserts or updates them by SKU in batches")
+  @ApiResponse(responseCode = "200", description = "Import finished, per-row errors are listed in the result", content = @Content(schema = @Schema(implementation = ProductImportResultDTO.class)))
+  @ApiResponse(responseCode = "400", description = "CSV header is missing required columns")
+  @ApiResponse(responseCode = "415", description = "Content type is neither text/csv nor application/x-ndjson")
+  @PostMapping(value = "/import", consumes = {"text/csv", MediaType.APPLICATION_NDJSON_VALUE})
+  public Mono<ProductImportResultDTO> importProducts(
+      @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+      @org.springframework.web.bind.annotation.RequestBody Flux<DataBuffer> body) {
+    return productImportService.importProducts(body, contentType);
+  }
+
+  @Operation(summary = "Get product near-cache statistics", description = "Returns hit, miss and eviction counters of the in-process product cache")
+  @ApiResponse(responseCode = "200", description = "Statistics returned", content = @Content(schema = @Schema(implementation = NearCacheStatsDTO.class)))
+  @GetMapping("/cache/stats")
+  public Mono<NearCacheStatsDTO> getNearCacheStats() {
+    return Mono.fromSupplier(productService::getNearCacheStats);
+  }
+
   @Operation(summary = "Get product by SKU", description = "Retrieves a product by its SKU (Stock Keeping Unit)")
   @ApiResponse(responseCode = "200", description = "Product found", content = @Content(schema = @Schema(implementation = Product.class)))
   @ApiResponse(responseCode = "404", description = "Product not found")
@@ -0,0 +1,56 @@
+package com.haiilo.supermarket.checkout.controller;
+
+import com.haiilo.supermarket.checkout.domain.SalesGranularity;
+import com.haiilo.supermarket.checkout.dto.SalesBucketDTO;
+import com.haiilo.supermarket.checkout.service.SalesService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import java.time.Instant;
+import java.time.LocalDate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.format.annotation.DateTimeFormat.ISO;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@RestController
+@RequestMapping("/api/v1/sales")
+@RequiredArgsConstructor
+@Tag(name = "Sales Reporting", description = "API for reading precomputed per-SKU sales")
+public class SalesController {
+
+  private final SalesService salesService;
+
+  @Operation(summary = "Get sales of a product", description = "Returns units sold and revenue per hour or day from the precomputed rollups")
+  @ApiResponse(responseCode = "200", description = "Sales buckets returned, oldest first", content = @Content(array = @ArraySchema(schema = @Schema(implementation = SalesBucketDTO.class))))
+  @ApiResponse(responseCode = "400", description = "Invalid or too large range")
+  @GetMapping("/{sku}")
+  public Flux<SalesBucketDTO> getSales(
+      @Parameter(description = "SKU (Stock Keeping Unit) of the product", required = true) @PathVariable String sku,
+      @Parameter(description = "Bucket size") @RequestParam(defaultValue = "HOUR") SalesGranularity granularity,
+      @Parameter(description = "Include buckets starting at or after this instant, defaults to one day (HOUR) or 30 days (DAY) before 'to'") @RequestParam(required = false) Instant from,
+      @Parameter(description = "Include buckets starting before this instant, defaults to now") @RequestParam(required = false) Instant to) {
+    return salesService.getSales(sku, granularity, from, to);
+  }
+
+  @Operation(summary = "Rebuild sales rollups", description = "Recomputes the hourly and daily rollups from stored orders, one day of the rollup time zone at a time, and returns the number of days rebuilt")
+  @ApiResponse(responseCode = "200", description = "Rollups rebuilt", content = @Content(schema = @Schema(implementation = Long.class)))
+  @ApiResponse(responseCode = "400", description = "'from' is after 'to'")
+  @PostMapping("/rebuild")
+  public Mono<Long> rebuildRollups(
+      @Parameter(description = "First day to rebuild, defaults to the day of the first order") @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE) LocalDate from,
+      @Parameter(description = "Last day to rebuild, defaults to today") @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE) LocalDate to) {
+    return salesService.rebuildRollups(from, to);
+  }
+}
@@ -0,0 +1,152 @@
+package com.haiilo.supermarket.checkout.database;
+
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+
+import com.haiilo.supermarket.checkout.dto.ConnectionPoolStatsDTO;
+import com.haiilo.supermarket.checkout.util.MetricsHelper;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.PoolMetrics;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Wrapped;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Optional;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+// Samples the demand on the R2DBC pool, i.e. connections in use plus acquisitions waiting for
+// one, and recommends the pool size at which almost no acquisition would have waited during the
+// recent window. The pool cannot be resized while running; the recommendation is meant to pick
+// the pool profile or max-size for the next start.
+@Slf4j
+@Component
+public class ConnectionPoolAdvisor {
+
+  private final Optional<PoolMetrics> poolMetrics;
+  private final Duration sampleInterval;
+  private final Duration window;
+  private final double headroom;
+  private final int floor;
+  private final int ceiling;
+  // Ring buffer of the demand samples in the window
+  private final int[] demand;
+  private final boolean[] waiting;
+  private int next;
+  private int count;
+  private Disposable sampler;
+
+  public ConnectionPoolAdvisor(ConnectionFactory connectionFactory, MetricsHelper metricsHelper,
+      @Value("${checkout.db.pool.advisor.sample-interval:PT0.25S}") Duration sampleInterval,
+      @Value("${checkout.db.pool.advisor.window:PT15M}") Duration window,
+      @Value("${checkout.db.pool.advisor.headroom:1.25}") double headroom,
+      @Value("${checkout.db.pool.advisor.floor:2}") int floor,
+      @Value("${checkout.db.pool.advisor.ceiling:50}") int ceiling) {
+    this.poolMetrics = findPool(connectionFactory).flatMap(ConnectionPool::getMetrics);
+    this.sampleInterval = sampleInterval;
+    this.window = window;
+    this.headroom = headroom;
+    this.floor = floor;
+    this.ceiling = Math.max(floor, ceiling);
+    int samples = (int) Math.max(1, window.toMillis() / sampleInterval.toMillis());
+    this.demand = new int[samples];
+    this.waiting = new boolean[samples];
+    poolMetrics.ifPresent(metrics -> metricsHelper.poolRecommendation(this::recommendedMaxSize));
+  }
+
+  @PostConstruct
+  void start() {
+    if (poolMetrics.isEmpty()) {
+      log.info("R2DBC connection pool is disabled, pool sizing advice is off.");
+      return;
+    }
+    sampler = Flux.interval(sampleInterval, sampleInterval)
+        .onBackpressureDrop()
+        .subscribe(tick -> sample());
+  }
+
+  @PreDestroy
+  void stop() {
+    if (sampler != null) {
+      sampler.dispose();
+    }
+  }
+
+  synchronized void sample() {
+    poolMetrics.ifPresent(metrics -> {
+      int pending = metrics.pendingAcquireSize();
+      demand[next] = metrics.acquiredSize() + pending;
+      waiting[next] = pending > 0;
+      next = (next + 1) % demand.length;
+      count = Math.min(count + 1, demand.length);
+    });
+  }
+
+  public ConnectionPoolStatsDTO stats() {
+    PoolMetrics metrics = poolMetrics.orElseThrow(() ->
+        new ResponseStatusException(NOT_FOUND, "The R2DBC connection pool is disabled."));
+    int[] samples;
+    int waited = 0;
+    synchronized (this) {
+      samples = Arrays.copyOf(demand, count);
+      for (int i = 0; i < count; i++) {
+        waited += waiting[i] ? 1 : 0;
+      }
+    }
+    Arrays.sort(samples);
+    return ConnectionPoolStatsDTO.builder()
+        .maxSize(metrics.getMaxAllocatedSize())
+        .allocated(metrics.allocatedSize())
+        .acquired(metrics.acquiredSize())
+        .idle(metrics.idleSize())
+        .pending(metrics.pendingAcquireSize())
+        .peakDemand(samples.length == 0 ? 0 : samples[samples.length - 1])
+        .demandP99(percentile(samples, 0.99))
+        .waitingShare(samples.length == 0 ? 0 : (double) waited / samples.length)
+        .recommendedMaxSize(recommend(samples, metrics.getMaxAllocatedSize()))
+        .window(window)
+        .build();
+  }
+
+  public int recommendedMaxSize() {
+    int[] samples;
+    synchronized (this) {
+      samples = Arrays.copyOf(demand, count);
+    }
+    Arrays.sort(samples);
+    return recommend(samples, poolMetrics.map(PoolMetrics::getMaxAllocatedSize).orElse(0));
+  }
+
+  // Covers the 99th percentile of the demand with some headroom for growth, so a rare spike does
+  // not size the pool on its own. Without samples the current size is kept.
+  int recommend(int[] sortedSamples, int currentMaxSize) {
+    if (sortedSamples.length == 0) {
+      return currentMaxSize;
+    }
+    int recommended = (int) Math.ceil(percentile(sortedSamples, 0.99) * headroom);
+    return Math.min(ceiling, Math.max(floor, recommended));
+  }
+
+  private static int percentile(int[] sortedSamples, double quantile) {
+    if (sortedSamples.length == 0) {
+      return 0;
+    }
+    int index = (int) Math.ceil(quantile * sortedSamples.length) - 1;
+    return sortedSamples[Math.max(0, index)];
+  }
+
+  private static Optional<ConnectionPool> findPool(Object connectionFactory) {
+    if (connectionFactory instanceof ConnectionPool pool) {
+      return Optional.of(pool);
+    }
+    if (connectionFactory instanceof Wrapped<?> wrapped && wrapped.unwrap() != null) {
+      return findPool(wrapped.unwrap());
+    }
+    return Optional.empty();
+  }
+}
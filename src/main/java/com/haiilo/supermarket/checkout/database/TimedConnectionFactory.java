@@ -0,0 +1,48 @@
+package com.haiilo.supermarket.checkout.database;
+
+import com.haiilo.supermarket.checkout.util.MetricsHelper;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryMetadata;
+import io.r2dbc.spi.Wrapped;
+import lombok.RequiredArgsConstructor;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+// Times every acquisition from the pool as the db.pool.acquire stage: the wait for a free
+// connection, opening a new one if the pool may grow, and its validation. Boot's pool gauges and
+// the pool advisor reach the pool through unwrap().
+@RequiredArgsConstructor
+public class TimedConnectionFactory implements ConnectionFactory, Wrapped<ConnectionFactory>,
+    Disposable {
+
+  private final ConnectionPool pool;
+  private final MetricsHelper metricsHelper;
+
+  @Override
+  public Mono<Connection> create() {
+    return metricsHelper.timed("db.pool.acquire", pool.create());
+  }
+
+  @Override
+  public ConnectionFactoryMetadata getMetadata() {
+    return pool.getMetadata();
+  }
+
+  @Override
+  public ConnectionFactory unwrap() {
+    return pool;
+  }
+
+  // Called as the pool bean's destroy method.
+  @Override
+  public void dispose() {
+    pool.dispose();
+  }
+
+  @Override
+  public boolean isDisposed() {
+    return pool.isDisposed();
+  }
+}
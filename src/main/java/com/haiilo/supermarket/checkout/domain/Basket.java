@@ -19,6 +19,7 @@ public class Basket implements Serializable {
   @Id
   private String id;
   private Map<String, Integer> items = new HashMap<>();
+  private Map<String, PricedLine> lines = new HashMap<>();
   private int totalPrice = 0;
 
   public Basket(String id) {
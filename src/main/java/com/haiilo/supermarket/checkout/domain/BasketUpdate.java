@@ -0,0 +1,33 @@
+package com.haiilo.supermarket.checkout.domain;
+
+public record BasketUpdate(
+    Status status,
+    int totalPrice,
+    int lines
+) {
+
+  public enum Status {
+    UPDATED,
+    PRICE_CHANGED,
+    BASKET_NOT_FOUND,
+    ITEM_NOT_FOUND,
+    LIMIT_EXCEEDED
+  }
+
+  public BasketUpdate(Status status, int totalPrice) {
+    this(status, totalPrice, 0);
+  }
+
+  public boolean isApplied() {
+    return status == Status.UPDATED || status == Status.PRICE_CHANGED;
+  }
+
+  // Results look like STATUS, STATUS:total or STATUS:total:lines.
+  public static BasketUpdate parse(String result) {
+    String[] parts = result.split(":", 3);
+    Status status = Status.valueOf(parts[0]);
+    int totalPrice = parts.length > 1 ? Integer.parseInt(parts[1]) : 0;
+    int lines = parts.length > 2 ? Integer.parseInt(parts[2]) : 0;
+    return new BasketUpdate(status, totalPrice, lines);
+  }
+}
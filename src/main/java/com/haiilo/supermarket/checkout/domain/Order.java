@@ -17,6 +17,9 @@ public record Order(
     int finalPrice,
 
     @Column("created_at")
-    Instant createdAt
+    Instant createdAt,
+
+    @Column("checkout_key")
+    String checkoutKey
 ){
 }
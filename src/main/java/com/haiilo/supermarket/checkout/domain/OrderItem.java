@@ -17,6 +17,21 @@ public record OrderItem(
     @Column("product_sku")
     String productSku,
 
-    int quantity
+    int quantity,
+
+    Integer subtotal,
+
+    // Prices the line was charged at, so historical orders never need the live catalog.
+    @Column("unit_price")
+    Integer unitPrice,
+
+    @Column("offer_quantity")
+    Integer offerQuantity,
+
+    @Column("offer_price")
+    Integer offerPrice,
+
+    @Column("price_version")
+    Long priceVersion
 ) {
 }
@@ -0,0 +1,15 @@
+package com.haiilo.supermarket.checkout.domain;
+
+// The prices of a product at the moment a basket was checked out.
+public record PriceSnapshot(
+    int unitPrice,
+    Integer offerQuantity,
+    Integer offerPrice,
+    long priceVersion
+) {
+
+  public static PriceSnapshot of(Product product) {
+    return new PriceSnapshot(product.unitPrice(), product.offerQuantity(), product.offerPrice(),
+        product.priceVersion());
+  }
+}
@@ -0,0 +1,9 @@
+package com.haiilo.supermarket.checkout.domain;
+
+import java.io.Serializable;
+
+public record PricedLine(
+    int subtotal,
+    long priceVersion
+) implements Serializable {
+}
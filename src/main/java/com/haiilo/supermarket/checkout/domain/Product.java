@@ -1,6 +1,7 @@
 package com.haiilo.supermarket.checkout.domain;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.ReadOnlyProperty;
 import org.springframework.data.relational.core.mapping.Column;
 import org.springframework.data.relational.core.mapping.Table;
 
@@ -18,7 +19,12 @@ public record Product(
     Integer offerQuantity,
 
     @Column("offer_price")
-    Integer offerPrice
+    Integer offerPrice,
+
+    // Assigned by the database and changed only when a price changes; null until stored.
+    @ReadOnlyProperty
+    @Column("price_version")
+    Long priceVersion
 ) {
 
   public boolean hasSpecialOffer() {
@@ -0,0 +1,31 @@
+package com.haiilo.supermarket.checkout.domain;
+
+import java.time.Duration;
+
+public enum SalesGranularity {
+
+  HOUR("sales_hourly", Duration.ofHours(1), Duration.ofDays(1)),
+  DAY("sales_daily", Duration.ofDays(1), Duration.ofDays(30));
+
+  private final String table;
+  private final Duration bucket;
+  private final Duration defaultWindow;
+
+  SalesGranularity(String table, Duration bucket, Duration defaultWindow) {
+    this.table = table;
+    this.bucket = bucket;
+    this.defaultWindow = defaultWindow;
+  }
+
+  public String table() {
+    return table;
+  }
+
+  public Duration bucket() {
+    return bucket;
+  }
+
+  public Duration defaultWindow() {
+    return defaultWindow;
+  }
+}
@@ -0,0 +1,15 @@
+package com.haiilo.supermarket.checkout.dto;
+
+import java.time.Duration;
+import java.util.Map;
+import lombok.Builder;
+
+@Builder
+public record BasketActivityDTO(
+    long live,
+    long abandoned,
+    Duration abandonedAfter,
+    Duration idleTimeout,
+    Map<String, Long> lines
+) {
+}
@@ -0,0 +1,10 @@
+package com.haiilo.supermarket.checkout.dto;
+
+import lombok.Builder;
+
+@Builder
+public record BasketItemDeltaDTO(
+    String sku,
+    int quantity
+) {
+}
@@ -0,0 +1,19 @@
+package com.haiilo.supermarket.checkout.dto;
+
+import java.time.Duration;
+import lombok.Builder;
+
+@Builder
+public record ConnectionPoolStatsDTO(
+    int maxSize,
+    int allocated,
+    int acquired,
+    int idle,
+    int pending,
+    int peakDemand,
+    int demandP99,
+    double waitingShare,
+    int recommendedMaxSize,
+    Duration window
+) {
+}
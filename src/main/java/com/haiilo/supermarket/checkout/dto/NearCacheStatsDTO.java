@@ -0,0 +1,13 @@
+package com.haiilo.supermarket.checkout.dto;
+
+import lombok.Builder;
+
+@Builder
+public record NearCacheStatsDTO(
+    long size,
+    long hitCount,
+    long missCount,
+    long evictionCount,
+    double hitRate
+) {
+}
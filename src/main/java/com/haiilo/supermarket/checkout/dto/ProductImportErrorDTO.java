@@ -0,0 +1,11 @@
+package com.haiilo.supermarket.checkout.dto;
+
+import lombok.Builder;
+
+@Builder
+public record ProductImportErrorDTO(
+    long line,
+    String sku,
+    String message
+) {
+}
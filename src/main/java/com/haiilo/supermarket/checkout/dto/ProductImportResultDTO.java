@@ -0,0 +1,14 @@
+package com.haiilo.supermarket.checkout.dto;
+
+import java.util.List;
+import lombok.Builder;
+
+@Builder
+public record ProductImportResultDTO(
+    long rows,
+    long upserted,
+    long unchanged,
+    long failed,
+    List<ProductImportErrorDTO> errors
+) {
+}
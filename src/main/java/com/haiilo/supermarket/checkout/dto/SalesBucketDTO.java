@@ -0,0 +1,13 @@
+package com.haiilo.supermarket.checkout.dto;
+
+import java.time.Instant;
+import lombok.Builder;
+
+@Builder
+public record SalesBucketDTO(
+    String sku,
+    Instant bucketStart,
+    long units,
+    long revenue
+) {
+}
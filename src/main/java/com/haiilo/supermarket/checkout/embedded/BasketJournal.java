@@ -0,0 +1,272 @@
+package com.haiilo.supermarket.checkout.embedded;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32C;
+import lombok.extern.slf4j.Slf4j;
+
+// Append-only log of basket states in a memory-mapped file. A record holds the full state of one
+// basket or a tombstone, so replay keeps the last record per basket. Appends only write to the
+// page cache and survive a crash of the process; force() makes them survive a power loss too.
+// Apart from force() and prepareSpare(), callers serialize access.
+@Slf4j
+class BasketJournal implements Closeable {
+
+  static final String JOURNAL_FILE = "baskets.journal";
+  private static final String COMPACTED_FILE = "baskets.journal.compacted";
+  private static final String LOCK_FILE = "baskets.lock";
+  private static final String SPARE_SUFFIX = ".spare";
+  // Every record starts with the payload length and the payload's CRC-32C.
+  static final int HEADER_BYTES = 8;
+  private static final byte PUT = 1;
+  private static final byte DELETE = 2;
+
+  private final Path directory;
+  private final int segmentSize;
+  private final FileChannel lockChannel;
+  private volatile MappedByteBuffer segment;
+  private int position;
+  // Segment mapped ahead by maintenance, so a compaction only has to copy and force the records
+  private final AtomicReference<Spare> spare = new AtomicReference<>();
+  private ByteBuffer scratch = ByteBuffer.allocate(4096);
+
+  private BasketJournal(Path directory, int segmentSize, FileChannel lockChannel) {
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+    this.lockChannel = lockChannel;
+  }
+
+  // The directory stays locked until close, so a second instance cannot replay a journal that is
+  // still being written.
+  static BasketJournal open(Path directory, int segmentSize) throws IOException {
+    Files.createDirectories(directory);
+    FileChannel lockChannel = FileChannel.open(directory.resolve(LOCK_FILE), CREATE, WRITE);
+    FileLock lock;
+    try {
+      lock = lockChannel.tryLock();
+    } catch (OverlappingFileLockException e) {
+      lock = null;
+    }
+    if (lock == null) {
+      lockChannel.close();
+      throw new IllegalStateException("Basket store " + directory + " is used by another process");
+    }
+    // Spare segments left behind by the previous process were never part of the journal
+    try (DirectoryStream<Path> spares = Files.newDirectoryStream(directory, "*" + SPARE_SUFFIX)) {
+      for (Path spare : spares) {
+        Files.delete(spare);
+      }
+    }
+    return new BasketJournal(directory, segmentSize, lockChannel);
+  }
+
+  // Returns the baskets that have not expired by now. A record cut short by a crash, or torn by
+  // a power loss, fails its length or checksum check and ends the replay.
+  Map<String, StoredBasket> replay(long now) throws IOException {
+    Map<String, StoredBasket> baskets = new HashMap<>();
+    Path file = directory.resolve(JOURNAL_FILE);
+    if (!Files.exists(file)) {
+      return baskets;
+    }
+    int records = 0;
+    try (FileChannel channel = FileChannel.open(file, READ)) {
+      MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+      while (buffer.remaining() >= HEADER_BYTES) {
+        int offset = buffer.position();
+        int length = buffer.getInt();
+        int checksum = buffer.getInt();
+        if (length == 0) {
+          break;
+        }
+        if (length < 0 || length > buffer.remaining()
+            || checksum(buffer.slice(buffer.position(), length)) != checksum) {
+          log.warn("Basket journal record at offset {} is incomplete, ignoring it and the rest.",
+              offset);
+          break;
+        }
+        apply(buffer.slice(buffer.position(), length), now, baskets);
+        buffer.position(buffer.position() + length);
+        records++;
+      }
+    }
+    log.info("Replayed {} basket journal records, {} baskets are live.", records, baskets.size());
+    return baskets;
+  }
+
+  // Returns false without writing anything when the record does not fit into the segment.
+  boolean append(String basketId, StoredBasket basket) {
+    ByteBuffer payload = encode(basketId, basket);
+    int length = payload.remaining();
+    if (segment.capacity() - position < HEADER_BYTES + length) {
+      return false;
+    }
+    // The length goes in last: until it is set, replay sees the end of the journal.
+    segment.put(position + HEADER_BYTES, payload, 0, length);
+    segment.putInt(position + 4, checksum(payload));
+    segment.putInt(position, length);
+    position += HEADER_BYTES + length;
+    return true;
+  }
+
+  // Writes the given baskets to a new segment that atomically replaces the journal. The segment
+  // has room for at least three times as much again before the next compaction.
+  void compact(Map<String, StoredBasket> baskets) throws IOException {
+    ByteArrayOutputStream records = new ByteArrayOutputStream();
+    ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+    for (Map.Entry<String, StoredBasket> basket : baskets.entrySet()) {
+      ByteBuffer payload = encode(basket.getKey(), basket.getValue());
+      header.clear();
+      header.putInt(payload.remaining()).putInt(checksum(payload));
+      records.write(header.array(), 0, HEADER_BYTES);
+      records.write(payload.array(), 0, payload.limit());
+    }
+    byte[] live = records.toByteArray();
+    long size = Math.max(segmentSize, 4L * live.length);
+    if (size > Integer.MAX_VALUE) {
+      throw new IllegalStateException("Basket journal of " + size + " bytes exceeds 2 GB");
+    }
+    Spare prepared = spare.get();
+    Path compacted;
+    MappedByteBuffer next;
+    if (prepared != null && prepared.segment().capacity() >= size
+        && spare.compareAndSet(prepared, null)) {
+      compacted = prepared.file();
+      next = prepared.segment();
+    } else {
+      compacted = directory.resolve(COMPACTED_FILE);
+      Files.deleteIfExists(compacted);
+      try (FileChannel channel = FileChannel.open(compacted, CREATE_NEW, READ, WRITE)) {
+        next = channel.map(MapMode.READ_WRITE, 0, size);
+      }
+    }
+    next.put(0, live);
+    next.force();
+    Files.move(compacted, directory.resolve(JOURNAL_FILE), ATOMIC_MOVE, REPLACE_EXISTING);
+    segment = next;
+    position = live.length;
+    log.info("Compacted basket journal to {} baskets in {} bytes.", baskets.size(), live.length);
+  }
+
+  // Maps a segment for the next compaction unless one is ready. Runs without the writers' lock;
+  // every spare gets its own file, so a compaction moving the previous one is never disturbed.
+  void prepareSpare() throws IOException {
+    if (spare.get() != null) {
+      return;
+    }
+    Path file = Files.createTempFile(directory, JOURNAL_FILE + ".", SPARE_SUFFIX);
+    try (FileChannel channel = FileChannel.open(file, READ, WRITE)) {
+      spare.set(new Spare(file, channel.map(MapMode.READ_WRITE, 0, segmentSize)));
+    }
+  }
+
+  // Share of the current segment taken by records
+  double fill() {
+    return (double) position / segment.capacity();
+  }
+
+  void force() {
+    MappedByteBuffer current = segment;
+    if (current != null) {
+      current.force();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    force();
+    lockChannel.close();
+  }
+
+  private ByteBuffer encode(String basketId, StoredBasket basket) {
+    while (true) {
+      try {
+        scratch.clear();
+        scratch.put(basket == null ? DELETE : PUT);
+        putString(scratch, basketId);
+        if (basket != null) {
+          scratch.putLong(basket.expiresAt());
+          scratch.putInt(basket.total());
+          scratch.putInt(basket.lines().size());
+          basket.lines().forEach((sku, line) -> {
+            putString(scratch, sku);
+            scratch.putInt(line.quantity());
+            scratch.putInt(line.subtotal());
+            scratch.putLong(line.priceVersion());
+          });
+        }
+        return scratch.flip();
+      } catch (BufferOverflowException e) {
+        scratch = ByteBuffer.allocate(scratch.capacity() * 2);
+      }
+    }
+  }
+
+  private static void apply(ByteBuffer payload, long now, Map<String, StoredBasket> baskets) {
+    byte type = payload.get();
+    String basketId = getString(payload);
+    if (type == DELETE) {
+      baskets.remove(basketId);
+      return;
+    }
+    long expiresAt = payload.getLong();
+    int total = payload.getInt();
+    int lineCount = payload.getInt();
+    Map<String, StoredBasket.Line> lines = new HashMap<>();
+    for (int i = 0; i < lineCount; i++) {
+      String sku = getString(payload);
+      lines.put(sku, new StoredBasket.Line(payload.getInt(), payload.getInt(), payload.getLong()));
+    }
+    StoredBasket basket = new StoredBasket(expiresAt, total, lines);
+    if (basket.isExpired(now)) {
+      baskets.remove(basketId);
+    } else {
+      baskets.put(basketId, basket);
+    }
+  }
+
+  private static void putString(ByteBuffer buffer, String value) {
+    byte[] bytes = value.getBytes(UTF_8);
+    if (bytes.length > 0xFFFF) {
+      throw new IllegalArgumentException("Value of " + bytes.length + " bytes is too long");
+    }
+    buffer.putShort((short) bytes.length);
+    buffer.put(bytes);
+  }
+
+  private static String getString(ByteBuffer buffer) {
+    byte[] bytes = new byte[Short.toUnsignedInt(buffer.getShort())];
+    buffer.get(bytes);
+    return new String(bytes, UTF_8);
+  }
+
+  private static int checksum(ByteBuffer payload) {
+    CRC32C crc = new CRC32C();
+    crc.update(payload.duplicate());
+    return (int) crc.getValue();
+  }
+
+  private record Spare(Path file, MappedByteBuffer segment) {
+  }
+}
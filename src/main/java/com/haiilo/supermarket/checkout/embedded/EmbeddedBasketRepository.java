@@ -0,0 +1,339 @@
+package com.haiilo.supermarket.checkout.embedded;
+
+import static com.haiilo.supermarket.checkout.util.AppConstants.BASKET_STORE;
+import static com.haiilo.supermarket.checkout.util.AppConstants.BASKET_TTL;
+import static com.haiilo.supermarket.checkout.util.AppConstants.MAX_BASKET_TOTAL;
+import static com.haiilo.supermarket.checkout.util.AppConstants.MAX_LINE_QUANTITY;
+
+import com.haiilo.supermarket.checkout.domain.Basket;
+import com.haiilo.supermarket.checkout.domain.BasketUpdate;
+import com.haiilo.supermarket.checkout.domain.BasketUpdate.Status;
+import com.haiilo.supermarket.checkout.domain.PricedLine;
+import com.haiilo.supermarket.checkout.domain.Product;
+import com.haiilo.supermarket.checkout.repository.BasketRepository;
+import com.haiilo.supermarket.checkout.util.MetricsHelper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.unit.DataSize;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+// Keeps baskets in process for single-node deployments, e.g. an in-store box that must keep the
+// tills running without a network. Baskets live in an in-memory index and every change is
+// appended to a memory-mapped journal that is replayed on startup. Updates follow the basket
+// Lua scripts of the Redis store exactly.
+@Slf4j
+@Repository
+@ConditionalOnProperty(name = BASKET_STORE, havingValue = "embedded")
+public class EmbeddedBasketRepository implements BasketRepository {
+
+  private final MetricsHelper metricsHelper;
+  private final Path directory;
+  private final int segmentSize;
+  private final Duration syncInterval;
+  private final Clock clock;
+  private final Map<String, StoredBasket> baskets = new ConcurrentHashMap<>();
+  // Maintenance compacts a segment filled beyond this share, so writers rarely find it full.
+  private static final double COMPACTION_FILL = 0.75;
+  // Serializes writers, which share the journal; readers go straight to the index.
+  private final ReentrantLock writeLock = new ReentrantLock();
+  private BasketJournal journal;
+  private Disposable maintenance;
+
+  @Autowired
+  public EmbeddedBasketRepository(MetricsHelper metricsHelper,
+      @Value("${checkout.baskets.embedded.directory:data/baskets}") Path directory,
+      @Value("${checkout.baskets.embedded.segment-size:64MB}") DataSize segmentSize,
+      @Value("${checkout.baskets.embedded.sync-interval:PT1S}") Duration syncInterval) {
+    this(metricsHelper, directory, segmentSize, syncInterval, Clock.systemUTC());
+  }
+
+  EmbeddedBasketRepository(MetricsHelper metricsHelper, Path directory, DataSize segmentSize,
+      Duration syncInterval, Clock clock) {
+    this.metricsHelper = metricsHelper;
+    this.directory = directory;
+    this.segmentSize = Math.toIntExact(segmentSize.toBytes());
+    this.syncInterval = syncInterval;
+    this.clock = clock;
+  }
+
+  // Replays the journal and compacts it right away, which also drops a record torn by a crash.
+  @PostConstruct
+  void open() throws IOException {
+    journal = BasketJournal.open(directory, segmentSize);
+    baskets.putAll(journal.replay(clock.millis()));
+    journal.compact(baskets);
+    journal.prepareSpare();
+    log.info("Embedded basket store opened in '{}' with {} baskets.", directory.toAbsolutePath(),
+        baskets.size());
+    maintenance = Flux.interval(syncInterval, syncInterval, Schedulers.boundedElastic())
+        .subscribe(tick -> {
+          try {
+            maintain();
+          } catch (IOException | RuntimeException e) {
+            log.error("Embedded basket store maintenance failed.", e);
+          }
+        });
+  }
+
+  // Compacts ahead of time and maps the spare segment for the next compaction, so the
+  // compactions writers cannot avoid only copy records into memory that is already mapped.
+  void maintain() throws IOException {
+    expire();
+    journal.force();
+    writeLock.lock();
+    try {
+      if (journal.fill() >= COMPACTION_FILL) {
+        expire();
+        journal.compact(baskets);
+      }
+    } finally {
+      writeLock.unlock();
+    }
+    journal.prepareSpare();
+  }
+
+  @PreDestroy
+  void close() throws IOException {
+    if (maintenance != null) {
+      maintenance.dispose();
+    }
+    if (journal == null) {
+      return;
+    }
+    writeLock.lock();
+    try {
+      journal.close();
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  @Override
+  public Mono<Basket> create(String basketId) {
+    return write("basket.embedded.create", () -> {
+      writeLock.lock();
+      try {
+        store(basketId, new StoredBasket(expiresAt(), 0, Map.of()));
+      } finally {
+        writeLock.unlock();
+      }
+      return new Basket(basketId);
+    });
+  }
+
+  @Override
+  public Mono<Basket> findById(String basketId) {
+    return metricsHelper.timed("basket.embedded.find", Mono.fromCallable(() -> {
+      StoredBasket stored = live(basketId);
+      return stored == null ? null : toBasket(basketId, stored);
+    }));
+  }
+
+  @Override
+  public Mono<BasketUpdate> updateItem(String basketId, Product product, int quantityDelta) {
+    return write("basket.embedded.update", () -> update(basketId,
+        Map.of(product.sku(), quantityDelta), Map.of(product.sku(), product)));
+  }
+
+  @Override
+  public Mono<BasketUpdate> updateItems(String basketId, Map<String, Integer> quantityDeltas,
+      Map<String, Product> products) {
+    return write("basket.embedded.update-batch",
+        () -> update(basketId, quantityDeltas, products));
+  }
+
+  @Override
+  public Mono<BasketUpdate> reprice(String basketId, Collection<Product> products) {
+    return write("basket.embedded.reprice", () -> mutate(basketId, current -> {
+      Map<String, StoredBasket.Line> lines = new HashMap<>(current.lines());
+      for (Product product : products) {
+        StoredBasket.Line line = lines.get(product.sku());
+        if (line != null && line.quantity() > 0) {
+          lines.put(product.sku(), new StoredBasket.Line(line.quantity(),
+              (int) subtotal(line.quantity(), product), product.priceVersion()));
+        }
+      }
+      int total = lines.values().stream().mapToInt(StoredBasket.Line::subtotal).sum();
+      return new Change(new StoredBasket(expiresAt(), total, lines),
+          new BasketUpdate(Status.UPDATED, total, lines.size()));
+    }));
+  }
+
+  @Override
+  public Mono<Boolean> delete(String basketId) {
+    return write("basket.embedded.delete", () -> {
+      writeLock.lock();
+      try {
+        StoredBasket stored = live(basketId);
+        if (stored == null) {
+          return false;
+        }
+        store(basketId, null);
+        return true;
+      } finally {
+        writeLock.unlock();
+      }
+    });
+  }
+
+  int size() {
+    return baskets.size();
+  }
+
+  double journalFill() {
+    return journal.fill();
+  }
+
+  // Every delta is validated before any is applied, as in basket-update-items.lua.
+  private BasketUpdate update(String basketId, Map<String, Integer> quantityDeltas,
+      Map<String, Product> products) {
+    return mutate(basketId, current -> {
+      Map<String, Integer> quantities = new HashMap<>();
+      for (Map.Entry<String, Integer> delta : quantityDeltas.entrySet()) {
+        int quantity = current.quantity(delta.getKey()) + delta.getValue();
+        if (quantity < 0) {
+          return new Change(null, new BasketUpdate(Status.ITEM_NOT_FOUND, 0));
+        }
+        if (quantity > MAX_LINE_QUANTITY) {
+          return new Change(null, new BasketUpdate(Status.LIMIT_EXCEEDED, 0));
+        }
+        quantities.put(delta.getKey(), quantity);
+      }
+      long newTotal = current.total();
+      for (Map.Entry<String, Integer> quantity : quantities.entrySet()) {
+        StoredBasket.Line previous = current.lines().get(quantity.getKey());
+        newTotal += subtotal(quantity.getValue(), products.get(quantity.getKey()))
+            - (previous != null ? previous.subtotal() : 0);
+      }
+      // Only growth is refused, so a basket pushed over the limit by a repricing can be emptied.
+      if (newTotal > current.total() && newTotal > MAX_BASKET_TOTAL) {
+        return new Change(null, new BasketUpdate(Status.LIMIT_EXCEEDED, 0));
+      }
+      Map<String, StoredBasket.Line> lines = new HashMap<>(current.lines());
+      int total = current.total();
+      boolean priceChanged = false;
+      for (Map.Entry<String, Integer> quantity : quantities.entrySet()) {
+        Product product = products.get(quantity.getKey());
+        int subtotal = (int) subtotal(quantity.getValue(), product);
+        StoredBasket.Line previous = quantity.getValue() == 0
+            ? lines.remove(product.sku())
+            : lines.put(product.sku(), new StoredBasket.Line(quantity.getValue(), subtotal,
+                product.priceVersion()));
+        if (previous != null) {
+          total -= previous.subtotal();
+          priceChanged |= previous.priceVersion() != product.priceVersion();
+        }
+        total += subtotal;
+      }
+      return new Change(new StoredBasket(expiresAt(), total, lines),
+          new BasketUpdate(priceChanged ? Status.PRICE_CHANGED : Status.UPDATED, total,
+              lines.size()));
+    });
+  }
+
+  private BasketUpdate mutate(String basketId, Function<StoredBasket, Change> change) {
+    writeLock.lock();
+    try {
+      StoredBasket current = live(basketId);
+      if (current == null) {
+        return new BasketUpdate(Status.BASKET_NOT_FOUND, 0);
+      }
+      Change result = change.apply(current);
+      if (result.basket() != null) {
+        store(basketId, result.basket());
+      }
+      return result.update();
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  // Journals the change before the index shows it, so a failed write changes nothing.
+  private void store(String basketId, StoredBasket basket) {
+    try {
+      if (!journal.append(basketId, basket)) {
+        expire();
+        journal.compact(baskets);
+        if (!journal.append(basketId, basket)) {
+          throw new IllegalStateException("Basket '" + basketId + "' does not fit the journal");
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not write basket '" + basketId + "'", e);
+    }
+    if (basket == null) {
+      baskets.remove(basketId);
+    } else {
+      baskets.put(basketId, basket);
+    }
+  }
+
+  private StoredBasket live(String basketId) {
+    StoredBasket stored = baskets.get(basketId);
+    if (stored != null && stored.isExpired(clock.millis())) {
+      baskets.remove(basketId, stored);
+      return null;
+    }
+    return stored;
+  }
+
+  // Expired baskets are dropped from the index only; replay and compaction skip them anyway.
+  private void expire() {
+    long now = clock.millis();
+    baskets.entrySet().removeIf(basket -> basket.getValue().isExpired(now));
+  }
+
+  private long expiresAt() {
+    return clock.millis() + BASKET_TTL.toMillis();
+  }
+
+  // Writers may wait for the lock or a compaction, and appends may fault in journal pages, so
+  // they run off the event loop. Reads only look at the index and stay on the caller's thread.
+  private <T> Mono<T> write(String stage, Callable<T> operation) {
+    return metricsHelper.timed(stage,
+        Mono.fromCallable(operation).subscribeOn(Schedulers.boundedElastic()));
+  }
+
+  // In long, so a quantity at the limit times a high price is compared with the basket limit
+  // instead of wrapping around.
+  private static long subtotal(int quantity, Product product) {
+    if (product.hasSpecialOffer() && quantity >= product.offerQuantity()) {
+      return (long) (quantity / product.offerQuantity()) * product.offerPrice()
+          + (long) (quantity % product.offerQuantity()) * product.unitPrice();
+    }
+    return (long) quantity * product.unitPrice();
+  }
+
+  private static Basket toBasket(String basketId, StoredBasket stored) {
+    Basket basket = new Basket(basketId);
+    basket.setTotalPrice(stored.total());
+    stored.lines().forEach((sku, line) -> {
+      basket.getItems().put(sku, line.quantity());
+      basket.getLines().put(sku, new PricedLine(line.subtotal(), line.priceVersion()));
+    });
+    return basket;
+  }
+
+  private record Change(StoredBasket basket, BasketUpdate update) {
+  }
+}
@@ -0,0 +1,27 @@
+package com.haiilo.supermarket.checkout.embedded;
+
+import java.util.Map;
+
+// Immutable, so readers of the embedded store never take a lock; every change stores a new one.
+record StoredBasket(
+    long expiresAt,
+    int total,
+    Map<String, Line> lines
+) {
+
+  record Line(int quantity, int subtotal, long priceVersion) {
+  }
+
+  StoredBasket {
+    lines = Map.copyOf(lines);
+  }
+
+  int quantity(String sku) {
+    Line line = lines.get(sku);
+    return line == null ? 0 : line.quantity();
+  }
+
+  boolean isExpired(long now) {
+    return expiresAt <= now;
+  }
+}
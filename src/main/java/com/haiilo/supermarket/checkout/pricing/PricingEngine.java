@@ -0,0 +1,82 @@
+package com.haiilo.supermarket.checkout.pricing;
+
+import com.haiilo.supermarket.checkout.domain.Basket;
+import com.haiilo.supermarket.checkout.domain.PricedLine;
+import com.haiilo.supermarket.checkout.domain.Product;
+import com.haiilo.supermarket.checkout.repository.PromotionRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@Slf4j
+@Component
+public class PricingEngine {
+
+  private final PromotionRepository promotionRepository;
+  private final Duration refreshInterval;
+  private volatile PricingRuleSet ruleSet = PricingRuleSet.EMPTY;
+  private Disposable refresher;
+
+  public PricingEngine(PromotionRepository promotionRepository,
+      @Value("${checkout.pricing.refresh-interval:PT1M}") Duration refreshInterval) {
+    this.promotionRepository = promotionRepository;
+    this.refreshInterval = refreshInterval;
+  }
+
+  @PostConstruct
+  void start() {
+    refresher = Flux.interval(Duration.ZERO, refreshInterval)
+        .concatMap(tick -> reload()
+            .onErrorResume(e -> {
+              log.error("Failed to reload pricing rules, keeping {} current rules.",
+                  ruleSet.size(), e);
+              return Mono.empty();
+            }))
+        .subscribe();
+  }
+
+  @PreDestroy
+  void stop() {
+    if (refresher != null) {
+      refresher.dispose();
+    }
+  }
+
+  public Mono<PricingRuleSet> reload() {
+    return promotionRepository.findCurrent(Instant.now())
+        .collectList()
+        .map(PricingRuleSet::compile)
+        .doOnNext(compiled -> {
+          if (compiled.size() != ruleSet.size()) {
+            log.info("Loaded {} pricing rules.", compiled.size());
+          }
+          ruleSet = compiled;
+        });
+  }
+
+  public boolean hasRules() {
+    return !ruleSet.isEmpty();
+  }
+
+  public int price(Map<String, Integer> items, Map<String, Product> products) {
+    return ruleSet.price(items, products, Instant.now());
+  }
+
+  // Prices the basket and replaces each line's subtotal with its share of the total, so the
+  // lines of an order add up to its final price and sales revenue reflects the promotions.
+  public int apply(Basket basket, Map<String, Product> products) {
+    int total = ruleSet.allocate(basket.getItems(), products, Instant.now(),
+        (sku, amount) -> basket.getLines().put(sku,
+            new PricedLine(amount, products.get(sku).priceVersion())));
+    basket.setTotalPrice(total);
+    return total;
+  }
+}
@@ -0,0 +1,21 @@
+package com.haiilo.supermarket.checkout.pricing;
+
+import java.time.Instant;
+import java.util.Map;
+
+// MULTIBUY and BUNDLE sell the listed quantities together for price; PERCENTAGE takes percent
+// off every unit of the listed SKUs once the basket holds at least the listed quantity.
+public record PricingRule(
+    long id,
+    PromotionType type,
+    Map<String, Integer> items,
+    Integer price,
+    Integer percent,
+    Instant validFrom,
+    Instant validTo
+) {
+
+  public boolean isDeal() {
+    return this.type == PromotionType.MULTIBUY || this.type == PromotionType.BUNDLE;
+  }
+}
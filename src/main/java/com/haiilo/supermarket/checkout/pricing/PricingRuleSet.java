@@ -0,0 +1,649 @@
+package com.haiilo.supermarket.checkout.pricing;
+
+import com.haiilo.supermarket.checkout.domain.Product;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ObjIntConsumer;
+import lombok.extern.slf4j.Slf4j;
+
+// Immutable, compiled form of the active promotions. Rules are flattened into parallel arrays
+// indexed by SKU so pricing a basket only touches the rules of the SKUs it contains, and every
+// evaluation works in per-thread scratch buffers instead of allocating.
+@Slf4j
+public final class PricingRuleSet {
+
+  private static final int MAX_SEARCH_NODES = 100_000;
+  private static final int[] NO_RULES = new int[0];
+  private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+  public static final PricingRuleSet EMPTY = compile(List.of());
+
+  private final int ruleCount;
+  private final Map<String, int[]> dealsBySku;
+  private final String[][] dealSkus;
+  private final int[][] dealQuantities;
+  private final int[] dealPrices;
+  private final long[] dealValidFrom;
+  private final long[] dealValidTo;
+  private final Map<String, int[]> discountsBySku;
+  private final int[] discountPercents;
+  private final int[] discountMinQuantities;
+  private final long[] discountValidFrom;
+  private final long[] discountValidTo;
+
+  private PricingRuleSet(int ruleCount, List<PricingRule> deals, List<PricingRule> discounts,
+      List<String> discountSkus) {
+    this.ruleCount = ruleCount;
+    this.dealSkus = new String[deals.size()][];
+    this.dealQuantities = new int[deals.size()][];
+    this.dealPrices = new int[deals.size()];
+    this.dealValidFrom = new long[deals.size()];
+    this.dealValidTo = new long[deals.size()];
+    Map<String, List<Integer>> dealIndex = new HashMap<>();
+    for (int d = 0; d < deals.size(); d++) {
+      PricingRule rule = deals.get(d);
+      String[] skus = rule.items().keySet().stream().sorted().toArray(String[]::new);
+      dealSkus[d] = skus;
+      dealQuantities[d] = Arrays.stream(skus).mapToInt(sku -> rule.items().get(sku)).toArray();
+      dealPrices[d] = rule.price();
+      dealValidFrom[d] = validFrom(rule);
+      dealValidTo[d] = validTo(rule);
+      for (String sku : skus) {
+        dealIndex.computeIfAbsent(sku, key -> new ArrayList<>()).add(d);
+      }
+    }
+    this.dealsBySku = toIndex(dealIndex);
+
+    this.discountPercents = new int[discounts.size()];
+    this.discountMinQuantities = new int[discounts.size()];
+    this.discountValidFrom = new long[discounts.size()];
+    this.discountValidTo = new long[discounts.size()];
+    Map<String, List<Integer>> discountIndex = new HashMap<>();
+    for (int i = 0; i < discounts.size(); i++) {
+      PricingRule rule = discounts.get(i);
+      String sku = discountSkus.get(i);
+      discountPercents[i] = rule.percent();
+      discountMinQuantities[i] = rule.items().get(sku);
+      discountValidFrom[i] = validFrom(rule);
+      discountValidTo[i] = validTo(rule);
+      discountIndex.computeIfAbsent(sku, key -> new ArrayList<>()).add(i);
+    }
+    this.discountsBySku = toIndex(discountIndex);
+  }
+
+  public static PricingRuleSet compile(List<PricingRule> rules) {
+    List<PricingRule> deals = new ArrayList<>();
+    List<PricingRule> discounts = new ArrayList<>();
+    List<String> discountSkus = new ArrayList<>();
+    int ruleCount = 0;
+    for (PricingRule rule : rules.stream().sorted(Comparator.comparingLong(PricingRule::id))
+        .toList()) {
+      if (!isValid(rule)) {
+        log.warn("Skipping invalid pricing rule '{}'.", rule.id());
+        continue;
+      }
+      ruleCount++;
+      if (rule.isDeal()) {
+        deals.add(rule);
+      } else {
+        rule.items().keySet().stream().sorted().forEach(sku -> {
+          discounts.add(rule);
+          discountSkus.add(sku);
+        });
+      }
+    }
+    return new PricingRuleSet(ruleCount, deals, discounts, discountSkus);
+  }
+
+  public boolean isEmpty() {
+    return ruleCount == 0;
+  }
+
+  public int size() {
+    return ruleCount;
+  }
+
+  // Lowest total over every combination of product offers and active deals; units left outside
+  // a deal get the best active percentage discount. Every basket SKU must be in products.
+  public int price(Map<String, Integer> items, Map<String, Product> products, Instant now) {
+    Scratch scratch = prepare(items, products, now);
+    int total = 0;
+    for (int g = 0; g < scratch.groups; g++) {
+      total += priceGroup(scratch, g);
+    }
+    return total;
+  }
+
+  // Prices like price() and splits the total over the SKUs: units outside any offer or deal are
+  // charged their unit price, and each applied offer or deal is shared by the units it covers in
+  // proportion to their unit prices. Each SKU's amount is passed to charge, and the amounts add
+  // up to the returned total, which is price() exactly.
+  public int allocate(Map<String, Integer> items, Map<String, Product> products, Instant now,
+      ObjIntConsumer<String> charge) {
+    Scratch scratch = prepare(items, products, now);
+    Arrays.fill(scratch.charged, 0, scratch.positions, 0);
+    System.arraycopy(scratch.remaining, 0, scratch.units, 0, scratch.positions);
+    for (int g = 0; g < scratch.groups; g++) {
+      priceGroup(scratch, g);
+      if (scratch.positionStarts[g + 1] - scratch.positionStarts[g] == 1) {
+        countSingleSkuApplications(scratch, scratch.orderedPositions[scratch.positionStarts[g]],
+            scratch.candidateGroupStarts[g], scratch.candidateGroupStarts[g + 1]);
+      }
+      for (int i = scratch.candidateGroupStarts[g]; i < scratch.candidateGroupStarts[g + 1]; i++) {
+        chargeCandidate(scratch, scratch.orderedCandidates[i]);
+      }
+    }
+    int total = 0;
+    for (int p = 0; p < scratch.positions; p++) {
+      int amount = scratch.charged[p] + scratch.units[p] * scratch.unitPrices[p];
+      charge.accept(scratch.skus[p], amount);
+      total += amount;
+    }
+    return total;
+  }
+
+  private Scratch prepare(Map<String, Integer> items, Map<String, Product> products,
+      Instant now) {
+    Scratch scratch = SCRATCH.get();
+    long time = now.toEpochMilli();
+    int positions = loadPositions(scratch, items);
+    for (int p = 0; p < positions; p++) {
+      Product product = products.get(scratch.skus[p]);
+      if (product == null) {
+        throw new IllegalArgumentException("No product for SKU " + scratch.skus[p]);
+      }
+      int percent = bestDiscount(scratch.skus[p], scratch.remaining[p], time);
+      scratch.unitPrices[p] = product.unitPrice() - product.unitPrice() * percent / 100;
+      scratch.minShares[p] = scratch.unitPrices[p];
+    }
+    collectCandidates(scratch, products, time);
+    groupCandidates(scratch);
+    return scratch;
+  }
+
+  private int loadPositions(Scratch scratch, Map<String, Integer> items) {
+    scratch.ensurePositions(items.size());
+    int positions = 0;
+    for (Map.Entry<String, Integer> item : items.entrySet()) {
+      if (item.getValue() <= 0) {
+        continue;
+      }
+      // Insertion sort by SKU keeps the search order independent of map iteration order.
+      int p = positions++;
+      while (p > 0 && scratch.skus[p - 1].compareTo(item.getKey()) > 0) {
+        scratch.skus[p] = scratch.skus[p - 1];
+        scratch.remaining[p] = scratch.remaining[p - 1];
+        p--;
+      }
+      scratch.skus[p] = item.getKey();
+      scratch.remaining[p] = item.getValue();
+    }
+    scratch.positions = positions;
+    return positions;
+  }
+
+  private int bestDiscount(String sku, int quantity, long time) {
+    int best = 0;
+    for (int i : discountsBySku.getOrDefault(sku, NO_RULES)) {
+      if (quantity >= discountMinQuantities[i] && isActive(discountValidFrom[i],
+          discountValidTo[i], time)) {
+        best = Math.max(best, discountPercents[i]);
+      }
+    }
+    return best;
+  }
+
+  private void collectCandidates(Scratch scratch, Map<String, Product> products, long time) {
+    scratch.candidates = 0;
+    scratch.flatSize = 0;
+    for (int p = 0; p < scratch.positions; p++) {
+      Product product = products.get(scratch.skus[p]);
+      if (product.hasSpecialOffer() && product.offerQuantity() <= scratch.remaining[p]) {
+        scratch.ensureCandidates(1);
+        scratch.flatPositions[scratch.flatSize] = p;
+        scratch.flatQuantities[scratch.flatSize] = product.offerQuantity();
+        addCandidate(scratch, product.offerPrice(), 1);
+      }
+    }
+    scratch.nextEpoch(dealPrices.length);
+    for (int p = 0; p < scratch.positions; p++) {
+      for (int d : dealsBySku.getOrDefault(scratch.skus[p], NO_RULES)) {
+        if (scratch.seen[d] == scratch.epoch) {
+          continue;
+        }
+        scratch.seen[d] = scratch.epoch;
+        if (isActive(dealValidFrom[d], dealValidTo[d], time)) {
+          collectDeal(scratch, d);
+        }
+      }
+    }
+  }
+
+  private void collectDeal(Scratch scratch, int deal) {
+    String[] skus = dealSkus[deal];
+    scratch.ensureCandidates(skus.length);
+    for (int i = 0; i < skus.length; i++) {
+      int position = findPosition(scratch, skus[i]);
+      if (position < 0 || scratch.remaining[position] < dealQuantities[deal][i]) {
+        return;
+      }
+      scratch.flatPositions[scratch.flatSize + i] = position;
+      scratch.flatQuantities[scratch.flatSize + i] = dealQuantities[deal][i];
+    }
+    addCandidate(scratch, dealPrices[deal], skus.length);
+  }
+
+  private static int findPosition(Scratch scratch, String sku) {
+    for (int p = 0; p < scratch.positions; p++) {
+      if (scratch.skus[p].equals(sku)) {
+        return p;
+      }
+    }
+    return -1;
+  }
+
+  // Keeps a candidate staged at flatSize only if it saves money over regular unit prices. Each
+  // unit it covers is charged a share of the deal price proportional to its regular price; the
+  // cheapest share per position gives the search its lower bound.
+  private static void addCandidate(Scratch scratch, int price, int length) {
+    int start = scratch.flatSize;
+    long regular = 0;
+    for (int i = start; i < start + length; i++) {
+      regular += (long) scratch.flatQuantities[i] * scratch.unitPrices[scratch.flatPositions[i]];
+    }
+    if (price >= regular) {
+      return;
+    }
+    for (int i = start; i < start + length; i++) {
+      int position = scratch.flatPositions[i];
+      double share = (double) price * scratch.unitPrices[position] / regular;
+      scratch.minShares[position] = Math.min(scratch.minShares[position], share);
+    }
+    int c = scratch.candidates++;
+    scratch.candidateStarts[c] = start;
+    scratch.candidateLengths[c] = length;
+    scratch.candidatePrices[c] = price;
+    scratch.candidateSavings[c] = (double) (regular - price) / regular;
+    scratch.flatSize += length;
+  }
+
+  // SKUs only interact through multi-SKU deals, so the basket splits into independent groups
+  // whose optima add up. Positions and candidates are bucketed by group in a stable order, and
+  // candidates inside a group are ordered by relative saving so the first leaf is a good bound.
+  private static void groupCandidates(Scratch scratch) {
+    int positions = scratch.positions;
+    scratch.ensureGroups();
+    for (int p = 0; p < positions; p++) {
+      scratch.parents[p] = p;
+      scratch.groupOfRoot[p] = -1;
+    }
+    for (int c = 0; c < scratch.candidates; c++) {
+      int start = scratch.candidateStarts[c];
+      int first = find(scratch, scratch.flatPositions[start]);
+      for (int i = start + 1; i < start + scratch.candidateLengths[c]; i++) {
+        int root = find(scratch, scratch.flatPositions[i]);
+        if (root != first) {
+          scratch.parents[Math.max(root, first)] = Math.min(root, first);
+          first = Math.min(root, first);
+        }
+      }
+    }
+    int groups = 0;
+    for (int p = 0; p < positions; p++) {
+      int root = find(scratch, p);
+      if (scratch.groupOfRoot[root] < 0) {
+        scratch.groupOfRoot[root] = groups++;
+      }
+      scratch.groupOf[p] = scratch.groupOfRoot[root];
+    }
+    scratch.groups = groups;
+
+    Arrays.fill(scratch.positionStarts, 0, groups + 1, 0);
+    Arrays.fill(scratch.candidateGroupStarts, 0, groups + 1, 0);
+    for (int p = 0; p < positions; p++) {
+      scratch.positionStarts[scratch.groupOf[p] + 1]++;
+    }
+    for (int c = 0; c < scratch.candidates; c++) {
+      scratch.candidateGroupStarts[candidateGroup(scratch, c) + 1]++;
+    }
+    for (int g = 0; g < groups; g++) {
+      scratch.positionStarts[g + 1] += scratch.positionStarts[g];
+      scratch.candidateGroupStarts[g + 1] += scratch.candidateGroupStarts[g];
+      scratch.cursors[g] = scratch.positionStarts[g];
+    }
+    for (int p = 0; p < positions; p++) {
+      scratch.orderedPositions[scratch.cursors[scratch.groupOf[p]]++] = p;
+    }
+    for (int g = 0; g < groups; g++) {
+      scratch.cursors[g] = scratch.candidateGroupStarts[g];
+    }
+    for (int c = 0; c < scratch.candidates; c++) {
+      int g = candidateGroup(scratch, c);
+      int slot = scratch.cursors[g]++;
+      while (slot > scratch.candidateGroupStarts[g]
+          && scratch.candidateSavings[scratch.orderedCandidates[slot - 1]]
+          < scratch.candidateSavings[c]) {
+        scratch.orderedCandidates[slot] = scratch.orderedCandidates[slot - 1];
+        slot--;
+      }
+      scratch.orderedCandidates[slot] = c;
+    }
+  }
+
+  private static int find(Scratch scratch, int position) {
+    while (scratch.parents[position] != position) {
+      scratch.parents[position] = scratch.parents[scratch.parents[position]];
+      position = scratch.parents[position];
+    }
+    return position;
+  }
+
+  private static int candidateGroup(Scratch scratch, int candidate) {
+    return scratch.groupOf[scratch.flatPositions[scratch.candidateStarts[candidate]]];
+  }
+
+  private static int priceGroup(Scratch scratch, int group) {
+    int positionStart = scratch.positionStarts[group];
+    int positionEnd = scratch.positionStarts[group + 1];
+    int candidateStart = scratch.candidateGroupStarts[group];
+    int candidateEnd = scratch.candidateGroupStarts[group + 1];
+    if (positionEnd - positionStart == 1) {
+      return priceSingleSku(scratch, scratch.orderedPositions[positionStart], candidateStart,
+          candidateEnd);
+    }
+    scratch.positionStart = positionStart;
+    scratch.positionEnd = positionEnd;
+    scratch.candidateStart = candidateStart;
+    scratch.candidateEnd = candidateEnd;
+    scratch.best = leafTotal(scratch, 0);
+    for (int i = candidateStart; i < candidateEnd; i++) {
+      scratch.bestApplied[scratch.orderedCandidates[i]] = 0;
+    }
+    scratch.nodes = 0;
+    search(scratch, candidateStart, 0);
+    return scratch.best;
+  }
+
+  // Offers on a single SKU reduce to an unbounded knapsack over its quantity.
+  private static int priceSingleSku(Scratch scratch, int position, int candidateStart,
+      int candidateEnd) {
+    int quantity = scratch.remaining[position];
+    int unitPrice = scratch.unitPrices[position];
+    scratch.ensureQuantity(quantity);
+    int[] costs = scratch.costs;
+    int[] choices = scratch.choices;
+    costs[0] = 0;
+    for (int q = 1; q <= quantity; q++) {
+      int cost = costs[q - 1] + unitPrice;
+      int choice = -1;
+      for (int i = candidateStart; i < candidateEnd; i++) {
+        int candidate = scratch.orderedCandidates[i];
+        int size = scratch.flatQuantities[scratch.candidateStarts[candidate]];
+        if (size <= q && costs[q - size] + scratch.candidatePrices[candidate] < cost) {
+          cost = costs[q - size] + scratch.candidatePrices[candidate];
+          choice = candidate;
+        }
+      }
+      costs[q] = cost;
+      choices[q] = choice;
+    }
+    return costs[quantity];
+  }
+
+  // Walks the knapsack choices back from the full quantity; -1 marks a unit at its unit price.
+  private static void countSingleSkuApplications(Scratch scratch, int position,
+      int candidateStart, int candidateEnd) {
+    for (int i = candidateStart; i < candidateEnd; i++) {
+      scratch.bestApplied[scratch.orderedCandidates[i]] = 0;
+    }
+    int q = scratch.remaining[position];
+    while (q > 0) {
+      int candidate = scratch.choices[q];
+      if (candidate < 0) {
+        q--;
+      } else {
+        scratch.bestApplied[candidate]++;
+        q -= scratch.flatQuantities[scratch.candidateStarts[candidate]];
+      }
+    }
+  }
+
+  // Splits the price of every application over the covered units by largest remainder, so the
+  // shares are whole cents that add up to the price.
+  private static void chargeCandidate(Scratch scratch, int candidate) {
+    int applications = scratch.bestApplied[candidate];
+    if (applications == 0) {
+      return;
+    }
+    int start = scratch.candidateStarts[candidate];
+    int end = start + scratch.candidateLengths[candidate];
+    long price = (long) applications * scratch.candidatePrices[candidate];
+    long regular = 0;
+    for (int i = start; i < end; i++) {
+      regular += (long) scratch.flatQuantities[i] * scratch.unitPrices[scratch.flatPositions[i]];
+    }
+    long[] remainders = scratch.remainders;
+    long left = price;
+    for (int i = start; i < end; i++) {
+      int position = scratch.flatPositions[i];
+      long weight = (long) scratch.flatQuantities[i] * scratch.unitPrices[position];
+      scratch.charged[position] += (int) (price * weight / regular);
+      scratch.units[position] -= applications * scratch.flatQuantities[i];
+      remainders[i - start] = price * weight % regular;
+      left -= price * weight / regular;
+    }
+    for (; left > 0; left--) {
+      int largest = 0;
+      for (int i = 1; i < end - start; i++) {
+        if (remainders[i] > remainders[largest]) {
+          largest = i;
+        }
+      }
+      scratch.charged[scratch.flatPositions[start + largest]]++;
+      remainders[largest] = -1;
+    }
+  }
+
+  // Depth-first over a group's candidates, most applications first so the first leaf is the
+  // greedy answer; branches whose lower bound cannot beat the best total are cut. The node
+  // budget bounds pathological groups with a deterministic best effort.
+  private static void search(Scratch scratch, int index, int partial) {
+    if (++scratch.nodes > MAX_SEARCH_NODES || lowerBound(scratch, partial) > scratch.best - 1) {
+      return;
+    }
+    if (index == scratch.candidateEnd) {
+      int total = leafTotal(scratch, partial);
+      if (total < scratch.best) {
+        scratch.best = total;
+        for (int i = scratch.candidateStart; i < scratch.candidateEnd; i++) {
+          int candidate = scratch.orderedCandidates[i];
+          scratch.bestApplied[candidate] = scratch.applied[candidate];
+        }
+      }
+      return;
+    }
+    int candidate = scratch.orderedCandidates[index];
+    int start = scratch.candidateStarts[candidate];
+    int end = start + scratch.candidateLengths[candidate];
+    int applications = Integer.MAX_VALUE;
+    for (int i = start; i < end; i++) {
+      applications = Math.min(applications,
+          scratch.remaining[scratch.flatPositions[i]] / scratch.flatQuantities[i]);
+    }
+    for (int i = start; i < end; i++) {
+      scratch.remaining[scratch.flatPositions[i]] -= applications * scratch.flatQuantities[i];
+    }
+    for (int k = applications; ; k--) {
+      scratch.applied[candidate] = k;
+      search(scratch, index + 1, partial + k * scratch.candidatePrices[candidate]);
+      if (k == 0) {
+        break;
+      }
+      for (int i = start; i < end; i++) {
+        scratch.remaining[scratch.flatPositions[i]] += scratch.flatQuantities[i];
+      }
+    }
+  }
+
+  private static int leafTotal(Scratch scratch, int partial) {
+    int total = partial;
+    for (int i = scratch.positionStart; i < scratch.positionEnd; i++) {
+      int p = scratch.orderedPositions[i];
+      total += scratch.remaining[p] * scratch.unitPrices[p];
+    }
+    return total;
+  }
+
+  private static double lowerBound(Scratch scratch, int partial) {
+    double bound = partial;
+    for (int i = scratch.positionStart; i < scratch.positionEnd; i++) {
+      int p = scratch.orderedPositions[i];
+      bound += scratch.remaining[p] * scratch.minShares[p];
+    }
+    // Absorbs rounding in the proportional shares so an equal-cost branch is never kept alive.
+    return bound - 1e-6;
+  }
+
+  private static boolean isActive(long validFrom, long validTo, long time) {
+    return validFrom <= time && time < validTo;
+  }
+
+  private static boolean isValid(PricingRule rule) {
+    if (rule.type() == null || rule.items() == null || rule.items().isEmpty()
+        || rule.items().values().stream().anyMatch(quantity -> quantity == null || quantity < 1)) {
+      return false;
+    }
+    if (rule.isDeal()) {
+      return rule.price() != null && rule.price() >= 0
+          && (rule.type() == PromotionType.BUNDLE || rule.items().size() == 1);
+    }
+    return rule.percent() != null && rule.percent() > 0 && rule.percent() <= 100;
+  }
+
+  private static long validFrom(PricingRule rule) {
+    return rule.validFrom() == null ? Long.MIN_VALUE : rule.validFrom().toEpochMilli();
+  }
+
+  private static long validTo(PricingRule rule) {
+    return rule.validTo() == null ? Long.MAX_VALUE : rule.validTo().toEpochMilli();
+  }
+
+  private static Map<String, int[]> toIndex(Map<String, List<Integer>> index) {
+    Map<String, int[]> compiled = new HashMap<>(index.size() * 2);
+    index.forEach((sku, rules) ->
+        compiled.put(sku, rules.stream().mapToInt(Integer::intValue).toArray()));
+    return Map.copyOf(compiled);
+  }
+
+  private static final class Scratch {
+
+    private String[] skus = new String[16];
+    private int[] remaining = new int[16];
+    private int[] unitPrices = new int[16];
+    private double[] minShares = new double[16];
+    private int[] charged = new int[16];
+    private int[] units = new int[16];
+    private int positions;
+
+    private int[] candidateStarts = new int[32];
+    private int[] candidateLengths = new int[32];
+    private int[] candidatePrices = new int[32];
+    private double[] candidateSavings = new double[32];
+    private int[] applied = new int[32];
+    private int[] bestApplied = new int[32];
+    private int[] flatPositions = new int[64];
+    private int[] flatQuantities = new int[64];
+    private long[] remainders = new long[16];
+    private int candidates;
+    private int flatSize;
+
+    private int[] parents = new int[16];
+    private int[] groupOfRoot = new int[16];
+    private int[] groupOf = new int[16];
+    private int[] cursors = new int[16];
+    private int[] positionStarts = new int[17];
+    private int[] orderedPositions = new int[16];
+    private int[] candidateGroupStarts = new int[17];
+    private int[] orderedCandidates = new int[32];
+    private int groups;
+
+    private int[] costs = new int[16];
+    private int[] choices = new int[16];
+    private int[] seen = new int[0];
+    private int epoch;
+
+    private int positionStart;
+    private int positionEnd;
+    private int candidateStart;
+    private int candidateEnd;
+    private int best;
+    private int nodes;
+
+    private void ensurePositions(int size) {
+      if (skus.length < size) {
+        int capacity = Math.max(size, skus.length * 2);
+        skus = new String[capacity];
+        remaining = new int[capacity];
+        unitPrices = new int[capacity];
+        minShares = new double[capacity];
+        charged = new int[capacity];
+        units = new int[capacity];
+      }
+    }
+
+    private void ensureCandidates(int length) {
+      if (candidates == candidateStarts.length) {
+        candidateStarts = Arrays.copyOf(candidateStarts, candidates * 2);
+        candidateLengths = Arrays.copyOf(candidateLengths, candidates * 2);
+        candidatePrices = Arrays.copyOf(candidatePrices, candidates * 2);
+        candidateSavings = Arrays.copyOf(candidateSavings, candidates * 2);
+        applied = new int[candidates * 2];
+        bestApplied = new int[candidates * 2];
+      }
+      if (flatSize + length > flatPositions.length) {
+        int capacity = Math.max(flatSize + length, flatPositions.length * 2);
+        flatPositions = Arrays.copyOf(flatPositions, capacity);
+        flatQuantities = Arrays.copyOf(flatQuantities, capacity);
+      }
+      if (remainders.length < length) {
+        remainders = new long[Math.max(length, remainders.length * 2)];
+      }
+    }
+
+    private void ensureGroups() {
+      if (parents.length < positions) {
+        int capacity = skus.length;
+        parents = new int[capacity];
+        groupOfRoot = new int[capacity];
+        groupOf = new int[capacity];
+        cursors = new int[capacity];
+        positionStarts = new int[capacity + 1];
+        orderedPositions = new int[capacity];
+        candidateGroupStarts = new int[capacity + 1];
+      }
+      if (orderedCandidates.length < candidates) {
+        orderedCandidates = new int[candidateStarts.length];
+      }
+    }
+
+    private void ensureQuantity(int quantity) {
+      if (costs.length <= quantity) {
+        costs = new int[Math.max(quantity + 1, costs.length * 2)];
+        choices = new int[costs.length];
+      }
+    }
+
+    private void nextEpoch(int deals) {
+      if (seen.length < deals || epoch == Integer.MAX_VALUE) {
+        seen = new int[Math.max(deals, seen.length)];
+        epoch = 0;
+      }
+      epoch++;
+    }
+  }
+}
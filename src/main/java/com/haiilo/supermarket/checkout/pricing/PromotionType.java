@@ -0,0 +1,7 @@
+package com.haiilo.supermarket.checkout.pricing;
+
+public enum PromotionType {
+  MULTIBUY,
+  BUNDLE,
+  PERCENTAGE
+}
@@ -0,0 +1,27 @@
+package com.haiilo.supermarket.checkout.repository;
+
+import com.haiilo.supermarket.checkout.domain.Basket;
+import com.haiilo.supermarket.checkout.domain.BasketUpdate;
+import com.haiilo.supermarket.checkout.domain.Product;
+import java.util.Collection;
+import java.util.Map;
+import reactor.core.publisher.Mono;
+
+// Basket storage. Every update prices the changed lines with the given products, refreshes the
+// basket TTL and reports PRICE_CHANGED when a line was priced at another version before.
+public interface BasketRepository {
+
+  Mono<Basket> create(String basketId);
+
+  Mono<Basket> findById(String basketId);
+
+  Mono<BasketUpdate> updateItem(String basketId, Product product, int quantityDelta);
+
+  // Applies every delta or, if one would take a quantity below zero, none of them.
+  Mono<BasketUpdate> updateItems(String basketId, Map<String, Integer> quantityDeltas,
+      Map<String, Product> products);
+
+  Mono<BasketUpdate> reprice(String basketId, Collection<Product> products);
+
+  Mono<Boolean> delete(String basketId);
+}
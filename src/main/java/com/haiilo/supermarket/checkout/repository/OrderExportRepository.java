@@ -0,0 +1,102 @@
+package com.haiilo.supermarket.checkout.repository;
+
+import com.haiilo.supermarket.checkout.domain.OrderItem;
+import com.haiilo.supermarket.checkout.dto.OrderDTO;
+import com.haiilo.supermarket.checkout.util.MetricsHelper;
+import java.time.Instant;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@Repository
+public class OrderExportRepository {
+
+  // One page of orders with all their lines in a single round trip; the (created_at, id)
+  // keyset keeps every page an index range scan no matter how deep the export is. The range on
+  // the lines lets the planner skip the monthly partitions outside the export.
+  private static final String SELECT_ORDER_PAGE = """
+      WITH page AS (
+          SELECT id, final_price, created_at
+          FROM orders
+          WHERE (created_at, id) > (:afterCreatedAt, :afterId) AND created_at < :to
+          ORDER BY created_at, id
+          LIMIT :limit
+      )
+      SELECT p.id AS order_id, p.final_price, p.created_at,
+          i.id AS item_id, i.product_sku, i.quantity, i.subtotal, i.unit_price,
+          i.offer_quantity, i.offer_price, i.price_version
+      FROM page p
+      LEFT JOIN order_items i ON i.created_at = p.created_at AND i.order_id = p.id
+          AND i.created_at >= :afterCreatedAt AND i.created_at < :to
+      ORDER BY p.created_at, p.id, i.id
+      """;
+
+  private final DatabaseClient databaseClient;
+  private final MetricsHelper metricsHelper;
+  private final int pageSize;
+
+  public OrderExportRepository(DatabaseClient databaseClient, MetricsHelper metricsHelper,
+      @Value("${checkout.orders.export.page-size:500}") int pageSize) {
+    this.databaseClient = databaseClient;
+    this.metricsHelper = metricsHelper;
+    this.pageSize = pageSize;
+  }
+
+  // Orders with (created_at, id) after the given cursor and created before 'to', oldest first.
+  // The next page is only queried once the previous one has been consumed, so at most one
+  // page is held in memory.
+  public Flux<OrderDTO> streamOrders(Instant afterCreatedAt, long afterId, Instant to) {
+    return findPage(afterCreatedAt, afterId, to)
+        .expand(page -> {
+          if (page.size() < pageSize) {
+            return Mono.empty();
+          }
+          OrderDTO last = page.get(page.size() - 1);
+          return findPage(last.createdAt(), last.id(), to);
+        })
+        .flatMapIterable(page -> page, 1);
+  }
+
+  private Mono<List<OrderDTO>> findPage(Instant afterCreatedAt, long afterId, Instant to) {
+    return metricsHelper.timed("order.db.export-page", databaseClient.sql(SELECT_ORDER_PAGE)
+        .bind("afterCreatedAt", afterCreatedAt)
+        .bind("afterId", afterId)
+        .bind("to", to)
+        .bind("limit", pageSize)
+        .map((row, metadata) -> {
+          Long itemId = row.get("item_id", Long.class);
+          return OrderDTO.builder()
+              .id(row.get("order_id", Long.class))
+              .finalPrice(row.get("final_price", Integer.class))
+              .createdAt(row.get("created_at", Instant.class))
+              .items(itemId == null ? List.of() : List.of(OrderItem.builder()
+                  .id(itemId)
+                  .orderId(row.get("order_id", Long.class))
+                  .productSku(row.get("product_sku", String.class))
+                  .quantity(row.get("quantity", Integer.class))
+                  .subtotal(row.get("subtotal", Integer.class))
+                  .unitPrice(row.get("unit_price", Integer.class))
+                  .offerQuantity(row.get("offer_quantity", Integer.class))
+                  .offerPrice(row.get("offer_price", Integer.class))
+                  .priceVersion(row.get("price_version", Long.class))
+                  .build()))
+              .build();
+        })
+        .all()
+        .bufferUntilChanged(OrderDTO::id)
+        .map(OrderExportRepository::merge)
+        .collectList());
+  }
+
+  private static OrderDTO merge(List<OrderDTO> rows) {
+    OrderDTO header = rows.get(0);
+    List<OrderItem> items = rows.stream().flatMap(row -> row.items().stream())
+        .toList();
+    return OrderDTO.builder().id(header.id()).items(items)
+        .finalPrice(header.finalPrice()).createdAt(header.createdAt())
+        .build();
+  }
+}
@@ -0,0 +1,108 @@
+package com.haiilo.supermarket.checkout.repository;
+
+import static com.haiilo.supermarket.checkout.util.AppConstants.BASKET_TTL;
+import static com.haiilo.supermarket.checkout.util.AppConstants.ORDER_PARTITIONS_ENABLED;
+
+import com.haiilo.supermarket.checkout.util.MetricsHelper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Rolls the monthly order partitions forward so the upcoming months always exist before the
+// first checkout lands in them, and prunes checkout keys that no retry can use any more.
+// Started after the migrations have run.
+@Slf4j
+@Component
+@DependsOnDatabaseInitialization
+@ConditionalOnProperty(name = ORDER_PARTITIONS_ENABLED, havingValue = "true",
+    matchIfMissing = true)
+public class OrderPartitionMaintainer {
+
+  private static final String CREATE_PARTITIONS = """
+      SELECT create_order_partitions(LOCALTIMESTAMP,
+          LOCALTIMESTAMP + make_interval(months => :monthsAhead)) AS created
+      """;
+
+  private static final String DELETE_CHECKOUT_KEYS =
+      "DELETE FROM checkout_keys WHERE created_at < :before";
+
+  private final DatabaseClient databaseClient;
+  private final MetricsHelper metricsHelper;
+  private final int monthsAhead;
+  private final Duration checkoutKeyRetention;
+  private final Duration interval;
+  private Disposable maintainer;
+
+  public OrderPartitionMaintainer(DatabaseClient databaseClient, MetricsHelper metricsHelper,
+      @Value("${checkout.orders.partitions.months-ahead:3}") int monthsAhead,
+      @Value("${checkout.orders.partitions.checkout-key-retention:P7D}")
+      Duration checkoutKeyRetention,
+      @Value("${checkout.orders.partitions.interval:PT1H}") Duration interval) {
+    this.databaseClient = databaseClient;
+    this.metricsHelper = metricsHelper;
+    this.monthsAhead = Math.max(1, monthsAhead);
+    // A checkout can be retried for as long as its basket or write-behind confirmation lives.
+    this.checkoutKeyRetention = checkoutKeyRetention.compareTo(BASKET_TTL) < 0
+        ? BASKET_TTL : checkoutKeyRetention;
+    this.interval = interval;
+  }
+
+  @PostConstruct
+  void start() {
+    maintainer = Flux.interval(Duration.ZERO, interval)
+        .onBackpressureDrop()
+        .concatMap(tick -> maintain()
+            .onErrorResume(e -> {
+              log.error("Order partition maintenance failed, retrying in {}.", interval, e);
+              return Mono.empty();
+            }))
+        .subscribe();
+  }
+
+  @PreDestroy
+  void stop() {
+    if (maintainer != null) {
+      maintainer.dispose();
+    }
+  }
+
+  public Mono<Void> maintain() {
+    return createPartitions()
+        .then(Mono.defer(this::pruneCheckoutKeys))
+        .then();
+  }
+
+  // Months that already exist are skipped, so every instance can run this concurrently.
+  Mono<Integer> createPartitions() {
+    return metricsHelper.timed("order.db.create-partitions", databaseClient.sql(CREATE_PARTITIONS)
+            .bind("monthsAhead", monthsAhead)
+            .map((row, metadata) -> row.get("created", Integer.class))
+            .one())
+        .doOnNext(created -> {
+          if (created > 0) {
+            log.info("Created order partitions for {} months.", created);
+          }
+        });
+  }
+
+  Mono<Long> pruneCheckoutKeys() {
+    Instant before = Instant.now().minus(checkoutKeyRetention);
+    return metricsHelper.timed("order.db.prune-checkout-keys",
+            databaseClient.sql(DELETE_CHECKOUT_KEYS)
+                .bind("before", before)
+                .fetch()
+                .rowsUpdated())
+        .doOnNext(pruned -> log.debug("Pruned {} checkout keys created before {}.", pruned,
+            before));
+  }
+}
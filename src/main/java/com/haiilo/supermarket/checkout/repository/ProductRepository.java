@@ -1,11 +1,11 @@
 package com.haiilo.supermarket.checkout.repository;
 
 import com.haiilo.supermarket.checkout.domain.Product;
-import org.springframework.data.r2dbc.repository.Modifying;
 import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.data.r2dbc.repository.R2dbcRepository;
 import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @Repository
@@ -14,9 +14,43 @@ public interface ProductRepository extends R2dbcRepository<Product, Long> {
   Mono<Product> findBySku(String sku);
   Mono<Void> deleteBySku(String sku);
 
-  @Modifying
-  @Query("UPDATE products SET sku = :#{#product.name}, " +
+  @Query("SELECT * FROM products WHERE sku = ANY(:skus)")
+  Flux<Product> findAllBySkus(@Param("skus") String[] skus);
+
+  @Query("SELECT * FROM products WHERE id > :afterId ORDER BY id LIMIT :limit")
+  Flux<Product> findPageAfter(@Param("afterId") long afterId, @Param("limit") int limit);
+
+  // Rows whose values did not change are skipped, so only real changes are returned and need
+  // to be written to the cache. A new price version is drawn only when a price changed.
+  @Query("INSERT INTO products (sku, name, unit_price, offer_quantity, offer_price) " +
+      "SELECT * FROM unnest(CAST(:skus AS VARCHAR[]), CAST(:names AS VARCHAR[]), " +
+      "CAST(:unitPrices AS INTEGER[]), CAST(:offerQuantities AS INTEGER[]), " +
+      "CAST(:offerPrices AS INTEGER[])) " +
+      "ON CONFLICT (sku) DO UPDATE SET name = EXCLUDED.name, unit_price = EXCLUDED.unit_price, " +
+      "offer_quantity = EXCLUDED.offer_quantity, offer_price = EXCLUDED.offer_price, " +
+      "price_version = CASE WHEN " +
+      "(products.unit_price, products.offer_quantity, products.offer_price) IS DISTINCT FROM " +
+      "(EXCLUDED.unit_price, EXCLUDED.offer_quantity, EXCLUDED.offer_price) " +
+      "THEN nextval('product_price_versions') ELSE products.price_version END " +
+      "WHERE (products.name, products.unit_price, products.offer_quantity, products.offer_price) " +
+      "IS DISTINCT FROM (EXCLUDED.name, EXCLUDED.unit_price, EXCLUDED.offer_quantity, " +
+      "EXCLUDED.offer_price) " +
+      "RETURNING *")
+  Flux<Product> upsertAll(@Param("skus") String[] skus, @Param("names") String[] names,
+      @Param("unitPrices") Integer[] unitPrices, @Param("offerQuantities") Integer[] offerQuantities,
+      @Param("offerPrices") Integer[] offerPrices);
+
+  @Query("INSERT INTO products (sku, name, unit_price, offer_quantity, offer_price) " +
+      "VALUES (:#{#product.sku}, :#{#product.name}, :#{#product.unitPrice}, " +
+      ":#{#product.offerQuantity}, :#{#product.offerPrice}) RETURNING *")
+  Mono<Product> insert(@Param("product") Product product);
+
+  @Query("UPDATE products SET name = :#{#product.name}, " +
       "unit_price = :#{#product.unitPrice}, offer_quantity = :#{#product.offerQuantity}, " +
-      "offer_price = :#{#product.offerPrice} WHERE sku = :#{#product.sku}")
-  Mono<Boolean> updateBySku(@Param("product") Product product);
+      "offer_price = :#{#product.offerPrice}, price_version = CASE WHEN " +
+      "(unit_price, offer_quantity, offer_price) IS DISTINCT FROM " +
+      "(:#{#product.unitPrice}, :#{#product.offerQuantity}, :#{#product.offerPrice}) " +
+      "THEN nextval('product_price_versions') ELSE price_version END " +
+      "WHERE sku = :#{#product.sku} RETURNING *")
+  Mono<Product> updateBySku(@Param("product") Product product);
 }
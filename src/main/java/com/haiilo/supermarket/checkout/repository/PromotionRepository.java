@@ -0,0 +1,52 @@
+package com.haiilo.supermarket.checkout.repository;
+
+import com.haiilo.supermarket.checkout.pricing.PricingRule;
+import com.haiilo.supermarket.checkout.pricing.PromotionType;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.RequiredArgsConstructor;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+@Repository
+@RequiredArgsConstructor
+public class PromotionRepository {
+
+  private static final String SELECT_CURRENT_PROMOTIONS = """
+      SELECT p.id, p.type, p.price, p.percent, p.valid_from, p.valid_to,
+          i.product_sku, i.quantity
+      FROM promotions p
+      JOIN promotion_items i ON i.promotion_id = p.id
+      WHERE p.active AND (p.valid_to IS NULL OR p.valid_to > :now)
+      ORDER BY p.id
+      """;
+
+  private final DatabaseClient databaseClient;
+
+  public Flux<PricingRule> findCurrent(Instant now) {
+    return databaseClient.sql(SELECT_CURRENT_PROMOTIONS)
+        .bind("now", now)
+        .map((row, metadata) -> new PricingRule(
+            row.get("id", Long.class),
+            PromotionType.valueOf(row.get("type", String.class)),
+            Map.of(row.get("product_sku", String.class), row.get("quantity", Integer.class)),
+            row.get("price", Integer.class),
+            row.get("percent", Integer.class),
+            row.get("valid_from", Instant.class),
+            row.get("valid_to", Instant.class)))
+        .all()
+        .bufferUntilChanged(PricingRule::id)
+        .map(PromotionRepository::merge);
+  }
+
+  private static PricingRule merge(List<PricingRule> rows) {
+    PricingRule header = rows.get(0);
+    Map<String, Integer> items = new HashMap<>();
+    rows.forEach(row -> items.putAll(row.items()));
+    return new PricingRule(header.id(), header.type(), Map.copyOf(items), header.price(),
+        header.percent(), header.validFrom(), header.validTo());
+  }
+}
@@ -0,0 +1,257 @@
+package com.haiilo.supermarket.checkout.repository;
+
+import static com.haiilo.supermarket.checkout.util.AppConstants.BASKET_STORE;
+import static com.haiilo.supermarket.checkout.util.AppConstants.BASKET_TTL;
+import static com.haiilo.supermarket.checkout.util.AppConstants.MAX_BASKET_TOTAL;
+import static com.haiilo.supermarket.checkout.util.AppConstants.MAX_LINE_QUANTITY;
+
+import com.haiilo.supermarket.checkout.activity.ActiveBasketIndex;
+import com.haiilo.supermarket.checkout.domain.Basket;
+import com.haiilo.supermarket.checkout.domain.BasketUpdate;
+import com.haiilo.supermarket.checkout.domain.BasketUpdate.Status;
+import com.haiilo.supermarket.checkout.domain.PricedLine;
+import com.haiilo.supermarket.checkout.domain.Product;
+import com.haiilo.supermarket.checkout.util.MetricsHelper;
+import com.haiilo.supermarket.checkout.util.RedisKeys;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = BASKET_STORE, havingValue = "redis", matchIfMissing = true)
+public class RedisBasketRepository implements BasketRepository {
+
+  static final String TOTAL_FIELD = "total";
+  static final String STALE_FIELD = "stale";
+  static final String QUANTITY_PREFIX = "q:";
+  static final String SUBTOTAL_PREFIX = "s:";
+  static final String VERSION_PREFIX = "v:";
+
+  private static final RedisScript<String> CREATE_SCRIPT =
+      RedisScript.of(new ClassPathResource("scripts/basket-create.lua"), String.class);
+  private static final RedisScript<String> UPDATE_ITEM_SCRIPT =
+      RedisScript.of(new ClassPathResource("scripts/basket-update-item.lua"), String.class);
+  private static final RedisScript<String> UPDATE_ITEMS_SCRIPT =
+      RedisScript.of(new ClassPathResource("scripts/basket-update-items.lua"), String.class);
+  private static final RedisScript<String> REPRICE_SCRIPT =
+      RedisScript.of(new ClassPathResource("scripts/basket-reprice.lua"), String.class);
+  private static final RedisScript<Long> MIGRATE_KEY_SCRIPT =
+      RedisScript.of(new ClassPathResource("scripts/basket-migrate-key.lua"), Long.class);
+
+  private final ReactiveStringRedisTemplate stringRedisTemplate;
+  private final ReactiveRedisTemplate<String, Basket> basketRedisTemplate;
+  private final MetricsHelper metricsHelper;
+  private final RedisKeys redisKeys;
+  private final ActiveBasketIndex activeBasketIndex;
+
+  @Override
+  public Mono<Basket> create(String basketId) {
+    return execute("basket.redis.create", CREATE_SCRIPT, basketId, List.of(ttlSeconds()))
+        .doOnNext(update -> activeBasketIndex.touch(basketId, update.lines()))
+        .thenReturn(new Basket(basketId));
+  }
+
+  @Override
+  public Mono<Basket> findById(String basketId) {
+    return metricsHelper.timed("basket.redis.find",
+            stringRedisTemplate.<String, String>opsForHash().entries(redisKeys.basket(basketId))
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue))
+        .filter(fields -> !fields.isEmpty())
+        .map(fields -> toBasket(basketId, fields))
+        .switchIfEmpty(Mono.defer(() -> migrateLegacyBasket(basketId)
+            .flatMap(migrated -> findById(basketId))));
+  }
+
+  @Override
+  public Mono<BasketUpdate> updateItem(String basketId, Product product, int quantityDelta) {
+    List<String> args = updateItemArgs(product, quantityDelta);
+    return execute("basket.redis.update", UPDATE_ITEM_SCRIPT, basketId, args)
+        .flatMap(update -> update.status() != Status.BASKET_NOT_FOUND
+            ? Mono.just(update)
+            : migrateLegacyBasket(basketId)
+                .flatMap(migrated -> execute("basket.redis.update", UPDATE_ITEM_SCRIPT, basketId,
+                    args))
+                .defaultIfEmpty(update))
+        .doOnNext(update -> indexed(basketId, update));
+  }
+
+  @Override
+  public Mono<BasketUpdate> updateItems(String basketId, Map<String, Integer> quantityDeltas,
+      Map<String, Product> products) {
+    List<String> args = updateItemsArgs(quantityDeltas, products);
+    return execute("basket.redis.update-batch", UPDATE_ITEMS_SCRIPT, basketId, args)
+        .flatMap(update -> update.status() != Status.BASKET_NOT_FOUND
+            ? Mono.just(update)
+            : migrateLegacyBasket(basketId)
+                .flatMap(migrated -> execute("basket.redis.update-batch", UPDATE_ITEMS_SCRIPT,
+                    basketId, args))
+                .defaultIfEmpty(update))
+        .doOnNext(update -> indexed(basketId, update));
+  }
+
+  @Override
+  public Mono<BasketUpdate> reprice(String basketId, Collection<Product> products) {
+    return execute("basket.redis.reprice", REPRICE_SCRIPT, basketId, repriceArgs(products))
+        .doOnNext(update -> indexed(basketId, update));
+  }
+
+  @Override
+  public Mono<Boolean> delete(String basketId) {
+    return metricsHelper.timed("basket.redis.delete",
+            stringRedisTemplate.delete(redisKeys.basketKeys(basketId).toArray(String[]::new)))
+        .doOnNext(deleted -> activeBasketIndex.remove(basketId))
+        .map(deleted -> deleted > 0);
+  }
+
+  private Mono<BasketUpdate> execute(String stage, RedisScript<String> script, String basketId,
+      List<String> args) {
+    return metricsHelper.timed(stage,
+            stringRedisTemplate.execute(script, List.of(redisKeys.basket(basketId)), args).next())
+        .map(BasketUpdate::parse);
+  }
+
+  // Only changes that were applied count as activity.
+  private void indexed(String basketId, BasketUpdate update) {
+    if (update.isApplied()) {
+      activeBasketIndex.touch(basketId, update.lines());
+    }
+  }
+
+  // Completes empty when the basket exists under none of the keys used by earlier versions.
+  private Mono<Boolean> migrateLegacyBasket(String basketId) {
+    if (!redisKeys.legacyKeys()) {
+      return Mono.empty();
+    }
+    String key = redisKeys.basket(basketId);
+    return stringRedisTemplate.execute(MIGRATE_KEY_SCRIPT,
+            List.of(key, RedisKeys.legacyBasket(basketId)), List.of())
+        .next()
+        .filter(moved -> moved == 1)
+        .doOnNext(moved -> log.info("Basket with Id '{}' moved to key '{}'.", basketId, key))
+        .map(moved -> true)
+        .switchIfEmpty(Mono.defer(() -> migrateLegacyValue(basketId)));
+  }
+
+  private Mono<Boolean> migrateLegacyValue(String basketId) {
+    String key = redisKeys.basket(basketId);
+    return basketRedisTemplate.opsForValue().get(RedisKeys.legacyBasketValue(basketId))
+        .onErrorResume(SerializationException.class, e -> {
+          log.warn("Legacy basket with Id '{}' could not be read, ignoring it.", basketId, e);
+          return Mono.empty();
+        })
+        .flatMap(legacy -> stringRedisTemplate.<String, String>opsForHash()
+            .putAll(key, toFields(legacy))
+            .then(stringRedisTemplate.expire(key, BASKET_TTL))
+            .then(basketRedisTemplate.opsForValue().delete(RedisKeys.legacyBasketValue(basketId)))
+            .doOnSuccess(v -> log.info("Basket with Id '{}' migrated to hash storage.", basketId))
+            .thenReturn(true));
+  }
+
+  public static Basket toBasket(String basketId, Map<String, String> fields) {
+    Basket basket = new Basket(basketId);
+    Map<String, Integer> subtotals = new HashMap<>();
+    Map<String, Long> versions = new HashMap<>();
+    fields.forEach((field, value) -> {
+      if (TOTAL_FIELD.equals(field)) {
+        basket.setTotalPrice(Integer.parseInt(value));
+      } else if (field.startsWith(QUANTITY_PREFIX)) {
+        basket.getItems().put(field.substring(QUANTITY_PREFIX.length()), Integer.parseInt(value));
+      } else if (field.startsWith(SUBTOTAL_PREFIX)) {
+        subtotals.put(field.substring(SUBTOTAL_PREFIX.length()), Integer.parseInt(value));
+      } else if (field.startsWith(VERSION_PREFIX)) {
+        versions.put(field.substring(VERSION_PREFIX.length()), Long.parseLong(value));
+      }
+    });
+    subtotals.forEach((sku, subtotal) -> {
+      Long version = versions.get(sku);
+      if (version != null && !fields.containsKey(STALE_FIELD)) {
+        basket.getLines().put(sku, new PricedLine(subtotal, version));
+      }
+    });
+    return basket;
+  }
+
+  // Script arguments are shared with the blocking execution mode so both run the same scripts
+  // with the same inputs.
+  public static List<String> updateItemArgs(Product product, int quantityDelta) {
+    return List.of(product.sku(), String.valueOf(quantityDelta),
+        String.valueOf(product.unitPrice()), offerQuantity(product), offerPrice(product),
+        String.valueOf(product.priceVersion()), ttlSeconds(), String.valueOf(MAX_LINE_QUANTITY),
+        String.valueOf(MAX_BASKET_TOTAL));
+  }
+
+  public static List<String> updateItemsArgs(Map<String, Integer> quantityDeltas,
+      Map<String, Product> products) {
+    List<String> args = new ArrayList<>(3 + quantityDeltas.size() * 6);
+    args.add(ttlSeconds());
+    args.add(String.valueOf(MAX_LINE_QUANTITY));
+    args.add(String.valueOf(MAX_BASKET_TOTAL));
+    quantityDeltas.forEach((sku, quantityDelta) -> {
+      Product product = products.get(sku);
+      args.add(sku);
+      args.add(String.valueOf(quantityDelta));
+      args.add(String.valueOf(product.unitPrice()));
+      args.add(offerQuantity(product));
+      args.add(offerPrice(product));
+      args.add(String.valueOf(product.priceVersion()));
+    });
+    return args;
+  }
+
+  public static List<String> repriceArgs(Collection<Product> products) {
+    List<String> args = new ArrayList<>(1 + products.size() * 5);
+    args.add(ttlSeconds());
+    for (Product product : products) {
+      args.add(product.sku());
+      args.add(String.valueOf(product.unitPrice()));
+      args.add(offerQuantity(product));
+      args.add(offerPrice(product));
+      args.add(String.valueOf(product.priceVersion()));
+    }
+    return args;
+  }
+
+  private static Map<String, String> toFields(Basket basket) {
+    Map<String, String> fields = new HashMap<>();
+    boolean priced = basket.getLines().keySet().containsAll(basket.getItems().keySet());
+    fields.put(TOTAL_FIELD, String.valueOf(priced ? basket.getTotalPrice() : 0));
+    if (!priced) {
+      fields.put(STALE_FIELD, "1");
+    }
+    basket.getItems().forEach((sku, quantity) -> {
+      fields.put(QUANTITY_PREFIX + sku, String.valueOf(quantity));
+      PricedLine line = basket.getLines().get(sku);
+      if (priced && line != null) {
+        fields.put(SUBTOTAL_PREFIX + sku, String.valueOf(line.subtotal()));
+        fields.put(VERSION_PREFIX + sku, String.valueOf(line.priceVersion()));
+      }
+    });
+    return fields;
+  }
+
+  public static String ttlSeconds() {
+    return String.valueOf(BASKET_TTL.toSeconds());
+  }
+
+  private static String offerQuantity(Product product) {
+    return String.valueOf(product.hasSpecialOffer() ? product.offerQuantity() : 0);
+  }
+
+  private static String offerPrice(Product product) {
+    return String.valueOf(product.hasSpecialOffer() ? product.offerPrice() : 0);
+  }
+}
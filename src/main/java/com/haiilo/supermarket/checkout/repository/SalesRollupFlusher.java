@@ -0,0 +1,61 @@
+package com.haiilo.supermarket.checkout.repository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Drains the lines checkouts queue for the sales rollups, so the rollups trail the orders by
+// about one interval. Every instance runs one; batches never overlap between them.
+@Slf4j
+@Component
+@DependsOnDatabaseInitialization
+public class SalesRollupFlusher {
+
+  private final SalesRollupRepository salesRollupRepository;
+  private final int batchSize;
+  private final Duration interval;
+  private Disposable flusher;
+
+  public SalesRollupFlusher(SalesRollupRepository salesRollupRepository,
+      @Value("${checkout.sales.flush-batch-size:5000}") int batchSize,
+      @Value("${checkout.sales.flush-interval:PT1S}") Duration interval) {
+    this.salesRollupRepository = salesRollupRepository;
+    this.batchSize = batchSize;
+    this.interval = interval;
+  }
+
+  @PostConstruct
+  void start() {
+    flusher = Flux.interval(interval, interval)
+        .onBackpressureDrop()
+        .concatMap(tick -> flush()
+            .onErrorResume(e -> {
+              log.error("Sales rollup flush failed, retrying in {}.", interval, e);
+              return Mono.empty();
+            }))
+        .subscribe();
+  }
+
+  @PreDestroy
+  void stop() {
+    if (flusher != null) {
+      flusher.dispose();
+    }
+  }
+
+  // Keeps flushing while batches come back full, so a backlog is worked off in one run.
+  public Mono<Long> flush() {
+    return salesRollupRepository.flush(batchSize)
+        .expand(flushed -> flushed < batchSize
+            ? Mono.empty()
+            : salesRollupRepository.flush(batchSize))
+        .reduce(0L, Long::sum);
+  }
+}
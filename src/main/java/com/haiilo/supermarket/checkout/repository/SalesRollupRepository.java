@@ -0,0 +1,211 @@
+package com.haiilo.supermarket.checkout.repository;
+
+import com.haiilo.supermarket.checkout.domain.SalesGranularity;
+import com.haiilo.supermarket.checkout.dto.SalesBucketDTO;
+import com.haiilo.supermarket.checkout.util.MetricsHelper;
+import java.time.Instant;
+import java.time.ZoneId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@Repository
+public class SalesRollupRepository {
+
+  // Appended to an order insert that exposes new_lines(product_sku, created_at, quantity,
+  // subtotal). Checkouts only append to the queue, so they never wait on each other for a
+  // rollup row; the line subtotals already carry their share of any promotion.
+  public static final String QUEUE_ROLLUPS = """
+      queued AS (
+          INSERT INTO sales_rollup_queue (product_sku, created_at, units, revenue)
+          SELECT product_sku, created_at, quantity, COALESCE(subtotal, 0)
+          FROM new_lines
+      )
+      """;
+
+  // created_at holds UTC; buckets start at whole hours and days in the configured zone and are
+  // stored as UTC again.
+  private static final String BUCKET =
+      "date_trunc('%s', %s AT TIME ZONE 'UTC', :zone) AT TIME ZONE 'UTC'";
+
+  // Flushers share the lock, a rebuild holds it exclusively so a day is never recomputed while
+  // queued lines of that day are being added on top.
+  private static final String TRY_LOCK_SHARED =
+      "SELECT pg_try_advisory_xact_lock_shared(hashtext('sales_rollups')) AS locked";
+
+  private static final String LOCK_EXCLUSIVE =
+      "SELECT pg_advisory_xact_lock(hashtext('sales_rollups'))";
+
+  // SKIP LOCKED lets several instances drain the queue side by side; rollup rows are locked in
+  // key order to avoid deadlocks between them.
+  private static final String FLUSH_QUEUE = """
+      WITH batch AS (
+          DELETE FROM sales_rollup_queue
+          WHERE id IN (
+              SELECT id FROM sales_rollup_queue
+              ORDER BY id
+              LIMIT :batchSize
+              FOR UPDATE SKIP LOCKED)
+          RETURNING product_sku, created_at, units, revenue
+      ),
+      hourly AS (
+          INSERT INTO sales_hourly (product_sku, bucket_start, units, revenue)
+          SELECT product_sku, %1$s, SUM(units), SUM(revenue)
+          FROM batch
+          GROUP BY 1, 2
+          ORDER BY 1, 2
+          ON CONFLICT (product_sku, bucket_start) DO UPDATE
+          SET units = sales_hourly.units + EXCLUDED.units,
+              revenue = sales_hourly.revenue + EXCLUDED.revenue
+      ),
+      daily AS (
+          INSERT INTO sales_daily (product_sku, bucket_start, units, revenue)
+          SELECT product_sku, %2$s, SUM(units), SUM(revenue)
+          FROM batch
+          GROUP BY 1, 2
+          ORDER BY 1, 2
+          ON CONFLICT (product_sku, bucket_start) DO UPDATE
+          SET units = sales_daily.units + EXCLUDED.units,
+              revenue = sales_daily.revenue + EXCLUDED.revenue
+      )
+      SELECT COUNT(*) AS flushed FROM batch
+      """.formatted(BUCKET.formatted("hour", "created_at"),
+      BUCKET.formatted("day", "created_at"));
+
+  // Replaces the buckets of [from, to) with figures recomputed from the orders. One statement
+  // sees one snapshot: the queued lines it drops are exactly those of the orders it counts, and
+  // lines queued by checkouts running meanwhile stay queued for the flusher. Checkouts are not
+  // held back, only the flushers wait.
+  private static final String REBUILD_ROLLUPS = """
+      WITH consumed AS (
+          DELETE FROM sales_rollup_queue
+          WHERE created_at >= :from AND created_at < :to
+      ),
+      lines AS (
+          SELECT i.product_sku, o.created_at, i.quantity, COALESCE(i.subtotal, 0) AS revenue
+          FROM orders o
+          JOIN order_items i ON i.created_at = o.created_at AND i.order_id = o.id
+          WHERE o.created_at >= :from AND o.created_at < :to
+              AND i.created_at >= :from AND i.created_at < :to
+      ),
+      hourly AS (
+          SELECT product_sku, %1$s AS bucket_start, SUM(quantity) AS units,
+              SUM(revenue) AS revenue
+          FROM lines
+          GROUP BY 1, 2
+      ),
+      daily AS (
+          SELECT product_sku, %2$s AS bucket_start, SUM(quantity) AS units,
+              SUM(revenue) AS revenue
+          FROM lines
+          GROUP BY 1, 2
+      ),
+      stale_hourly AS (
+          DELETE FROM sales_hourly r
+          WHERE r.bucket_start >= :from AND r.bucket_start < :to
+              AND NOT EXISTS (SELECT 1 FROM hourly f
+                  WHERE f.product_sku = r.product_sku AND f.bucket_start = r.bucket_start)
+      ),
+      stale_daily AS (
+          DELETE FROM sales_daily r
+          WHERE r.bucket_start >= :from AND r.bucket_start < :to
+              AND NOT EXISTS (SELECT 1 FROM daily f
+                  WHERE f.product_sku = r.product_sku AND f.bucket_start = r.bucket_start)
+      ),
+      new_hourly AS (
+          INSERT INTO sales_hourly (product_sku, bucket_start, units, revenue)
+          SELECT * FROM hourly
+          ORDER BY 1, 2
+          ON CONFLICT (product_sku, bucket_start) DO UPDATE
+          SET units = EXCLUDED.units, revenue = EXCLUDED.revenue
+      ),
+      new_daily AS (
+          INSERT INTO sales_daily (product_sku, bucket_start, units, revenue)
+          SELECT * FROM daily
+          ORDER BY 1, 2
+          ON CONFLICT (product_sku, bucket_start) DO UPDATE
+          SET units = EXCLUDED.units, revenue = EXCLUDED.revenue
+      )
+      SELECT COUNT(*) AS buckets FROM hourly
+      """.formatted(BUCKET.formatted("hour", "created_at"),
+      BUCKET.formatted("day", "created_at"));
+
+  private static final String SELECT_ROLLUPS = """
+      SELECT product_sku, bucket_start, units, revenue
+      FROM %s
+      WHERE product_sku = :sku AND bucket_start >= :from AND bucket_start < :to
+      ORDER BY bucket_start
+      """;
+
+  private static final String SELECT_FIRST_ORDER_TIME =
+      "SELECT created_at FROM orders ORDER BY created_at LIMIT 1";
+
+  private final DatabaseClient databaseClient;
+  private final TransactionalOperator transactionalOperator;
+  private final MetricsHelper metricsHelper;
+  private final ZoneId zone;
+
+  public SalesRollupRepository(DatabaseClient databaseClient,
+      TransactionalOperator transactionalOperator, MetricsHelper metricsHelper,
+      @Value("${checkout.sales.time-zone:UTC}") ZoneId zone) {
+    this.databaseClient = databaseClient;
+    this.transactionalOperator = transactionalOperator;
+    this.metricsHelper = metricsHelper;
+    this.zone = zone;
+  }
+
+  public ZoneId zone() {
+    return zone;
+  }
+
+  public Flux<SalesBucketDTO> findBuckets(String sku, SalesGranularity granularity, Instant from,
+      Instant to) {
+    return databaseClient.sql(SELECT_ROLLUPS.formatted(granularity.table()))
+        .bind("sku", sku)
+        .bind("from", from)
+        .bind("to", to)
+        .map((row, metadata) -> SalesBucketDTO.builder()
+            .sku(row.get("product_sku", String.class))
+            .bucketStart(row.get("bucket_start", Instant.class))
+            .units(row.get("units", Long.class))
+            .revenue(row.get("revenue", Long.class))
+            .build())
+        .all();
+  }
+
+  public Mono<Instant> findFirstOrderTime() {
+    return databaseClient.sql(SELECT_FIRST_ORDER_TIME)
+        .map((row, metadata) -> row.get("created_at", Instant.class))
+        .one();
+  }
+
+  // Adds up to batchSize queued lines to the rollups; returns 0 while a rebuild holds the lock.
+  public Mono<Long> flush(int batchSize) {
+    Mono<Long> flush = databaseClient.sql(TRY_LOCK_SHARED)
+        .map((row, metadata) -> row.get("locked", Boolean.class))
+        .one()
+        .flatMap(locked -> !locked
+            ? Mono.just(0L)
+            : databaseClient.sql(FLUSH_QUEUE)
+                .bind("batchSize", batchSize)
+                .bind("zone", zone.getId())
+                .map((row, metadata) -> row.get("flushed", Long.class))
+                .one());
+    return metricsHelper.timed("sales.db.flush", transactionalOperator.transactional(flush));
+  }
+
+  // Recomputes every bucket in [from, to) from the order tables; callers should keep the range
+  // to whole days in the rollup zone so the flushers are only held back briefly.
+  public Mono<Void> rebuild(Instant from, Instant to) {
+    Mono<Void> rebuild = databaseClient.sql(LOCK_EXCLUSIVE).then()
+        .then(databaseClient.sql(REBUILD_ROLLUPS)
+            .bind("from", from)
+            .bind("to", to)
+            .bind("zone", zone.getId())
+            .then());
+    return transactionalOperator.transactional(rebuild);
+  }
+}
@@ -0,0 +1,51 @@
+package com.haiilo.supermarket.checkout.serializer;
+
+import com.haiilo.supermarket.checkout.domain.Basket;
+import com.haiilo.supermarket.checkout.domain.PricedLine;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Map;
+
+public class BasketBinarySerializer extends VersionedBinarySerializer<Basket> {
+
+  public BasketBinarySerializer() {
+    super(2);
+  }
+
+  @Override
+  protected void write(Basket basket, DataOutputStream out) throws IOException {
+    writeString(out, basket.getId());
+    writeVarInt(out, basket.getTotalPrice());
+    writeVarInt(out, basket.getItems().size());
+    for (Map.Entry<String, Integer> item : basket.getItems().entrySet()) {
+      writeString(out, item.getKey());
+      writeVarInt(out, item.getValue());
+    }
+    writeVarInt(out, basket.getLines().size());
+    for (Map.Entry<String, PricedLine> line : basket.getLines().entrySet()) {
+      writeString(out, line.getKey());
+      writeVarInt(out, line.getValue().subtotal());
+      writeVarInt(out, line.getValue().priceVersion());
+    }
+  }
+
+  @Override
+  protected Basket read(int version, DataInputStream in) throws IOException {
+    Basket basket = new Basket(readString(in));
+    basket.setTotalPrice((int) readVarInt(in));
+    int itemCount = (int) readVarInt(in);
+    for (int i = 0; i < itemCount; i++) {
+      basket.getItems().put(readString(in), (int) readVarInt(in));
+    }
+    int lineCount = (int) readVarInt(in);
+    for (int i = 0; i < lineCount; i++) {
+      String sku = readString(in);
+      int subtotal = (int) readVarInt(in);
+      // Version 1 stored a fixed-width content hash as the price version.
+      long priceVersion = version >= 2 ? readVarInt(in) : in.readInt();
+      basket.getLines().put(sku, new PricedLine(subtotal, priceVersion));
+    }
+    return basket;
+  }
+}
@@ -0,0 +1,28 @@
+package com.haiilo.supermarket.checkout.serializer;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+// Reads both formats, so it can be rolled out while other instances still write JSON. The write
+// side is chosen separately: it must stay JSON until no instance reads JSON only.
+@RequiredArgsConstructor
+public class MigratingRedisSerializer<T> implements RedisSerializer<T> {
+
+  private final VersionedBinarySerializer<T> binarySerializer;
+  private final RedisSerializer<T> jsonSerializer;
+  private final boolean writeBinary;
+
+  @Override
+  public byte[] serialize(T value) throws SerializationException {
+    return writeBinary ? binarySerializer.serialize(value) : jsonSerializer.serialize(value);
+  }
+
+  @Override
+  public T deserialize(byte[] bytes) throws SerializationException {
+    if (VersionedBinarySerializer.isBinary(bytes)) {
+      return binarySerializer.deserialize(bytes);
+    }
+    return jsonSerializer.deserialize(bytes);
+  }
+}
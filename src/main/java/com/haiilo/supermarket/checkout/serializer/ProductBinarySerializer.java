@@ -0,0 +1,43 @@
+package com.haiilo.supermarket.checkout.serializer;
+
+import com.haiilo.supermarket.checkout.domain.Product;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+public class ProductBinarySerializer extends VersionedBinarySerializer<Product> {
+
+  public ProductBinarySerializer() {
+    super(2);
+  }
+
+  @Override
+  protected void write(Product product, DataOutputStream out) throws IOException {
+    out.writeBoolean(product.id() != null);
+    if (product.id() != null) {
+      writeVarInt(out, product.id());
+    }
+    writeString(out, product.sku());
+    writeString(out, product.name());
+    writeVarInt(out, product.unitPrice());
+    writeNullableInt(out, product.offerQuantity());
+    writeNullableInt(out, product.offerPrice());
+    out.writeBoolean(product.priceVersion() != null);
+    if (product.priceVersion() != null) {
+      writeVarInt(out, product.priceVersion());
+    }
+  }
+
+  @Override
+  protected Product read(int version, DataInputStream in) throws IOException {
+    Long id = in.readBoolean() ? readVarInt(in) : null;
+    String sku = readString(in);
+    String name = readString(in);
+    int unitPrice = (int) readVarInt(in);
+    Integer offerQuantity = readNullableInt(in);
+    Integer offerPrice = readNullableInt(in);
+    // Version 1 predates price versions.
+    Long priceVersion = version >= 2 && in.readBoolean() ? readVarInt(in) : null;
+    return new Product(id, sku, name, unitPrice, offerQuantity, offerPrice, priceVersion);
+  }
+}
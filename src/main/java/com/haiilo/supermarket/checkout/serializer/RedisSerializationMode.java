@@ -0,0 +1,25 @@
+package com.haiilo.supermarket.checkout.serializer;
+
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+// Switching from JSON to binary takes two rolling deploys: MIGRATION everywhere, then BINARY.
+// BINARY still reads the JSON entries left behind until they expire or are rewritten.
+public enum RedisSerializationMode {
+  JSON,
+  MIGRATION,
+  BINARY;
+
+  public <T> RedisSerializer<T> serializer(Class<T> type,
+      VersionedBinarySerializer<T> binarySerializer) {
+    return switch (this) {
+      case JSON -> new Jackson2JsonRedisSerializer<>(type);
+      case MIGRATION ->
+          new MigratingRedisSerializer<>(binarySerializer, new Jackson2JsonRedisSerializer<>(type),
+              false);
+      case BINARY ->
+          new MigratingRedisSerializer<>(binarySerializer, new Jackson2JsonRedisSerializer<>(type),
+              true);
+    };
+  }
+}
@@ -0,0 +1,121 @@
+package com.haiilo.supermarket.checkout.serializer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+public abstract class VersionedBinarySerializer<T> implements RedisSerializer<T> {
+
+  public static final byte MAGIC = (byte) 0xB1;
+
+  private final byte currentVersion;
+
+  protected VersionedBinarySerializer(int currentVersion) {
+    this.currentVersion = (byte) currentVersion;
+  }
+
+  public static boolean isBinary(byte[] bytes) {
+    return bytes != null && bytes.length > 1 && bytes[0] == MAGIC;
+  }
+
+  @Override
+  public byte[] serialize(T value) throws SerializationException {
+    if (value == null) {
+      return new byte[0];
+    }
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeByte(MAGIC);
+      out.writeByte(currentVersion);
+      write(value, out);
+    } catch (IOException e) {
+      throw new SerializationException("Could not write " + value.getClass().getSimpleName(), e);
+    }
+    return bytes.toByteArray();
+  }
+
+  @Override
+  public T deserialize(byte[] bytes) throws SerializationException {
+    if (bytes == null || bytes.length == 0) {
+      return null;
+    }
+    if (!isBinary(bytes)) {
+      throw new SerializationException("Payload is not in the binary format");
+    }
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 2,
+        bytes.length - 2))) {
+      int version = bytes[1];
+      if (version < 1 || version > currentVersion) {
+        throw new SerializationException("Unsupported binary format version " + version);
+      }
+      return read(version, in);
+    } catch (IOException e) {
+      throw new SerializationException("Could not read binary payload", e);
+    }
+  }
+
+  // Writes always use the current version; read must accept every version up to it.
+  protected abstract void write(T value, DataOutputStream out) throws IOException;
+
+  protected abstract T read(int version, DataInputStream in) throws IOException;
+
+  protected static void writeVarInt(DataOutputStream out, long value) throws IOException {
+    long zigzag = (value << 1) ^ (value >> 63);
+    while ((zigzag & ~0x7FL) != 0) {
+      out.writeByte((int) ((zigzag & 0x7F) | 0x80));
+      zigzag >>>= 7;
+    }
+    out.writeByte((int) zigzag);
+  }
+
+  protected static long readVarInt(DataInputStream in) throws IOException {
+    long zigzag = 0;
+    int shift = 0;
+    byte b;
+    do {
+      if (shift > 63) {
+        throw new IOException("Malformed variable-length integer");
+      }
+      b = in.readByte();
+      zigzag |= (long) (b & 0x7F) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return (zigzag >>> 1) ^ -(zigzag & 1);
+  }
+
+  protected static void writeString(DataOutputStream out, String value) throws IOException {
+    if (value == null) {
+      writeVarInt(out, -1);
+      return;
+    }
+    byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+    writeVarInt(out, utf8.length);
+    out.write(utf8);
+  }
+
+  protected static String readString(DataInputStream in) throws IOException {
+    int length = (int) readVarInt(in);
+    if (length < 0) {
+      return null;
+    }
+    byte[] utf8 = new byte[length];
+    in.readFully(utf8);
+    return new String(utf8, StandardCharsets.UTF_8);
+  }
+
+  protected static void writeNullableInt(DataOutputStream out, Integer value) throws IOException {
+    out.writeBoolean(value != null);
+    if (value != null) {
+      writeVarInt(out, value);
+    }
+  }
+
+  protected static Integer readNullableInt(DataInputStream in) throws IOException {
+    return in.readBoolean() ? (int) readVarInt(in) : null;
+  }
+}
@@ -1,19 +1,25 @@
 package com.haiilo.supermarket.checkout.service;
 
-import static com.haiilo.supermarket.checkout.util.AppConstants.BASKET_TTL;
+import static com.haiilo.supermarket.checkout.util.AppConstants.MAX_BATCH_ITEMS;
+import static com.haiilo.supermarket.checkout.util.AppConstants.MAX_LINE_QUANTITY;
 import static org.springframework.http.HttpStatus.BAD_REQUEST;
 import static org.springframework.http.HttpStatus.NOT_FOUND;
 
 import com.haiilo.supermarket.checkout.domain.Basket;
+import com.haiilo.supermarket.checkout.dto.BasketItemDeltaDTO;
 import com.haiilo.supermarket.checkout.dto.OrderDTO;
+import com.haiilo.supermarket.checkout.repository.BasketRepository;
 import com.haiilo.supermarket.checkout.util.BasketHelper;
 import com.haiilo.supermarket.checkout.util.OrderHelper;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.regex.Pattern;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Mono;
 
@@ -22,64 +28,133 @@ import reactor.core.publisher.Mono;
 @RequiredArgsConstructor
 public class BasketService {
 
+  private static final Pattern STORE_ID = Pattern.compile("[A-Za-z0-9_-]{1,32}");
+  // Visible ASCII only, so the key fits checkout_key next to the basket ID and needs no escaping
+  // in the Redis confirmation key
+  private static final Pattern IDEMPOTENCY_KEY = Pattern.compile("\\p{Graph}{1,64}");
+
   private final BasketHelper basketHelper;
   private final OrderHelper orderHelper;
-  private final ReactiveRedisTemplate<String, Basket> basketRedisTemplate;
+  private final BasketRepository basketRepository;
+
+  public Mono<Basket> createBasket(String storeId) {
+    return Mono.fromCallable(() -> newBasketId(storeId))
+        .flatMap(basketId -> {
+          log.info("Creating a new basket with ID '{}'", basketId);
+          return basketRepository.create(basketId);
+        });
+  }
 
-  public Mono<Basket> createBasket() {
+  // A store prefix keeps a store's baskets recognizable in Redis, e.g. for SCAN by key pattern;
+  // the basket id as a whole is the hash tag, so baskets still spread over the cluster.
+  public static String newBasketId(String storeId) {
     String basketId = UUID.randomUUID().toString();
-    Basket newBasket = new Basket(basketId);
-    log.info("Creating a new basket with ID '{}'", basketId);
-    return basketRedisTemplate.opsForValue().set(basketId, newBasket, BASKET_TTL)
-        .thenReturn(newBasket);
+    if (storeId == null) {
+      return basketId;
+    }
+    if (!STORE_ID.matcher(storeId).matches()) {
+      throw new ResponseStatusException(BAD_REQUEST,
+          "A store ID must be 1 to 32 letters, digits, '-' or '_'.");
+    }
+    return storeId + "." + basketId;
   }
 
   public Mono<Basket> getBasketById(String basketId) {
-    log.info("Getting a basket by ID '{}'", basketId);
-    return basketHelper.getBasketById(basketId);
+    log.debug("Getting a basket by ID '{}'", basketId);
+    return basketHelper.getPricedBasket(basketId);
   }
 
   public Mono<Integer> addItemToBasket(String basketId, String sku) {
-    return Mono.zip(
-            basketHelper.getProductBySku(sku),
-            basketHelper.getBasketById(basketId),
-            (product, basket) -> {
-              basket.addItem(product.sku());
-              return basket;
-            })
-        .flatMap(basketHelper::getTotalPrice);
+    return basketHelper.getProductBySku(sku)
+        .flatMap(product -> basketHelper.updateItem(basketId, product, 1));
   }
 
-  public Mono<Integer> removeItemFromBasket(String basketId, String sku) {
-    log.info("Removing one item with SKU '{}' from basket '{}'", sku, basketId);
-    return basketHelper.getBasketById(basketId)
-        .doOnNext(basket -> {
-          if (!basket.getItems().containsKey(sku)) {
-            throw new ResponseStatusException(NOT_FOUND,
-                "Item with SKU " + sku + " not found in basket");
+  public Mono<Integer> addItemsToBasket(String basketId, List<BasketItemDeltaDTO> items) {
+    return Mono.fromCallable(() -> mergeQuantityDeltas(items))
+        .flatMap(quantityDeltas -> {
+          log.debug("Applying {} item changes to basket '{}'", quantityDeltas.size(), basketId);
+          if (quantityDeltas.isEmpty()) {
+            return basketHelper.getPricedBasket(basketId).map(Basket::getTotalPrice);
           }
-          basket.removeItem(sku);
-        })
-        .flatMap(basketHelper::getTotalPrice);
+          return basketHelper.getProductsBySkus(quantityDeltas.keySet())
+              .flatMap(products -> basketHelper.updateItems(basketId, quantityDeltas, products));
+        });
+  }
+
+  // Validates a batch and sums the changes per SKU; SKUs whose changes cancel out are dropped.
+  // Neither a change nor a SKU's sum may exceed the line limit, which no basket line could take.
+  public static Map<String, Integer> mergeQuantityDeltas(List<BasketItemDeltaDTO> items) {
+    if (items == null || items.isEmpty() || items.size() > MAX_BATCH_ITEMS) {
+      throw new ResponseStatusException(BAD_REQUEST,
+          "A batch must contain between 1 and " + MAX_BATCH_ITEMS + " items.");
+    }
+    Map<String, Integer> quantityDeltas = new LinkedHashMap<>();
+    for (BasketItemDeltaDTO item : items) {
+      if (item == null || StringUtils.isBlank(item.sku()) || item.quantity() == 0) {
+        throw new ResponseStatusException(BAD_REQUEST,
+            "Every item needs a SKU and a non-zero quantity.");
+      }
+      if (Math.abs((long) item.quantity()) > MAX_LINE_QUANTITY) {
+        throw BasketHelper.limitExceeded();
+      }
+      try {
+        quantityDeltas.merge(item.sku(), item.quantity(), Math::addExact);
+      } catch (ArithmeticException e) {
+        throw BasketHelper.limitExceeded();
+      }
+    }
+    quantityDeltas.values().removeIf(quantityDelta -> quantityDelta == 0);
+    if (quantityDeltas.values().stream().anyMatch(delta -> Math.abs(delta) > MAX_LINE_QUANTITY)) {
+      throw BasketHelper.limitExceeded();
+    }
+    return quantityDeltas;
+  }
+
+  public Mono<Integer> removeItemFromBasket(String basketId, String sku) {
+    log.debug("Removing one item with SKU '{}' from basket '{}'", sku, basketId);
+    return basketHelper.getProductBySku(sku)
+        .flatMap(product -> basketHelper.updateItem(basketId, product, -1));
   }
 
   public Mono<Void> cancelBasket(String basketId) {
-    return basketRedisTemplate.opsForValue().delete(basketId).then()
+    return basketRepository.delete(basketId).then()
         .doOnSuccess(totalPrice ->
             log.info("Basket with Id '{}' have been successfully deleted.", basketId));
   }
 
-  @Transactional
-  public Mono<OrderDTO> checkout(String basketId) {
+  public Mono<OrderDTO> checkout(String basketId, String idempotencyKey) {
     log.info("Checking out basket with ID '{}'", basketId);
-    return getBasketById(basketId)
-        .filter(basket -> !basket.getItems().isEmpty())
+    return Mono.fromCallable(() -> checkoutKey(basketId, idempotencyKey))
+        .flatMap(checkoutKey -> basketRepository.findById(basketId)
+            .flatMap(basket -> placeOrder(basket, checkoutKey))
+            .switchIfEmpty(Mono.defer(() -> orderHelper.findOrder(checkoutKey)
+                .doOnNext(order -> log.info(
+                    "Basket with Id '{}' was already checked out as order '{}'.",
+                    basketId, order.id()))
+                .switchIfEmpty(Mono.error(new ResponseStatusException(NOT_FOUND,
+                    "Basket with ID " + basketId + " not found"))))));
+  }
+
+  public static String checkoutKey(String basketId, String idempotencyKey) {
+    if (StringUtils.isBlank(idempotencyKey)) {
+      return basketId;
+    }
+    if (!IDEMPOTENCY_KEY.matcher(idempotencyKey).matches()) {
+      throw new ResponseStatusException(BAD_REQUEST,
+          "An Idempotency-Key must be 1 to 64 visible ASCII characters.");
+    }
+    return basketId + ":" + idempotencyKey;
+  }
+
+  private Mono<OrderDTO> placeOrder(Basket basket, String checkoutKey) {
+    return Mono.just(basket)
+        .filter(b -> !b.getItems().isEmpty())
         .switchIfEmpty(Mono.error(
             new ResponseStatusException(BAD_REQUEST, "Cannot checkout an empty basket.")))
-        .flatMap(orderHelper::saveOrderHeader)
-        .flatMap(savedOrder -> orderHelper.saveOrderItems(savedOrder, basketId))
-        .flatMap(fullOrder -> cancelBasket(basketId).thenReturn(fullOrder))
+        .flatMap(basketHelper::revalidateTotal)
+        .flatMap(priced -> orderHelper.saveOrder(priced.getT1(), priced.getT2(), checkoutKey))
+        .flatMap(fullOrder -> cancelBasket(basket.getId()).thenReturn(fullOrder))
         .doOnSuccess(totalPrice ->
-            log.info("Basket with Id '{}' have been successfully checkout.", basketId));
+            log.info("Basket with Id '{}' have been successfully checkout.", basket.getId()));
   }
-}
\ No newline at end of file
+}
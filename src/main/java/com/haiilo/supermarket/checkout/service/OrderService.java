@@ -0,0 +1,33 @@
+package com.haiilo.supermarket.checkout.service;
+
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+
+import com.haiilo.supermarket.checkout.dto.OrderDTO;
+import com.haiilo.supermarket.checkout.repository.OrderExportRepository;
+import java.time.Instant;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class OrderService {
+
+  private final OrderExportRepository orderExportRepository;
+
+  // 'from' and 'afterId' form the resume cursor: pass the createdAt and id of the last order
+  // received to continue an interrupted export.
+  public Flux<OrderDTO> exportOrders(Instant from, Long afterId, Instant to) {
+    Instant start = from != null ? from : Instant.EPOCH;
+    // An open-ended export stops at the time it was requested so it terminates under load.
+    Instant end = to != null ? to : Instant.now();
+    if (!start.isBefore(end)) {
+      return Flux.error(new ResponseStatusException(BAD_REQUEST, "'from' must be before 'to'."));
+    }
+    log.info("Exporting orders created from {} (after id {}) to {}", start, afterId, end);
+    return orderExportRepository.streamOrders(start, afterId != null ? afterId : 0L, end);
+  }
+}
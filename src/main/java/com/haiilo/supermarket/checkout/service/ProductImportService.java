@@ -0,0 +1,267 @@
+package com.haiilo.supermarket.checkout.service;
+
+import static com.haiilo.supermarket.checkout.util.AppConstants.MAX_IMPORT_ERRORS;
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.UNSUPPORTED_MEDIA_TYPE;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.haiilo.supermarket.checkout.domain.Product;
+import com.haiilo.supermarket.checkout.dto.ProductImportErrorDTO;
+import com.haiilo.supermarket.checkout.dto.ProductImportResultDTO;
+import com.haiilo.supermarket.checkout.repository.ProductRepository;
+import com.haiilo.supermarket.checkout.util.MetricsHelper;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.StringDecoder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+
+@Slf4j
+@Service
+public class ProductImportService {
+
+  public static final MediaType TEXT_CSV = MediaType.parseMediaType("text/csv");
+  private static final StringDecoder LINE_DECODER = StringDecoder.allMimeTypes();
+  private static final ResolvableType STRING_TYPE = ResolvableType.forClass(String.class);
+
+  private final ProductRepository productRepository;
+  private final ProductService productService;
+  private final ObjectMapper objectMapper;
+  private final MetricsHelper metricsHelper;
+  private final int batchSize;
+
+  public ProductImportService(ProductRepository productRepository, ProductService productService,
+      ObjectMapper objectMapper, MetricsHelper metricsHelper,
+      @Value("${checkout.products.import.batch-size:500}") int batchSize) {
+    this.productRepository = productRepository;
+    this.productService = productService;
+    this.objectMapper = objectMapper;
+    this.metricsHelper = metricsHelper;
+    this.batchSize = batchSize;
+  }
+
+  // The upload is decoded line by line and written batch by batch; the next batch is only
+  // parsed once the previous one is stored, so memory is bounded by the batch size.
+  public Mono<ProductImportResultDTO> importProducts(Flux<DataBuffer> body, MediaType contentType) {
+    boolean csv = TEXT_CSV.isCompatibleWith(contentType);
+    if (!csv && !MediaType.APPLICATION_NDJSON.isCompatibleWith(contentType)) {
+      return Mono.error(new ResponseStatusException(UNSUPPORTED_MEDIA_TYPE,
+          "Products can be imported as text/csv or application/x-ndjson."));
+    }
+    Flux<Tuple2<Long, String>> lines = LINE_DECODER
+        .decode(body, STRING_TYPE, contentType, Map.of())
+        .index()
+        .filter(line -> StringUtils.isNotBlank(line.getT2()));
+    return Mono.defer(() -> {
+      ImportSummary summary = new ImportSummary();
+      return (csv ? parseCsv(lines) : parseNdjson(lines))
+          .doOnNext(summary::row)
+          .filter(row -> row.product() != null)
+          .buffer(batchSize)
+          .concatMap(batch -> upsert(batch, summary), 1)
+          .then(Mono.fromSupplier(summary::toResult))
+          .doOnSuccess(result -> log.info(
+              "Product import finished: {} rows, {} upserted, {} unchanged, {} failed.",
+              result.rows(), result.upserted(), result.unchanged(), result.failed()));
+    });
+  }
+
+  private Flux<ImportRow> parseCsv(Flux<Tuple2<Long, String>> lines) {
+    return lines.switchOnFirst((first, all) -> {
+      if (!first.hasValue()) {
+        return Flux.empty();
+      }
+      Map<String, Integer> columns = csvColumns(splitCsvLine(first.get().getT2()));
+      if (!columns.keySet().containsAll(List.of("sku", "name", "unitprice"))) {
+        return Flux.error(new ResponseStatusException(BAD_REQUEST,
+            "CSV header must contain sku, name and unitPrice columns."));
+      }
+      return all.skip(1).map(line -> parseCsvRow(line.getT1() + 1, line.getT2(), columns));
+    });
+  }
+
+  private static Map<String, Integer> csvColumns(List<String> header) {
+    Map<String, Integer> columns = new LinkedHashMap<>();
+    for (int i = 0; i < header.size(); i++) {
+      columns.put(header.get(i).replace("_", "").toLowerCase(Locale.ROOT), i);
+    }
+    return columns;
+  }
+
+  private static ImportRow parseCsvRow(long line, String text, Map<String, Integer> columns) {
+    List<String> fields = splitCsvLine(text);
+    String sku = field(fields, columns, "sku");
+    try {
+      Product product = new Product(null, sku, field(fields, columns, "name"),
+          Integer.parseInt(field(fields, columns, "unitprice")),
+          parseOptionalInt(field(fields, columns, "offerquantity")),
+          parseOptionalInt(field(fields, columns, "offerprice")), null);
+      return validate(line, product);
+    } catch (NumberFormatException e) {
+      return ImportRow.failed(line, sku, "Prices and quantities must be whole numbers");
+    }
+  }
+
+  private Flux<ImportRow> parseNdjson(Flux<Tuple2<Long, String>> lines) {
+    return lines.map(line -> {
+      try {
+        // A literal null parses without error but is no product
+        Product product = objectMapper.readValue(line.getT2(), Product.class);
+        return product != null
+            ? validate(line.getT1() + 1, product)
+            : ImportRow.failed(line.getT1() + 1, null, "Expected a JSON object");
+      } catch (JsonProcessingException e) {
+        return ImportRow.failed(line.getT1() + 1, null, "Invalid JSON: " + e.getOriginalMessage());
+      }
+    });
+  }
+
+  private static ImportRow validate(long line, Product product) {
+    String error = null;
+    if (StringUtils.isBlank(product.sku()) || product.sku().length() > 255) {
+      error = "sku is required and may have at most 255 characters";
+    } else if (StringUtils.isBlank(product.name())) {
+      error = "name is required";
+    } else if (product.unitPrice() <= 0) {
+      error = "unitPrice must be positive";
+    } else if ((product.offerQuantity() == null) != (product.offerPrice() == null)) {
+      error = "offerQuantity and offerPrice must be given together";
+    } else if (product.offerQuantity() != null
+        && (product.offerQuantity() <= 0 || product.offerPrice() <= 0)) {
+      error = "offerQuantity and offerPrice must be positive";
+    }
+    return error == null
+        ? new ImportRow(line, product.sku(), product, null)
+        : ImportRow.failed(line, product.sku(), error);
+  }
+
+  private Mono<Void> upsert(List<ImportRow> batch, ImportSummary summary) {
+    // A SKU may appear only once per statement; the last row for it wins.
+    Map<String, Product> products = new LinkedHashMap<>();
+    batch.forEach(row -> products.put(row.product().sku(), row.product()));
+    int size = products.size();
+    String[] skus = new String[size];
+    String[] names = new String[size];
+    Integer[] unitPrices = new Integer[size];
+    Integer[] offerQuantities = new Integer[size];
+    Integer[] offerPrices = new Integer[size];
+    int index = 0;
+    for (Product product : products.values()) {
+      skus[index] = product.sku();
+      names[index] = product.name();
+      unitPrices[index] = product.unitPrice();
+      offerQuantities[index] = product.offerQuantity();
+      offerPrices[index] = product.offerPrice();
+      index++;
+    }
+    return metricsHelper.timed("product.db.upsert-batch", productRepository
+            .upsertAll(skus, names, unitPrices, offerQuantities, offerPrices)
+            .collectList())
+        .doOnNext(changed -> summary.stored(batch.size(), changed.size()))
+        .onErrorResume(e -> {
+          log.error("Product import batch of {} rows failed.", batch.size(), e);
+          batch.forEach(row -> summary.fail(row.line(), row.sku(), "Batch could not be stored"));
+          return Mono.empty();
+        })
+        .flatMap(changed -> productService.refreshCache(changed)
+            .onErrorResume(e -> {
+              // The database is already updated; the next cache warm-up corrects Redis.
+              log.error("Could not refresh {} imported products in the cache.", changed.size(), e);
+              return Mono.empty();
+            }))
+        .then();
+  }
+
+  static List<String> splitCsvLine(String line) {
+    List<String> fields = new ArrayList<>();
+    StringBuilder field = new StringBuilder();
+    boolean quoted = false;
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (quoted) {
+        if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+          field.append('"');
+          i++;
+        } else if (c == '"') {
+          quoted = false;
+        } else {
+          field.append(c);
+        }
+      } else if (c == '"') {
+        quoted = true;
+      } else if (c == ',') {
+        fields.add(field.toString().trim());
+        field.setLength(0);
+      } else {
+        field.append(c);
+      }
+    }
+    fields.add(field.toString().trim());
+    return fields;
+  }
+
+  private static String field(List<String> fields, Map<String, Integer> columns, String column) {
+    Integer index = columns.get(column);
+    return index != null && index < fields.size() ? fields.get(index) : null;
+  }
+
+  private static Integer parseOptionalInt(String value) {
+    return StringUtils.isBlank(value) ? null : Integer.valueOf(value);
+  }
+
+  private record ImportRow(long line, String sku, Product product, String error) {
+
+    static ImportRow failed(long line, String sku, String error) {
+      return new ImportRow(line, sku, null, error);
+    }
+  }
+
+  // Only touched from the sequential import pipeline; the error list is capped so a file of
+  // bad rows cannot grow the response without bound.
+  private static final class ImportSummary {
+
+    private long rows;
+    private long upserted;
+    private long unchanged;
+    private long failed;
+    private final List<ProductImportErrorDTO> errors = new ArrayList<>();
+
+    void row(ImportRow row) {
+      rows++;
+      if (row.error() != null) {
+        fail(row.line(), row.sku(), row.error());
+      }
+    }
+
+    void stored(int batchRows, int changedRows) {
+      upserted += changedRows;
+      unchanged += batchRows - changedRows;
+    }
+
+    void fail(long line, String sku, String message) {
+      failed++;
+      if (errors.size() < MAX_IMPORT_ERRORS) {
+        errors.add(ProductImportErrorDTO.builder().line(line).sku(sku).message(message).build());
+      }
+    }
+
+    ProductImportResultDTO toResult() {
+      return ProductImportResultDTO.builder().rows(rows).upserted(upserted)
+          .unchanged(unchanged).failed(failed).errors(List.copyOf(errors))
+          .build();
+    }
+  }
+}
@@ -1,14 +1,30 @@
 package com.haiilo.supermarket.checkout.service;
 
+import static org.springframework.http.HttpStatus.NOT_FOUND;
 
+import com.haiilo.supermarket.checkout.cache.ProductNearCache;
+import com.haiilo.supermarket.checkout.cache.SingleFlight;
 import com.haiilo.supermarket.checkout.domain.Product;
+import com.haiilo.supermarket.checkout.dto.NearCacheStatsDTO;
 import com.haiilo.supermarket.checkout.repository.ProductRepository;
+import com.haiilo.supermarket.checkout.util.MetricsHelper;
+import com.haiilo.supermarket.checkout.util.RedisKeys;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.serializer.SerializationException;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
 
 @Service
 @Slf4j
@@ -17,27 +33,153 @@ public class ProductService {
 
   private final ProductRepository repository;
   private final ReactiveRedisTemplate<String, Product> productRedisTemplate;
+  private final ProductNearCache nearCache;
+  private final MetricsHelper metricsHelper;
+  private final RedisKeys redisKeys;
   private static final Duration PRODUCT_CACHE_TTL = Duration.ofHours(1);
+  // Scale of the probabilistic early refresh: an entry with this much TTL left is refreshed by
+  // a reader with probability 1/e, rising to 1 as it expires.
+  private static final Duration EARLY_REFRESH_WINDOW = Duration.ofMinutes(1);
+  private final SingleFlight<String, Product> productLoads = new SingleFlight<>();
+  private final SingleFlight<String, Product> productRefreshes = new SingleFlight<>();
 
+  // Concurrent near-cache misses for the same SKU share one Redis read and, on a Redis miss,
+  // one database query.
   public Mono<Product> getProductBySku(String sku) {
-    return productRedisTemplate.opsForValue().get(sku)
-        .doOnSuccess(product -> {
-          if (product != null) {
-            log.info("Product with SKU '{}' found in cache.", sku);
+    Product local = nearCache.get(sku);
+    if (local != null) {
+      metricsHelper.cacheLookups("near", 1, 0);
+      return Mono.just(local);
+    }
+    metricsHelper.cacheLookups("near", 0, 1);
+    return productLoads.execute(sku, () -> loadProduct(sku));
+  }
+
+  private Mono<Product> loadProduct(String sku) {
+    String key = redisKeys.product(sku);
+    Mono<Duration> ttl = productRedisTemplate.getExpire(key).defaultIfEmpty(Duration.ZERO);
+    return metricsHelper.timed("product.redis.get",
+            Mono.zip(productRedisTemplate.opsForValue().get(key), ttl))
+        .onErrorResume(SerializationException.class, e -> {
+          log.warn("Cached product with SKU '{}' could not be read, reloading it.", sku, e);
+          return Mono.empty();
+        })
+        .filter(cached -> isVersioned(cached.getT1()))
+        .map(cached -> {
+          Product product = cached.getT1();
+          log.debug("Product with SKU '{}' found in cache.", sku);
+          metricsHelper.cacheLookups("redis", 1, 0);
+          nearCache.put(product);
+          if (shouldRefreshEarly(cached.getT2())) {
+            refreshInBackground(sku);
           }
+          return product;
         })
         .switchIfEmpty(
             Mono.defer(() -> {
               log.info("Product with SKU '{}' not found in cache. Fetching from DB.", sku);
-              return repository.findBySku(sku)
-                  .flatMap(this::saveToCache);
+              metricsHelper.cacheLookups("redis", 0, 1);
+              return metricsHelper.timed("product.db.find", repository.findBySku(sku))
+                  .flatMap(this::saveToCache)
+                  .doOnNext(nearCache::put);
             })
         );
   }
 
+  public Mono<Map<String, Product>> getProductsBySkus(Collection<String> skus) {
+    return Mono.defer(() -> {
+      Map<String, Product> found = new HashMap<>();
+      List<String> remoteSkus = new ArrayList<>();
+      for (String sku : skus) {
+        Product local = nearCache.get(sku);
+        if (local != null) {
+          found.put(sku, local);
+        } else {
+          remoteSkus.add(sku);
+        }
+      }
+      metricsHelper.cacheLookups("near", found.size(), remoteSkus.size());
+      if (remoteSkus.isEmpty()) {
+        return Mono.just(found);
+      }
+      return metricsHelper.timed("product.redis.multiget",
+              productRedisTemplate.opsForValue()
+                  .multiGet(remoteSkus.stream().map(redisKeys::product).toList()))
+          .onErrorResume(SerializationException.class, e -> {
+            log.warn("Cached products with SKUs {} could not be read, reloading them.",
+                remoteSkus, e);
+            return Mono.just(Collections.nCopies(remoteSkus.size(), null));
+          })
+          .flatMap(cached -> {
+            List<String> missingSkus = new ArrayList<>();
+            for (int i = 0; i < remoteSkus.size(); i++) {
+              Product product = cached.get(i);
+              if (isVersioned(product)) {
+                found.put(product.sku(), product);
+                nearCache.put(product);
+              } else {
+                missingSkus.add(remoteSkus.get(i));
+              }
+            }
+            metricsHelper.cacheLookups("redis", remoteSkus.size() - missingSkus.size(),
+                missingSkus.size());
+            if (missingSkus.isEmpty()) {
+              return Mono.just(found);
+            }
+            return productLoads.executeAll(missingSkus, this::loadProducts)
+                .map(loaded -> {
+                  found.putAll(loaded);
+                  return found;
+                });
+          });
+    });
+  }
+
+  // Shared with concurrent callers missing the same SKUs, whether they asked for one product or
+  // a whole basket.
+  private Mono<Map<String, Product>> loadProducts(List<String> skus) {
+    log.info("Products with SKUs {} not found in cache. Fetching from DB.", skus);
+    return metricsHelper.timed("product.db.find",
+            repository.findAllBySkus(skus.toArray(String[]::new)))
+        .collectList()
+        .flatMap(this::saveAllToCache)
+        .map(loaded -> {
+          Map<String, Product> bySku = new HashMap<>();
+          loaded.forEach(product -> {
+            bySku.put(product.sku(), product);
+            nearCache.put(product);
+          });
+          return bySku;
+        });
+  }
+
+  // Bulk load used by the cache warm-up. Entries that are already cached are kept: the page may
+  // have been read before a concurrent update cached a newer price version. The products that
+  // were written also fill the near-cache, so the first requests after a deploy do not even
+  // reach Redis. Returns the products written.
+  public Mono<List<Product>> preload(List<Product> products) {
+    // Commands issued concurrently on the shared Lettuce connection are pipelined.
+    return metricsHelper.timed("product.redis.set-batch", Flux.fromIterable(products)
+            .flatMap(product -> productRedisTemplate.opsForValue()
+                .setIfAbsent(redisKeys.product(product.sku()), product, cacheTtl())
+                .filter(Boolean::booleanValue)
+                .map(written -> product)))
+        .collectList()
+        .doOnNext(written -> written.forEach(nearCache::put));
+  }
+
+  // Writes changed products to Redis in one pipelined batch and evicts them from every
+  // instance's near-cache with one invalidation message for the batch.
+  public Mono<List<Product>> refreshCache(List<Product> products) {
+    return saveAllToCache(products)
+        .flatMap(saved -> evictAll(saved.stream().map(Product::sku).toList())
+            .thenReturn(saved));
+  }
+
   public Mono<Product> createProduct(Product product) {
-    return repository.save(product)
+    return repository.insert(product)
         .flatMap(this::saveToCache)
+        .flatMap(savedProduct -> evict(savedProduct.sku()).thenReturn(savedProduct))
         .doOnSuccess(savedProduct ->
             log.info("Product with SKU '{}' saved successfully.", savedProduct.sku()));
   }
@@ -46,9 +188,13 @@ public class ProductService {
     if (product.sku() != null && !product.sku().equals(sku)) {
       return Mono.error(new IllegalArgumentException("SKU in path does not match SKU in body"));
     }
-    return repository.updateBySku(product)
-        .then(Mono.just(product))
+    Product update = new Product(null, sku, product.name(), product.unitPrice(),
+        product.offerQuantity(), product.offerPrice(), null);
+    return repository.updateBySku(update)
+        .switchIfEmpty(Mono.error(new ResponseStatusException(NOT_FOUND,
+            "Product with SKU " + sku + " not found")))
         .flatMap(this::saveToCache)
+        .flatMap(savedProduct -> evict(savedProduct.sku()).thenReturn(savedProduct))
         .doOnSuccess(savedProduct ->
             log.info("Product with SKU '{}' updated successfully.", savedProduct.sku()));
 
@@ -56,16 +202,84 @@ public class ProductService {
 
   public Mono<Void> deleteProduct(String sku) {
     return repository.deleteBySku(sku)
-        .then(productRedisTemplate.opsForValue().delete(sku))
+        .then(productRedisTemplate.opsForValue().delete(redisKeys.product(sku)))
+        .then(Mono.defer(() -> evict(sku)))
         .doOnSuccess(
             v -> log.info("Product with SKU '{}' successfully deleted from DB and cache.", sku))
         .then();
   }
 
+  public NearCacheStatsDTO getNearCacheStats() {
+    return nearCache.stats();
+  }
+
+  // XFetch: refresh when the remaining TTL drops below -window * ln(U), U uniform in (0, 1], so
+  // one reader usually reloads the entry shortly before it expires instead of all readers
+  // missing together afterwards. A zero TTL means the key has no expiry.
+  static boolean shouldRefreshEarly(Duration remainingTtl) {
+    if (remainingTtl.isZero() || remainingTtl.isNegative()) {
+      return false;
+    }
+    double early = -EARLY_REFRESH_WINDOW.toMillis()
+        * Math.log(1.0 - ThreadLocalRandom.current().nextDouble());
+    return remainingTtl.toMillis() <= early;
+  }
+
+  // Entries cached before products carried a price version are treated as misses, so baskets
+  // and orders never see a product without one.
+  public static boolean isVersioned(Product product) {
+    return product != null && product.priceVersion() != null;
+  }
+
+  private void refreshInBackground(String sku) {
+    if (productRefreshes.isRunning(sku)) {
+      return;
+    }
+    log.debug("Refreshing product with SKU '{}' ahead of cache expiry.", sku);
+    productRefreshes.execute(sku, () -> metricsHelper.timed("product.db.find",
+                repository.findBySku(sku))
+            .flatMap(this::saveToCache)
+            .doOnNext(nearCache::put))
+        .subscribe(
+            product -> log.debug("Product with SKU '{}' refreshed in cache.", sku),
+            error -> log.warn("Early refresh of product with SKU '{}' failed.", sku, error));
+  }
+
+  // Besides the near-caches, drops the entry that instances still on the pre-namespace keys read,
+  // so they reload a changed product from the database during a rolling upgrade.
+  private Mono<Void> evict(String sku) {
+    Mono<Long> legacyEntry = redisKeys.legacyKeys()
+        ? productRedisTemplate.delete(RedisKeys.legacyProduct(sku))
+        : Mono.empty();
+    return legacyEntry.then(Mono.defer(() -> nearCache.evict(sku)));
+  }
+
+  private Mono<Void> evictAll(List<String> skus) {
+    Mono<Long> legacyEntries = redisKeys.legacyKeys() && !skus.isEmpty()
+        ? productRedisTemplate.delete(skus.stream().map(RedisKeys::legacyProduct)
+            .toArray(String[]::new))
+        : Mono.empty();
+    return legacyEntries.then(Mono.defer(() -> nearCache.evictAll(skus)));
+  }
+
   private Mono<Product> saveToCache(Product product) {
-    return productRedisTemplate.opsForValue()
-        .set(product.sku(), product, PRODUCT_CACHE_TTL)
-        .doOnSuccess(v -> log.info("Product with SKU '{}' saved to cache.", product.sku()))
+    return metricsHelper.timed("product.redis.set", productRedisTemplate.opsForValue()
+            .set(redisKeys.product(product.sku()), product, cacheTtl()))
+        .doOnSuccess(v -> log.debug("Product with SKU '{}' saved to cache.", product.sku()))
         .thenReturn(product);
   }
+
+  private Mono<List<Product>> saveAllToCache(List<Product> products) {
+    // Commands issued concurrently on the shared Lettuce connection are pipelined.
+    return metricsHelper.timed("product.redis.set-batch", Flux.fromIterable(products)
+            .flatMap(product -> productRedisTemplate.opsForValue()
+                .set(redisKeys.product(product.sku()), product, cacheTtl())))
+        .then(Mono.just(products));
+  }
+
+  // Up to 10% jitter so products cached together, e.g. by a warm-up, do not all expire at once.
+  public static Duration cacheTtl() {
+    return PRODUCT_CACHE_TTL.plusSeconds(
+        ThreadLocalRandom.current().nextLong(PRODUCT_CACHE_TTL.toSeconds() / 10));
+  }
 }
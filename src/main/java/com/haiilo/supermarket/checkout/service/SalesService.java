@@ -0,0 +1,70 @@
+package com.haiilo.supermarket.checkout.service;
+
+import static com.haiilo.supermarket.checkout.util.AppConstants.MAX_SALES_BUCKETS;
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+
+import com.haiilo.supermarket.checkout.domain.SalesGranularity;
+import com.haiilo.supermarket.checkout.dto.SalesBucketDTO;
+import com.haiilo.supermarket.checkout.repository.SalesRollupRepository;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SalesService {
+
+  private final SalesRollupRepository salesRollupRepository;
+
+  public Flux<SalesBucketDTO> getSales(String sku, SalesGranularity granularity, Instant from,
+      Instant to) {
+    Instant end = to != null ? to : Instant.now();
+    Instant start = from != null ? from : end.minus(granularity.defaultWindow());
+    if (!start.isBefore(end)) {
+      return Flux.error(new ResponseStatusException(BAD_REQUEST, "'from' must be before 'to'."));
+    }
+    if (Duration.between(start, end).dividedBy(granularity.bucket()) > MAX_SALES_BUCKETS) {
+      return Flux.error(new ResponseStatusException(BAD_REQUEST,
+          "A range may span at most " + MAX_SALES_BUCKETS + " buckets."));
+    }
+    return salesRollupRepository.findBuckets(sku, granularity, start, end);
+  }
+
+  // Rebuilds one day of the rollup time zone per transaction, so the rollup flushers are only
+  // held back for a single day's recomputation. Without 'from' the rebuild starts at the first
+  // stored order.
+  public Mono<Long> rebuildRollups(LocalDate from, LocalDate to) {
+    ZoneId zone = salesRollupRepository.zone();
+    LocalDate last = to != null ? to : LocalDate.now(zone);
+    Mono<LocalDate> first = from != null
+        ? Mono.just(from)
+        : salesRollupRepository.findFirstOrderTime()
+            .map(createdAt -> LocalDate.ofInstant(createdAt, zone));
+    return first
+        .flatMapMany(day -> {
+          if (day.isAfter(last)) {
+            return Flux.error(new ResponseStatusException(BAD_REQUEST,
+                "'from' must not be after 'to'."));
+          }
+          log.info("Rebuilding sales rollups from {} to {}", day, last);
+          return Flux.fromStream(day.datesUntil(last.plusDays(1)));
+        })
+        .concatMap(day -> salesRollupRepository.rebuild(startOf(day, zone),
+                startOf(day.plusDays(1), zone))
+            .thenReturn(day))
+        .count()
+        .doOnSuccess(days -> log.info("Rebuilt sales rollups for {} days.", days));
+  }
+
+  private static Instant startOf(LocalDate day, ZoneId zone) {
+    return day.atStartOfDay(zone).toInstant();
+  }
+}
@@ -9,4 +9,26 @@ public class AppConstants {
 
   public static final Duration BASKET_TTL = Duration.ofDays(1);
   public static final String BASKET_ID = "basketId";
+  public static final String LEGACY_BASKET_KEY_PREFIX = "basket:";
+  public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+  public static final int MAX_BATCH_ITEMS = 500;
+  // Basket limits keep quantities, subtotals and totals well inside int range, and the pricing
+  // buffers, which grow with the largest quantity, small.
+  public static final int MAX_LINE_QUANTITY = 10_000;
+  public static final int MAX_BASKET_TOTAL = 100_000_000;
+  public static final int MAX_SALES_BUCKETS = 1000;
+  public static final int MAX_IMPORT_ERRORS = 1000;
+  public static final String LEGACY_CHECKOUT_KEY_PREFIX = "checkout:";
+  public static final String LEGACY_ORDER_STREAM_KEY = "orders:pending";
+  public static final String ORDER_CONSUMER_GROUP = "order-writers";
+  public static final String ORDER_DEAD_LETTER_COUNTER = "checkout.orders.dead-lettered";
+  public static final String WRITE_BEHIND_ENABLED = "checkout.orders.write-behind.enabled";
+  public static final String STAGE_TIMER = "checkout.stage";
+  public static final String PRODUCT_CACHE_COUNTER = "checkout.product.cache";
+  public static final String PRODUCT_WARM_UP_ENABLED = "checkout.product-cache.warm-up.enabled";
+  public static final String BLOCKING_PROFILE = "blocking";
+  public static final String BASKET_STORE = "checkout.baskets.store";
+  public static final String BASKET_EVICTION_COUNTER = "checkout.baskets.evicted";
+  public static final String ORDER_PARTITIONS_ENABLED = "checkout.orders.partitions.enabled";
+  public static final String POOL_RECOMMENDATION_GAUGE = "checkout.db.pool.recommended-size";
 }
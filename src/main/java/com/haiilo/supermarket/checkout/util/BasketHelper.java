@@ -1,19 +1,28 @@
 package com.haiilo.supermarket.checkout.util;
 
 import static com.haiilo.supermarket.checkout.util.AppConstants.BASKET_ID;
-import static com.haiilo.supermarket.checkout.util.AppConstants.BASKET_TTL;
+import static com.haiilo.supermarket.checkout.util.AppConstants.MAX_BASKET_TOTAL;
+import static com.haiilo.supermarket.checkout.util.AppConstants.MAX_LINE_QUANTITY;
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
 import static org.springframework.http.HttpStatus.NOT_FOUND;
 
 import com.haiilo.supermarket.checkout.domain.Basket;
+import com.haiilo.supermarket.checkout.domain.BasketUpdate;
+import com.haiilo.supermarket.checkout.domain.PricedLine;
 import com.haiilo.supermarket.checkout.domain.Product;
+import com.haiilo.supermarket.checkout.pricing.PricingEngine;
+import com.haiilo.supermarket.checkout.repository.BasketRepository;
 import com.haiilo.supermarket.checkout.service.ProductService;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.stereotype.Component;
 import org.springframework.web.server.ResponseStatusException;
-import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
 
 @Component
 @Slf4j
@@ -21,12 +30,21 @@ import reactor.core.publisher.Mono;
 public class BasketHelper {
 
   private final ProductService productService;
-  private final ReactiveRedisTemplate<String, Basket> basketRedisTemplate;
+  private final BasketRepository basketRepository;
+  private final PricingEngine pricingEngine;
+  private final MetricsHelper metricsHelper;
 
   public Mono<Basket> getBasketById(String basketId) {
-    return basketRedisTemplate.opsForValue().get(basketId)
-        .switchIfEmpty(Mono.error(
-            new ResponseStatusException(NOT_FOUND, "Basket with ID " + basketId + " not found")));
+    return basketRepository.findById(basketId)
+        .switchIfEmpty(Mono.error(basketNotFound(basketId)));
+  }
+
+  public Mono<Basket> getPricedBasket(String basketId) {
+    return getBasketById(basketId)
+        .flatMap(basket -> !pricingEngine.hasRules() || basket.getItems().isEmpty()
+            ? Mono.just(basket)
+            : productService.getProductsBySkus(basket.getItems().keySet())
+                .map(products -> applyPromotions(basket, products)));
   }
 
   public Mono<Product> getProductBySku(String sku) {
@@ -34,49 +52,116 @@ public class BasketHelper {
         new ResponseStatusException(NOT_FOUND, "Product with SKU " + sku + " not found")));
   }
 
-  public Mono<Integer> getTotalPrice(Basket basket) {
-    return this.updateBasketAndRecalculate(basket).transformDeferredContextual(
+  public Mono<Map<String, Product>> getProductsBySkus(Collection<String> skus) {
+    return productService.getProductsBySkus(skus)
+        .flatMap(products -> {
+          List<String> missing = skus.stream().filter(sku -> !products.containsKey(sku)).toList();
+          return missing.isEmpty()
+              ? Mono.just(products)
+              : Mono.error(new ResponseStatusException(NOT_FOUND,
+                  "Products with SKUs " + missing + " not found"));
+        });
+  }
+
+  public Mono<Integer> updateItem(String basketId, Product product, int quantityDelta) {
+    return applyUpdate(basketId, basketRepository.updateItem(basketId, product, quantityDelta),
+        "Item with SKU " + product.sku() + " not found in basket");
+  }
+
+  public Mono<Integer> updateItems(String basketId, Map<String, Integer> quantityDeltas,
+      Map<String, Product> products) {
+    return applyUpdate(basketId,
+        basketRepository.updateItems(basketId, quantityDeltas, products),
+        "Cannot remove more items than the basket contains");
+  }
+
+  private Mono<Integer> applyUpdate(String basketId, Mono<BasketUpdate> basketUpdate,
+      String itemNotFoundMessage) {
+    Mono<Integer> totalPrice = basketUpdate
+        .flatMap(update -> switch (update.status()) {
+          case UPDATED -> Mono.just(update.totalPrice());
+          case PRICE_CHANGED -> {
+            log.debug("Prices changed in basket '{}', repricing.", basketId);
+            yield repriceBasket(basketId);
+          }
+          case BASKET_NOT_FOUND -> Mono.error(basketNotFound(basketId));
+          case ITEM_NOT_FOUND ->
+              Mono.error(new ResponseStatusException(NOT_FOUND, itemNotFoundMessage));
+          case LIMIT_EXCEEDED -> Mono.error(limitExceeded());
+        })
+        .flatMap(total -> pricingEngine.hasRules()
+            ? getPricedBasket(basketId).map(Basket::getTotalPrice)
+            : Mono.just(total));
+    return totalPrice.transformDeferredContextual(
         (originalMono, ctx) ->
             originalMono
-                .map(Basket::getTotalPrice)
                 .doOnSuccess(
-                    totalPrice -> log.info("Basket with Id '{}' recalculated total price '{}'.",
-                        ctx.get(BASKET_ID), totalPrice)));
+                    total -> log.debug("Basket with Id '{}' recalculated total price '{}'.",
+                        ctx.get(BASKET_ID), total)));
   }
 
-
-  private Mono<Basket> updateBasketAndRecalculate(Basket basket) {
-    return calculateTotal(basket)
-        .flatMap(totalPrice -> {
-          basket.setTotalPrice(totalPrice);
-          log.debug("Updating basket '{}' with new total price: {}", basket.getId(), totalPrice);
-          return basketRedisTemplate.opsForValue()
-              .set(basket.getId(), basket, BASKET_TTL)
-              .thenReturn(basket);
+  // Returns the basket priced against the current catalog together with the products used, so
+  // the order can record exactly the prices it was charged at.
+  public Mono<Tuple2<Basket, Map<String, Product>>> revalidateTotal(Basket basket) {
+    return productService.getProductsBySkus(basket.getItems().keySet())
+        .flatMap(products -> {
+          if (!hasStaleLines(basket, products)) {
+            return Mono.just(Tuples.of(applyPromotions(basket, products), products));
+          }
+          log.info("Basket with Id '{}' has outdated prices, repricing.", basket.getId());
+          return reprice(basket, products).then(getBasketById(basket.getId()))
+              .map(repriced -> Tuples.of(applyPromotions(repriced, products), products));
         });
   }
 
-  private Mono<Integer> calculateTotal(Basket basket) {
-    if (basket.getItems().isEmpty()) {
-      return Mono.just(0);
+  private Mono<Integer> repriceBasket(String basketId) {
+    return getBasketById(basketId)
+        .flatMap(basket -> productService.getProductsBySkus(basket.getItems().keySet())
+            .flatMap(products -> reprice(basket, products)));
+  }
+
+  private Mono<Integer> reprice(Basket basket, Map<String, Product> products) {
+    for (String sku : basket.getItems().keySet()) {
+      if (!products.containsKey(sku)) {
+        return Mono.error(
+            new ResponseStatusException(NOT_FOUND, "Product with SKU " + sku + " not found"));
+      }
     }
-    return Flux.fromIterable(basket.getItems().entrySet())
-        .flatMap(entry -> {
-          String sku = entry.getKey();
-          int quantity = entry.getValue();
-          return getProductBySku(sku)
-              .map(product -> calculateItemTotal(product, quantity))
-              .switchIfEmpty(Mono.just(0));
-        })
-        .reduce(0, Integer::sum);
+    return basketRepository.reprice(basket.getId(), products.values())
+        .flatMap(update -> update.status() == BasketUpdate.Status.BASKET_NOT_FOUND
+            ? Mono.error(basketNotFound(basket.getId()))
+            : Mono.just(update.totalPrice()));
+  }
+
+  // The Redis total only covers per-product offers; promotions spanning several lines or
+  // time windows are applied on top whenever any are active.
+  private Basket applyPromotions(Basket basket, Map<String, Product> products) {
+    if (pricingEngine.hasRules() && products.keySet().containsAll(basket.getItems().keySet())) {
+      metricsHelper.timed("pricing.evaluate", () -> pricingEngine.apply(basket, products));
+    }
+    return basket;
   }
 
-  private int calculateItemTotal(Product product, int quantity) {
-    if (product.hasSpecialOffer() && quantity >= product.offerQuantity()) {
-      int offerCount = quantity / product.offerQuantity();
-      int remainder = quantity % product.offerQuantity();
-      return (offerCount * product.offerPrice()) + (remainder * product.unitPrice());
+  // Shared with the blocking basket service: true when a line was priced from another version of
+  // its product than the current one, or when the line or the product is missing.
+  public static boolean hasStaleLines(Basket basket, Map<String, Product> products) {
+    for (String sku : basket.getItems().keySet()) {
+      PricedLine line = basket.getLines().get(sku);
+      Product product = products.get(sku);
+      if (line == null || product == null || line.priceVersion() != product.priceVersion()) {
+        return true;
+      }
     }
-    return quantity * product.unitPrice();
+    return false;
+  }
+
+  // Shared with the blocking basket service and the batch validation.
+  public static ResponseStatusException limitExceeded() {
+    return new ResponseStatusException(BAD_REQUEST, "A basket line can hold at most "
+        + MAX_LINE_QUANTITY + " items and a basket can total at most " + MAX_BASKET_TOTAL + ".");
+  }
+
+  private static ResponseStatusException basketNotFound(String basketId) {
+    return new ResponseStatusException(NOT_FOUND, "Basket with ID " + basketId + " not found");
   }
 }
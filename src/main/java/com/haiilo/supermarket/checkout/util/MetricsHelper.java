@@ -0,0 +1,114 @@
+package com.haiilo.supermarket.checkout.util;
+
+import static com.haiilo.supermarket.checkout.util.AppConstants.BASKET_EVICTION_COUNTER;
+import static com.haiilo.supermarket.checkout.util.AppConstants.ORDER_DEAD_LETTER_COUNTER;
+import static com.haiilo.supermarket.checkout.util.AppConstants.POOL_RECOMMENDATION_GAUGE;
+import static com.haiilo.supermarket.checkout.util.AppConstants.PRODUCT_CACHE_COUNTER;
+import static com.haiilo.supermarket.checkout.util.AppConstants.STAGE_TIMER;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@Component
+@RequiredArgsConstructor
+public class MetricsHelper {
+
+  private final MeterRegistry meterRegistry;
+
+  // Times from subscription to the first terminal signal, so the sample covers the actual Redis
+  // or database round trip rather than assembly of the pipeline. Operators like next() cancel
+  // after the value arrives; the guard keeps that from being counted a second time.
+  public <T> Mono<T> timed(String stage, Mono<T> mono) {
+    return Mono.defer(() -> {
+      Timer.Sample sample = Timer.start(meterRegistry);
+      AtomicBoolean stopped = new AtomicBoolean();
+      return mono
+          .doOnSuccess(value -> stop(sample, stopped, stage, value == null ? "empty" : "success"))
+          .doOnError(e -> stop(sample, stopped, stage, "error"))
+          .doOnCancel(() -> stop(sample, stopped, stage, "cancelled"));
+    });
+  }
+
+  public <T> Flux<T> timed(String stage, Flux<T> flux) {
+    return Flux.defer(() -> {
+      Timer.Sample sample = Timer.start(meterRegistry);
+      AtomicBoolean stopped = new AtomicBoolean();
+      return flux
+          .doOnComplete(() -> stop(sample, stopped, stage, "success"))
+          .doOnError(e -> stop(sample, stopped, stage, "error"))
+          .doOnCancel(() -> stop(sample, stopped, stage, "cancelled"));
+    });
+  }
+
+  public <T> T timed(String stage, Supplier<T> supplier) {
+    Timer.Sample sample = Timer.start(meterRegistry);
+    try {
+      T result = supplier.get();
+      sample.stop(timer(stage, "success"));
+      return result;
+    } catch (RuntimeException e) {
+      sample.stop(timer(stage, "error"));
+      throw e;
+    }
+  }
+
+  public void cacheLookups(String level, int hits, int misses) {
+    if (hits > 0) {
+      cacheCounter(level, "hit").increment(hits);
+    }
+    if (misses > 0) {
+      cacheCounter(level, "miss").increment(misses);
+    }
+  }
+
+  public void basketsEvicted(long count) {
+    Counter.builder(BASKET_EVICTION_COUNTER)
+        .description("Baskets evicted for being idle before their TTL ran out")
+        .register(meterRegistry)
+        .increment(count);
+  }
+
+  public void ordersDeadLettered(long count) {
+    Counter.builder(ORDER_DEAD_LETTER_COUNTER)
+        .description("Queued orders moved to the dead-letter stream because they could not be read")
+        .register(meterRegistry)
+        .increment(count);
+  }
+
+  public void poolRecommendation(Supplier<Number> recommendedSize) {
+    Gauge.builder(POOL_RECOMMENDATION_GAUGE, recommendedSize)
+        .description("Connection pool size recommended from the observed demand")
+        .register(meterRegistry);
+  }
+
+  private void stop(Timer.Sample sample, AtomicBoolean stopped, String stage, String outcome) {
+    if (stopped.compareAndSet(false, true)) {
+      sample.stop(timer(stage, outcome));
+    }
+  }
+
+  private Timer timer(String stage, String outcome) {
+    return Timer.builder(STAGE_TIMER)
+        .description("Latency of a single checkout stage")
+        .tag("stage", stage)
+        .tag("outcome", outcome)
+        .publishPercentileHistogram()
+        .register(meterRegistry);
+  }
+
+  private Counter cacheCounter(String level, String result) {
+    return Counter.builder(PRODUCT_CACHE_COUNTER)
+        .description("Product lookups per cache level")
+        .tag("level", level)
+        .tag("result", result)
+        .register(meterRegistry);
+  }
+}
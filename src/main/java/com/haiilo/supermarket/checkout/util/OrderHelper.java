@@ -1,17 +1,20 @@
 package com.haiilo.supermarket.checkout.util;
 
 import com.haiilo.supermarket.checkout.domain.Basket;
-import com.haiilo.supermarket.checkout.domain.Order;
-import com.haiilo.supermarket.checkout.dto.OrderDTO;
 import com.haiilo.supermarket.checkout.domain.OrderItem;
-import com.haiilo.supermarket.checkout.repository.OrderItemRepository;
-import com.haiilo.supermarket.checkout.repository.OrderRepository;
+import com.haiilo.supermarket.checkout.domain.PricedLine;
+import com.haiilo.supermarket.checkout.domain.Product;
+import com.haiilo.supermarket.checkout.dto.OrderDTO;
+import com.haiilo.supermarket.checkout.repository.SalesRollupRepository;
+import com.haiilo.supermarket.checkout.writebehind.OrderWriteBehindQueue;
 import java.time.Instant;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.r2dbc.core.DatabaseClient;
 import org.springframework.stereotype.Component;
-import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @Component
@@ -19,33 +22,164 @@ import reactor.core.publisher.Mono;
 @RequiredArgsConstructor
 public class OrderHelper {
 
-  private final OrderRepository orderRepository;
-  private final OrderItemRepository orderItemRepository;
-  private final BasketHelper basketHelper;
+  // Header, all lines and their sales rollup queue entries go to the database as one statement;
+  // the item arrays keep the statement text constant regardless of basket size. The order is
+  // only written if its checkout key could be claimed, as the partitioned orders table cannot
+  // keep the key unique itself.
+  public static final String INSERT_ORDER_WITH_ITEMS = """
+      WITH new_keys AS (
+          INSERT INTO checkout_keys (checkout_key, order_id, created_at)
+          VALUES (:checkoutKey, nextval(pg_get_serial_sequence('orders', 'id')), :createdAt)
+          ON CONFLICT (checkout_key) DO NOTHING
+          RETURNING checkout_key, order_id, created_at
+      ),
+      new_orders AS (
+          INSERT INTO orders (id, final_price, created_at, checkout_key)
+          OVERRIDING SYSTEM VALUE
+          SELECT order_id, :finalPrice, created_at, checkout_key
+          FROM new_keys
+          RETURNING id, created_at
+      ),
+      new_lines AS (
+          INSERT INTO order_items (order_id, created_at, product_sku, quantity, subtotal,
+              unit_price, offer_quantity, offer_price, price_version)
+          SELECT new_orders.id, new_orders.created_at, item.*
+          FROM new_orders, unnest(CAST(:skus AS VARCHAR[]), CAST(:quantities AS INTEGER[]),
+              CAST(:subtotals AS INTEGER[]), CAST(:unitPrices AS INTEGER[]),
+              CAST(:offerQuantities AS INTEGER[]), CAST(:offerPrices AS INTEGER[]),
+              CAST(:priceVersions AS BIGINT[])) AS item(sku, quantity, subtotal, unit_price,
+              offer_quantity, offer_price, price_version)
+          RETURNING *
+      ),
+      """ + SalesRollupRepository.QUEUE_ROLLUPS + """
+      SELECT * FROM new_lines
+      """;
+
+  public static final String SELECT_ORDER_BY_CHECKOUT_KEY = """
+      SELECT o.id AS order_id, o.final_price, o.created_at,
+          i.id AS item_id, i.product_sku, i.quantity, i.subtotal, i.unit_price,
+          i.offer_quantity, i.offer_price, i.price_version
+      FROM checkout_keys k
+      JOIN orders o ON o.created_at = k.created_at AND o.id = k.order_id
+      JOIN order_items i ON i.created_at = o.created_at AND i.order_id = o.id
+      WHERE k.checkout_key = :checkoutKey
+      ORDER BY i.id
+      """;
+
+  private final DatabaseClient databaseClient;
+  private final Optional<OrderWriteBehindQueue> writeBehindQueue;
+  private final MetricsHelper metricsHelper;
+
+  public Mono<OrderDTO> findOrder(String checkoutKey) {
+    return writeBehindQueue.map(queue -> queue.findConfirmation(checkoutKey))
+        .orElseGet(Mono::empty)
+        .switchIfEmpty(Mono.defer(() -> findStoredOrder(checkoutKey)));
+  }
+
+  // The products are the ones the basket was priced with; their prices are stored on each line.
+  public Mono<OrderDTO> saveOrder(Basket basket, Map<String, Product> products,
+      String checkoutKey) {
+    return writeBehindQueue.map(queue -> queue.enqueue(basket, products, checkoutKey)
+            .switchIfEmpty(Mono.defer(() -> insertOrder(basket, products, checkoutKey))))
+        .orElseGet(() -> insertOrder(basket, products, checkoutKey));
+  }
 
-  public Mono<Order> saveOrderHeader(Basket basket) {
-    Order orderHeader = new Order(null, basket.getTotalPrice(), Instant.now());
-    return orderRepository.save(orderHeader)
-        .doOnSuccess(order ->
-            log.info("Order with Id '{}' have been successfully saved.", order.id()));
+  private Mono<OrderDTO> findStoredOrder(String checkoutKey) {
+    return metricsHelper.timed("order.db.find", databaseClient.sql(SELECT_ORDER_BY_CHECKOUT_KEY)
+        .bind("checkoutKey", checkoutKey)
+        .map((row, metadata) -> OrderDTO.builder()
+            .id(row.get("order_id", Long.class))
+            .finalPrice(row.get("final_price", Integer.class))
+            .createdAt(row.get("created_at", Instant.class))
+            .items(List.of(OrderItem.builder()
+                .id(row.get("item_id", Long.class))
+                .orderId(row.get("order_id", Long.class))
+                .productSku(row.get("product_sku", String.class))
+                .quantity(row.get("quantity", Integer.class))
+                .subtotal(row.get("subtotal", Integer.class))
+                .unitPrice(row.get("unit_price", Integer.class))
+                .offerQuantity(row.get("offer_quantity", Integer.class))
+                .offerPrice(row.get("offer_price", Integer.class))
+                .priceVersion(row.get("price_version", Long.class))
+                .build()))
+            .build())
+        .all())
+        .collectList()
+        .filter(rows -> !rows.isEmpty())
+        .map(rows -> {
+          OrderDTO header = rows.get(0);
+          List<OrderItem> items = rows.stream().flatMap(row -> row.items().stream()).toList();
+          return OrderDTO.builder().id(header.id()).items(items)
+              .finalPrice(header.finalPrice()).createdAt(header.createdAt())
+              .build();
+        });
   }
 
-  public Mono<OrderDTO> saveOrderItems(Order savedOrder, String basketId) {
-    return basketHelper.getBasketById(basketId)
-        .flatMap(basket -> Flux.fromIterable(basket.getItems().entrySet())
-            .map(entry -> OrderItem.builder().orderId(null).orderId(savedOrder.id())
-                .productSku(entry.getKey()).quantity(entry.getValue()).build())
-            .collectList()
-        )
-        .flatMap(items -> orderItemRepository.saveAll(items).collectList())
-        .doOnSuccess(order ->
-            log.info("OrderItems have been successfully saved for Order Id '{}'", savedOrder.id()))
-        .flatMap(items -> buildFullOrder(savedOrder, items));
+  private Mono<OrderDTO> insertOrder(Basket basket, Map<String, Product> products,
+      String checkoutKey) {
+    Instant createdAt = Instant.now();
+    String[] skus = new String[basket.getItems().size()];
+    Integer[] quantities = new Integer[skus.length];
+    Integer[] subtotals = new Integer[skus.length];
+    Integer[] unitPrices = new Integer[skus.length];
+    Integer[] offerQuantities = new Integer[skus.length];
+    Integer[] offerPrices = new Integer[skus.length];
+    Long[] priceVersions = new Long[skus.length];
+    int index = 0;
+    for (Map.Entry<String, Integer> item : basket.getItems().entrySet()) {
+      PricedLine line = basket.getLines().get(item.getKey());
+      Product product = products.get(item.getKey());
+      skus[index] = item.getKey();
+      quantities[index] = item.getValue();
+      subtotals[index] = line != null ? line.subtotal() : null;
+      if (product != null) {
+        unitPrices[index] = product.unitPrice();
+        offerQuantities[index] = product.offerQuantity();
+        offerPrices[index] = product.offerPrice();
+        priceVersions[index] = product.priceVersion();
+      }
+      index++;
+    }
+    return metricsHelper.timed("order.db.insert", databaseClient.sql(INSERT_ORDER_WITH_ITEMS)
+        .bind("finalPrice", basket.getTotalPrice())
+        .bind("createdAt", createdAt)
+        .bind("checkoutKey", checkoutKey)
+        .bind("skus", skus)
+        .bind("quantities", quantities)
+        .bind("subtotals", subtotals)
+        .bind("unitPrices", unitPrices)
+        .bind("offerQuantities", offerQuantities)
+        .bind("offerPrices", offerPrices)
+        .bind("priceVersions", priceVersions)
+        .map((row, metadata) -> OrderItem.builder()
+            .id(row.get("id", Long.class))
+            .orderId(row.get("order_id", Long.class))
+            .productSku(row.get("product_sku", String.class))
+            .quantity(row.get("quantity", Integer.class))
+            .subtotal(row.get("subtotal", Integer.class))
+            .unitPrice(row.get("unit_price", Integer.class))
+            .offerQuantity(row.get("offer_quantity", Integer.class))
+            .offerPrice(row.get("offer_price", Integer.class))
+            .priceVersion(row.get("price_version", Long.class))
+            .build())
+        .all())
+        .collectList()
+        .flatMap(items -> {
+          if (items.isEmpty()) {
+            log.info("Order for checkout key '{}' already exists, returning stored order.",
+                checkoutKey);
+            return findStoredOrder(checkoutKey);
+          }
+          OrderDTO order = buildFullOrder(basket.getTotalPrice(), createdAt, items);
+          log.info("Order with Id '{}' and {} items have been successfully saved.", order.id(),
+              items.size());
+          return Mono.just(order);
+        });
   }
 
-  private Mono<OrderDTO> buildFullOrder(Order order, List<OrderItem> orderItems) {
-    return Mono.just(OrderDTO.builder().id(order.id()).items(orderItems)
-        .finalPrice(order.finalPrice()).createdAt(order.createdAt())
-        .build());
+  private OrderDTO buildFullOrder(int finalPrice, Instant createdAt, List<OrderItem> orderItems) {
+    return OrderDTO.builder().id(orderItems.get(0).orderId()).items(orderItems)
+        .finalPrice(finalPrice).createdAt(createdAt)
+        .build();
   }
 }
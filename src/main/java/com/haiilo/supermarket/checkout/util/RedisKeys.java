@@ -0,0 +1,101 @@
+package com.haiilo.supermarket.checkout.util;
+
+import static com.haiilo.supermarket.checkout.util.AppConstants.LEGACY_BASKET_KEY_PREFIX;
+import static com.haiilo.supermarket.checkout.util.AppConstants.LEGACY_CHECKOUT_KEY_PREFIX;
+import static com.haiilo.supermarket.checkout.util.AppConstants.LEGACY_ORDER_STREAM_KEY;
+
+import java.util.List;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// Every Redis key lives under a configurable namespace, so several deployments can share a
+// cluster. Keys used together by one command or script share a hash tag and therefore a cluster
+// slot. Each basket is tagged with its own id, which spreads baskets evenly over the shards. The
+// order stream and the checkout confirmations written by the same script share the {orders} tag,
+// the sorted sets of the active-basket index share the {baskets} tag.
+@Component
+public class RedisKeys {
+
+  private static final String ORDERS_TAG = "{orders}";
+  private static final String BASKETS_TAG = "{baskets}";
+
+  private final String namespace;
+  private final boolean legacyKeys;
+
+  public RedisKeys(@Value("${checkout.redis.namespace:checkout}") String namespace,
+      @Value("${checkout.redis.legacy-keys:true}") boolean legacyKeys) {
+    this.namespace = namespace;
+    this.legacyKeys = legacyKeys;
+  }
+
+  public String basket(String basketId) {
+    return namespace + ":basket:{" + basketId + "}";
+  }
+
+  // Basket ids scored by the time of their last change.
+  public String activeBaskets() {
+    return namespace + ":" + BASKETS_TAG + ":active";
+  }
+
+  // Basket ids scored by their number of lines.
+  public String basketLines() {
+    return namespace + ":" + BASKETS_TAG + ":lines";
+  }
+
+  public String product(String sku) {
+    return namespace + ":product:" + sku;
+  }
+
+  // Held by the instance running the periodic product cache warm-up.
+  public String productWarmUpLease() {
+    return namespace + ":product-warm-up";
+  }
+
+  public String checkoutConfirmation(String checkoutKey) {
+    return namespace + ":" + ORDERS_TAG + ":checkout:" + checkoutKey;
+  }
+
+  public String orderStream() {
+    return namespace + ":" + ORDERS_TAG + ":pending";
+  }
+
+  // Queued orders the worker could not read; kept until someone deals with them.
+  public String orderDeadLetterStream() {
+    return namespace + ":" + ORDERS_TAG + ":dead-letter";
+  }
+
+  // While enabled, data written under the keys used before namespacing is still read and moved
+  // on access. Moving a basket renames it, which only works while both keys are on one node, so
+  // this has to be switched off before moving to Redis Cluster.
+  public boolean legacyKeys() {
+    return legacyKeys;
+  }
+
+  // All keys a basket may be stored under, for deletes.
+  public List<String> basketKeys(String basketId) {
+    return legacyKeys
+        ? List.of(basket(basketId), legacyBasket(basketId), legacyBasketValue(basketId))
+        : List.of(basket(basketId));
+  }
+
+  public static String legacyBasket(String basketId) {
+    return LEGACY_BASKET_KEY_PREFIX + basketId;
+  }
+
+  // Baskets stored as a single serialized value before they became hashes.
+  public static String legacyBasketValue(String basketId) {
+    return basketId;
+  }
+
+  public static String legacyProduct(String sku) {
+    return sku;
+  }
+
+  public static String legacyCheckoutConfirmation(String checkoutKey) {
+    return LEGACY_CHECKOUT_KEY_PREFIX + checkoutKey;
+  }
+
+  public static String legacyOrderStream() {
+    return LEGACY_ORDER_STREAM_KEY;
+  }
+}
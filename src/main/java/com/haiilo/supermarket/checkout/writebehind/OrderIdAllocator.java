@@ -0,0 +1,61 @@
+package com.haiilo.supermarket.checkout.writebehind;
+
+import static com.haiilo.supermarket.checkout.util.AppConstants.WRITE_BEHIND_ENABLED;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+@Slf4j
+@Component
+@ConditionalOnProperty(name = WRITE_BEHIND_ENABLED, havingValue = "true")
+public class OrderIdAllocator {
+
+  private static final String RESERVE_IDS =
+      "SELECT nextval(pg_get_serial_sequence('orders', 'id')) FROM generate_series(1, :count)";
+
+  private final DatabaseClient databaseClient;
+  private final int blockSize;
+  private final Queue<Long> reservedIds = new ConcurrentLinkedQueue<>();
+  private final AtomicReference<Mono<Void>> refill = new AtomicReference<>();
+
+  public OrderIdAllocator(DatabaseClient databaseClient,
+      @Value("${checkout.orders.write-behind.id-block-size:100}") int blockSize) {
+    this.databaseClient = databaseClient;
+    this.blockSize = blockSize;
+  }
+
+  public Mono<Long> nextId() {
+    return Mono.defer(() -> {
+      Long id = reservedIds.poll();
+      if (id != null) {
+        return Mono.just(id);
+      }
+      return refill().then(nextId());
+    });
+  }
+
+  // Concurrent callers share one in-flight reservation instead of each hitting the sequence.
+  private Mono<Void> refill() {
+    Mono<Void> current = refill.get();
+    if (current != null) {
+      return current;
+    }
+    Mono<Void> reservation = databaseClient.sql(RESERVE_IDS)
+        .bind("count", blockSize)
+        .map((row, metadata) -> row.get(0, Long.class))
+        .all()
+        .doOnNext(reservedIds::add)
+        .then()
+        .doOnSuccess(v -> log.debug("Reserved a block of {} order ids.", blockSize))
+        .doFinally(signal -> refill.set(null))
+        .cache();
+    return refill.compareAndSet(null, reservation) ? reservation : Mono.defer(this::refill);
+  }
+}
@@ -0,0 +1,136 @@
+package com.haiilo.supermarket.checkout.writebehind;
+
+import static com.haiilo.supermarket.checkout.util.AppConstants.BASKET_TTL;
+import static com.haiilo.supermarket.checkout.util.AppConstants.WRITE_BEHIND_ENABLED;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.haiilo.supermarket.checkout.domain.Basket;
+import com.haiilo.supermarket.checkout.domain.OrderItem;
+import com.haiilo.supermarket.checkout.domain.PriceSnapshot;
+import com.haiilo.supermarket.checkout.domain.Product;
+import com.haiilo.supermarket.checkout.dto.OrderDTO;
+import com.haiilo.supermarket.checkout.util.MetricsHelper;
+import com.haiilo.supermarket.checkout.util.RedisKeys;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+@Slf4j
+@Component
+@ConditionalOnProperty(name = WRITE_BEHIND_ENABLED, havingValue = "true")
+public class OrderWriteBehindQueue {
+
+  private static final String BACKLOG_FULL = "BACKLOG_FULL";
+  private static final RedisScript<String> ENQUEUE_SCRIPT =
+      RedisScript.of(new ClassPathResource("scripts/order-enqueue.lua"), String.class);
+
+  private final ReactiveStringRedisTemplate stringRedisTemplate;
+  private final OrderIdAllocator orderIdAllocator;
+  private final ObjectMapper objectMapper;
+  private final MetricsHelper metricsHelper;
+  private final RedisKeys redisKeys;
+  private final long maxBacklog;
+
+  public OrderWriteBehindQueue(ReactiveStringRedisTemplate stringRedisTemplate,
+      OrderIdAllocator orderIdAllocator, ObjectMapper objectMapper, MetricsHelper metricsHelper,
+      RedisKeys redisKeys,
+      @Value("${checkout.orders.write-behind.max-backlog:100000}") long maxBacklog) {
+    this.stringRedisTemplate = stringRedisTemplate;
+    this.orderIdAllocator = orderIdAllocator;
+    this.objectMapper = objectMapper;
+    this.metricsHelper = metricsHelper;
+    this.redisKeys = redisKeys;
+    this.maxBacklog = maxBacklog;
+  }
+
+  // Completes empty when the backlog is full so the caller can fall back to a synchronous write.
+  public Mono<OrderDTO> enqueue(Basket basket, Map<String, Product> products,
+      String checkoutKey) {
+    return orderIdAllocator.nextId()
+        .flatMap(orderId -> {
+          Instant createdAt = Instant.now();
+          Map<String, Integer> items = Map.copyOf(basket.getItems());
+          Map<String, Integer> subtotals = new HashMap<>();
+          basket.getLines().forEach((sku, line) -> {
+            if (items.containsKey(sku)) {
+              subtotals.put(sku, line.subtotal());
+            }
+          });
+          Map<String, PriceSnapshot> prices = new HashMap<>();
+          products.forEach((sku, product) -> {
+            if (items.containsKey(sku)) {
+              prices.put(sku, PriceSnapshot.of(product));
+            }
+          });
+          PendingOrder pendingOrder = new PendingOrder(orderId, checkoutKey,
+              basket.getTotalPrice(), createdAt, items, subtotals, prices);
+          List<OrderItem> orderItems = items.keySet().stream()
+              .map(sku -> toOrderItem(orderId, sku, items.get(sku), subtotals.get(sku),
+                  prices.get(sku)))
+              .toList();
+          OrderDTO confirmation = OrderDTO.builder().id(orderId).items(orderItems)
+              .finalPrice(basket.getTotalPrice()).createdAt(createdAt)
+              .build();
+          List<String> keys = List.of(redisKeys.checkoutConfirmation(checkoutKey),
+              redisKeys.orderStream());
+          List<String> args = List.of(toJson(confirmation), toJson(pendingOrder),
+              String.valueOf(BASKET_TTL.toSeconds()), String.valueOf(maxBacklog));
+          return metricsHelper.timed("order.queue.enqueue",
+              stringRedisTemplate.execute(ENQUEUE_SCRIPT, keys, args).next());
+        })
+        .flatMap(result -> {
+          if (BACKLOG_FULL.equals(result)) {
+            log.warn("Order write-behind backlog is full, writing order '{}' synchronously.",
+                checkoutKey);
+            return Mono.empty();
+          }
+          return Mono.just(fromJson(result, OrderDTO.class));
+        });
+  }
+
+  public Mono<OrderDTO> findConfirmation(String checkoutKey) {
+    Mono<String> legacyConfirmation = redisKeys.legacyKeys()
+        ? stringRedisTemplate.opsForValue().get(RedisKeys.legacyCheckoutConfirmation(checkoutKey))
+        : Mono.empty();
+    return stringRedisTemplate.opsForValue().get(redisKeys.checkoutConfirmation(checkoutKey))
+        .switchIfEmpty(legacyConfirmation)
+        .map(json -> fromJson(json, OrderDTO.class));
+  }
+
+  private static OrderItem toOrderItem(long orderId, String sku, int quantity, Integer subtotal,
+      PriceSnapshot price) {
+    OrderItem.OrderItemBuilder item = OrderItem.builder().orderId(orderId).productSku(sku)
+        .quantity(quantity).subtotal(subtotal);
+    if (price != null) {
+      item.unitPrice(price.unitPrice()).offerQuantity(price.offerQuantity())
+          .offerPrice(price.offerPrice()).priceVersion(price.priceVersion());
+    }
+    return item.build();
+  }
+
+  private String toJson(Object value) {
+    try {
+      return objectMapper.writeValueAsString(value);
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Could not serialize " + value.getClass().getSimpleName(), e);
+    }
+  }
+
+  private <T> T fromJson(String json, Class<T> type) {
+    try {
+      return objectMapper.readValue(json, type);
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Could not deserialize " + type.getSimpleName(), e);
+    }
+  }
+}
@@ -0,0 +1,361 @@
+package com.haiilo.supermarket.checkout.writebehind;
+
+import static com.haiilo.supermarket.checkout.util.AppConstants.ORDER_CONSUMER_GROUP;
+import static com.haiilo.supermarket.checkout.util.AppConstants.WRITE_BEHIND_ENABLED;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.haiilo.supermarket.checkout.domain.PriceSnapshot;
+import com.haiilo.supermarket.checkout.repository.SalesRollupRepository;
+import com.haiilo.supermarket.checkout.util.MetricsHelper;
+import com.haiilo.supermarket.checkout.util.RedisKeys;
+import io.r2dbc.spi.R2dbcException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.ReactiveStreamOperations;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@Slf4j
+@Component
+@ConditionalOnProperty(name = WRITE_BEHIND_ENABLED, havingValue = "true")
+public class OrderWriteBehindWorker {
+
+  private static final String INSERT_ORDERS_WITH_ITEMS = """
+      WITH batch AS (
+          SELECT o.id, o.final_price,
+              to_timestamp(o.created_at_ms / 1000.0) AT TIME ZONE 'UTC' AS created_at,
+              o.checkout_key
+          FROM unnest(CAST(:ids AS BIGINT[]), CAST(:finalPrices AS INTEGER[]),
+              CAST(:createdAts AS BIGINT[]), CAST(:checkoutKeys AS VARCHAR[]))
+              AS o(id, final_price, created_at_ms, checkout_key)
+      ),
+      new_keys AS (
+          INSERT INTO checkout_keys (checkout_key, order_id, created_at)
+          SELECT checkout_key, id, created_at
+          FROM batch
+          ON CONFLICT (checkout_key) DO NOTHING
+          RETURNING order_id
+      ),
+      new_orders AS (
+          INSERT INTO orders (id, final_price, created_at, checkout_key)
+          OVERRIDING SYSTEM VALUE
+          SELECT batch.id, batch.final_price, batch.created_at, batch.checkout_key
+          FROM batch
+          JOIN new_keys ON new_keys.order_id = batch.id
+          RETURNING id, created_at
+      ),
+      new_lines AS (
+          INSERT INTO order_items (order_id, created_at, product_sku, quantity, subtotal,
+              unit_price, offer_quantity, offer_price, price_version)
+          SELECT item.order_id, new_orders.created_at, item.sku, item.quantity, item.subtotal,
+              item.unit_price, item.offer_quantity, item.offer_price, item.price_version
+          FROM unnest(CAST(:itemOrderIds AS BIGINT[]), CAST(:skus AS VARCHAR[]),
+              CAST(:quantities AS INTEGER[]), CAST(:subtotals AS INTEGER[]),
+              CAST(:unitPrices AS INTEGER[]), CAST(:offerQuantities AS INTEGER[]),
+              CAST(:offerPrices AS INTEGER[]), CAST(:priceVersions AS BIGINT[]))
+              AS item(order_id, sku, quantity, subtotal, unit_price, offer_quantity, offer_price,
+              price_version)
+          JOIN new_orders ON new_orders.id = item.order_id
+          RETURNING product_sku, created_at, quantity, subtotal
+      ),
+      """ + SalesRollupRepository.QUEUE_ROLLUPS + """
+      SELECT COUNT(*) AS lines FROM new_lines
+      """;
+
+  private final ReactiveStringRedisTemplate stringRedisTemplate;
+  private final ReactiveStreamOperations<String, String, String> streamOperations;
+  private final DatabaseClient databaseClient;
+  private final ObjectMapper objectMapper;
+  private final MetricsHelper metricsHelper;
+  private final Consumer consumer;
+  private final RedisKeys redisKeys;
+  private final int batchSize;
+  private final Duration pollInterval;
+  private final Duration retryBackoff;
+  private final int maxAttempts;
+  private final Duration claimIdle;
+  // Failed attempts at the batch at the head of each stream's pending entries
+  private final Map<String, Integer> failedAttempts = new ConcurrentHashMap<>();
+  private Disposable subscription;
+
+  public OrderWriteBehindWorker(ReactiveStringRedisTemplate stringRedisTemplate,
+      DatabaseClient databaseClient, ObjectMapper objectMapper, MetricsHelper metricsHelper,
+      RedisKeys redisKeys,
+      @Value("${checkout.orders.write-behind.consumer:${HOSTNAME:checkout-1}}") String consumerName,
+      @Value("${checkout.orders.write-behind.batch-size:500}") int batchSize,
+      @Value("${checkout.orders.write-behind.poll-interval:PT0.2S}") Duration pollInterval,
+      @Value("${checkout.orders.write-behind.retry-backoff:PT5S}") Duration retryBackoff,
+      @Value("${checkout.orders.write-behind.max-attempts:5}") int maxAttempts,
+      @Value("${checkout.orders.write-behind.claim-idle:PT1M}") Duration claimIdle) {
+    this.stringRedisTemplate = stringRedisTemplate;
+    this.streamOperations = stringRedisTemplate.opsForStream();
+    this.databaseClient = databaseClient;
+    this.objectMapper = objectMapper;
+    this.metricsHelper = metricsHelper;
+    this.consumer = Consumer.from(ORDER_CONSUMER_GROUP, consumerName);
+    this.redisKeys = redisKeys;
+    this.batchSize = batchSize;
+    this.pollInterval = pollInterval;
+    this.retryBackoff = retryBackoff;
+    this.maxAttempts = maxAttempts;
+    this.claimIdle = claimIdle;
+  }
+
+  @PostConstruct
+  void start() {
+    subscription = streams()
+        .flatMap(streams -> Flux.fromIterable(streams)
+            .concatMap(stream -> streamOperations
+                .createGroup(stream, ReadOffset.from("0"), ORDER_CONSUMER_GROUP)
+                .onErrorResume(e -> Mono.empty()))
+            .then(Mono.just(streams)))
+        .flatMap(streams -> Flux.fromIterable(streams)
+            .concatMap(this::drainOnce)
+            .reduce(0, Integer::sum)
+            .onErrorResume(e -> {
+              log.error("Order write-behind batch failed, retrying in {}.", retryBackoff, e);
+              return Mono.delay(retryBackoff).thenReturn(0);
+            })
+            .flatMap(count -> count == 0
+                ? Mono.delay(pollInterval).thenReturn(0)
+                : Mono.just(count))
+            .repeat()
+            .then())
+        .subscribe();
+    log.info("Order write-behind worker '{}' started.", consumer.getName());
+  }
+
+  // Orders queued by a version before namespaced keys are drained from the old stream as long as
+  // it exists at startup.
+  private Mono<List<String>> streams() {
+    String legacyStream = RedisKeys.legacyOrderStream();
+    if (!redisKeys.legacyKeys()) {
+      return Mono.just(List.of(redisKeys.orderStream()));
+    }
+    return stringRedisTemplate.hasKey(legacyStream)
+        .doOnNext(exists -> {
+          if (exists) {
+            log.info("Draining orders queued on the legacy stream '{}'.", legacyStream);
+          }
+        })
+        .map(exists -> exists
+            ? List.of(redisKeys.orderStream(), legacyStream)
+            : List.of(redisKeys.orderStream()));
+  }
+
+  @PreDestroy
+  void stop() {
+    if (subscription != null) {
+      subscription.dispose();
+    }
+  }
+
+  // Entries this consumer read but never acknowledged (failed batch, crash) are retried first,
+  // then those other consumers left idle; ON CONFLICT makes the replay safe for orders that did
+  // reach the database.
+  Mono<Integer> drainOnce(String stream) {
+    return readBatch(stream, ReadOffset.from("0"))
+        .filter(records -> !records.isEmpty())
+        .switchIfEmpty(Mono.defer(() -> claimIdle(stream)))
+        .filter(records -> !records.isEmpty())
+        .switchIfEmpty(Mono.defer(() -> readBatch(stream, ReadOffset.lastConsumed())))
+        .flatMap(records -> persist(stream, records));
+  }
+
+  // Takes over entries another consumer has left unacknowledged for claimIdle, e.g. because its
+  // pod is gone and the replacement runs under another name. A live consumer re-reads its own
+  // failed batch every retry backoff, so it keeps them. Claimed entries become this consumer's
+  // pending entries and are persisted right away.
+  private Mono<List<MapRecord<String, String, String>>> claimIdle(String stream) {
+    return streamOperations.pending(stream, ORDER_CONSUMER_GROUP, Range.unbounded(), batchSize)
+        .map(pending -> pending.stream()
+            .filter(message -> !message.getConsumerName().equals(consumer.getName()))
+            .filter(message -> message.getElapsedTimeSinceLastDelivery().compareTo(claimIdle) >= 0)
+            .map(PendingMessage::getId)
+            .toArray(RecordId[]::new))
+        .flatMap(ids -> ids.length == 0
+            ? Mono.just(List.<MapRecord<String, String, String>>of())
+            : streamOperations.claim(stream, ORDER_CONSUMER_GROUP, consumer.getName(), claimIdle,
+                    ids)
+                .collectList()
+                .doOnNext(claimed -> log.info("Claimed {} orders left idle by other consumers.",
+                    claimed.size())));
+  }
+
+  @SuppressWarnings("unchecked")
+  private Mono<List<MapRecord<String, String, String>>> readBatch(String stream,
+      ReadOffset offset) {
+    return streamOperations.read(consumer, StreamReadOptions.empty().count(batchSize),
+            StreamOffset.create(stream, offset))
+        .collectList();
+  }
+
+  // Only acknowledged once the readable orders are stored and the rejected ones are on the
+  // dead-letter stream; the till has been told these orders are confirmed. After maxAttempts
+  // failed attempts the orders are stored one by one, so a single order the database rejects
+  // no longer holds up every order queued behind it.
+  private Mono<Integer> persist(String stream, List<MapRecord<String, String, String>> records) {
+    if (records.isEmpty()) {
+      return Mono.just(0);
+    }
+    List<PendingOrder> orders = new ArrayList<>(records.size());
+    List<MapRecord<String, String, String>> readable = new ArrayList<>(records.size());
+    Map<MapRecord<String, String, String>, String> rejected = new LinkedHashMap<>();
+    RecordId[] recordIds = new RecordId[records.size()];
+    for (int i = 0; i < records.size(); i++) {
+      MapRecord<String, String, String> record = records.get(i);
+      recordIds[i] = record.getId();
+      try {
+        orders.add(objectMapper.readValue(record.getValue().get("order"), PendingOrder.class));
+        readable.add(record);
+      } catch (JsonProcessingException | IllegalArgumentException e) {
+        log.error("Pending order '{}' could not be read, moving it to '{}'.", record.getId(),
+            redisKeys.orderDeadLetterStream(), e);
+        rejected.put(record, "Unreadable: " + e.getMessage());
+      }
+    }
+    Mono<Void> stored = failedAttempts.getOrDefault(stream, 0) >= maxAttempts
+        ? insertEach(orders, readable, rejected)
+        : insert(orders).then();
+    return stored
+        .then(Mono.defer(() -> deadLetter(stream, rejected)))
+        .then(Mono.defer(() -> streamOperations.acknowledge(stream, ORDER_CONSUMER_GROUP,
+            recordIds)))
+        .then(Mono.defer(() -> streamOperations.delete(stream, recordIds)))
+        .doOnSuccess(v -> {
+          failedAttempts.remove(stream);
+          log.info("Order write-behind flushed {} orders.", records.size() - rejected.size());
+        })
+        .doOnError(e -> failedAttempts.merge(stream, 1, Integer::sum))
+        .thenReturn(records.size());
+  }
+
+  // Orders the database rejects are added to the rejected ones; any other failure, e.g. a lost
+  // connection, fails the batch as a whole and it is retried.
+  private Mono<Void> insertEach(List<PendingOrder> orders,
+      List<MapRecord<String, String, String>> records,
+      Map<MapRecord<String, String, String>, String> rejected) {
+    log.warn("Order write-behind batch failed {} times, storing its {} orders one by one.",
+        maxAttempts, orders.size());
+    return Flux.range(0, orders.size())
+        .concatMap(i -> insert(List.of(orders.get(i)))
+            .onErrorResume(OrderWriteBehindWorker::isRejected, e -> {
+              log.error("Pending order '{}' was rejected by the database, moving it to '{}'.",
+                  records.get(i).getId(), redisKeys.orderDeadLetterStream(), e);
+              rejected.put(records.get(i), "Rejected: " + e.getMessage());
+              return Mono.empty();
+            }))
+        .then();
+  }
+
+  // Data exceptions and constraint violations (SQLSTATE classes 22 and 23) fail the same way on
+  // every attempt.
+  private static boolean isRejected(Throwable error) {
+    for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+      if (cause instanceof R2dbcException r2dbc && r2dbc.getSqlState() != null) {
+        return r2dbc.getSqlState().startsWith("22") || r2dbc.getSqlState().startsWith("23");
+      }
+    }
+    return false;
+  }
+
+  // A replay after a failure further on may add an entry twice; the source id tells them apart.
+  private Mono<Void> deadLetter(String stream,
+      Map<MapRecord<String, String, String>, String> records) {
+    if (records.isEmpty()) {
+      return Mono.empty();
+    }
+    return Flux.fromIterable(records.entrySet())
+        .concatMap(record -> {
+          Map<String, String> fields = new HashMap<>(record.getKey().getValue());
+          fields.put("stream", stream);
+          fields.put("id", record.getKey().getId().getValue());
+          fields.put("error", String.valueOf(record.getValue()));
+          return streamOperations.add(
+              StreamRecords.newRecord().in(redisKeys.orderDeadLetterStream()).ofMap(fields));
+        })
+        .then()
+        .doOnSuccess(v -> metricsHelper.ordersDeadLettered(records.size()));
+  }
+
+  private Mono<Long> insert(List<PendingOrder> orders) {
+    if (orders.isEmpty()) {
+      return Mono.just(0L);
+    }
+    int itemCount = orders.stream().mapToInt(order -> order.items().size()).sum();
+    Long[] ids = new Long[orders.size()];
+    Integer[] finalPrices = new Integer[orders.size()];
+    Long[] createdAts = new Long[orders.size()];
+    String[] checkoutKeys = new String[orders.size()];
+    Long[] itemOrderIds = new Long[itemCount];
+    String[] skus = new String[itemCount];
+    Integer[] quantities = new Integer[itemCount];
+    Integer[] subtotals = new Integer[itemCount];
+    Integer[] unitPrices = new Integer[itemCount];
+    Integer[] offerQuantities = new Integer[itemCount];
+    Integer[] offerPrices = new Integer[itemCount];
+    Long[] priceVersions = new Long[itemCount];
+    int item = 0;
+    for (int i = 0; i < orders.size(); i++) {
+      PendingOrder order = orders.get(i);
+      ids[i] = order.id();
+      finalPrices[i] = order.finalPrice();
+      createdAts[i] = order.createdAt().toEpochMilli();
+      checkoutKeys[i] = order.checkoutKey();
+      for (Map.Entry<String, Integer> line : order.items().entrySet()) {
+        itemOrderIds[item] = order.id();
+        skus[item] = line.getKey();
+        quantities[item] = line.getValue();
+        // Orders queued before subtotals or prices were recorded carry none.
+        subtotals[item] = order.subtotals() != null ? order.subtotals().get(line.getKey()) : null;
+        PriceSnapshot price = order.prices() != null ? order.prices().get(line.getKey()) : null;
+        if (price != null) {
+          unitPrices[item] = price.unitPrice();
+          offerQuantities[item] = price.offerQuantity();
+          offerPrices[item] = price.offerPrice();
+          priceVersions[item] = price.priceVersion();
+        }
+        item++;
+      }
+    }
+    return metricsHelper.timed("order.queue.flush", databaseClient.sql(INSERT_ORDERS_WITH_ITEMS)
+        .bind("ids", ids)
+        .bind("finalPrices", finalPrices)
+        .bind("createdAts", createdAts)
+        .bind("checkoutKeys", checkoutKeys)
+        .bind("itemOrderIds", itemOrderIds)
+        .bind("skus", skus)
+        .bind("quantities", quantities)
+        .bind("subtotals", subtotals)
+        .bind("unitPrices", unitPrices)
+        .bind("offerQuantities", offerQuantities)
+        .bind("offerPrices", offerPrices)
+        .bind("priceVersions", priceVersions)
+        .map((row, metadata) -> row.get("lines", Long.class))
+        .one());
+  }
+}
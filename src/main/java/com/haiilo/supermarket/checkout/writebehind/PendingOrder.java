@@ -0,0 +1,16 @@
+package com.haiilo.supermarket.checkout.writebehind;
+
+import com.haiilo.supermarket.checkout.domain.PriceSnapshot;
+import java.time.Instant;
+import java.util.Map;
+
+public record PendingOrder(
+    long id,
+    String checkoutKey,
+    int finalPrice,
+    Instant createdAt,
+    Map<String, Integer> items,
+    Map<String, Integer> subtotals,
+    Map<String, PriceSnapshot> prices
+) {
+}
@@ -1,4 +1,6 @@
-DROP TABLE IF EXISTS products;
+-- Schema as created by init-db/01-init.sql before migrations were introduced. Databases set up
+-- that way are baselined at this version, so only the later migrations run against them.
+
 CREATE TABLE products
 (
     id             BIGSERIAL PRIMARY KEY,
@@ -9,7 +11,6 @@ CREATE TABLE products
     offer_price    INTEGER
 );
 
-DROP TABLE IF EXISTS orders;
 CREATE TABLE orders
 (
     id          BIGINT PRIMARY KEY GENERATED ALWAYS AS IDENTITY,
@@ -23,4 +24,8 @@ CREATE TABLE order_items
     order_id          BIGINT       NOT NULL REFERENCES orders (id),
     product_sku       VARCHAR(255) NOT NULL,
     quantity          INTEGER      NOT NULL
-);
\ No newline at end of file
+);
+
+CREATE INDEX idx_products_sku ON products (sku);
+CREATE INDEX idx_order_items_order_id ON order_items (order_id);
+CREATE INDEX idx_order_items_product_sku ON order_items (product_sku);
@@ -0,0 +1,6 @@
+-- Retries of a checkout carry the same key and find the order it already placed. Orders placed
+-- before keys were recorded get one derived from their id, which no basket id can produce.
+ALTER TABLE orders ADD COLUMN checkout_key VARCHAR(255);
+UPDATE orders SET checkout_key = 'order-' || id;
+ALTER TABLE orders ALTER COLUMN checkout_key SET NOT NULL;
+ALTER TABLE orders ADD CONSTRAINT orders_checkout_key_key UNIQUE (checkout_key);
@@ -0,0 +1,18 @@
+CREATE TABLE promotions
+(
+    id         BIGINT PRIMARY KEY GENERATED ALWAYS AS IDENTITY,
+    type       VARCHAR(32) NOT NULL CHECK (type IN ('MULTIBUY', 'BUNDLE', 'PERCENTAGE')),
+    price      INTEGER,
+    percent    INTEGER,
+    valid_from TIMESTAMP,
+    valid_to   TIMESTAMP,
+    active     BOOLEAN     NOT NULL DEFAULT TRUE
+);
+
+CREATE TABLE promotion_items
+(
+    promotion_id BIGINT       NOT NULL REFERENCES promotions (id) ON DELETE CASCADE,
+    product_sku  VARCHAR(255) NOT NULL,
+    quantity     INTEGER      NOT NULL,
+    PRIMARY KEY (promotion_id, product_sku)
+);
@@ -0,0 +1,2 @@
+-- Serves the order export's (created_at, id) keyset
+CREATE INDEX idx_orders_created_at_id ON orders (created_at, id);
@@ -0,0 +1,21 @@
+-- What each line was charged; NULL for orders placed before it was recorded
+ALTER TABLE order_items ADD COLUMN subtotal INTEGER;
+
+-- Sales rollups, maintained incrementally as orders are written
+CREATE TABLE sales_hourly
+(
+    product_sku  VARCHAR(255) NOT NULL,
+    bucket_start TIMESTAMP    NOT NULL,
+    units        BIGINT       NOT NULL,
+    revenue      BIGINT       NOT NULL,
+    PRIMARY KEY (product_sku, bucket_start)
+);
+
+CREATE TABLE sales_daily
+(
+    product_sku  VARCHAR(255) NOT NULL,
+    bucket_start TIMESTAMP    NOT NULL,
+    units        BIGINT       NOT NULL,
+    revenue      BIGINT       NOT NULL,
+    PRIMARY KEY (product_sku, bucket_start)
+);
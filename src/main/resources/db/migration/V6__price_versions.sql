@@ -0,0 +1,12 @@
+-- Drawn from a shared sequence whenever a price changes, so a version is never reused, not even
+-- by a product that was deleted and created again. Existing products each draw one here.
+CREATE SEQUENCE product_price_versions;
+ALTER TABLE products
+    ADD COLUMN price_version BIGINT NOT NULL DEFAULT nextval('product_price_versions');
+
+-- Prices the line was charged at; NULL for orders placed before they were recorded
+ALTER TABLE order_items
+    ADD COLUMN unit_price     INTEGER,
+    ADD COLUMN offer_quantity INTEGER,
+    ADD COLUMN offer_price    INTEGER,
+    ADD COLUMN price_version  BIGINT;
@@ -0,0 +1,138 @@
+-- Orders and their lines are range-partitioned by month of created_at. Checkouts only ever
+-- insert into the current month, so the indexes they maintain stay the size of one month, and
+-- a month that is no longer written is frozen by autovacuum once and then left alone.
+
+-- Covered by the UNIQUE constraint on products.sku
+DROP INDEX IF EXISTS idx_products_sku;
+-- Nothing reads lines by SKU; per-product figures come from the sales rollups
+DROP INDEX IF EXISTS idx_order_items_product_sku;
+-- Replaced by the partitioned tables' own indexes
+DROP INDEX IF EXISTS idx_order_items_order_id;
+DROP INDEX IF EXISTS idx_orders_created_at_id;
+
+ALTER TABLE order_items RENAME TO order_items_unpartitioned;
+ALTER TABLE order_items_unpartitioned
+    RENAME CONSTRAINT order_items_pkey TO order_items_unpartitioned_pkey;
+ALTER SEQUENCE order_items_id_seq RENAME TO order_items_unpartitioned_id_seq;
+ALTER TABLE orders RENAME TO orders_unpartitioned;
+ALTER TABLE orders_unpartitioned RENAME CONSTRAINT orders_pkey TO orders_unpartitioned_pkey;
+ALTER TABLE orders_unpartitioned
+    RENAME CONSTRAINT orders_checkout_key_key TO orders_unpartitioned_checkout_key_key;
+ALTER SEQUENCE orders_id_seq RENAME TO orders_unpartitioned_id_seq;
+
+-- The primary key leads with created_at so it also serves the export's (created_at, id) keyset
+CREATE TABLE orders
+(
+    id           BIGINT GENERATED ALWAYS AS IDENTITY,
+    final_price  INT          NOT NULL,
+    created_at   TIMESTAMP    NOT NULL,
+    checkout_key VARCHAR(255) NOT NULL,
+    PRIMARY KEY (created_at, id)
+) PARTITION BY RANGE (created_at);
+
+-- Lines carry their order's created_at so they land in the same month as the order. They are
+-- only ever read through their order, which makes order_id their only B-tree.
+CREATE TABLE order_items
+(
+    id             BIGINT GENERATED ALWAYS AS IDENTITY,
+    order_id       BIGINT       NOT NULL,
+    created_at     TIMESTAMP    NOT NULL,
+    product_sku    VARCHAR(255) NOT NULL,
+    quantity       INTEGER      NOT NULL,
+    subtotal       INTEGER,
+    -- Prices the line was charged at; NULL for orders placed before they were recorded
+    unit_price     INTEGER,
+    offer_quantity INTEGER,
+    offer_price    INTEGER,
+    price_version  BIGINT,
+    FOREIGN KEY (created_at, order_id) REFERENCES orders (created_at, id)
+) PARTITION BY RANGE (created_at);
+
+CREATE INDEX idx_order_items_order_id ON order_items (order_id);
+-- Lines are appended in time order, so a BRIN index narrows rollup rebuilds to the pages of
+-- the requested days at a fraction of a B-tree's size and insert cost
+CREATE INDEX idx_order_items_created_at ON order_items USING BRIN (created_at);
+
+-- A partitioned table can only enforce uniqueness within a partition, and retries of the same
+-- checkout get a new created_at. Checkout keys are therefore claimed here; they are only needed
+-- while a retry is possible and are pruned after a retention period, which keeps this table at
+-- a few days of orders.
+CREATE TABLE checkout_keys
+(
+    checkout_key VARCHAR(255) PRIMARY KEY,
+    order_id     BIGINT    NOT NULL,
+    created_at   TIMESTAMP NOT NULL
+);
+
+CREATE INDEX idx_checkout_keys_created_at ON checkout_keys (created_at);
+
+-- Creates the monthly partitions covering [from_time, to_time) that do not exist yet and returns
+-- how many months were added. Called by the application ahead of time, so a checkout never
+-- finds its month missing; there is deliberately no default partition, which would have to be
+-- scanned and locked whenever a month is added.
+CREATE FUNCTION create_order_partitions(from_time TIMESTAMP, to_time TIMESTAMP)
+    RETURNS INTEGER
+    LANGUAGE plpgsql
+AS
+$$
+DECLARE
+    month_start TIMESTAMP := date_trunc('month', from_time);
+    suffix      TEXT;
+    created     INTEGER   := 0;
+BEGIN
+    -- Creating a partition briefly locks the parent; give up rather than queue checkouts behind
+    -- a long-running query; the next run tries again
+    PERFORM set_config('lock_timeout', '5s', true);
+    PERFORM pg_advisory_xact_lock(hashtext('create_order_partitions'));
+    WHILE month_start < to_time
+        LOOP
+            suffix := to_char(month_start, 'YYYYMM');
+            IF to_regclass('orders_p' || suffix) IS NULL THEN
+                EXECUTE format('CREATE TABLE %I PARTITION OF orders FOR VALUES FROM (%L) TO (%L)',
+                               'orders_p' || suffix, month_start,
+                               month_start + INTERVAL '1 month');
+                created := created + 1;
+            END IF;
+            IF to_regclass('order_items_p' || suffix) IS NULL THEN
+                EXECUTE format(
+                        'CREATE TABLE %I PARTITION OF order_items FOR VALUES FROM (%L) TO (%L)',
+                        'order_items_p' || suffix, month_start,
+                        month_start + INTERVAL '1 month');
+            END IF;
+            month_start := month_start + INTERVAL '1 month';
+        END LOOP;
+    RETURN created;
+END;
+$$;
+
+SELECT create_order_partitions(
+               COALESCE(MIN(created_at), LOCALTIMESTAMP),
+               GREATEST(MAX(created_at), LOCALTIMESTAMP) + INTERVAL '3 months')
+FROM orders_unpartitioned;
+
+INSERT INTO orders (id, final_price, created_at, checkout_key)
+    OVERRIDING SYSTEM VALUE
+SELECT id, final_price, created_at, checkout_key
+FROM orders_unpartitioned;
+
+INSERT INTO order_items (id, order_id, created_at, product_sku, quantity, subtotal, unit_price,
+                         offer_quantity, offer_price, price_version)
+    OVERRIDING SYSTEM VALUE
+SELECT i.id, i.order_id, o.created_at, i.product_sku, i.quantity, i.subtotal, i.unit_price,
+       i.offer_quantity, i.offer_price, i.price_version
+FROM order_items_unpartitioned i
+         JOIN orders_unpartitioned o ON o.id = i.order_id;
+
+INSERT INTO checkout_keys (checkout_key, order_id, created_at)
+SELECT checkout_key, id, created_at
+FROM orders_unpartitioned;
+
+-- Continue after the old sequences rather than the stored ids: write-behind instances may hold
+-- reserved order ids that are not written yet
+SELECT setval(pg_get_serial_sequence('orders', 'id'), last_value, is_called)
+FROM orders_unpartitioned_id_seq;
+SELECT setval(pg_get_serial_sequence('order_items', 'id'), last_value, is_called)
+FROM order_items_unpartitioned_id_seq;
+
+DROP TABLE order_items_unpartitioned;
+DROP TABLE orders_unpartitioned;
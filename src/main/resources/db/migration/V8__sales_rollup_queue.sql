@@ -0,0 +1,14 @@
+-- Checkouts append their lines here instead of updating the rollups themselves, so concurrent
+-- checkouts of the same SKU never wait on the same rollup row. SalesRollupFlusher drains the
+-- queue into sales_hourly and sales_daily in batches.
+CREATE TABLE sales_rollup_queue
+(
+    id          BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+    product_sku VARCHAR(255) NOT NULL,
+    created_at  TIMESTAMP    NOT NULL,
+    units       INT          NOT NULL,
+    revenue     INT          NOT NULL
+);
+
+-- The rebuild consumes the queued lines of the day it recomputes
+CREATE INDEX idx_sales_rollup_queue_created_at ON sales_rollup_queue (created_at);
@@ -0,0 +1,7 @@
+-- Sample products for local and docker setups; not part of the production migrations
+INSERT INTO products (sku, name, unit_price, offer_quantity, offer_price) VALUES
+('A', 'Apple', 50, 3, 130),
+('B', 'Banana', 30, 2, 45),
+('C', 'Cherry', 20, NULL, NULL),
+('D', 'Date', 15, 5, 60)
+ON CONFLICT (sku) DO NOTHING;
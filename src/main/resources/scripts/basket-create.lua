@@ -0,0 +1,4 @@
+-- KEYS[1] basket hash, ARGV[1] ttl in seconds
+redis.call('HSET', KEYS[1], 'total', 0, 'lines', 0)
+redis.call('EXPIRE', KEYS[1], ARGV[1])
+return 'UPDATED:0:0'
@@ -0,0 +1,13 @@
+-- KEYS[1] basket hash
+-- ARGV[1] basket ttl in ms, ARGV[2] idle timeout in ms
+-- Every change resets the TTL, so the time since the last change is the TTL minus what is left.
+-- Returns 1 if the basket was evicted, 0 if it is still active and -1 if it no longer exists.
+local ttl = redis.call('PTTL', KEYS[1])
+if ttl == -2 then
+  return -1
+end
+if ttl == -1 or tonumber(ARGV[1]) - ttl < tonumber(ARGV[2]) then
+  return 0
+end
+redis.call('DEL', KEYS[1])
+return 1
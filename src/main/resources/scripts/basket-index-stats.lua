@@ -0,0 +1,12 @@
+-- KEYS[1] last change per basket, KEYS[2] line count per basket
+-- ARGV[1] abandoned cutoff in ms, then the lower bounds of the line count buckets in ascending order
+-- Only ZCARD and ZCOUNT, so the cost grows with the logarithm of the number of baskets.
+local result = { redis.call('ZCARD', KEYS[1]), redis.call('ZCOUNT', KEYS[1], '-inf', ARGV[1]) }
+for i = 2, #ARGV do
+  local upper = '+inf'
+  if i < #ARGV then
+    upper = '(' .. ARGV[i + 1]
+  end
+  result[#result + 1] = redis.call('ZCOUNT', KEYS[2], ARGV[i], upper)
+end
+return result
@@ -0,0 +1,13 @@
+-- KEYS[1] last change per basket, KEYS[2] line count per basket
+-- ARGV[1] number of changed baskets, then per changed basket: basket id, time of the change in
+-- ms, line count; then the ids of removed baskets
+local changed = tonumber(ARGV[1])
+for i = 2, changed * 3 + 1, 3 do
+  redis.call('ZADD', KEYS[1], ARGV[i + 1], ARGV[i])
+  redis.call('ZADD', KEYS[2], ARGV[i + 2], ARGV[i])
+end
+for i = changed * 3 + 2, #ARGV do
+  redis.call('ZREM', KEYS[1], ARGV[i])
+  redis.call('ZREM', KEYS[2], ARGV[i])
+end
+return changed
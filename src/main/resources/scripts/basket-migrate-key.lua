@@ -0,0 +1,9 @@
+-- KEYS[1] basket hash, KEYS[2] basket hash under the key used before namespacing
+-- Moves the old hash and its TTL; returns 1 when the basket now exists under KEYS[1].
+if redis.call('EXISTS', KEYS[2]) == 0 then
+  return 0
+end
+if redis.call('RENAMENX', KEYS[2], KEYS[1]) == 0 then
+  redis.call('DEL', KEYS[2])
+end
+return 1
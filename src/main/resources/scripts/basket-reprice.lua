@@ -0,0 +1,37 @@
+-- KEYS[1] basket hash
+-- ARGV[1] ttl in seconds, then per product: sku, unit price, offer quantity, offer price, price version
+local key = KEYS[1]
+if redis.call('EXISTS', key) == 0 then
+  return 'BASKET_NOT_FOUND'
+end
+
+for i = 2, #ARGV, 5 do
+  local sku = ARGV[i]
+  local unitPrice = tonumber(ARGV[i + 1])
+  local offerQuantity = tonumber(ARGV[i + 2])
+  local offerPrice = tonumber(ARGV[i + 3])
+  local quantity = tonumber(redis.call('HGET', key, 'q:' .. sku) or '0')
+  if quantity > 0 then
+    local subtotal = quantity * unitPrice
+    if offerQuantity > 0 and quantity >= offerQuantity then
+      subtotal = math.floor(quantity / offerQuantity) * offerPrice + (quantity % offerQuantity) * unitPrice
+    end
+    redis.call('HSET', key, 's:' .. sku, subtotal, 'v:' .. sku, ARGV[i + 4])
+  end
+end
+
+local total = 0
+local lines = 0
+local fields = redis.call('HGETALL', key)
+for i = 1, #fields, 2 do
+  local prefix = string.sub(fields[i], 1, 2)
+  if prefix == 's:' then
+    total = total + tonumber(fields[i + 1])
+  elseif prefix == 'q:' then
+    lines = lines + 1
+  end
+end
+redis.call('HSET', key, 'total', total, 'lines', lines)
+redis.call('HDEL', key, 'stale')
+redis.call('EXPIRE', key, ARGV[1])
+return 'UPDATED:' .. total .. ':' .. lines
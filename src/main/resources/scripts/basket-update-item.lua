@@ -0,0 +1,71 @@
+-- KEYS[1] basket hash
+-- ARGV: sku, quantity delta, unit price, offer quantity, offer price, price version, ttl in seconds,
+-- max line quantity, max basket total
+
+-- Baskets written before the line count was kept get it counted once.
+local function lineCount(key)
+  local lines = redis.call('HGET', key, 'lines')
+  if lines then
+    return tonumber(lines)
+  end
+  local count = 0
+  for _, field in ipairs(redis.call('HKEYS', key)) do
+    if string.sub(field, 1, 2) == 'q:' then
+      count = count + 1
+    end
+  end
+  return count
+end
+
+local key = KEYS[1]
+if redis.call('EXISTS', key) == 0 then
+  return 'BASKET_NOT_FOUND'
+end
+
+local sku = ARGV[1]
+local delta = tonumber(ARGV[2])
+local unitPrice = tonumber(ARGV[3])
+local offerQuantity = tonumber(ARGV[4])
+local offerPrice = tonumber(ARGV[5])
+local version = ARGV[6]
+
+local previousQuantity = tonumber(redis.call('HGET', key, 'q:' .. sku) or '0')
+local quantity = previousQuantity + delta
+if quantity < 0 then
+  return 'ITEM_NOT_FOUND'
+end
+if quantity > tonumber(ARGV[8]) then
+  return 'LIMIT_EXCEEDED'
+end
+
+local subtotal = quantity * unitPrice
+if offerQuantity > 0 and quantity >= offerQuantity then
+  subtotal = math.floor(quantity / offerQuantity) * offerPrice + (quantity % offerQuantity) * unitPrice
+end
+
+local previousSubtotal = tonumber(redis.call('HGET', key, 's:' .. sku) or '0')
+-- Only growth is refused, so a basket pushed over the limit by a repricing can still be emptied.
+if subtotal > previousSubtotal
+    and tonumber(redis.call('HGET', key, 'total') or '0') + subtotal - previousSubtotal > tonumber(ARGV[9]) then
+  return 'LIMIT_EXCEEDED'
+end
+local previousVersion = redis.call('HGET', key, 'v:' .. sku)
+local lines = lineCount(key)
+if previousQuantity == 0 and quantity > 0 then
+  lines = lines + 1
+elseif previousQuantity > 0 and quantity == 0 then
+  lines = lines - 1
+end
+redis.call('HSET', key, 'lines', lines)
+if quantity == 0 then
+  redis.call('HDEL', key, 'q:' .. sku, 's:' .. sku, 'v:' .. sku)
+else
+  redis.call('HSET', key, 'q:' .. sku, quantity, 's:' .. sku, subtotal, 'v:' .. sku, version)
+end
+local total = redis.call('HINCRBY', key, 'total', subtotal - previousSubtotal)
+redis.call('EXPIRE', key, ARGV[7])
+
+if redis.call('HEXISTS', key, 'stale') == 1 or (previousVersion and previousVersion ~= version) then
+  return 'PRICE_CHANGED:' .. total .. ':' .. lines
+end
+return 'UPDATED:' .. total .. ':' .. lines
@@ -0,0 +1,86 @@
+-- KEYS[1] basket hash
+-- ARGV[1] ttl in seconds, ARGV[2] max line quantity, ARGV[3] max basket total, then per SKU: sku,
+-- quantity delta, unit price, offer quantity, offer price, price version
+-- Every delta is validated before any is applied, so a batch either lands completely or not at all.
+
+-- Baskets written before the line count was kept get it counted once.
+local function lineCount(key)
+  local lines = redis.call('HGET', key, 'lines')
+  if lines then
+    return tonumber(lines)
+  end
+  local count = 0
+  for _, field in ipairs(redis.call('HKEYS', key)) do
+    if string.sub(field, 1, 2) == 'q:' then
+      count = count + 1
+    end
+  end
+  return count
+end
+
+local key = KEYS[1]
+if redis.call('EXISTS', key) == 0 then
+  return 'BASKET_NOT_FOUND'
+end
+
+local maxQuantity = tonumber(ARGV[2])
+local previousQuantities = {}
+local quantities = {}
+local subtotals = {}
+local totalDelta = 0
+for i = 4, #ARGV, 6 do
+  local previousQuantity = tonumber(redis.call('HGET', key, 'q:' .. ARGV[i]) or '0')
+  local quantity = previousQuantity + tonumber(ARGV[i + 1])
+  if quantity < 0 then
+    return 'ITEM_NOT_FOUND'
+  end
+  if quantity > maxQuantity then
+    return 'LIMIT_EXCEEDED'
+  end
+  local unitPrice = tonumber(ARGV[i + 2])
+  local offerQuantity = tonumber(ARGV[i + 3])
+  local offerPrice = tonumber(ARGV[i + 4])
+  local subtotal = quantity * unitPrice
+  if offerQuantity > 0 and quantity >= offerQuantity then
+    subtotal = math.floor(quantity / offerQuantity) * offerPrice + (quantity % offerQuantity) * unitPrice
+  end
+  previousQuantities[i] = previousQuantity
+  quantities[i] = quantity
+  subtotals[i] = subtotal
+  totalDelta = totalDelta + subtotal - tonumber(redis.call('HGET', key, 's:' .. ARGV[i]) or '0')
+end
+-- Only growth is refused, so a basket pushed over the limit by a repricing can still be emptied.
+if totalDelta > 0 and tonumber(redis.call('HGET', key, 'total') or '0') + totalDelta > tonumber(ARGV[3]) then
+  return 'LIMIT_EXCEEDED'
+end
+
+local priceChanged = redis.call('HEXISTS', key, 'stale') == 1
+local lines = lineCount(key)
+for i = 4, #ARGV, 6 do
+  local sku = ARGV[i]
+  local quantity = quantities[i]
+  local subtotal = subtotals[i]
+  local version = ARGV[i + 5]
+  local previousVersion = redis.call('HGET', key, 'v:' .. sku)
+  if previousQuantities[i] == 0 and quantity > 0 then
+    lines = lines + 1
+  elseif previousQuantities[i] > 0 and quantity == 0 then
+    lines = lines - 1
+  end
+  if quantity == 0 then
+    redis.call('HDEL', key, 'q:' .. sku, 's:' .. sku, 'v:' .. sku)
+  else
+    redis.call('HSET', key, 'q:' .. sku, quantity, 's:' .. sku, subtotal, 'v:' .. sku, version)
+  end
+  if previousVersion and previousVersion ~= version then
+    priceChanged = true
+  end
+end
+local total = redis.call('HINCRBY', key, 'total', totalDelta)
+redis.call('HSET', key, 'lines', lines)
+redis.call('EXPIRE', key, ARGV[1])
+
+if priceChanged then
+  return 'PRICE_CHANGED:' .. total .. ':' .. lines
+end
+return 'UPDATED:' .. total .. ':' .. lines
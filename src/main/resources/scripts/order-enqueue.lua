@@ -0,0 +1,12 @@
+-- KEYS[1] checkout confirmation, KEYS[2] pending order stream
+-- ARGV: confirmation json, pending order json, confirmation ttl in seconds, max backlog
+local existing = redis.call('GET', KEYS[1])
+if existing then
+  return existing
+end
+if redis.call('XLEN', KEYS[2]) >= tonumber(ARGV[4]) then
+  return 'BACKLOG_FULL'
+end
+redis.call('SET', KEYS[1], ARGV[1], 'EX', ARGV[3])
+redis.call('XADD', KEYS[2], '*', 'order', ARGV[2])
+return ARGV[1]
@@ -0,0 +1,160 @@
+package com.haiilo.supermarket.checkout.activity;
+
+import static com.haiilo.supermarket.checkout.util.AppConstants.BASKET_TTL;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.haiilo.supermarket.checkout.util.MetricsHelper;
+import com.haiilo.supermarket.checkout.util.RedisKeys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.ReactiveZSetOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+class ActiveBasketIndexTest {
+
+  private static final String BASKET_KEY = "checkout:basket:{basket-1}";
+
+  private final ReactiveStringRedisTemplate stringRedisTemplate =
+      mock(ReactiveStringRedisTemplate.class);
+
+  @Test
+  @DisplayName("should keep the full idle timeout up to the target number of live baskets")
+  void idleTimeout_belowTarget() {
+    ActiveBasketIndex index = index(Duration.ofMinutes(20), Duration.ofHours(4));
+
+    assertThat(index.idleTimeout(0)).isEqualTo(Duration.ofHours(4));
+    assertThat(index.idleTimeout(1000)).isEqualTo(Duration.ofHours(4));
+  }
+
+  @Test
+  @DisplayName("should shrink the idle timeout in proportion above the target, down to the minimum")
+  void idleTimeout_aboveTarget() {
+    ActiveBasketIndex index = index(Duration.ofMinutes(20), Duration.ofHours(4));
+
+    assertThat(index.idleTimeout(2000)).isEqualTo(Duration.ofHours(2));
+    assertThat(index.idleTimeout(100_000)).isEqualTo(Duration.ofMinutes(20));
+  }
+
+  @Test
+  @DisplayName("should never keep idle baskets for longer than the basket TTL")
+  void idleTimeout_cappedByTtl() {
+    ActiveBasketIndex index = index(Duration.ofDays(3), Duration.ofDays(2));
+
+    assertThat(index.idleTimeout(0)).isEqualTo(BASKET_TTL);
+    assertThat(index.idleTimeout(100_000)).isEqualTo(BASKET_TTL);
+  }
+
+  @Test
+  @DisplayName("should report live and abandoned baskets and their line count buckets")
+  @SuppressWarnings("unchecked")
+  void stats() {
+    when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), anyList()))
+        .thenReturn(Flux.just(List.of(1500L, 300L, 100L, 700L, 500L, 150L, 50L)));
+    ActiveBasketIndex index = index(Duration.ofMinutes(20), Duration.ofHours(4));
+
+    StepVerifier.create(index.stats())
+        .assertNext(stats -> {
+          assertThat(stats.live()).isEqualTo(1500);
+          assertThat(stats.abandoned()).isEqualTo(300);
+          assertThat(stats.idleTimeout()).isEqualTo(Duration.ofMinutes(160));
+          assertThat(stats.lines()).containsExactly(entry("0", 100L), entry("1-5", 700L),
+              entry("6-20", 500L), entry("21-60", 150L), entry("61+", 50L));
+        })
+        .verifyComplete();
+  }
+
+  @Test
+  @DisplayName("flush should write pending changes in one script call, removals after touches")
+  @SuppressWarnings("unchecked")
+  void flush() {
+    when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), anyList()))
+        .thenReturn(Flux.just(1L));
+    ActiveBasketIndex index = index(Duration.ofMinutes(20), Duration.ofHours(4));
+    index.touch("basket-1", 2);
+    index.touch("basket-2", 1);
+    index.remove("basket-2");
+    index.remove("basket-3");
+
+    StepVerifier.create(index.flush()).verifyComplete();
+    StepVerifier.create(index.flush()).verifyComplete();
+
+    ArgumentCaptor<List<String>> args = ArgumentCaptor.forClass(List.class);
+    verify(stringRedisTemplate, times(2)).execute(any(RedisScript.class),
+        eq(List.of("checkout:{baskets}:active", "checkout:{baskets}:lines")), args.capture());
+    assertThat(args.getAllValues().get(0)).hasSize(4).startsWith("1", "basket-1")
+        .endsWith("2");
+    assertThat(args.getAllValues().get(1))
+        .containsExactlyInAnyOrder("0", "basket-2", "basket-3");
+  }
+
+  @Test
+  @DisplayName("evictIfIdle should move an active basket's entry to the time of its last change")
+  @SuppressWarnings("unchecked")
+  void evictIfIdle_rescoresActiveBasket() {
+    ReactiveZSetOperations<String, String> zSetOperations = mock(ReactiveZSetOperations.class);
+    when(stringRedisTemplate.opsForZSet()).thenReturn(zSetOperations);
+    when(stringRedisTemplate.execute(any(RedisScript.class), eq(List.of(BASKET_KEY)), anyList()))
+        .thenReturn(Flux.just(0L));
+    when(stringRedisTemplate.getExpire(BASKET_KEY))
+        .thenReturn(Mono.just(BASKET_TTL.minusMinutes(10)));
+    when(zSetOperations.add(eq("checkout:{baskets}:active"), eq("basket-1"), anyDouble()))
+        .thenReturn(Mono.just(false));
+    ActiveBasketIndex index = index(Duration.ofMinutes(20), Duration.ofHours(4));
+    long changedAt = Instant.now().minus(Duration.ofMinutes(10)).toEpochMilli();
+
+    StepVerifier.create(index.evictIfIdle("basket-1", Duration.ofHours(1)))
+        .expectNext(0L)
+        .verifyComplete();
+
+    ArgumentCaptor<Double> score = ArgumentCaptor.forClass(Double.class);
+    verify(zSetOperations).add(eq("checkout:{baskets}:active"), eq("basket-1"), score.capture());
+    assertThat(score.getValue()).isBetween((double) changedAt, changedAt + 5_000.0);
+  }
+
+  @Test
+  @DisplayName("evictIfIdle should drop the entry of an active basket that has no TTL left")
+  @SuppressWarnings("unchecked")
+  void evictIfIdle_dropsEntryWithoutTtl() {
+    when(stringRedisTemplate.execute(any(RedisScript.class), eq(List.of(BASKET_KEY)), anyList()))
+        .thenReturn(Flux.just(0L));
+    when(stringRedisTemplate.execute(any(RedisScript.class),
+        eq(List.of("checkout:{baskets}:active", "checkout:{baskets}:lines")), anyList()))
+        .thenReturn(Flux.just(0L));
+    when(stringRedisTemplate.getExpire(BASKET_KEY)).thenReturn(Mono.empty());
+    ActiveBasketIndex index = index(Duration.ofMinutes(20), Duration.ofHours(4));
+
+    StepVerifier.create(index.evictIfIdle("basket-1", Duration.ofHours(1)))
+        .expectNext(0L)
+        .verifyComplete();
+
+    verify(stringRedisTemplate).execute(any(RedisScript.class),
+        eq(List.of("checkout:{baskets}:active", "checkout:{baskets}:lines")),
+        eq(List.of("0", "basket-1")));
+    verify(stringRedisTemplate, never()).opsForZSet();
+  }
+
+  private ActiveBasketIndex index(Duration minIdleTimeout, Duration maxIdleTimeout) {
+    return new ActiveBasketIndex(stringRedisTemplate, new MetricsHelper(new SimpleMeterRegistry()),
+        new RedisKeys("checkout", false), minIdleTimeout, maxIdleTimeout, 1000,
+        Duration.ofMinutes(30), Duration.ofSeconds(1));
+  }
+}
@@ -0,0 +1,69 @@
+package com.haiilo.supermarket.checkout.activity;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.haiilo.supermarket.checkout.util.MetricsHelper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+class IdleBasketSweeperTest {
+
+  private static final Duration IDLE_TIMEOUT = Duration.ofHours(1);
+
+  private final ActiveBasketIndex index = mock(ActiveBasketIndex.class);
+  private IdleBasketSweeper sweeper;
+
+  @BeforeEach
+  void setUp() {
+    sweeper = new IdleBasketSweeper(index, new MetricsHelper(new SimpleMeterRegistry()),
+        Duration.ofMinutes(1), 2);
+    when(index.liveCount()).thenReturn(Mono.just(10L));
+    when(index.idleTimeout(10L)).thenReturn(IDLE_TIMEOUT);
+  }
+
+  @Test
+  @DisplayName("sweep should work through full batches and count only evicted baskets")
+  void sweep_allBatches() {
+    when(index.idleSince(any(Instant.class), eq(2)))
+        .thenReturn(Flux.just("basket-1", "basket-2"))
+        .thenReturn(Flux.just("basket-3"));
+    when(index.evictIfIdle("basket-1", IDLE_TIMEOUT)).thenReturn(Mono.just(1L));
+    when(index.evictIfIdle("basket-2", IDLE_TIMEOUT)).thenReturn(Mono.just(-1L));
+    when(index.evictIfIdle("basket-3", IDLE_TIMEOUT)).thenReturn(Mono.just(1L));
+
+    StepVerifier.create(sweeper.sweep())
+        .expectNext(2L)
+        .verifyComplete();
+
+    verify(index, times(2)).idleSince(any(Instant.class), eq(2));
+  }
+
+  @Test
+  @DisplayName("sweep should go on past a basket that turned out to be active again")
+  void sweep_skipsActiveBasket() {
+    when(index.idleSince(any(Instant.class), eq(2)))
+        .thenReturn(Flux.just("basket-1", "basket-2"))
+        .thenReturn(Flux.just("basket-3"));
+    when(index.evictIfIdle("basket-1", IDLE_TIMEOUT)).thenReturn(Mono.just(0L));
+    when(index.evictIfIdle("basket-2", IDLE_TIMEOUT)).thenReturn(Mono.just(1L));
+    when(index.evictIfIdle("basket-3", IDLE_TIMEOUT)).thenReturn(Mono.just(1L));
+
+    StepVerifier.create(sweeper.sweep())
+        .expectNext(2L)
+        .verifyComplete();
+
+    verify(index, times(2)).idleSince(any(Instant.class), eq(2));
+  }
+}
@@ -0,0 +1,154 @@
+package com.haiilo.supermarket.checkout.blocking;
+
+import static com.haiilo.supermarket.checkout.TestConstants.SKU_A;
+import static com.haiilo.supermarket.checkout.TestConstants.SKU_B;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.haiilo.supermarket.checkout.domain.Basket;
+import com.haiilo.supermarket.checkout.domain.BasketUpdate;
+import com.haiilo.supermarket.checkout.domain.BasketUpdate.Status;
+import com.haiilo.supermarket.checkout.domain.PricedLine;
+import com.haiilo.supermarket.checkout.domain.Product;
+import com.haiilo.supermarket.checkout.dto.OrderDTO;
+import com.haiilo.supermarket.checkout.pricing.PricingEngine;
+import com.haiilo.supermarket.checkout.util.MetricsHelper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+@ExtendWith(MockitoExtension.class)
+class BlockingBasketServiceTest {
+
+  private static final String TEST_BASKET_ID = "basket-1";
+
+  @Mock
+  private BlockingBasketRepository basketRepository;
+
+  @Mock
+  private BlockingProductCatalog productCatalog;
+
+  @Mock
+  private BlockingOrderRepository orderRepository;
+
+  @Mock
+  private PricingEngine pricingEngine;
+
+  @Spy
+  private MetricsHelper metricsHelper = new MetricsHelper(new SimpleMeterRegistry());
+
+  @InjectMocks
+  private BlockingBasketService basketService;
+
+  private Product productA;
+  private Product productB;
+
+  @BeforeEach
+  void setUp() {
+    productA = new Product(1L, SKU_A, "Apple", 20, 3, 130, 1L);
+    productB = new Product(2L, SKU_B, "Banana", 25, 3, 45, 1L);
+  }
+
+  @Test
+  @DisplayName("should reprice the whole basket when a price version changed")
+  void addItemToBasket_priceChanged() {
+    Basket basket = new Basket(TEST_BASKET_ID);
+    basket.addItem(SKU_A);
+    basket.addItem(SKU_B);
+    Map<String, Product> products = Map.of(SKU_A, productA, SKU_B, productB);
+
+    when(productCatalog.getProductsBySkus(List.of(SKU_B))).thenReturn(Map.of(SKU_B, productB));
+    when(basketRepository.updateItem(TEST_BASKET_ID, productB, 1))
+        .thenReturn(new BasketUpdate(Status.PRICE_CHANGED, 45));
+    when(basketRepository.findById(TEST_BASKET_ID)).thenReturn(Optional.of(basket));
+    when(productCatalog.getProductsBySkus(basket.getItems().keySet())).thenReturn(products);
+    when(basketRepository.reprice(TEST_BASKET_ID, products.values()))
+        .thenReturn(new BasketUpdate(Status.UPDATED, 45));
+
+    assertThat(basketService.addItemToBasket(TEST_BASKET_ID, SKU_B)).isEqualTo(45);
+  }
+
+  @Test
+  @DisplayName("should fail with NOT_FOUND when the product does not exist")
+  void addItemToBasket_productNotFound() {
+    when(productCatalog.getProductsBySkus(List.of(SKU_A))).thenReturn(Map.of());
+
+    assertThatThrownBy(() -> basketService.addItemToBasket(TEST_BASKET_ID, SKU_A))
+        .isInstanceOf(ResponseStatusException.class)
+        .satisfies(e -> assertThat(((ResponseStatusException) e).getStatusCode())
+            .isEqualTo(HttpStatus.NOT_FOUND));
+    verify(basketRepository, never()).updateItem(anyString(), any(), any(Integer.class));
+  }
+
+  @Test
+  @DisplayName("should save the order with the current prices and delete the basket")
+  void checkout_success() {
+    Basket basket = new Basket(TEST_BASKET_ID);
+    basket.addItem(SKU_A);
+    basket.setLines(Map.of(SKU_A, new PricedLine(20, 1L)));
+    basket.setTotalPrice(20);
+    Map<String, Product> products = Map.of(SKU_A, productA);
+    OrderDTO order = OrderDTO.builder().id(1L).finalPrice(20).build();
+
+    when(basketRepository.findById(TEST_BASKET_ID)).thenReturn(Optional.of(basket));
+    when(productCatalog.getProductsBySkus(anyCollection())).thenReturn(products);
+    when(orderRepository.insert(basket, products, TEST_BASKET_ID + ":key-1")).thenReturn(order);
+
+    assertThat(basketService.checkout(TEST_BASKET_ID, "key-1")).isEqualTo(order);
+    verify(basketRepository, never()).reprice(anyString(), anyCollection());
+    verify(basketRepository).delete(TEST_BASKET_ID);
+  }
+
+  @Test
+  @DisplayName("should return the stored order when the basket was already checked out")
+  void checkout_retry() {
+    OrderDTO order = OrderDTO.builder().id(1L).finalPrice(20).build();
+
+    when(basketRepository.findById(TEST_BASKET_ID)).thenReturn(Optional.empty());
+    when(orderRepository.findByCheckoutKey(TEST_BASKET_ID)).thenReturn(Optional.of(order));
+
+    assertThat(basketService.checkout(TEST_BASKET_ID, null)).isEqualTo(order);
+    verify(orderRepository, never()).insert(any(), anyMap(), anyString());
+  }
+
+  @Test
+  @DisplayName("should reject the checkout of an empty basket")
+  void checkout_emptyBasket() {
+    when(basketRepository.findById(TEST_BASKET_ID))
+        .thenReturn(Optional.of(new Basket(TEST_BASKET_ID)));
+
+    assertThatThrownBy(() -> basketService.checkout(TEST_BASKET_ID, null))
+        .isInstanceOf(ResponseStatusException.class)
+        .hasMessageContaining("Cannot checkout an empty basket.");
+  }
+
+  @Test
+  @DisplayName("should reject an Idempotency-Key that is too long or not visible ASCII")
+  void checkout_invalidIdempotencyKey() {
+    for (String key : List.of("k".repeat(65), "key 1", "schlüssel")) {
+      assertThatThrownBy(() -> basketService.checkout(TEST_BASKET_ID, key))
+          .isInstanceOf(ResponseStatusException.class)
+          .satisfies(e -> assertThat(((ResponseStatusException) e).getStatusCode())
+              .isEqualTo(HttpStatus.BAD_REQUEST));
+    }
+    verify(basketRepository, never()).findById(anyString());
+  }
+}
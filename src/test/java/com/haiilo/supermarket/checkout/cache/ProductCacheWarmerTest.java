@@ -0,0 +1,106 @@
+package com.haiilo.supermarket.checkout.cache;
+
+import static com.haiilo.supermarket.checkout.TestConstants.SKU_A;
+import static com.haiilo.supermarket.checkout.TestConstants.SKU_B;
+import static com.haiilo.supermarket.checkout.TestConstants.SKU_C;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.haiilo.supermarket.checkout.domain.Product;
+import com.haiilo.supermarket.checkout.repository.ProductRepository;
+import com.haiilo.supermarket.checkout.service.ProductService;
+import com.haiilo.supermarket.checkout.util.MetricsHelper;
+import com.haiilo.supermarket.checkout.util.RedisKeys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.ReactiveValueOperations;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+class ProductCacheWarmerTest {
+
+  private static final Product PRODUCT_A = new Product(1L, SKU_A, "Apple", 50, 3, 130, 1L);
+  private static final Product PRODUCT_B = new Product(2L, SKU_B, "Banana", 30, 2, 45, 1L);
+  private static final Product PRODUCT_C = new Product(3L, SKU_C, "Cherry", 20, null, null, 1L);
+
+  private final ProductRepository productRepository = mock(ProductRepository.class);
+  private final ProductService productService = mock(ProductService.class);
+  private final ReactiveStringRedisTemplate stringRedisTemplate =
+      mock(ReactiveStringRedisTemplate.class);
+  @SuppressWarnings("unchecked")
+  private final ReactiveValueOperations<String, String> valueOperations =
+      mock(ReactiveValueOperations.class);
+  private ProductCacheWarmer warmer;
+
+  @BeforeEach
+  void setUp() {
+    warmer = new ProductCacheWarmer(productRepository, productService,
+        new MetricsHelper(new SimpleMeterRegistry()), stringRedisTemplate,
+        new RedisKeys("checkout", false), 2, Duration.ofMinutes(30), Duration.ofMinutes(2));
+    when(productService.preload(anyList()))
+        .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+  }
+
+  @Test
+  @DisplayName("warmUp should page through the catalog by id and preload every page")
+  void warmUp_loadsAllPages() {
+    when(productRepository.findPageAfter(0L, 2)).thenReturn(Flux.just(PRODUCT_A, PRODUCT_B));
+    when(productRepository.findPageAfter(2L, 2)).thenReturn(Flux.just(PRODUCT_C));
+
+    assertThat(warmer.isReady()).isFalse();
+
+    StepVerifier.create(warmer.warmUp())
+        .expectNext(3L)
+        .verifyComplete();
+
+    verify(productService).preload(List.of(PRODUCT_A, PRODUCT_B));
+    verify(productService).preload(List.of(PRODUCT_C));
+    assertThat(warmer.isReady()).isTrue();
+  }
+
+  @Test
+  @DisplayName("warmUpWithLease should only warm up while this instance holds the lease")
+  void warmUpWithLease_onlyLeaseHolder() {
+    when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+    when(valueOperations.setIfAbsent(eq("checkout:product-warm-up"), anyString(),
+        eq(Duration.ofMinutes(27))))
+        .thenReturn(Mono.just(false))
+        .thenReturn(Mono.just(true));
+    when(productRepository.findPageAfter(0L, 2)).thenReturn(Flux.just(PRODUCT_C));
+
+    StepVerifier.create(warmer.warmUpWithLease())
+        .verifyComplete();
+    verify(productRepository, never()).findPageAfter(0L, 2);
+
+    StepVerifier.create(warmer.warmUpWithLease())
+        .expectNext(1L)
+        .verifyComplete();
+    verify(productService).preload(List.of(PRODUCT_C));
+  }
+
+  @Test
+  @DisplayName("warmUp should keep readiness closed when loading fails")
+  void warmUp_failure_staysNotReady() {
+    when(productRepository.findPageAfter(0L, 2))
+        .thenReturn(Flux.error(new IllegalStateException("database down")));
+
+    StepVerifier.create(warmer.warmUp())
+        .expectError(IllegalStateException.class)
+        .verify();
+
+    verify(productService, never()).preload(anyList());
+    assertThat(warmer.isReady()).isFalse();
+  }
+}
@@ -0,0 +1,83 @@
+package com.haiilo.supermarket.checkout.cache;
+
+import static com.haiilo.supermarket.checkout.TestConstants.SKU_A;
+import static com.haiilo.supermarket.checkout.TestConstants.SKU_B;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.haiilo.supermarket.checkout.domain.Product;
+import com.haiilo.supermarket.checkout.dto.NearCacheStatsDTO;
+import java.time.Duration;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+@ExtendWith(MockitoExtension.class)
+class ProductNearCacheTest {
+
+  @Mock
+  private ReactiveStringRedisTemplate stringRedisTemplate;
+
+  private ProductNearCache nearCache;
+
+  private final Product productA = new Product(1L, SKU_A, "Apple", 50, 3, 130, 1L);
+
+  @BeforeEach
+  void setUp() {
+    nearCache = new ProductNearCache(stringRedisTemplate, 100, Duration.ofMinutes(1));
+  }
+
+  @Test
+  @DisplayName("should count hits and misses")
+  void get_countsHitsAndMisses() {
+    nearCache.put(productA);
+
+    assertThat(nearCache.get(SKU_A)).isEqualTo(productA);
+    assertThat(nearCache.get(SKU_B)).isNull();
+
+    NearCacheStatsDTO stats = nearCache.stats();
+    assertThat(stats.size()).isEqualTo(1);
+    assertThat(stats.hitCount()).isEqualTo(1);
+    assertThat(stats.missCount()).isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("evict should drop the local entry and publish the SKU")
+  void evict_publishesInvalidation() {
+    when(stringRedisTemplate.convertAndSend(ProductNearCache.INVALIDATION_CHANNEL, SKU_A))
+        .thenReturn(Mono.just(1L));
+    nearCache.put(productA);
+
+    StepVerifier.create(nearCache.evict(SKU_A))
+        .verifyComplete();
+
+    assertThat(nearCache.get(SKU_A)).isNull();
+    verify(stringRedisTemplate).convertAndSend(ProductNearCache.INVALIDATION_CHANNEL, SKU_A);
+  }
+
+  @Test
+  @DisplayName("evictAll should drop the local entries and publish the SKUs in one message")
+  void evictAll_publishesOneInvalidation() {
+    Product productB = new Product(2L, SKU_B, "Banana", 30, 2, 45, 1L);
+    when(stringRedisTemplate.convertAndSend(ProductNearCache.INVALIDATION_CHANNEL,
+        SKU_A + ProductNearCache.SKU_SEPARATOR + SKU_B)).thenReturn(Mono.just(1L));
+    nearCache.put(productA);
+    nearCache.put(productB);
+
+    StepVerifier.create(nearCache.evictAll(List.of(SKU_A, SKU_B)))
+        .verifyComplete();
+
+    assertThat(nearCache.get(SKU_A)).isNull();
+    assertThat(nearCache.get(SKU_B)).isNull();
+    verify(stringRedisTemplate).convertAndSend(ProductNearCache.INVALIDATION_CHANNEL,
+        SKU_A + ProductNearCache.SKU_SEPARATOR + SKU_B);
+  }
+}
@@ -0,0 +1,85 @@
+package com.haiilo.supermarket.checkout.database;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.haiilo.supermarket.checkout.dto.ConnectionPoolStatsDTO;
+import com.haiilo.supermarket.checkout.util.MetricsHelper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.PoolMetrics;
+import io.r2dbc.spi.ConnectionFactory;
+import java.time.Duration;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.server.ResponseStatusException;
+
+class ConnectionPoolAdvisorTest {
+
+  private final ConnectionPool pool = mock(ConnectionPool.class);
+  private final PoolMetrics poolMetrics = mock(PoolMetrics.class);
+  private final MetricsHelper metricsHelper = new MetricsHelper(new SimpleMeterRegistry());
+  private ConnectionPoolAdvisor advisor;
+
+  @BeforeEach
+  void setUp() {
+    when(pool.getMetrics()).thenReturn(Optional.of(poolMetrics));
+    when(poolMetrics.getMaxAllocatedSize()).thenReturn(10);
+    // 100 samples in the window; the pool is found behind the timing wrapper
+    advisor = new ConnectionPoolAdvisor(new TimedConnectionFactory(pool, metricsHelper),
+        metricsHelper, Duration.ofSeconds(1), Duration.ofSeconds(100), 1.25, 2, 50);
+  }
+
+  @Test
+  @DisplayName("stats should recommend the 99th percentile of the demand with headroom")
+  void stats_recommendsFromDemand() {
+    when(poolMetrics.acquiredSize()).thenReturn(8);
+    when(poolMetrics.pendingAcquireSize()).thenReturn(0);
+    for (int i = 0; i < 99; i++) {
+      advisor.sample();
+    }
+    // A single spike is ignored, acquisitions waiting count as demand
+    when(poolMetrics.acquiredSize()).thenReturn(10);
+    when(poolMetrics.pendingAcquireSize()).thenReturn(30);
+    advisor.sample();
+
+    ConnectionPoolStatsDTO stats = advisor.stats();
+
+    assertThat(stats.peakDemand()).isEqualTo(40);
+    assertThat(stats.demandP99()).isEqualTo(8);
+    assertThat(stats.waitingShare()).isEqualTo(0.01);
+    assertThat(stats.recommendedMaxSize()).isEqualTo(10);
+    assertThat(stats.maxSize()).isEqualTo(10);
+  }
+
+  @Test
+  @DisplayName("stats should keep the recommendation within floor and ceiling")
+  void stats_boundsRecommendation() {
+    assertThat(advisor.stats().recommendedMaxSize()).isEqualTo(10);
+
+    when(poolMetrics.acquiredSize()).thenReturn(0);
+    advisor.sample();
+    assertThat(advisor.stats().recommendedMaxSize()).isEqualTo(2);
+
+    when(poolMetrics.acquiredSize()).thenReturn(10);
+    when(poolMetrics.pendingAcquireSize()).thenReturn(90);
+    for (int i = 0; i < 100; i++) {
+      advisor.sample();
+    }
+    assertThat(advisor.stats().recommendedMaxSize()).isEqualTo(50);
+  }
+
+  @Test
+  @DisplayName("stats should fail with 404 when the connection pool is disabled")
+  void stats_noPool() {
+    ConnectionPoolAdvisor unpooled = new ConnectionPoolAdvisor(mock(ConnectionFactory.class),
+        metricsHelper, Duration.ofSeconds(1), Duration.ofSeconds(100), 1.25, 2, 50);
+
+    assertThatThrownBy(unpooled::stats).isInstanceOf(ResponseStatusException.class)
+        .hasMessageContaining("disabled");
+  }
+}
@@ -0,0 +1,290 @@
+package com.haiilo.supermarket.checkout.embedded;
+
+import static com.haiilo.supermarket.checkout.TestConstants.SKU_A;
+import static com.haiilo.supermarket.checkout.TestConstants.SKU_B;
+import static com.haiilo.supermarket.checkout.util.AppConstants.BASKET_TTL;
+import static com.haiilo.supermarket.checkout.util.AppConstants.MAX_LINE_QUANTITY;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.haiilo.supermarket.checkout.domain.Basket;
+import com.haiilo.supermarket.checkout.domain.BasketUpdate;
+import com.haiilo.supermarket.checkout.domain.BasketUpdate.Status;
+import com.haiilo.supermarket.checkout.domain.PricedLine;
+import com.haiilo.supermarket.checkout.domain.Product;
+import com.haiilo.supermarket.checkout.util.MetricsHelper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+import reactor.test.StepVerifier;
+
+class EmbeddedBasketRepositoryTest {
+
+  private static final String TEST_BASKET_ID = "basket-1";
+  private static final long NOW = 1_700_000_000_000L;
+
+  @TempDir
+  private Path directory;
+
+  private final Clock clock = mock(Clock.class);
+  private EmbeddedBasketRepository repository;
+  private Product productA;
+  private Product productB;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    when(clock.millis()).thenReturn(NOW);
+    productA = new Product(1L, SKU_A, "Apple", 50, 3, 130, 1L);
+    productB = new Product(2L, SKU_B, "Banana", 30, null, null, 1L);
+    repository = open(DataSize.ofMegabytes(1));
+    repository.create(TEST_BASKET_ID).block();
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    repository.close();
+  }
+
+  @Test
+  @DisplayName("should price lines like the Redis scripts, including special offers")
+  void updateItem_pricesOffers() {
+    StepVerifier.create(repository.updateItem(TEST_BASKET_ID, productA, 4))
+        .expectNext(new BasketUpdate(Status.UPDATED, 180, 1))
+        .verifyComplete();
+    StepVerifier.create(repository.updateItem(TEST_BASKET_ID, productB, 2))
+        .expectNext(new BasketUpdate(Status.UPDATED, 240, 2))
+        .verifyComplete();
+    StepVerifier.create(repository.findById(TEST_BASKET_ID))
+        .assertNext(basket -> {
+          assertThat(basket.getItems()).isEqualTo(Map.of(SKU_A, 4, SKU_B, 2));
+          assertThat(basket.getLines()).containsEntry(SKU_A, new PricedLine(180, 1L));
+          assertThat(basket.getTotalPrice()).isEqualTo(240);
+        })
+        .verifyComplete();
+  }
+
+  @Test
+  @DisplayName("should report a price change when a line was priced at another version")
+  void updateItem_priceChanged() {
+    repository.updateItem(TEST_BASKET_ID, productB, 1).block();
+    Product repriced = new Product(2L, SKU_B, "Banana", 35, null, null, 2L);
+
+    StepVerifier.create(repository.updateItem(TEST_BASKET_ID, repriced, 1))
+        .expectNext(new BasketUpdate(Status.PRICE_CHANGED, 70, 1))
+        .verifyComplete();
+  }
+
+  @Test
+  @DisplayName("should remove a line whose quantity drops to zero")
+  void updateItem_removesLine() {
+    repository.updateItem(TEST_BASKET_ID, productB, 1).block();
+
+    StepVerifier.create(repository.updateItem(TEST_BASKET_ID, productB, -1))
+        .expectNext(new BasketUpdate(Status.UPDATED, 0))
+        .verifyComplete();
+    StepVerifier.create(repository.findById(TEST_BASKET_ID))
+        .assertNext(basket -> assertThat(basket.getItems()).isEmpty())
+        .verifyComplete();
+  }
+
+  @Test
+  @DisplayName("should refuse a line or a basket total above the basket limits")
+  void updateItem_limitExceeded() {
+    Product gold = new Product(3L, "GOLD", "Gold bar", 20_000, null, null, 1L);
+
+    StepVerifier.create(repository.updateItem(TEST_BASKET_ID, productB, MAX_LINE_QUANTITY + 1))
+        .expectNext(new BasketUpdate(Status.LIMIT_EXCEEDED, 0))
+        .verifyComplete();
+    StepVerifier.create(repository.updateItem(TEST_BASKET_ID, gold, 6_000))
+        .expectNext(new BasketUpdate(Status.LIMIT_EXCEEDED, 0))
+        .verifyComplete();
+    StepVerifier.create(repository.findById(TEST_BASKET_ID))
+        .assertNext(basket -> assertThat(basket.getItems()).isEmpty())
+        .verifyComplete();
+  }
+
+  @Test
+  @DisplayName("should apply no delta of a batch when one would go below zero")
+  void updateItems_atomic() {
+    repository.updateItem(TEST_BASKET_ID, productA, 1).block();
+
+    StepVerifier.create(repository.updateItems(TEST_BASKET_ID, Map.of(SKU_A, 2, SKU_B, -1),
+            Map.of(SKU_A, productA, SKU_B, productB)))
+        .expectNext(new BasketUpdate(Status.ITEM_NOT_FOUND, 0))
+        .verifyComplete();
+    StepVerifier.create(repository.findById(TEST_BASKET_ID))
+        .assertNext(basket -> assertThat(basket.getItems()).isEqualTo(Map.of(SKU_A, 1)))
+        .verifyComplete();
+  }
+
+  @Test
+  @DisplayName("should report a missing basket")
+  void updateItem_basketNotFound() {
+    StepVerifier.create(repository.updateItem("missing", productA, 1))
+        .expectNext(new BasketUpdate(Status.BASKET_NOT_FOUND, 0))
+        .verifyComplete();
+    StepVerifier.create(repository.findById("missing")).verifyComplete();
+    StepVerifier.create(repository.delete("missing")).expectNext(false).verifyComplete();
+  }
+
+  @Test
+  @DisplayName("should reprice every line at the current product version")
+  void reprice() {
+    repository.updateItem(TEST_BASKET_ID, productA, 3).block();
+    repository.updateItem(TEST_BASKET_ID, productB, 1).block();
+    Product repriced = new Product(1L, SKU_A, "Apple", 60, null, null, 2L);
+
+    StepVerifier.create(repository.reprice(TEST_BASKET_ID, List.of(repriced, productB)))
+        .expectNext(new BasketUpdate(Status.UPDATED, 210, 2))
+        .verifyComplete();
+    StepVerifier.create(repository.findById(TEST_BASKET_ID))
+        .assertNext(basket -> assertThat(basket.getLines())
+            .containsEntry(SKU_A, new PricedLine(180, 2L)))
+        .verifyComplete();
+  }
+
+  @Test
+  @DisplayName("should recover baskets and deletions from the journal after a restart")
+  void open_recoversJournal() throws IOException {
+    repository.updateItem(TEST_BASKET_ID, productA, 4).block();
+    repository.create("basket-2").block();
+    repository.delete("basket-2").block();
+    repository.close();
+
+    repository = open(DataSize.ofMegabytes(1));
+
+    assertThat(repository.size()).isEqualTo(1);
+    StepVerifier.create(repository.findById(TEST_BASKET_ID))
+        .assertNext(basket -> {
+          assertThat(basket.getItems()).isEqualTo(Map.of(SKU_A, 4));
+          assertThat(basket.getTotalPrice()).isEqualTo(180);
+        })
+        .verifyComplete();
+  }
+
+  @Test
+  @DisplayName("should ignore a record torn by a crash and keep the state before it")
+  void open_ignoresTornRecord() throws IOException {
+    repository.updateItem(TEST_BASKET_ID, productA, 1).block();
+    repository.updateItem(TEST_BASKET_ID, productA, 1).block();
+    repository.close();
+    corruptLastRecord();
+
+    repository = open(DataSize.ofMegabytes(1));
+
+    StepVerifier.create(repository.findById(TEST_BASKET_ID))
+        .assertNext(basket -> assertThat(basket.getItems()).isEqualTo(Map.of(SKU_A, 1)))
+        .verifyComplete();
+  }
+
+  @Test
+  @DisplayName("should expire baskets left untouched for longer than the basket TTL")
+  void findById_expired() throws IOException {
+    repository.updateItem(TEST_BASKET_ID, productA, 1).block();
+    when(clock.millis()).thenReturn(NOW + BASKET_TTL.toMillis());
+
+    StepVerifier.create(repository.findById(TEST_BASKET_ID)).verifyComplete();
+    StepVerifier.create(repository.updateItem(TEST_BASKET_ID, productA, 1))
+        .expectNext(new BasketUpdate(Status.BASKET_NOT_FOUND, 0))
+        .verifyComplete();
+
+    repository.close();
+    repository = open(DataSize.ofMegabytes(1));
+    assertThat(repository.size()).isZero();
+  }
+
+  @Test
+  @DisplayName("should compact the journal when the segment is full")
+  void updateItem_compactsJournal() throws IOException {
+    repository.close();
+    repository = open(DataSize.ofKilobytes(1));
+    for (int i = 0; i < 200; i++) {
+      repository.updateItem(TEST_BASKET_ID, productB, 1).block();
+    }
+    repository.close();
+
+    repository = open(DataSize.ofKilobytes(1));
+
+    StepVerifier.create(repository.findById(TEST_BASKET_ID).map(Basket::getTotalPrice))
+        .expectNext(6000)
+        .verifyComplete();
+  }
+
+  @Test
+  @DisplayName("should compact a filling segment in maintenance, away from the writers' threads")
+  void maintain_compactsFillingSegment() throws IOException {
+    repository.close();
+    repository = open(DataSize.ofKilobytes(1));
+    String caller = Thread.currentThread().getName();
+    int updates = 0;
+    while (repository.journalFill() < 0.75) {
+      StepVerifier.create(repository.updateItem(TEST_BASKET_ID, productB, 1)
+              .map(update -> Thread.currentThread().getName()))
+          .assertNext(writer -> assertThat(writer).isNotEqualTo(caller)
+              .startsWith("boundedElastic"))
+          .verifyComplete();
+      updates++;
+    }
+
+    repository.maintain();
+
+    assertThat(repository.journalFill()).isLessThan(0.25);
+    assertThat(directory.resolve(BasketJournal.JOURNAL_FILE)).hasSize(1024);
+    // Only the journal and the spare segment mapped for the next compaction remain
+    try (Stream<Path> files = Files.list(directory)) {
+      assertThat(files.map(file -> file.getFileName().toString()))
+          .filteredOn(name -> name.startsWith(BasketJournal.JOURNAL_FILE))
+          .hasSize(2)
+          .anyMatch(name -> name.endsWith(".spare"));
+    }
+    repository.close();
+    repository = open(DataSize.ofKilobytes(1));
+    StepVerifier.create(repository.findById(TEST_BASKET_ID).map(Basket::getTotalPrice))
+        .expectNext(updates * 30)
+        .verifyComplete();
+  }
+
+  private EmbeddedBasketRepository open(DataSize segmentSize) throws IOException {
+    EmbeddedBasketRepository opened = new EmbeddedBasketRepository(
+        new MetricsHelper(new SimpleMeterRegistry()), directory, segmentSize,
+        Duration.ofMinutes(1), clock);
+    opened.open();
+    return opened;
+  }
+
+  // Flips a payload byte of the last record, as a write cut short by a power loss would.
+  private void corruptLastRecord() throws IOException {
+    try (RandomAccessFile file = new RandomAccessFile(
+        directory.resolve(BasketJournal.JOURNAL_FILE).toFile(), "rw")) {
+      long offset = 0;
+      long last = -1;
+      while (offset + BasketJournal.HEADER_BYTES <= file.length()) {
+        file.seek(offset);
+        int length = file.readInt();
+        if (length == 0) {
+          break;
+        }
+        last = offset;
+        offset += BasketJournal.HEADER_BYTES + length;
+      }
+      file.seek(last + BasketJournal.HEADER_BYTES + 1);
+      int value = file.read();
+      file.seek(last + BasketJournal.HEADER_BYTES + 1);
+      file.write(value ^ 0xFF);
+    }
+  }
+}
@@ -0,0 +1,295 @@
+package com.haiilo.supermarket.checkout.pricing;
+
+import static com.haiilo.supermarket.checkout.TestConstants.SKU_A;
+import static com.haiilo.supermarket.checkout.TestConstants.SKU_B;
+import static com.haiilo.supermarket.checkout.TestConstants.SKU_C;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.haiilo.supermarket.checkout.domain.Product;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class PricingRuleSetTest {
+
+  private static final Instant NOW = Instant.parse("2026-03-02T10:00:00Z");
+
+  private final Map<String, Product> products = Map.of(
+      SKU_A, new Product(1L, SKU_A, "Apple", 50, 3, 130, 1L),
+      SKU_B, new Product(2L, SKU_B, "Banana", 30, 2, 45, 1L),
+      SKU_C, new Product(3L, SKU_C, "Cherry", 20, null, null, 1L));
+
+  @Test
+  @DisplayName("should apply product offers when no promotions are active")
+  void price_productOffersOnly() {
+    Map<String, Integer> items = Map.of(SKU_A, 4, SKU_B, 3, SKU_C, 1);
+
+    assertThat(PricingRuleSet.EMPTY.isEmpty()).isTrue();
+    assertThat(PricingRuleSet.EMPTY.price(items, products, NOW)).isEqualTo(180 + 75 + 20);
+  }
+
+  @Test
+  @DisplayName("should pick the cheapest combination of bundles and overlapping offers")
+  void price_bestCombination() {
+    PricingRuleSet rules = PricingRuleSet.compile(List.of(
+        new PricingRule(1L, PromotionType.BUNDLE, Map.of(SKU_A, 1, SKU_B, 1), 60, null,
+            null, null)));
+
+    // Offers alone give 130 + 45; two bundles plus one apple give 120 + 50.
+    assertThat(rules.price(Map.of(SKU_A, 3, SKU_B, 2), products, NOW)).isEqualTo(170);
+  }
+
+  @Test
+  @DisplayName("should discount units left outside deals once the minimum quantity is reached")
+  void price_percentage() {
+    PricingRuleSet rules = PricingRuleSet.compile(List.of(
+        new PricingRule(1L, PromotionType.PERCENTAGE, Map.of(SKU_C, 2), null, 10, null, null),
+        new PricingRule(2L, PromotionType.MULTIBUY, Map.of(SKU_C, 3), 50, null, null, null)));
+
+    assertThat(rules.price(Map.of(SKU_C, 1), products, NOW)).isEqualTo(20);
+    assertThat(rules.price(Map.of(SKU_C, 2), products, NOW)).isEqualTo(36);
+    assertThat(rules.price(Map.of(SKU_C, 4), products, NOW)).isEqualTo(50 + 18);
+  }
+
+  @Test
+  @DisplayName("should only apply promotions inside their validity window")
+  void price_timeWindow() {
+    PricingRuleSet rules = PricingRuleSet.compile(List.of(
+        new PricingRule(1L, PromotionType.MULTIBUY, Map.of(SKU_C, 2), 30, null,
+            NOW.plus(Duration.ofHours(1)), null),
+        new PricingRule(2L, PromotionType.MULTIBUY, Map.of(SKU_C, 2), 25, null,
+            null, NOW)));
+
+    assertThat(rules.price(Map.of(SKU_C, 2), products, NOW)).isEqualTo(40);
+    assertThat(rules.price(Map.of(SKU_C, 2), products, NOW.plus(Duration.ofHours(2))))
+        .isEqualTo(30);
+  }
+
+  @Test
+  @DisplayName("should price independent rule groups separately and add them up")
+  void price_independentGroups() {
+    Map<String, Product> catalogue = Map.of(
+        SKU_A, products.get(SKU_A),
+        SKU_B, products.get(SKU_B),
+        SKU_C, products.get(SKU_C),
+        "D", new Product(4L, "D", "Date", 40, null, null, 1L),
+        "E", new Product(5L, "E", "Elderberry", 10, 5, 40, 1L));
+    PricingRuleSet rules = PricingRuleSet.compile(List.of(
+        new PricingRule(1L, PromotionType.BUNDLE, Map.of(SKU_A, 1, SKU_B, 1), 60, null,
+            null, null),
+        new PricingRule(2L, PromotionType.BUNDLE, Map.of(SKU_C, 1, "D", 1), 45, null,
+            null, null),
+        new PricingRule(3L, PromotionType.MULTIBUY, Map.of("E", 3), 25, null, null, null)));
+
+    int ab = rules.price(Map.of(SKU_A, 3, SKU_B, 2), catalogue, NOW);
+    int cd = rules.price(Map.of(SKU_C, 2, "D", 1), catalogue, NOW);
+    int e = rules.price(Map.of("E", 8), catalogue, NOW);
+
+    assertThat(ab).isEqualTo(120 + 50);
+    assertThat(cd).isEqualTo(45 + 20);
+    // One multibuy and one offer, rather than two multibuys and two single units
+    assertThat(e).isEqualTo(25 + 40);
+    assertThat(rules.price(Map.of(SKU_A, 3, SKU_B, 2, SKU_C, 2, "D", 1, "E", 8), catalogue, NOW))
+        .isEqualTo(ab + cd + e);
+  }
+
+  @Test
+  @DisplayName("should find the best single-SKU combination where picking by saving would not")
+  void price_singleSkuKnapsack() {
+    PricingRuleSet rules = PricingRuleSet.compile(List.of(
+        new PricingRule(1L, PromotionType.MULTIBUY, Map.of(SKU_C, 3), 45, null, null, null),
+        new PricingRule(2L, PromotionType.MULTIBUY, Map.of(SKU_C, 4), 56, null, null, null)));
+
+    // Four for 56 saves the most per unit, but leaves two units at full price: 56 + 40.
+    assertThat(rules.price(Map.of(SKU_C, 6), products, NOW)).isEqualTo(90);
+    assertThat(rules.price(Map.of(SKU_C, 7), products, NOW)).isEqualTo(101);
+    assertThat(rules.price(Map.of(SKU_C, 8), products, NOW)).isEqualTo(112);
+  }
+
+  @Test
+  @DisplayName("should price the same basket the same regardless of rule and item order")
+  void price_deterministic() {
+    List<PricingRule> ruleList = List.of(
+        new PricingRule(1L, PromotionType.MULTIBUY, Map.of(SKU_C, 2), 30, null, null, null),
+        new PricingRule(2L, PromotionType.MULTIBUY, Map.of(SKU_C, 3), 45, null, null, null),
+        new PricingRule(3L, PromotionType.BUNDLE, Map.of(SKU_A, 1, SKU_C, 1), 60, null,
+            null, null),
+        new PricingRule(4L, PromotionType.BUNDLE, Map.of(SKU_B, 1, SKU_C, 1), 40, null,
+            null, null));
+    List<PricingRule> reversed = new ArrayList<>(ruleList);
+    Collections.reverse(reversed);
+    Map<String, Integer> items = new LinkedHashMap<>();
+    items.put(SKU_A, 2);
+    items.put(SKU_B, 3);
+    items.put(SKU_C, 6);
+    Map<String, Integer> reorderedItems = new LinkedHashMap<>();
+    reorderedItems.put(SKU_C, 6);
+    reorderedItems.put(SKU_B, 3);
+    reorderedItems.put(SKU_A, 2);
+
+    int expected = bruteForce(ruleList, 2, 3, 6);
+    PricingRuleSet rules = PricingRuleSet.compile(ruleList);
+
+    // Ties: two twos or one three plus a single cost the same for six cherries.
+    assertThat(rules.price(items, products, NOW)).isEqualTo(expected);
+    assertThat(PricingRuleSet.compile(reversed).price(reorderedItems, products, NOW))
+        .isEqualTo(expected);
+    for (int i = 0; i < 3; i++) {
+      assertThat(rules.price(items, products, NOW)).isEqualTo(expected);
+    }
+  }
+
+  @Test
+  @DisplayName("should find the cheapest mix of product offers, multibuys and bundles on one SKU")
+  void price_overlappingDealsOnSameSku() {
+    List<PricingRule> ruleList = List.of(
+        new PricingRule(1L, PromotionType.MULTIBUY, Map.of(SKU_A, 2), 90, null, null, null),
+        new PricingRule(2L, PromotionType.BUNDLE, Map.of(SKU_A, 1, SKU_B, 1), 60, null,
+            null, null),
+        new PricingRule(3L, PromotionType.BUNDLE, Map.of(SKU_A, 1, SKU_B, 1, SKU_C, 1), 85,
+            null, null, null),
+        new PricingRule(4L, PromotionType.MULTIBUY, Map.of(SKU_C, 3), 50, null, null, null));
+    PricingRuleSet rules = PricingRuleSet.compile(ruleList);
+
+    for (int a = 0; a <= 6; a++) {
+      for (int b = 0; b <= 4; b++) {
+        for (int c = 0; c <= 4; c++) {
+          Map<String, Integer> items = Map.of(SKU_A, a, SKU_B, b, SKU_C, c);
+          assertThat(rules.price(items, products, NOW))
+              .as("A=%d B=%d C=%d", a, b, c)
+              .isEqualTo(bruteForce(ruleList, a, b, c));
+        }
+      }
+    }
+  }
+
+  @Test
+  @DisplayName("should split applied deals over their lines in proportion to unit prices")
+  void allocate_splitsDeals() {
+    PricingRuleSet rules = PricingRuleSet.compile(List.of(
+        new PricingRule(1L, PromotionType.BUNDLE, Map.of(SKU_A, 1, SKU_B, 1), 60, null,
+            null, null),
+        new PricingRule(2L, PromotionType.BUNDLE, Map.of(SKU_C, 1, "D", 1, "E", 1), 85, null,
+            null, null)));
+    Map<String, Product> catalogue = Map.of(
+        SKU_A, products.get(SKU_A),
+        SKU_B, products.get(SKU_B),
+        SKU_C, products.get(SKU_C),
+        "D", new Product(4L, "D", "Date", 50, null, null, 1L),
+        "E", new Product(5L, "E", "Elderberry", 30, null, null, 1L));
+
+    // Two bundles at 75 + 45 and one apple at its unit price
+    assertThat(allocate(rules, Map.of(SKU_A, 3, SKU_B, 2), catalogue))
+        .containsExactlyInAnyOrderEntriesOf(Map.of(SKU_A, 125, SKU_B, 45));
+    // 17 + 42.5 + 25.5: the cent left over goes to the first of the tied remainders
+    assertThat(allocate(rules, Map.of(SKU_C, 1, "D", 1, "E", 1), catalogue))
+        .containsExactlyInAnyOrderEntriesOf(Map.of(SKU_C, 17, "D", 43, "E", 25));
+    assertThat(allocate(rules, Map.of(SKU_C, 7), catalogue))
+        .containsExactlyInAnyOrderEntriesOf(Map.of(SKU_C, 140));
+  }
+
+  @Test
+  @DisplayName("should allocate amounts that add up to the price of every basket")
+  void allocate_addsUpToPrice() {
+    PricingRuleSet rules = PricingRuleSet.compile(List.of(
+        new PricingRule(1L, PromotionType.MULTIBUY, Map.of(SKU_A, 2), 90, null, null, null),
+        new PricingRule(2L, PromotionType.BUNDLE, Map.of(SKU_A, 1, SKU_B, 1), 55, null,
+            null, null),
+        new PricingRule(3L, PromotionType.BUNDLE, Map.of(SKU_A, 1, SKU_B, 1, SKU_C, 1), 77,
+            null, null, null),
+        new PricingRule(4L, PromotionType.MULTIBUY, Map.of(SKU_C, 3), 50, null, null, null),
+        new PricingRule(5L, PromotionType.PERCENTAGE, Map.of(SKU_B, 3), null, 15, null, null)));
+
+    for (int a = 0; a <= 6; a++) {
+      for (int b = 0; b <= 4; b++) {
+        for (int c = 0; c <= 4; c++) {
+          Map<String, Integer> items = Map.of(SKU_A, a, SKU_B, b, SKU_C, c);
+          Map<String, Integer> allocation = allocate(rules, items, products);
+          assertThat(allocation.values().stream().mapToInt(Integer::intValue).sum())
+              .as("A=%d B=%d C=%d", a, b, c)
+              .isEqualTo(rules.price(items, products, NOW));
+          assertThat(allocation.keySet()).as("A=%d B=%d C=%d", a, b, c)
+              .isEqualTo(items.entrySet().stream().filter(item -> item.getValue() > 0)
+                  .map(Map.Entry::getKey).collect(Collectors.toSet()));
+          assertThat(allocation.values()).allMatch(amount -> amount >= 0);
+        }
+      }
+    }
+  }
+
+  @Test
+  @DisplayName("should skip malformed rules when compiling")
+  void compile_skipsInvalidRules() {
+    PricingRuleSet rules = PricingRuleSet.compile(List.of(
+        new PricingRule(1L, PromotionType.MULTIBUY, Map.of(SKU_A, 2, SKU_B, 1), 60, null,
+            null, null),
+        new PricingRule(2L, PromotionType.PERCENTAGE, Map.of(SKU_C, 1), null, 150, null, null),
+        new PricingRule(3L, PromotionType.BUNDLE, Map.of(SKU_A, 1, SKU_C, 1), 55, null,
+            null, null)));
+
+    assertThat(rules.size()).isEqualTo(1);
+    assertThat(rules.price(Map.of(SKU_A, 1, SKU_C, 1), products, NOW)).isEqualTo(55);
+  }
+
+  // Cheapest total over every way of applying the product offers and the given deals, by
+  // exhaustive recursion over the remaining quantities of A, B and C.
+  private int bruteForce(List<PricingRule> deals, int a, int b, int c) {
+    List<int[]> options = new ArrayList<>();
+    List<Integer> prices = new ArrayList<>();
+    List<String> skus = List.of(SKU_A, SKU_B, SKU_C);
+    for (String sku : skus) {
+      Product product = products.get(sku);
+      if (product.hasSpecialOffer()) {
+        int[] quantities = new int[3];
+        quantities[skus.indexOf(sku)] = product.offerQuantity();
+        options.add(quantities);
+        prices.add(product.offerPrice());
+      }
+    }
+    for (PricingRule deal : deals) {
+      int[] quantities = new int[3];
+      deal.items().forEach((sku, quantity) -> quantities[skus.indexOf(sku)] = quantity);
+      options.add(quantities);
+      prices.add(deal.price());
+    }
+    return cheapest(new int[] {a, b, c}, options, prices, new HashMap<>());
+  }
+
+  private int cheapest(int[] remaining, List<int[]> options, List<Integer> prices,
+      Map<List<Integer>, Integer> memo) {
+    List<Integer> key = List.of(remaining[0], remaining[1], remaining[2]);
+    Integer known = memo.get(key);
+    if (known != null) {
+      return known;
+    }
+    int best = remaining[0] * products.get(SKU_A).unitPrice()
+        + remaining[1] * products.get(SKU_B).unitPrice()
+        + remaining[2] * products.get(SKU_C).unitPrice();
+    for (int o = 0; o < options.size(); o++) {
+      int[] option = options.get(o);
+      int[] rest = {remaining[0] - option[0], remaining[1] - option[1],
+          remaining[2] - option[2]};
+      if (rest[0] >= 0 && rest[1] >= 0 && rest[2] >= 0) {
+        best = Math.min(best, prices.get(o) + cheapest(rest, options, prices, memo));
+      }
+    }
+    memo.put(key, best);
+    return best;
+  }
+
+  private static Map<String, Integer> allocate(PricingRuleSet rules, Map<String, Integer> items,
+      Map<String, Product> products) {
+    Map<String, Integer> allocation = new HashMap<>();
+    int total = rules.allocate(items, products, NOW, allocation::put);
+    assertThat(allocation.values().stream().mapToInt(Integer::intValue).sum()).isEqualTo(total);
+    return allocation;
+  }
+}
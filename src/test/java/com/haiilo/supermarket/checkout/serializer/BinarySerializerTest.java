@@ -0,0 +1,112 @@
+package com.haiilo.supermarket.checkout.serializer;
+
+import static com.haiilo.supermarket.checkout.TestConstants.SKU_A;
+import static com.haiilo.supermarket.checkout.TestConstants.SKU_B;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.haiilo.supermarket.checkout.domain.Basket;
+import com.haiilo.supermarket.checkout.domain.PricedLine;
+import com.haiilo.supermarket.checkout.domain.Product;
+import java.util.Arrays;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+class BinarySerializerTest {
+
+  private final ProductBinarySerializer productSerializer = new ProductBinarySerializer();
+  private final BasketBinarySerializer basketSerializer = new BasketBinarySerializer();
+
+  @Test
+  @DisplayName("should round-trip a product with and without an offer")
+  void product_roundTrip() {
+    Product withOffer = new Product(1L, SKU_A, "Apple", 50, 3, 130, 1L);
+    Product withoutOffer = new Product(null, SKU_B, "Banana", 30, null, null, 1L);
+
+    assertThat(productSerializer.deserialize(productSerializer.serialize(withOffer)))
+        .isEqualTo(withOffer);
+    assertThat(productSerializer.deserialize(productSerializer.serialize(withoutOffer)))
+        .isEqualTo(withoutOffer);
+  }
+
+  @Test
+  @DisplayName("should read version 1 product payloads written before price versions")
+  void product_readsVersionOne() {
+    Product unversioned = new Product(1L, SKU_A, "Apple", 50, 3, 130, null);
+    byte[] current = productSerializer.serialize(unversioned);
+    // Version 1 is the current layout without the trailing price version flag.
+    byte[] versionOne = Arrays.copyOf(current, current.length - 1);
+    versionOne[1] = 1;
+
+    assertThat(productSerializer.deserialize(versionOne)).isEqualTo(unversioned);
+  }
+
+  @Test
+  @DisplayName("binary product payload should be smaller than JSON")
+  void product_smallerThanJson() {
+    Product product = new Product(1L, SKU_A, "Apple", 50, 3, 130, 1L);
+    Jackson2JsonRedisSerializer<Product> json = new Jackson2JsonRedisSerializer<>(Product.class);
+
+    assertThat(productSerializer.serialize(product).length)
+        .isLessThan(json.serialize(product).length);
+  }
+
+  @Test
+  @DisplayName("should round-trip a basket with items and priced lines")
+  void basket_roundTrip() {
+    Basket basket = new Basket("basket-1");
+    basket.addItem(SKU_A);
+    basket.addItem(SKU_A);
+    basket.addItem(SKU_B);
+    basket.getLines().put(SKU_A, new PricedLine(100, -42));
+    basket.getLines().put(SKU_B, new PricedLine(30, 7));
+    basket.setTotalPrice(130);
+
+    assertThat(basketSerializer.deserialize(basketSerializer.serialize(basket)))
+        .isEqualTo(basket);
+  }
+
+  @Test
+  @DisplayName("should reject payloads written by a newer format version")
+  void deserialize_unknownVersion() {
+    byte[] bytes = productSerializer.serialize(new Product(1L, SKU_A, "Apple", 50, null, null, 1L));
+    bytes[1] = 99;
+
+    assertThatThrownBy(() -> productSerializer.deserialize(bytes))
+        .isInstanceOf(SerializationException.class);
+  }
+
+  @Test
+  @DisplayName("migration mode should read both formats and keep writing JSON")
+  void migration_readsBothWritesJson() {
+    Jackson2JsonRedisSerializer<Product> json = new Jackson2JsonRedisSerializer<>(Product.class);
+    RedisSerializer<Product> migration =
+        RedisSerializationMode.MIGRATION.serializer(Product.class, productSerializer);
+    Product product = new Product(1L, SKU_A, "Apple", 50, 3, 130, 1L);
+
+    byte[] written = migration.serialize(product);
+
+    // Instances still on JSON mode must be able to read what is written during the migration.
+    assertThat(VersionedBinarySerializer.isBinary(written)).isFalse();
+    assertThat(json.deserialize(written)).isEqualTo(product);
+    assertThat(migration.deserialize(productSerializer.serialize(product))).isEqualTo(product);
+  }
+
+  @Test
+  @DisplayName("binary mode should write binary and still read JSON entries")
+  void binary_writesBinaryReadsJson() {
+    Jackson2JsonRedisSerializer<Product> json = new Jackson2JsonRedisSerializer<>(Product.class);
+    RedisSerializer<Product> binary =
+        RedisSerializationMode.BINARY.serializer(Product.class, productSerializer);
+    Product product = new Product(1L, SKU_A, "Apple", 50, 3, 130, 1L);
+
+    byte[] written = binary.serialize(product);
+
+    assertThat(VersionedBinarySerializer.isBinary(written)).isTrue();
+    assertThat(binary.deserialize(written)).isEqualTo(product);
+    assertThat(binary.deserialize(json.serialize(product))).isEqualTo(product);
+  }
+}
@@ -2,7 +2,15 @@ package com.haiilo.supermarket.checkout.service;
 
 import com.haiilo.supermarket.checkout.domain.Basket;
 import com.haiilo.supermarket.checkout.domain.Product;
+import com.haiilo.supermarket.checkout.dto.BasketItemDeltaDTO;
+import com.haiilo.supermarket.checkout.dto.OrderDTO;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import com.haiilo.supermarket.checkout.repository.BasketRepository;
 import com.haiilo.supermarket.checkout.util.BasketHelper;
+import com.haiilo.supermarket.checkout.util.OrderHelper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -10,17 +18,20 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.data.redis.core.ReactiveRedisTemplate;
-import org.springframework.data.redis.core.ReactiveValueOperations;
 import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
+import reactor.util.function.Tuples;
 
 import static com.haiilo.supermarket.checkout.TestConstants.SKU_A;
 import static com.haiilo.supermarket.checkout.TestConstants.SKU_B;
+import static com.haiilo.supermarket.checkout.util.AppConstants.MAX_LINE_QUANTITY;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyMap;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
 import static org.springframework.http.HttpStatus.NOT_FOUND;
 
 @ExtendWith(MockitoExtension.class)
@@ -32,10 +43,10 @@ class BasketServiceTest {
   private BasketHelper basketHelper;
 
   @Mock
-  private ReactiveRedisTemplate<String, Basket> basketRedisTemplate;
+  private OrderHelper orderHelper;
 
   @Mock
-  private ReactiveValueOperations<String, Basket> reactiveValueOperations;
+  private BasketRepository basketRepository;
 
   @InjectMocks
   private BasketService basketService;
@@ -50,57 +61,83 @@ class BasketServiceTest {
   @Test
   @DisplayName("should create a new basket successfully")
   void createBasket_success() {
-    when(basketRedisTemplate.opsForValue()).thenReturn(reactiveValueOperations);
-    when(reactiveValueOperations.set(anyString(), any(Basket.class), any())).thenReturn(Mono.just(true));
+    when(basketRepository.create(anyString())).thenAnswer(
+        invocation -> Mono.just(new Basket(invocation.getArgument(0, String.class))));
 
-    StepVerifier.create(basketService.createBasket())
+    StepVerifier.create(basketService.createBasket(null))
         .expectNextMatches(basket -> basket.getId() != null && basket.getItems().isEmpty())
         .verifyComplete();
   }
 
+  @Test
+  @DisplayName("should prefix the basket ID with the store")
+  void createBasket_forStore() {
+    when(basketRepository.create(anyString())).thenAnswer(
+        invocation -> Mono.just(new Basket(invocation.getArgument(0, String.class))));
+
+    StepVerifier.create(basketService.createBasket("store-42"))
+        .expectNextMatches(basket -> basket.getId().startsWith("store-42."))
+        .verifyComplete();
+  }
+
+  @Test
+  @DisplayName("should reject an invalid store ID")
+  void createBasket_invalidStore() {
+    StepVerifier.create(basketService.createBasket("store}42"))
+        .expectErrorMatches(e -> e instanceof ResponseStatusException
+            && ((ResponseStatusException) e).getStatusCode() == BAD_REQUEST)
+        .verify();
+
+    verify(basketRepository, never()).create(anyString());
+  }
+
   @Test
   @DisplayName("addItemToBasket should return total price from helper")
   void addItemToBasket_success() {
-    when(basketHelper.getBasketById(BASKET_ID)).thenReturn(Mono.just(testBasket));
-    when(basketHelper.getProductBySku(SKU_A)).thenReturn(Mono.just(new Product(1L, SKU_A, "Apple", 30, 5, 100)));
-    when(basketHelper.getTotalPrice(any(Basket.class))).thenReturn(Mono.just(30));
+    Product product = new Product(1L, SKU_A, "Apple", 30, 5, 100, 1L);
+    when(basketHelper.getProductBySku(SKU_A)).thenReturn(Mono.just(product));
+    when(basketHelper.updateItem(BASKET_ID, product, 1)).thenReturn(Mono.just(30));
 
     StepVerifier.create(basketService.addItemToBasket(BASKET_ID, SKU_A))
         .expectNext(30)
         .verifyComplete();
 
-    verify(basketHelper, times(1)).getTotalPrice(testBasket);
+    verify(basketHelper, times(1)).updateItem(BASKET_ID, product, 1);
   }
 
   @Test
   @DisplayName("addItemToBasket should fail when product not found")
   void addItemToBasket_productNotFound_fails() {
-    when(basketHelper.getBasketById(BASKET_ID)).thenReturn(Mono.just(testBasket));
     when(basketHelper.getProductBySku(SKU_B)).thenReturn(Mono.error(new ResponseStatusException(NOT_FOUND)));
 
     StepVerifier.create(basketService.addItemToBasket(BASKET_ID, SKU_B))
         .expectError(ResponseStatusException.class)
         .verify();
+
+    verify(basketHelper, never()).updateItem(anyString(), any(Product.class), anyInt());
   }
 
   @Test
   @DisplayName("removeItemFromBasket should return total price from helper")
   void removeItemFromBasket_success() {
-    testBasket.addItem(SKU_A);
-    when(basketHelper.getBasketById(BASKET_ID)).thenReturn(Mono.just(testBasket));
-    when(basketHelper.getTotalPrice(any(Basket.class))).thenReturn(Mono.just(0));
+    Product product = new Product(1L, SKU_A, "Apple", 30, 5, 100, 1L);
+    when(basketHelper.getProductBySku(SKU_A)).thenReturn(Mono.just(product));
+    when(basketHelper.updateItem(BASKET_ID, product, -1)).thenReturn(Mono.just(0));
 
     StepVerifier.create(basketService.removeItemFromBasket(BASKET_ID, SKU_A))
         .expectNext(0)
         .verifyComplete();
 
-    verify(basketHelper, times(1)).getTotalPrice(testBasket);
+    verify(basketHelper, times(1)).updateItem(BASKET_ID, product, -1);
   }
 
   @Test
   @DisplayName("removeItemFromBasket should fail if item not in basket")
   void removeItemFromBasket_itemNotFound_fails() {
-    when(basketHelper.getBasketById(BASKET_ID)).thenReturn(Mono.just(testBasket));
+    Product product = new Product(1L, SKU_A, "Apple", 30, 5, 100, 1L);
+    when(basketHelper.getProductBySku(SKU_A)).thenReturn(Mono.just(product));
+    when(basketHelper.updateItem(BASKET_ID, product, -1)).thenReturn(
+        Mono.error(new ResponseStatusException(NOT_FOUND)));
 
     StepVerifier.create(basketService.removeItemFromBasket(BASKET_ID, SKU_A))
         .expectError(ResponseStatusException.class)
@@ -110,13 +147,131 @@ class BasketServiceTest {
   @Test
   @DisplayName("cancelBasket should delete basket from redis")
   void cancelBasket_success() {
-    when(basketRedisTemplate.opsForValue()).thenReturn(reactiveValueOperations);
-    when(reactiveValueOperations.delete(BASKET_ID)).thenReturn(Mono.just(true));
+    when(basketRepository.delete(BASKET_ID)).thenReturn(Mono.just(true));
 
     StepVerifier.create(basketService.cancelBasket(BASKET_ID))
         .verifyComplete();
 
-    verify(reactiveValueOperations, times(1)).delete(BASKET_ID);
+    verify(basketRepository, times(1)).delete(BASKET_ID);
   }
-}
 
+  @Test
+  @DisplayName("checkout should save the order under the idempotency key and delete the basket")
+  void checkout_success() {
+    testBasket.addItem(SKU_A);
+    OrderDTO order = OrderDTO.builder().id(1L).finalPrice(30).items(List.of())
+        .createdAt(Instant.now()).build();
+    when(basketRepository.findById(BASKET_ID)).thenReturn(Mono.just(testBasket));
+    Map<String, Product> products = Map.of(SKU_A, new Product(1L, SKU_A, "Apple", 50, 3, 130, 1L));
+    when(basketHelper.revalidateTotal(testBasket))
+        .thenReturn(Mono.just(Tuples.of(testBasket, products)));
+    when(orderHelper.saveOrder(testBasket, products, BASKET_ID + ":retry-1"))
+        .thenReturn(Mono.just(order));
+    when(basketRepository.delete(BASKET_ID)).thenReturn(Mono.just(true));
+
+    StepVerifier.create(basketService.checkout(BASKET_ID, "retry-1"))
+        .expectNext(order)
+        .verifyComplete();
+
+    verify(basketRepository, times(1)).delete(BASKET_ID);
+  }
+
+  @Test
+  @DisplayName("checkout retry should return the stored order without writing again")
+  void checkout_retryReturnsStoredOrder() {
+    OrderDTO order = OrderDTO.builder().id(1L).finalPrice(30).items(List.of())
+        .createdAt(Instant.now()).build();
+    when(basketRepository.findById(BASKET_ID)).thenReturn(Mono.empty());
+    when(orderHelper.findOrder(BASKET_ID)).thenReturn(Mono.just(order));
+
+    StepVerifier.create(basketService.checkout(BASKET_ID, null))
+        .expectNext(order)
+        .verifyComplete();
+
+    verify(orderHelper, never()).saveOrder(any(Basket.class), anyMap(), anyString());
+  }
+
+  @Test
+  @DisplayName("checkout should fail when neither a basket nor a stored order exists")
+  void checkout_basketNotFound_fails() {
+    when(basketRepository.findById(BASKET_ID)).thenReturn(Mono.empty());
+    when(orderHelper.findOrder(BASKET_ID)).thenReturn(Mono.empty());
+
+    StepVerifier.create(basketService.checkout(BASKET_ID, null))
+        .expectError(ResponseStatusException.class)
+        .verify();
+  }
+
+  @Test
+  @DisplayName("addItemsToBasket should merge duplicate SKUs and apply them in one update")
+  void addItemsToBasket_mergesDuplicates() {
+    Product productA = new Product(1L, SKU_A, "Apple", 50, 3, 130, 1L);
+    Product productB = new Product(2L, SKU_B, "Banana", 30, 2, 45, 1L);
+    Map<String, Product> products = Map.of(SKU_A, productA, SKU_B, productB);
+    when(basketHelper.getProductsBySkus(Set.of(SKU_A, SKU_B))).thenReturn(Mono.just(products));
+    when(basketHelper.updateItems(BASKET_ID, Map.of(SKU_A, 3, SKU_B, 1), products))
+        .thenReturn(Mono.just(160));
+
+    List<BasketItemDeltaDTO> items = List.of(
+        new BasketItemDeltaDTO(SKU_A, 2),
+        new BasketItemDeltaDTO(SKU_B, 1),
+        new BasketItemDeltaDTO(SKU_A, 1));
+
+    StepVerifier.create(basketService.addItemsToBasket(BASKET_ID, items))
+        .expectNext(160)
+        .verifyComplete();
+
+    verify(basketHelper, times(1)).getProductsBySkus(any());
+    verify(basketHelper, never()).updateItem(anyString(), any(Product.class), anyInt());
+  }
+
+  @Test
+  @DisplayName("addItemsToBasket should reject an empty batch or a zero quantity")
+  void addItemsToBasket_invalidBatch_fails() {
+    StepVerifier.create(basketService.addItemsToBasket(BASKET_ID, List.of()))
+        .expectErrorMatches(e -> e instanceof ResponseStatusException ex
+            && ex.getStatusCode() == BAD_REQUEST)
+        .verify();
+
+    StepVerifier.create(basketService.addItemsToBasket(BASKET_ID,
+            List.of(new BasketItemDeltaDTO(SKU_A, 0))))
+        .expectErrorMatches(e -> e instanceof ResponseStatusException ex
+            && ex.getStatusCode() == BAD_REQUEST)
+        .verify();
+
+    verifyNoInteractions(basketHelper);
+  }
+
+  @Test
+  @DisplayName("addItemsToBasket should reject quantities above the line limit, alone or summed")
+  void addItemsToBasket_limitExceeded_fails() {
+    StepVerifier.create(basketService.addItemsToBasket(BASKET_ID,
+            List.of(new BasketItemDeltaDTO(SKU_A, MAX_LINE_QUANTITY + 1))))
+        .expectErrorMatches(e -> e instanceof ResponseStatusException ex
+            && ex.getStatusCode() == BAD_REQUEST)
+        .verify();
+
+    List<BasketItemDeltaDTO> summed = List.of(
+        new BasketItemDeltaDTO(SKU_A, MAX_LINE_QUANTITY),
+        new BasketItemDeltaDTO(SKU_A, 1));
+    StepVerifier.create(basketService.addItemsToBasket(BASKET_ID, summed))
+        .expectErrorMatches(e -> e instanceof ResponseStatusException ex
+            && ex.getStatusCode() == BAD_REQUEST)
+        .verify();
+
+    verifyNoInteractions(basketHelper);
+  }
+
+  @Test
+  @DisplayName("checkout should reject an Idempotency-Key that is too long or not visible ASCII")
+  void checkout_invalidIdempotencyKey_fails() {
+    for (String key : List.of("k".repeat(65), "key 1", "schlüssel")) {
+      StepVerifier.create(basketService.checkout(BASKET_ID, key))
+          .expectErrorMatches(e -> e instanceof ResponseStatusException ex
+              && ex.getStatusCode() == BAD_REQUEST)
+          .verify();
+    }
+
+    verifyNoInteractions(basketRepository, orderHelper);
+  }
+}
@@ -0,0 +1,63 @@
+package com.haiilo.supermarket.checkout.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+
+import com.haiilo.supermarket.checkout.dto.OrderDTO;
+import com.haiilo.supermarket.checkout.repository.OrderExportRepository;
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+@ExtendWith(MockitoExtension.class)
+class OrderServiceTest {
+
+  @Mock
+  private OrderExportRepository orderExportRepository;
+
+  @InjectMocks
+  private OrderService orderService;
+
+  @Test
+  @DisplayName("exportOrders should start from the beginning and stop at the request time by default")
+  void exportOrders_defaults() {
+    OrderDTO order = OrderDTO.builder().id(1L).finalPrice(50).items(List.of())
+        .createdAt(Instant.now()).build();
+    when(orderExportRepository.streamOrders(eq(Instant.EPOCH), eq(0L), any(Instant.class)))
+        .thenReturn(Flux.just(order));
+    Instant before = Instant.now();
+
+    StepVerifier.create(orderService.exportOrders(null, null, null))
+        .expectNext(order)
+        .verifyComplete();
+
+    verify(orderExportRepository).streamOrders(eq(Instant.EPOCH), eq(0L),
+        argThat(to -> !to.isBefore(before)));
+  }
+
+  @Test
+  @DisplayName("exportOrders should reject a range where 'from' is not before 'to'")
+  void exportOrders_invalidRange_fails() {
+    Instant now = Instant.now();
+
+    StepVerifier.create(orderService.exportOrders(now, null, now))
+        .expectErrorMatches(e -> e instanceof ResponseStatusException ex
+            && ex.getStatusCode() == BAD_REQUEST)
+        .verify();
+
+    verifyNoInteractions(orderExportRepository);
+  }
+}
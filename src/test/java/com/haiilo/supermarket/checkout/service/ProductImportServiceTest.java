@@ -0,0 +1,140 @@
+package com.haiilo.supermarket.checkout.service;
+
+import static com.haiilo.supermarket.checkout.TestConstants.SKU_A;
+import static com.haiilo.supermarket.checkout.TestConstants.SKU_B;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.haiilo.supermarket.checkout.domain.Product;
+import com.haiilo.supermarket.checkout.repository.ProductRepository;
+import com.haiilo.supermarket.checkout.util.MetricsHelper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+class ProductImportServiceTest {
+
+  private final ProductRepository productRepository = mock(ProductRepository.class);
+  private final ProductService productService = mock(ProductService.class);
+  private ProductImportService importService;
+
+  @BeforeEach
+  void setUp() {
+    importService = new ProductImportService(productRepository, productService,
+        new ObjectMapper(), new MetricsHelper(new SimpleMeterRegistry()), 2);
+    when(productService.refreshCache(anyList()))
+        .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+  }
+
+  @Test
+  @DisplayName("importProducts should parse CSV across buffer boundaries and upsert in batches")
+  void importProducts_csv() {
+    Product apple = new Product(1L, SKU_A, "Apple, red", 50, 3, 130, 1L);
+    Product banana = new Product(2L, SKU_B, "Banana", 30, null, null, 1L);
+    when(productRepository.upsertAll(any(), any(), any(), any(), any()))
+        .thenReturn(Flux.just(apple))
+        .thenReturn(Flux.just(banana));
+
+    String csv = "sku,name,unit_price,offer_quantity,offer_price\n"
+        + "A,\"Apple, red\",50,3,130\n"
+        + "A,\"Apple, red\",50,3,130\n"
+        + "\n"
+        + "C,Cherry,abc,,\n"
+        + "B,Banana,30,,\n";
+
+    StepVerifier.create(importService.importProducts(chunks(csv, 7),
+            ProductImportService.TEXT_CSV))
+        .assertNext(result -> {
+          assertThat(result.rows()).isEqualTo(4);
+          assertThat(result.upserted()).isEqualTo(2);
+          assertThat(result.unchanged()).isEqualTo(1);
+          assertThat(result.failed()).isEqualTo(1);
+          assertThat(result.errors()).singleElement()
+              .satisfies(error -> {
+                assertThat(error.line()).isEqualTo(5);
+                assertThat(error.sku()).isEqualTo("C");
+              });
+        })
+        .verifyComplete();
+
+    ArgumentCaptor<String[]> skus = ArgumentCaptor.forClass(String[].class);
+    ArgumentCaptor<String[]> names = ArgumentCaptor.forClass(String[].class);
+    verify(productRepository, times(2)).upsertAll(skus.capture(), names.capture(), any(), any(),
+        any());
+    // Duplicate SKUs within a batch are collapsed so ON CONFLICT touches each row once.
+    assertThat(skus.getAllValues().get(0)).containsExactly(SKU_A);
+    assertThat(names.getAllValues().get(0)).containsExactly("Apple, red");
+    assertThat(skus.getAllValues().get(1)).containsExactly(SKU_B);
+    verify(productService).refreshCache(List.of(apple));
+    verify(productService).refreshCache(List.of(banana));
+  }
+
+  @Test
+  @DisplayName("importProducts should report invalid NDJSON rows and store the valid ones")
+  void importProducts_ndjson() {
+    Product apple = new Product(1L, SKU_A, "Apple", 50, null, null, 1L);
+    when(productRepository.upsertAll(any(), any(), any(), any(), any()))
+        .thenReturn(Flux.just(apple));
+
+    String ndjson = "{\"sku\":\"A\",\"name\":\"Apple\",\"unitPrice\":50}\n"
+        + "{\"sku\":\"B\",\"name\":\"Banana\",\"unitPrice\":0}\n"
+        + "{broken\n"
+        + "null\n";
+
+    StepVerifier.create(importService.importProducts(chunks(ndjson, 1024),
+            MediaType.APPLICATION_NDJSON))
+        .assertNext(result -> {
+          assertThat(result.rows()).isEqualTo(4);
+          assertThat(result.upserted()).isEqualTo(1);
+          assertThat(result.failed()).isEqualTo(3);
+          assertThat(result.errors()).extracting("line").containsExactly(2L, 3L, 4L);
+          assertThat(result.errors().get(2).message()).isEqualTo("Expected a JSON object");
+        })
+        .verifyComplete();
+  }
+
+  @Test
+  @DisplayName("importProducts should reject a CSV header without the required columns")
+  void importProducts_invalidHeader_fails() {
+    StepVerifier.create(importService.importProducts(chunks("id,title\n1,Apple\n", 1024),
+            ProductImportService.TEXT_CSV))
+        .expectError(ResponseStatusException.class)
+        .verify();
+
+    verify(productRepository, never()).upsertAll(any(), any(), any(), any(), any());
+  }
+
+  @Test
+  @DisplayName("splitCsvLine should handle quoted separators and escaped quotes")
+  void splitCsvLine_quotes() {
+    assertThat(ProductImportService.splitCsvLine("A,\"Big \"\"red\"\", apple\", 50 ,,"))
+        .containsExactly("A", "Big \"red\", apple", "50", "", "");
+  }
+
+  private static Flux<DataBuffer> chunks(String content, int chunkSize) {
+    byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+    return Flux.range(0, (bytes.length + chunkSize - 1) / chunkSize)
+        .map(i -> DefaultDataBufferFactory.sharedInstance.wrap(
+            Arrays.copyOfRange(bytes, i * chunkSize,
+                Math.min(bytes.length, (i + 1) * chunkSize))));
+  }
+}
@@ -1,6 +1,11 @@
 package com.haiilo.supermarket.checkout.service;
 
 import static com.haiilo.supermarket.checkout.TestConstants.SKU_A;
+import static com.haiilo.supermarket.checkout.TestConstants.SKU_B;
+import static com.haiilo.supermarket.checkout.TestConstants.SKU_C;
+import static com.haiilo.supermarket.checkout.util.AppConstants.PRODUCT_CACHE_COUNTER;
+import static com.haiilo.supermarket.checkout.util.AppConstants.STAGE_TIMER;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.anyString;
@@ -9,19 +14,32 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.haiilo.supermarket.checkout.cache.ProductNearCache;
 import com.haiilo.supermarket.checkout.domain.Product;
 import com.haiilo.supermarket.checkout.repository.ProductRepository;
+import com.haiilo.supermarket.checkout.util.MetricsHelper;
+import com.haiilo.supermarket.checkout.util.RedisKeys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.data.redis.core.ReactiveValueOperations;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
 import reactor.test.StepVerifier;
 
 @ExtendWith(MockitoExtension.class)
@@ -36,6 +54,17 @@ class ProductServiceTest {
   @Mock
   private ReactiveValueOperations<String, Product> reactiveValueOperations;
 
+  @Mock
+  private ProductNearCache nearCache;
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  @Spy
+  private MetricsHelper metricsHelper = new MetricsHelper(meterRegistry);
+
+  @Spy
+  private RedisKeys redisKeys = new RedisKeys("checkout", false);
+
   @InjectMocks
   private ProductService productService;
 
@@ -43,19 +72,70 @@ class ProductServiceTest {
 
   @BeforeAll
   static void setUp() {
-    testProduct = new Product(1L, SKU_A, "Apple", 50, 3, 130);
+    testProduct = new Product(1L, SKU_A, "Apple", 50, 3, 130, 1L);
   }
 
   @Test
   @DisplayName("getProductBySku should return product from cache if present")
   void getProductBySku_FoundInCache() {
     when(productRedisTemplate.opsForValue()).thenReturn(reactiveValueOperations);
-    when(reactiveValueOperations.get(SKU_A)).thenReturn(Mono.just(testProduct));
+    when(reactiveValueOperations.get(key(SKU_A))).thenReturn(Mono.just(testProduct));
+    when(productRedisTemplate.getExpire(key(SKU_A))).thenReturn(Mono.just(Duration.ofMinutes(50)));
+
+    StepVerifier.create(productService.getProductBySku(SKU_A))
+        .expectNext(testProduct)
+        .verifyComplete();
+
+    verify(productRepository, never()).findBySku(anyString());
+    verify(nearCache, times(1)).put(testProduct);
+  }
+
+  @Test
+  @DisplayName("getProductBySku should reload a cached product that has no price version")
+  void getProductBySku_CachedWithoutVersion_ReloadsFromDb() {
+    Product unversioned = new Product(1L, SKU_A, "Apple", 50, 3, 130, null);
+    when(productRedisTemplate.opsForValue()).thenReturn(reactiveValueOperations);
+    when(reactiveValueOperations.get(key(SKU_A))).thenReturn(Mono.just(unversioned));
+    when(productRedisTemplate.getExpire(key(SKU_A))).thenReturn(Mono.just(Duration.ofMinutes(50)));
+    when(productRepository.findBySku(SKU_A)).thenReturn(Mono.just(testProduct));
+    when(reactiveValueOperations.set(eq(key(SKU_A)), eq(testProduct), any(Duration.class))).thenReturn(
+        Mono.just(true));
+
+    StepVerifier.create(productService.getProductBySku(SKU_A))
+        .expectNext(testProduct)
+        .verifyComplete();
+
+    verify(nearCache, never()).put(unversioned);
+  }
+
+  @Test
+  @DisplayName("getProductBySku should treat a cached product that cannot be read as a miss")
+  void getProductBySku_Undecodable_ReloadsFromDb() {
+    when(productRedisTemplate.opsForValue()).thenReturn(reactiveValueOperations);
+    when(reactiveValueOperations.get(key(SKU_A))).thenReturn(
+        Mono.error(new SerializationException("Unsupported binary format version 99")));
+    when(productRedisTemplate.getExpire(key(SKU_A))).thenReturn(Mono.just(Duration.ofMinutes(50)));
+    when(productRepository.findBySku(SKU_A)).thenReturn(Mono.just(testProduct));
+    when(reactiveValueOperations.set(eq(key(SKU_A)), eq(testProduct), any(Duration.class))).thenReturn(
+        Mono.just(true));
 
     StepVerifier.create(productService.getProductBySku(SKU_A))
         .expectNext(testProduct)
         .verifyComplete();
 
+    verify(nearCache, times(1)).put(testProduct);
+  }
+
+  @Test
+  @DisplayName("getProductBySku should return product from near-cache without calling Redis")
+  void getProductBySku_FoundInNearCache() {
+    when(nearCache.get(SKU_A)).thenReturn(testProduct);
+
+    StepVerifier.create(productService.getProductBySku(SKU_A))
+        .expectNext(testProduct)
+        .verifyComplete();
+
+    verify(productRedisTemplate, never()).opsForValue();
     verify(productRepository, never()).findBySku(anyString());
   }
 
@@ -63,9 +143,10 @@ class ProductServiceTest {
   @DisplayName("getProductBySku should return product from DB and cache it if not in cache")
   void getProductBySku_NotFoundInCache_FoundInDb() {
     when(productRedisTemplate.opsForValue()).thenReturn(reactiveValueOperations);
-    when(reactiveValueOperations.get(SKU_A)).thenReturn(Mono.empty());
+    when(reactiveValueOperations.get(key(SKU_A))).thenReturn(Mono.empty());
+    when(productRedisTemplate.getExpire(key(SKU_A))).thenReturn(Mono.empty());
     when(productRepository.findBySku(SKU_A)).thenReturn(Mono.just(testProduct));
-    when(reactiveValueOperations.set(eq(SKU_A), eq(testProduct), any(Duration.class))).thenReturn(
+    when(reactiveValueOperations.set(eq(key(SKU_A)), eq(testProduct), any(Duration.class))).thenReturn(
         Mono.just(true));
 
     StepVerifier.create(productService.getProductBySku(SKU_A))
@@ -73,51 +154,202 @@ class ProductServiceTest {
         .verifyComplete();
 
     verify(productRepository, times(1)).findBySku(SKU_A);
-    verify(reactiveValueOperations, times(1)).set(eq(SKU_A), eq(testProduct), any(Duration.class));
+    verify(reactiveValueOperations, times(1))
+        .set(eq(key(SKU_A)), eq(testProduct), any(Duration.class));
+    verify(nearCache, times(1)).put(testProduct);
+    assertThat(meterRegistry.get(PRODUCT_CACHE_COUNTER).tags("level", "redis", "result", "miss")
+        .counter().count()).isEqualTo(1);
+    assertThat(meterRegistry.get(STAGE_TIMER).tags("stage", "product.db.find").timer().count())
+        .isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("getProductBySku should share one DB load between concurrent misses for a SKU")
+  void getProductBySku_ConcurrentMisses_SingleLoad() {
+    Sinks.One<Product> dbResult = Sinks.one();
+    when(productRedisTemplate.opsForValue()).thenReturn(reactiveValueOperations);
+    when(reactiveValueOperations.get(key(SKU_A))).thenReturn(Mono.empty());
+    when(productRedisTemplate.getExpire(key(SKU_A))).thenReturn(Mono.empty());
+    when(productRepository.findBySku(SKU_A)).thenReturn(dbResult.asMono());
+    when(reactiveValueOperations.set(eq(key(SKU_A)), eq(testProduct), any(Duration.class))).thenReturn(
+        Mono.just(true));
+
+    Mono<Product> first = productService.getProductBySku(SKU_A);
+    Mono<Product> second = productService.getProductBySku(SKU_A);
+    StepVerifier.create(Mono.zip(first, second))
+        .then(() -> dbResult.tryEmitValue(testProduct))
+        .expectNextMatches(both -> both.getT1() == testProduct && both.getT2() == testProduct)
+        .verifyComplete();
+
+    verify(productRepository, times(1)).findBySku(SKU_A);
+    verify(reactiveValueOperations, times(1))
+        .set(eq(key(SKU_A)), eq(testProduct), any(Duration.class));
+  }
+
+  @Test
+  @DisplayName("shouldRefreshEarly should refresh with a probability rising as the TTL runs out")
+  void shouldRefreshEarly_Probability() {
+    assertThat(ProductService.shouldRefreshEarly(Duration.ZERO)).isFalse();
+    assertThat(ProductService.shouldRefreshEarly(Duration.ofMinutes(50))).isFalse();
+
+    int samples = 10_000;
+    int refreshedAtWindow = 0;
+    int refreshedNearExpiry = 0;
+    for (int i = 0; i < samples; i++) {
+      refreshedAtWindow += ProductService.shouldRefreshEarly(Duration.ofMinutes(1)) ? 1 : 0;
+      refreshedNearExpiry += ProductService.shouldRefreshEarly(Duration.ofSeconds(1)) ? 1 : 0;
+    }
+    // Expected 1/e (about 37%) with one window of TTL left and about 98% with one second left.
+    assertThat(refreshedAtWindow).isBetween(samples * 30 / 100, samples * 44 / 100);
+    assertThat(refreshedNearExpiry).isGreaterThan(samples * 95 / 100);
+  }
+
+  @Test
+  @DisplayName("getProductsBySkus should resolve near-cache, Redis and DB tiers in one pass each")
+  void getProductsBySkus_MixedTiers() {
+    Product productB = new Product(2L, SKU_B, "Banana", 30, 2, 45, 1L);
+    Product productC = new Product(3L, SKU_C, "Cherry", 20, null, null, 1L);
+    when(nearCache.get(SKU_A)).thenReturn(testProduct);
+    when(productRedisTemplate.opsForValue()).thenReturn(reactiveValueOperations);
+    when(reactiveValueOperations.multiGet(List.of(key(SKU_B), key(SKU_C))))
+        .thenReturn(Mono.just(Arrays.asList(productB, null)));
+    when(productRepository.findAllBySkus(new String[]{SKU_C})).thenReturn(Flux.just(productC));
+    when(reactiveValueOperations.set(eq(key(SKU_C)), eq(productC), any(Duration.class))).thenReturn(
+        Mono.just(true));
+
+    StepVerifier.create(productService.getProductsBySkus(List.of(SKU_A, SKU_B, SKU_C)))
+        .expectNext(Map.of(SKU_A, testProduct, SKU_B, productB, SKU_C, productC))
+        .verifyComplete();
+
+    verify(productRepository, times(1)).findAllBySkus(new String[]{SKU_C});
+    verify(productRepository, never()).findBySku(anyString());
+  }
+
+  @Test
+  @DisplayName("getProductsBySkus should share one DB load with concurrent misses for its SKUs")
+  void getProductsBySkus_ConcurrentMisses_SingleLoad() {
+    Product productB = new Product(2L, SKU_B, "Banana", 30, 2, 45, 1L);
+    Sinks.One<List<Product>> dbResult = Sinks.one();
+    when(productRedisTemplate.opsForValue()).thenReturn(reactiveValueOperations);
+    when(reactiveValueOperations.multiGet(List.of(key(SKU_A), key(SKU_B))))
+        .thenReturn(Mono.just(Arrays.asList(null, null)));
+    when(reactiveValueOperations.multiGet(List.of(key(SKU_B))))
+        .thenReturn(Mono.just(Arrays.asList((Product) null)));
+    when(productRepository.findAllBySkus(new String[]{SKU_A, SKU_B}))
+        .thenReturn(dbResult.asMono().flatMapMany(Flux::fromIterable));
+    when(reactiveValueOperations.set(anyString(), any(Product.class), any(Duration.class)))
+        .thenReturn(Mono.just(true));
+
+    Mono<Map<String, Product>> basket = productService.getProductsBySkus(List.of(SKU_A, SKU_B));
+    Mono<Map<String, Product>> other = productService.getProductsBySkus(List.of(SKU_B));
+    Mono<Product> single = productService.getProductBySku(SKU_A);
+    StepVerifier.create(Mono.zip(basket, other, single))
+        .then(() -> dbResult.tryEmitValue(List.of(testProduct, productB)))
+        .expectNextMatches(all -> all.getT1().equals(Map.of(SKU_A, testProduct, SKU_B, productB))
+            && all.getT2().equals(Map.of(SKU_B, productB))
+            && all.getT3() == testProduct)
+        .verifyComplete();
+
+    verify(productRepository, times(1)).findAllBySkus(new String[]{SKU_A, SKU_B});
+    verify(productRepository, never()).findBySku(anyString());
+    verify(reactiveValueOperations, never()).get(anyString());
+  }
+
+  @Test
+  @DisplayName("refreshCache should write the batch and publish one invalidation for it")
+  void refreshCache_OneInvalidation() {
+    Product productB = new Product(2L, SKU_B, "Banana", 30, 2, 45, 1L);
+    when(productRedisTemplate.opsForValue()).thenReturn(reactiveValueOperations);
+    when(reactiveValueOperations.set(anyString(), any(Product.class), any(Duration.class)))
+        .thenReturn(Mono.just(true));
+    when(nearCache.evictAll(List.of(SKU_A, SKU_B))).thenReturn(Mono.empty());
+
+    StepVerifier.create(productService.refreshCache(List.of(testProduct, productB)))
+        .expectNext(List.of(testProduct, productB))
+        .verifyComplete();
+
+    verify(nearCache, times(1)).evictAll(List.of(SKU_A, SKU_B));
+    verify(nearCache, never()).evict(anyString());
   }
 
   @Test
   @DisplayName("createProduct should save to repository and cache")
   void createProduct_Success() {
     when(productRedisTemplate.opsForValue()).thenReturn(reactiveValueOperations);
-    when(productRepository.save(testProduct)).thenReturn(Mono.just(testProduct));
-    when(reactiveValueOperations.set(eq(SKU_A), eq(testProduct), any(Duration.class))).thenReturn(
+    when(nearCache.evict(SKU_A)).thenReturn(Mono.empty());
+    when(productRepository.insert(testProduct)).thenReturn(Mono.just(testProduct));
+    when(reactiveValueOperations.set(eq(key(SKU_A)), eq(testProduct), any(Duration.class))).thenReturn(
         Mono.just(true));
 
     StepVerifier.create(productService.createProduct(testProduct))
         .expectNext(testProduct)
         .verifyComplete();
 
-    verify(productRepository, times(1)).save(testProduct);
-    verify(reactiveValueOperations, times(1)).set(eq(SKU_A), eq(testProduct), any(Duration.class));
+    verify(productRepository, times(1)).insert(testProduct);
+    verify(reactiveValueOperations, times(1))
+        .set(eq(key(SKU_A)), eq(testProduct), any(Duration.class));
+  }
+
+  @Test
+  @DisplayName("preload should keep products that are already cached")
+  void preload_KeepsCachedProducts() {
+    Product banana = new Product(2L, SKU_B, "Banana", 30, 2, 45, 1L);
+    when(productRedisTemplate.opsForValue()).thenReturn(reactiveValueOperations);
+    when(reactiveValueOperations.setIfAbsent(eq(key(SKU_A)), eq(testProduct), any(Duration.class)))
+        .thenReturn(Mono.just(false));
+    when(reactiveValueOperations.setIfAbsent(eq(key(SKU_B)), eq(banana), any(Duration.class)))
+        .thenReturn(Mono.just(true));
+
+    StepVerifier.create(productService.preload(List.of(testProduct, banana)))
+        .expectNext(List.of(banana))
+        .verifyComplete();
+
+    verify(nearCache, never()).put(testProduct);
+    verify(nearCache, times(1)).put(banana);
+    verify(reactiveValueOperations, never()).set(anyString(), any(), any(Duration.class));
   }
 
   @Test
   @DisplayName("updateProduct should update product successfully")
   void updateProduct_Success() {
     when(productRedisTemplate.opsForValue()).thenReturn(reactiveValueOperations);
-    when(productRepository.updateBySku(testProduct)).thenReturn(Mono.just(true));
-    when(reactiveValueOperations.set(eq(SKU_A), eq(testProduct), any(Duration.class))).thenReturn(
+    when(nearCache.evict(SKU_A)).thenReturn(Mono.empty());
+    when(productRepository.updateBySku(any(Product.class))).thenReturn(Mono.just(testProduct));
+    when(reactiveValueOperations.set(eq(key(SKU_A)), eq(testProduct), any(Duration.class))).thenReturn(
         Mono.just(true));
 
     StepVerifier.create(productService.updateProduct(SKU_A, testProduct))
         .expectNext(testProduct)
         .verifyComplete();
 
-    verify(productRepository, times(1)).updateBySku(testProduct);
-    verify(reactiveValueOperations, times(1)).set(eq(SKU_A), eq(testProduct), any(Duration.class));
+    verify(productRepository, times(1)).updateBySku(any(Product.class));
+    verify(reactiveValueOperations, times(1))
+        .set(eq(key(SKU_A)), eq(testProduct), any(Duration.class));
+  }
+
+  @Test
+  @DisplayName("updateProduct should fail with NOT_FOUND when no product has the SKU")
+  void updateProduct_NotFound_Error() {
+    when(productRepository.updateBySku(any(Product.class))).thenReturn(Mono.empty());
+
+    StepVerifier.create(productService.updateProduct(SKU_A, testProduct))
+        .expectErrorMatches(e -> e instanceof ResponseStatusException ex
+            && ex.getStatusCode() == HttpStatus.NOT_FOUND)
+        .verify();
+
+    verify(productRedisTemplate, never()).opsForValue();
   }
 
   @Test
   @DisplayName("updateProduct should return error on SKU mismatch")
   void updateProduct_SkuMismatch_Error() {
-    Product mismatchedProduct = new Product(2L, "B", "Banana", 30, null, null);
+    Product mismatchedProduct = new Product(2L, "B", "Banana", 30, null, null, 1L);
 
     StepVerifier.create(productService.updateProduct(SKU_A, mismatchedProduct))
         .expectError(IllegalArgumentException.class)
         .verify();
 
-    verify(productRepository, never()).save(any());
+    verify(productRepository, never()).updateBySku(any());
   }
 
   @Test
@@ -125,13 +357,36 @@ class ProductServiceTest {
   void deleteProduct_Success() {
     when(productRedisTemplate.opsForValue()).thenReturn(reactiveValueOperations);
     when(productRepository.deleteBySku(SKU_A)).thenReturn(Mono.empty());
-    when(reactiveValueOperations.delete(SKU_A)).thenReturn(Mono.just(true));
+    when(nearCache.evict(SKU_A)).thenReturn(Mono.empty());
+    when(reactiveValueOperations.delete(key(SKU_A))).thenReturn(Mono.just(true));
 
     StepVerifier.create(productService.deleteProduct(SKU_A))
         .verifyComplete();
 
     verify(productRepository, times(1)).deleteBySku(SKU_A);
-    verify(reactiveValueOperations, times(1)).delete(SKU_A);
+    verify(reactiveValueOperations, times(1)).delete(key(SKU_A));
+    verify(nearCache, times(1)).evict(SKU_A);
+    verify(productRedisTemplate, never()).delete(SKU_A);
+  }
+
+  @Test
+  @DisplayName("deleteProduct should also drop the pre-namespace entry while legacy keys are on")
+  void deleteProduct_LegacyKeys() {
+    when(redisKeys.legacyKeys()).thenReturn(true);
+    when(productRedisTemplate.opsForValue()).thenReturn(reactiveValueOperations);
+    when(productRepository.deleteBySku(SKU_A)).thenReturn(Mono.empty());
+    when(nearCache.evict(SKU_A)).thenReturn(Mono.empty());
+    when(reactiveValueOperations.delete(key(SKU_A))).thenReturn(Mono.just(true));
+    when(productRedisTemplate.delete(SKU_A)).thenReturn(Mono.just(1L));
+
+    StepVerifier.create(productService.deleteProduct(SKU_A))
+        .verifyComplete();
+
+    verify(productRedisTemplate, times(1)).delete(SKU_A);
+    verify(nearCache, times(1)).evict(SKU_A);
   }
-}
 
+  private static String key(String sku) {
+    return "checkout:product:" + sku;
+  }
+}
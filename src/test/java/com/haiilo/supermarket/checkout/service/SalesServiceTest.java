@@ -0,0 +1,115 @@
+package com.haiilo.supermarket.checkout.service;
+
+import static com.haiilo.supermarket.checkout.TestConstants.SKU_A;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+
+import com.haiilo.supermarket.checkout.domain.SalesGranularity;
+import com.haiilo.supermarket.checkout.dto.SalesBucketDTO;
+import com.haiilo.supermarket.checkout.repository.SalesRollupRepository;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+@ExtendWith(MockitoExtension.class)
+class SalesServiceTest {
+
+  @Mock
+  private SalesRollupRepository salesRollupRepository;
+
+  @InjectMocks
+  private SalesService salesService;
+
+  @Test
+  @DisplayName("getSales should default to the granularity's window ending at 'to'")
+  void getSales_defaultWindow() {
+    Instant to = Instant.parse("2024-03-10T12:00:00Z");
+    SalesBucketDTO bucket = SalesBucketDTO.builder().sku(SKU_A)
+        .bucketStart(Instant.parse("2024-03-10T11:00:00Z")).units(3).revenue(130).build();
+    when(salesRollupRepository.findBuckets(SKU_A, SalesGranularity.HOUR,
+        to.minus(Duration.ofDays(1)), to)).thenReturn(Flux.just(bucket));
+
+    StepVerifier.create(salesService.getSales(SKU_A, SalesGranularity.HOUR, null, to))
+        .expectNext(bucket)
+        .verifyComplete();
+  }
+
+  @Test
+  @DisplayName("getSales should reject ranges spanning too many buckets")
+  void getSales_rangeTooLarge_fails() {
+    Instant to = Instant.parse("2024-03-10T00:00:00Z");
+
+    StepVerifier.create(salesService.getSales(SKU_A, SalesGranularity.HOUR,
+            to.minus(Duration.ofDays(365)), to))
+        .expectErrorMatches(e -> e instanceof ResponseStatusException ex
+            && ex.getStatusCode() == BAD_REQUEST)
+        .verify();
+
+    verifyNoInteractions(salesRollupRepository);
+  }
+
+  @Test
+  @DisplayName("rebuildRollups should rebuild every day in the range in its own transaction")
+  void rebuildRollups_perDay() {
+    when(salesRollupRepository.zone()).thenReturn(ZoneOffset.UTC);
+    when(salesRollupRepository.rebuild(any(Instant.class), any(Instant.class)))
+        .thenReturn(Mono.empty());
+
+    StepVerifier.create(salesService.rebuildRollups(LocalDate.of(2024, 2, 28),
+            LocalDate.of(2024, 3, 1)))
+        .expectNext(3L)
+        .verifyComplete();
+
+    verify(salesRollupRepository, times(3)).rebuild(any(Instant.class), any(Instant.class));
+    verify(salesRollupRepository).rebuild(eq(Instant.parse("2024-02-29T00:00:00Z")),
+        eq(Instant.parse("2024-03-01T00:00:00Z")));
+  }
+
+  @Test
+  @DisplayName("rebuildRollups should follow the days of the rollup time zone")
+  void rebuildRollups_timeZone() {
+    when(salesRollupRepository.zone()).thenReturn(ZoneId.of("Europe/Berlin"));
+    when(salesRollupRepository.rebuild(any(Instant.class), any(Instant.class)))
+        .thenReturn(Mono.empty());
+
+    // Clocks go forward on this day, so it only has 23 hours
+    StepVerifier.create(salesService.rebuildRollups(LocalDate.of(2026, 3, 29),
+            LocalDate.of(2026, 3, 29)))
+        .expectNext(1L)
+        .verifyComplete();
+
+    verify(salesRollupRepository).rebuild(Instant.parse("2026-03-28T23:00:00Z"),
+        Instant.parse("2026-03-29T22:00:00Z"));
+  }
+
+  @Test
+  @DisplayName("rebuildRollups should do nothing when there are no orders")
+  void rebuildRollups_noOrders() {
+    when(salesRollupRepository.zone()).thenReturn(ZoneOffset.UTC);
+    when(salesRollupRepository.findFirstOrderTime()).thenReturn(Mono.empty());
+
+    StepVerifier.create(salesService.rebuildRollups(null, null))
+        .expectNext(0L)
+        .verifyComplete();
+
+    verify(salesRollupRepository, never()).rebuild(any(Instant.class), any(Instant.class));
+  }
+}
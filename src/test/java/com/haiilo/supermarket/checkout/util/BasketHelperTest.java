@@ -2,25 +2,33 @@ package com.haiilo.supermarket.checkout.util;
 
 import static com.haiilo.supermarket.checkout.TestConstants.SKU_A;
 import static com.haiilo.supermarket.checkout.TestConstants.SKU_B;
-import static com.haiilo.supermarket.checkout.TestConstants.SKU_C;
 import static com.haiilo.supermarket.checkout.util.AppConstants.BASKET_ID;
-import static org.mockito.ArgumentMatchers.any;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.haiilo.supermarket.checkout.domain.Basket;
+import com.haiilo.supermarket.checkout.domain.BasketUpdate;
+import com.haiilo.supermarket.checkout.domain.BasketUpdate.Status;
+import com.haiilo.supermarket.checkout.domain.PricedLine;
 import com.haiilo.supermarket.checkout.domain.Product;
+import com.haiilo.supermarket.checkout.pricing.PricingEngine;
+import com.haiilo.supermarket.checkout.repository.BasketRepository;
 import com.haiilo.supermarket.checkout.service.ProductService;
-import java.time.Duration;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Map;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.data.redis.core.ReactiveRedisTemplate;
-import org.springframework.data.redis.core.ReactiveValueOperations;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 import reactor.util.context.Context;
@@ -28,112 +36,131 @@ import reactor.util.context.Context;
 @ExtendWith(MockitoExtension.class)
 class BasketHelperTest {
 
+  private static final String TEST_BASKET_ID = "basket-1";
+
   @Mock
   private ProductService productService;
 
   @Mock
-  private ReactiveRedisTemplate<String, Basket> basketRedisTemplate;
+  private BasketRepository basketRepository;
 
   @Mock
-  private ReactiveValueOperations<String, Basket> reactiveValueOperations;
+  private PricingEngine pricingEngine;
+
+  @Spy
+  private MetricsHelper metricsHelper = new MetricsHelper(new SimpleMeterRegistry());
 
   @InjectMocks
   private BasketHelper basketHelper;
 
   private Product productA;
   private Product productB;
-  private Product productC;
 
   @BeforeEach
   void setUp() {
-    productA = new Product(1L, SKU_A, "Apple", 20, 3, 130);
-    productB = new Product(2L, SKU_B, "Banana", 25, 3, 45);
-    productC = new Product(3L, SKU_C, "Cherry", 40, 2, 60);
-
-    when(basketRedisTemplate.opsForValue()).thenReturn(reactiveValueOperations);
+    productA = new Product(1L, SKU_A, "Apple", 20, 3, 130, 1L);
+    productB = new Product(2L, SKU_B, "Banana", 25, 3, 45, 1L);
   }
 
   @Test
-  @DisplayName("should calculate total for items without special offer")
-  void calculateTotal_noOffer() {
-    when(productService.getProductBySku(SKU_A)).thenReturn(Mono.just(productA));
-    when(productService.getProductBySku(SKU_B)).thenReturn(Mono.just(productB));
-    when(productService.getProductBySku(SKU_C)).thenReturn(Mono.just(productC));
-
-    Basket basket = new Basket("basket-1");
-    basket.addItem(SKU_A); // 1 * 20 = 20
-    basket.addItem(SKU_B); // 1 * 25 = 25
-    basket.addItem(SKU_C); // 1 * 40 = 40
-    // Total = 85
-
-    when(reactiveValueOperations.set(anyString(), any(Basket.class),
-        any(Duration.class))).thenReturn(Mono.just(true));
-
-    StepVerifier.create(basketHelper.getTotalPrice(basket).contextWrite(
-            Context.of(BASKET_ID, basket.getId())))
-        .expectNextMatches(p -> p == 85)
+  @DisplayName("should return the total computed by the atomic item update")
+  void updateItem_updated() {
+    when(basketRepository.updateItem(TEST_BASKET_ID, productA, 1))
+        .thenReturn(Mono.just(new BasketUpdate(Status.UPDATED, 130)));
+
+    StepVerifier.create(basketHelper.updateItem(TEST_BASKET_ID, productA, 1)
+            .contextWrite(Context.of(BASKET_ID, TEST_BASKET_ID)))
+        .expectNext(130)
         .verifyComplete();
+
+    verify(productService, never()).getProductsBySkus(anyCollection());
   }
 
   @Test
-  @DisplayName("should apply special offer correctly")
-  void calculateTotal_withOffer() {
-    when(productService.getProductBySku(SKU_B)).thenReturn(Mono.just(productB));
-    Basket basket = new Basket("basket-2");
+  @DisplayName("should reprice the whole basket when a price version changed")
+  void updateItem_priceChanged() {
+    Basket basket = new Basket(TEST_BASKET_ID);
+    basket.addItem(SKU_A);
     basket.addItem(SKU_B);
-    basket.addItem(SKU_B); // 2 * 25 = 50
-
-    when(reactiveValueOperations.set(anyString(), any(Basket.class),
-        any(Duration.class))).thenReturn(Mono.just(true));
-
-    StepVerifier.create(
-            basketHelper.getTotalPrice(basket).contextWrite(Context.of(BASKET_ID, basket.getId())))
-        .expectNextMatches(p -> p == 50)
+    Map<String, Product> products = Map.of(SKU_A, productA, SKU_B, productB);
+
+    when(basketRepository.updateItem(TEST_BASKET_ID, productB, 1))
+        .thenReturn(Mono.just(new BasketUpdate(Status.PRICE_CHANGED, 45)));
+    when(basketRepository.findById(TEST_BASKET_ID)).thenReturn(Mono.just(basket));
+    when(productService.getProductsBySkus(anyCollection())).thenReturn(Mono.just(products));
+    when(basketRepository.reprice(TEST_BASKET_ID, products.values()))
+        .thenReturn(Mono.just(new BasketUpdate(Status.UPDATED, 45)));
+
+    StepVerifier.create(basketHelper.updateItem(TEST_BASKET_ID, productB, 1)
+            .contextWrite(Context.of(BASKET_ID, TEST_BASKET_ID)))
+        .expectNext(45)
         .verifyComplete();
   }
 
   @Test
-  @DisplayName("should apply special offer and add remaining items")
-  void calculateTotal_withOfferAndRemainder() {
-    when(productService.getProductBySku(SKU_A)).thenReturn(Mono.just(productA));
-
-    Basket basket = new Basket("basket-3");
-    basket.addItem(SKU_A);
+  @DisplayName("should return the promotional total when pricing rules are active")
+  void updateItem_withPromotions() {
+    Basket basket = new Basket(TEST_BASKET_ID);
     basket.addItem(SKU_A);
-    basket.addItem(SKU_A); // 3 * A = 130
-    basket.addItem(SKU_A);
-    basket.addItem(SKU_A); // 2 * 20 = 40
-    // Total = 170
-
-    when(reactiveValueOperations.set(anyString(), any(Basket.class),
-        any(Duration.class))).thenReturn(Mono.just(true));
-
-    StepVerifier.create(
-            basketHelper.getTotalPrice(basket).contextWrite(Context.of(BASKET_ID, basket.getId())))
-        .expectNextMatches(p -> p == 170)
+    basket.addItem(SKU_B);
+    Map<String, Product> products = Map.of(SKU_A, productA, SKU_B, productB);
+
+    when(basketRepository.updateItem(TEST_BASKET_ID, productB, 1))
+        .thenReturn(Mono.just(new BasketUpdate(Status.UPDATED, 45)));
+    when(pricingEngine.hasRules()).thenReturn(true);
+    when(basketRepository.findById(TEST_BASKET_ID)).thenReturn(Mono.just(basket));
+    when(productService.getProductsBySkus(anyCollection())).thenReturn(Mono.just(products));
+    when(pricingEngine.apply(basket, products)).thenAnswer(invocation -> {
+      basket.setTotalPrice(40);
+      return 40;
+    });
+
+    StepVerifier.create(basketHelper.updateItem(TEST_BASKET_ID, productB, 1)
+            .contextWrite(Context.of(BASKET_ID, TEST_BASKET_ID)))
+        .expectNext(40)
         .verifyComplete();
   }
 
   @Test
-  @DisplayName("should calculate total for a mixed basket with multiple offers")
-  void calculateTotal_mixedBasket() {
-    when(productService.getProductBySku(SKU_A)).thenReturn(Mono.just(productA));
-    when(productService.getProductBySku(SKU_B)).thenReturn(Mono.just(productB));
+  @DisplayName("should fail when removing an item that is not in the basket")
+  void updateItem_itemNotFound() {
+    when(basketRepository.updateItem(TEST_BASKET_ID, productA, -1))
+        .thenReturn(Mono.just(new BasketUpdate(Status.ITEM_NOT_FOUND, 0)));
+
+    StepVerifier.create(basketHelper.updateItem(TEST_BASKET_ID, productA, -1)
+            .contextWrite(Context.of(BASKET_ID, TEST_BASKET_ID)))
+        .expectError(ResponseStatusException.class)
+        .verify();
+  }
 
-    Basket basket = new Basket("basket-4");
-    basket.addItem(SKU_A);
-    basket.addItem(SKU_B);
+  @Test
+  @DisplayName("should fail when the basket does not exist")
+  void getBasketById_notFound() {
+    when(basketRepository.findById(anyString())).thenReturn(Mono.empty());
+
+    StepVerifier.create(basketHelper.getBasketById(TEST_BASKET_ID))
+        .expectError(ResponseStatusException.class)
+        .verify();
+  }
+
+  @Test
+  @DisplayName("should keep the basket as is when all line prices are current")
+  void revalidateTotal_upToDate() {
+    Basket basket = new Basket(TEST_BASKET_ID);
     basket.addItem(SKU_A);
-    basket.addItem(SKU_B); // 2* B = 50
-    basket.addItem(SKU_A); // 3 * A = 130,
+    basket.getLines().put(SKU_A, new PricedLine(20, productA.priceVersion()));
+    basket.setTotalPrice(20);
 
-    when(reactiveValueOperations.set(anyString(), any(Basket.class),
-        any(Duration.class))).thenReturn(Mono.just(true));
+    when(productService.getProductsBySkus(anyCollection()))
+        .thenReturn(Mono.just(Map.of(SKU_A, productA)));
 
-    StepVerifier.create(
-            basketHelper.getTotalPrice(basket).contextWrite(Context.of(BASKET_ID, basket.getId())))
-        .expectNextMatches(p -> p == 180)
+    StepVerifier.create(basketHelper.revalidateTotal(basket))
+        .assertNext(priced -> {
+          assertThat(priced.getT1()).isSameAs(basket);
+          assertThat(priced.getT2()).containsEntry(SKU_A, productA);
+        })
         .verifyComplete();
+
+    verify(basketRepository, never()).reprice(anyString(), anyCollection());
   }
 }
-
@@ -0,0 +1,75 @@
+package com.haiilo.supermarket.checkout.util;
+
+import static com.haiilo.supermarket.checkout.util.AppConstants.PRODUCT_CACHE_COUNTER;
+import static com.haiilo.supermarket.checkout.util.AppConstants.STAGE_TIMER;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+class MetricsHelperTest {
+
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  private final MetricsHelper metricsHelper = new MetricsHelper(registry);
+
+  @Test
+  @DisplayName("should time each subscription with its outcome")
+  void timed_recordsOutcome() {
+    Mono<String> lookup = metricsHelper.timed("product.redis.get", Mono.just("A"));
+
+    StepVerifier.create(lookup).expectNext("A").verifyComplete();
+    StepVerifier.create(lookup).expectNext("A").verifyComplete();
+    StepVerifier.create(metricsHelper.timed("product.redis.get", Mono.empty())).verifyComplete();
+    StepVerifier.create(metricsHelper.timed("order.db.insert",
+            Flux.error(new IllegalStateException("down"))))
+        .verifyError(IllegalStateException.class);
+
+    assertThat(registry.get(STAGE_TIMER).tags("stage", "product.redis.get", "outcome", "success")
+        .timer().count()).isEqualTo(2);
+    assertThat(registry.get(STAGE_TIMER).tags("stage", "product.redis.get", "outcome", "empty")
+        .timer().count()).isEqualTo(1);
+    assertThat(registry.get(STAGE_TIMER).tags("stage", "order.db.insert", "outcome", "error")
+        .timer().count()).isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("should record a value followed by a cancel only once")
+  void timed_cancelAfterValue() {
+    StepVerifier.create(metricsHelper.timed("basket.redis.update", Mono.just(1)).flux().next())
+        .expectNext(1)
+        .verifyComplete();
+
+    assertThat(registry.get(STAGE_TIMER).tags("stage", "basket.redis.update").timers())
+        .singleElement()
+        .satisfies(timer -> {
+          assertThat(timer.getId().getTag("outcome")).isEqualTo("success");
+          assertThat(timer.count()).isEqualTo(1);
+        });
+  }
+
+  @Test
+  @DisplayName("should not record anything until the publisher is subscribed")
+  void timed_lazy() {
+    metricsHelper.timed("basket.redis.update", Mono.just(1));
+
+    assertThat(registry.find(STAGE_TIMER).timers()).isEmpty();
+  }
+
+  @Test
+  @DisplayName("should count cache hits and misses per level")
+  void cacheLookups_countsPerLevel() {
+    metricsHelper.cacheLookups("near", 3, 1);
+    metricsHelper.cacheLookups("redis", 0, 1);
+
+    assertThat(registry.get(PRODUCT_CACHE_COUNTER).tags("level", "near", "result", "hit")
+        .counter().count()).isEqualTo(3);
+    assertThat(registry.get(PRODUCT_CACHE_COUNTER).tags("level", "redis", "result", "miss")
+        .counter().count()).isEqualTo(1);
+    assertThat(registry.find(PRODUCT_CACHE_COUNTER).tags("level", "redis", "result", "hit")
+        .counter()).isNull();
+  }
+}
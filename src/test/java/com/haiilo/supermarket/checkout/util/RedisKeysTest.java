@@ -0,0 +1,45 @@
+package com.haiilo.supermarket.checkout.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.lettuce.core.cluster.SlotHash;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class RedisKeysTest {
+
+  private final RedisKeys redisKeys = new RedisKeys("checkout", true);
+
+  @Test
+  @DisplayName("should hash a basket key by its basket ID")
+  void basket_taggedByBasketId() {
+    String basketId = "store-42.9b2e6c1a-56a4-4c3e-8d43-2f0e6f1b7c11";
+
+    assertThat(redisKeys.basket(basketId)).isEqualTo("checkout:basket:{" + basketId + "}");
+    assertThat(SlotHash.getSlot(redisKeys.basket(basketId))).isEqualTo(SlotHash.getSlot(basketId));
+  }
+
+  @Test
+  @DisplayName("should keep the order stream and checkout confirmations on one slot")
+  void orders_shareSlot() {
+    assertThat(SlotHash.getSlot(redisKeys.checkoutConfirmation("basket-1:key-1")))
+        .isEqualTo(SlotHash.getSlot(redisKeys.orderStream()));
+  }
+
+  @Test
+  @DisplayName("should keep the sorted sets of the active-basket index on one slot")
+  void basketIndex_sharesSlot() {
+    assertThat(redisKeys.activeBaskets()).isEqualTo("checkout:{baskets}:active");
+    assertThat(SlotHash.getSlot(redisKeys.basketLines()))
+        .isEqualTo(SlotHash.getSlot(redisKeys.activeBaskets()));
+  }
+
+  @Test
+  @DisplayName("should include the pre-namespace keys only while legacy keys are on")
+  void basketKeys_legacy() {
+    assertThat(redisKeys.basketKeys("basket-1"))
+        .containsExactly("checkout:basket:{basket-1}", "basket:basket-1", "basket-1");
+    assertThat(new RedisKeys("checkout", false).basketKeys("basket-1"))
+        .containsExactly("checkout:basket:{basket-1}");
+  }
+}
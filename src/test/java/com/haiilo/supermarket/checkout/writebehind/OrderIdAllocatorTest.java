@@ -0,0 +1,84 @@
+package com.haiilo.supermarket.checkout.writebehind;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.r2dbc.spi.Row;
+import io.r2dbc.spi.RowMetadata;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiFunction;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.r2dbc.core.DatabaseClient.GenericExecuteSpec;
+import org.springframework.r2dbc.core.RowsFetchSpec;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+@ExtendWith(MockitoExtension.class)
+class OrderIdAllocatorTest {
+
+  @Mock
+  private DatabaseClient databaseClient;
+
+  @Mock
+  private GenericExecuteSpec executeSpec;
+
+  @Mock
+  private RowsFetchSpec<Long> reservedIds;
+
+  @Test
+  @DisplayName("nextId should hand out every reserved id once across block refills")
+  void nextId_uniqueAcrossRefills() {
+    givenReservations();
+    when(reservedIds.all())
+        .thenReturn(Flux.just(1L, 2L, 3L))
+        .thenReturn(Flux.just(4L, 5L, 6L))
+        .thenReturn(Flux.just(7L, 8L, 9L));
+    OrderIdAllocator allocator = new OrderIdAllocator(databaseClient, 3);
+
+    List<Long> ids = Flux.range(0, 7)
+        .concatMap(i -> allocator.nextId())
+        .collectList()
+        .block();
+
+    assertThat(ids).containsExactly(1L, 2L, 3L, 4L, 5L, 6L, 7L);
+    verify(databaseClient, times(3)).sql(anyString());
+  }
+
+  @Test
+  @DisplayName("nextId callers waiting for the same refill should share it and get distinct ids")
+  void nextId_concurrentCallersShareRefill() {
+    givenReservations();
+    Sinks.Many<Long> block = Sinks.many().unicast().onBackpressureBuffer();
+    when(reservedIds.all()).thenReturn(block.asFlux());
+    OrderIdAllocator allocator = new OrderIdAllocator(databaseClient, 3);
+
+    List<Long> ids = new CopyOnWriteArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      allocator.nextId().subscribe(ids::add);
+    }
+    // All three are waiting for the reservation that is still in flight
+    assertThat(ids).isEmpty();
+    List.of(1L, 2L, 3L).forEach(block::tryEmitNext);
+    block.tryEmitComplete();
+
+    assertThat(ids).containsExactlyInAnyOrder(1L, 2L, 3L);
+    verify(databaseClient, times(1)).sql(anyString());
+  }
+
+  private void givenReservations() {
+    when(databaseClient.sql(anyString())).thenReturn(executeSpec);
+    when(executeSpec.bind("count", 3)).thenReturn(executeSpec);
+    when(executeSpec.map(ArgumentMatchers.<BiFunction<Row, RowMetadata, Long>>any()))
+        .thenReturn(reservedIds);
+  }
+}
@@ -0,0 +1,149 @@
+package com.haiilo.supermarket.checkout.writebehind;
+
+import static com.haiilo.supermarket.checkout.TestConstants.SKU_A;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.haiilo.supermarket.checkout.domain.Basket;
+import com.haiilo.supermarket.checkout.domain.OrderItem;
+import com.haiilo.supermarket.checkout.domain.PricedLine;
+import com.haiilo.supermarket.checkout.domain.Product;
+import com.haiilo.supermarket.checkout.dto.OrderDTO;
+import com.haiilo.supermarket.checkout.util.MetricsHelper;
+import com.haiilo.supermarket.checkout.util.OrderHelper;
+import com.haiilo.supermarket.checkout.util.RedisKeys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.r2dbc.spi.Row;
+import io.r2dbc.spi.RowMetadata;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.BiFunction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.r2dbc.core.DatabaseClient.GenericExecuteSpec;
+import org.springframework.r2dbc.core.RowsFetchSpec;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+@ExtendWith(MockitoExtension.class)
+class OrderWriteBehindQueueTest {
+
+  private static final Product APPLE = new Product(1L, SKU_A, "Apple", 50, 3, 130, 1L);
+
+  @Mock
+  private ReactiveStringRedisTemplate stringRedisTemplate;
+
+  @Mock
+  private OrderIdAllocator orderIdAllocator;
+
+  @Mock
+  private DatabaseClient databaseClient;
+
+  @Mock
+  private GenericExecuteSpec executeSpec;
+
+  @Mock
+  private RowsFetchSpec<OrderItem> insertedItems;
+
+  private final ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+  private final MetricsHelper metricsHelper = new MetricsHelper(new SimpleMeterRegistry());
+  private OrderWriteBehindQueue queue;
+  private Basket basket;
+
+  @BeforeEach
+  void setUp() {
+    queue = new OrderWriteBehindQueue(stringRedisTemplate, orderIdAllocator, objectMapper,
+        metricsHelper, new RedisKeys("checkout", false), 100);
+    basket = new Basket("basket-1");
+    basket.addItem(SKU_A);
+    basket.addItem(SKU_A);
+    basket.addItem(SKU_A);
+    basket.getLines().put(SKU_A, new PricedLine(130, 1L));
+    basket.setTotalPrice(130);
+  }
+
+  @Test
+  @DisplayName("enqueue should confirm the order with its id, lines and prices")
+  void enqueue_confirmsOrder() {
+    when(orderIdAllocator.nextId()).thenReturn(Mono.just(42L));
+    givenEnqueueScript(new HashMap<>());
+
+    StepVerifier.create(queue.enqueue(basket, Map.of(SKU_A, APPLE), "key-1"))
+        .assertNext(order -> {
+          assertThat(order.id()).isEqualTo(42L);
+          assertThat(order.finalPrice()).isEqualTo(130);
+          assertThat(order.items()).singleElement().satisfies(item -> {
+            assertThat(item.orderId()).isEqualTo(42L);
+            assertThat(item.quantity()).isEqualTo(3);
+            assertThat(item.subtotal()).isEqualTo(130);
+            assertThat(item.priceVersion()).isEqualTo(1L);
+          });
+        })
+        .verifyComplete();
+  }
+
+  @Test
+  @DisplayName("enqueue retried with the same checkout key should return the first confirmation")
+  void enqueue_retry_returnsSameConfirmation() {
+    when(orderIdAllocator.nextId()).thenReturn(Mono.just(42L)).thenReturn(Mono.just(43L));
+    givenEnqueueScript(new HashMap<>());
+
+    OrderDTO first = queue.enqueue(basket, Map.of(SKU_A, APPLE), "key-1").block();
+    basket.addItem(SKU_A);
+    OrderDTO retried = queue.enqueue(basket, Map.of(SKU_A, APPLE), "key-1").block();
+
+    assertThat(retried).isEqualTo(first);
+    assertThat(retried.id()).isEqualTo(42L);
+  }
+
+  @Test
+  @DisplayName("saveOrder should write the order synchronously when the backlog is full")
+  void saveOrder_backlogFull_insertsSynchronously() {
+    when(orderIdAllocator.nextId()).thenReturn(Mono.just(42L));
+    when(stringRedisTemplate.execute(ArgumentMatchers.<RedisScript<String>>any(),
+        ArgumentMatchers.<List<String>>any(), ArgumentMatchers.<List<?>>any()))
+        .thenReturn(Flux.just("BACKLOG_FULL"));
+    OrderItem stored = OrderItem.builder().id(7L).orderId(1000L).productSku(SKU_A).quantity(3)
+        .subtotal(130).unitPrice(50).offerQuantity(3).offerPrice(130).priceVersion(1L).build();
+    when(databaseClient.sql(OrderHelper.INSERT_ORDER_WITH_ITEMS)).thenReturn(executeSpec);
+    when(executeSpec.bind(anyString(), any())).thenReturn(executeSpec);
+    when(executeSpec.map(ArgumentMatchers.<BiFunction<Row, RowMetadata, OrderItem>>any()))
+        .thenReturn(insertedItems);
+    when(insertedItems.all()).thenReturn(Flux.just(stored));
+    OrderHelper orderHelper = new OrderHelper(databaseClient, Optional.of(queue), metricsHelper);
+
+    StepVerifier.create(orderHelper.saveOrder(basket, Map.of(SKU_A, APPLE), "key-1"))
+        .assertNext(order -> {
+          assertThat(order.id()).isEqualTo(1000L);
+          assertThat(order.items()).containsExactly(stored);
+        })
+        .verifyComplete();
+  }
+
+  // Behaves like order-enqueue.lua: the first confirmation stored for a key wins.
+  private void givenEnqueueScript(Map<String, String> confirmations) {
+    when(stringRedisTemplate.execute(ArgumentMatchers.<RedisScript<String>>any(),
+        ArgumentMatchers.<List<String>>any(), ArgumentMatchers.<List<?>>any()))
+        .thenAnswer(invocation -> {
+          List<String> keys = invocation.getArgument(1);
+          List<String> args = invocation.getArgument(2);
+          confirmations.putIfAbsent(keys.get(0), args.get(0));
+          return Flux.just(confirmations.get(keys.get(0)));
+        });
+  }
+}
@@ -0,0 +1,289 @@
+package com.haiilo.supermarket.checkout.writebehind;
+
+import static com.haiilo.supermarket.checkout.TestConstants.SKU_A;
+import static com.haiilo.supermarket.checkout.util.AppConstants.ORDER_CONSUMER_GROUP;
+import static com.haiilo.supermarket.checkout.util.AppConstants.ORDER_DEAD_LETTER_COUNTER;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.haiilo.supermarket.checkout.domain.PriceSnapshot;
+import com.haiilo.supermarket.checkout.util.MetricsHelper;
+import com.haiilo.supermarket.checkout.util.RedisKeys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.r2dbc.spi.R2dbcDataIntegrityViolationException;
+import io.r2dbc.spi.Row;
+import io.r2dbc.spi.RowMetadata;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.verification.VerificationMode;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.ReactiveStreamOperations;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.r2dbc.core.DatabaseClient.GenericExecuteSpec;
+import org.springframework.r2dbc.core.RowsFetchSpec;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+@ExtendWith(MockitoExtension.class)
+class OrderWriteBehindWorkerTest {
+
+  private static final String STREAM = "checkout:{orders}:pending";
+  private static final Consumer CONSUMER = Consumer.from(ORDER_CONSUMER_GROUP, "worker-1");
+
+  @Mock
+  private ReactiveStringRedisTemplate stringRedisTemplate;
+
+  @Mock
+  private ReactiveStreamOperations<String, String, String> streamOperations;
+
+  @Mock
+  private DatabaseClient databaseClient;
+
+  @Mock
+  private GenericExecuteSpec executeSpec;
+
+  @Mock
+  private RowsFetchSpec<Long> insertedLines;
+
+  @Captor
+  private ArgumentCaptor<MapRecord<String, String, String>> deadLetter;
+
+  private final ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private OrderWriteBehindWorker worker;
+
+  @BeforeEach
+  void setUp() {
+    when(stringRedisTemplate.<String, String>opsForStream()).thenReturn(streamOperations);
+    worker = new OrderWriteBehindWorker(stringRedisTemplate, databaseClient, objectMapper,
+        new MetricsHelper(meterRegistry), new RedisKeys("checkout", false), "worker-1", 500,
+        Duration.ofMillis(200), Duration.ofSeconds(5), 2, Duration.ofMinutes(1));
+  }
+
+  @Test
+  @DisplayName("drainOnce should replay pending entries before reading new ones")
+  void drainOnce_replaysPendingFirst() throws Exception {
+    givenRead(ReadOffset.from("0"), Flux.just(record("1-0", order(1L))));
+    givenInsert(Mono.just(1L));
+    givenAcknowledged();
+
+    StepVerifier.create(worker.drainOnce(STREAM))
+        .expectNext(1)
+        .verifyComplete();
+
+    assertThat(boundIds()).containsExactly(1L);
+    verifyRead(ReadOffset.lastConsumed(), never());
+    verify(streamOperations).acknowledge(STREAM, ORDER_CONSUMER_GROUP, RecordId.of("1-0"));
+    verify(streamOperations).delete(STREAM, RecordId.of("1-0"));
+  }
+
+  @Test
+  @DisplayName("drainOnce should read new entries once nothing is pending")
+  void drainOnce_readsNewWhenNothingPending() throws Exception {
+    givenRead(ReadOffset.from("0"), Flux.empty());
+    givenPending();
+    givenRead(ReadOffset.lastConsumed(), Flux.just(record("2-0", order(2L))));
+    givenInsert(Mono.just(1L));
+    givenAcknowledged();
+
+    StepVerifier.create(worker.drainOnce(STREAM))
+        .expectNext(1)
+        .verifyComplete();
+
+    assertThat(boundIds()).containsExactly(2L);
+  }
+
+  @Test
+  @DisplayName("drainOnce should leave a batch unacknowledged when it cannot be stored")
+  void drainOnce_failedBatch_notAcknowledged() throws Exception {
+    givenRead(ReadOffset.from("0"), Flux.just(record("1-0", order(1L))));
+    givenInsert(Mono.error(new IllegalStateException("database down")));
+
+    StepVerifier.create(worker.drainOnce(STREAM))
+        .verifyError(IllegalStateException.class);
+
+    verify(streamOperations, never()).acknowledge(anyString(), anyString(),
+        any(RecordId[].class));
+    verify(streamOperations, never()).delete(anyString(), any(RecordId[].class));
+  }
+
+  @Test
+  @DisplayName("drainOnce should move an unreadable entry to the dead-letter stream")
+  void drainOnce_unreadable_deadLettered() throws Exception {
+    givenRead(ReadOffset.from("0"),
+        Flux.just(record("1-0", order(1L)), record("1-1", "{not json")));
+    givenInsert(Mono.just(1L));
+    givenAcknowledged();
+    when(streamOperations.add(deadLetter.capture())).thenReturn(Mono.just(RecordId.of("9-0")));
+
+    StepVerifier.create(worker.drainOnce(STREAM))
+        .expectNext(2)
+        .verifyComplete();
+
+    assertThat(boundIds()).containsExactly(1L);
+    assertThat(deadLetter.getValue().getStream()).isEqualTo("checkout:{orders}:dead-letter");
+    assertThat(deadLetter.getValue().getValue())
+        .containsEntry("order", "{not json")
+        .containsEntry("stream", STREAM)
+        .containsEntry("id", "1-1")
+        .hasEntrySatisfying("error", error -> assertThat(error).startsWith("Unreadable"));
+    assertThat(meterRegistry.get(ORDER_DEAD_LETTER_COUNTER).counter().count()).isEqualTo(1);
+    verify(streamOperations).acknowledge(STREAM, ORDER_CONSUMER_GROUP, RecordId.of("1-0"),
+        RecordId.of("1-1"));
+  }
+
+  @Test
+  @DisplayName("drainOnce should not acknowledge an unreadable entry it could not dead-letter")
+  void drainOnce_deadLetterFails_notAcknowledged() throws Exception {
+    givenRead(ReadOffset.from("0"), Flux.just(record("1-1", "{not json")));
+    when(streamOperations.add(ArgumentMatchers.<MapRecord<String, String, String>>any()))
+        .thenReturn(Mono.error(new IllegalStateException("redis down")));
+
+    StepVerifier.create(worker.drainOnce(STREAM))
+        .verifyError(IllegalStateException.class);
+
+    verify(streamOperations, never()).acknowledge(anyString(), anyString(),
+        any(RecordId[].class));
+  }
+
+  @Test
+  @DisplayName("drainOnce should store a batch that keeps failing one by one and dead-letter "
+      + "the order the database rejects")
+  void drainOnce_poisonOrder_deadLettered() throws Exception {
+    givenRead(ReadOffset.from("0"),
+        Flux.just(record("1-0", order(1L)), record("1-1", order(2L))));
+    DataIntegrityViolationException tooLong = new DataIntegrityViolationException("too long",
+        new R2dbcDataIntegrityViolationException("value too long", "22001"));
+    givenInsert(Mono.error(tooLong));
+    when(insertedLines.one())
+        .thenReturn(Mono.error(tooLong))
+        .thenReturn(Mono.error(tooLong))
+        .thenReturn(Mono.just(1L))
+        .thenReturn(Mono.error(tooLong));
+    givenAcknowledged();
+    when(streamOperations.add(deadLetter.capture())).thenReturn(Mono.just(RecordId.of("9-0")));
+
+    StepVerifier.create(worker.drainOnce(STREAM))
+        .verifyError(DataIntegrityViolationException.class);
+    StepVerifier.create(worker.drainOnce(STREAM))
+        .verifyError(DataIntegrityViolationException.class);
+    StepVerifier.create(worker.drainOnce(STREAM))
+        .expectNext(2)
+        .verifyComplete();
+
+    ArgumentCaptor<Object> ids = ArgumentCaptor.forClass(Object.class);
+    verify(executeSpec, times(4)).bind(eq("ids"), ids.capture());
+    assertThat(ids.getAllValues().subList(2, 4))
+        .containsExactly(new Long[]{1L}, new Long[]{2L});
+    assertThat(deadLetter.getAllValues()).singleElement()
+        .satisfies(entry -> assertThat(entry.getValue())
+            .containsEntry("id", "1-1")
+            .hasEntrySatisfying("error", error -> assertThat(error).startsWith("Rejected")));
+    verify(streamOperations).acknowledge(STREAM, ORDER_CONSUMER_GROUP, RecordId.of("1-0"),
+        RecordId.of("1-1"));
+  }
+
+  @Test
+  @DisplayName("drainOnce should claim entries other consumers left idle before reading new ones")
+  void drainOnce_claimsIdleEntries() throws Exception {
+    givenRead(ReadOffset.from("0"), Flux.empty());
+    givenPending(
+        new PendingMessage(RecordId.of("1-0"), Consumer.from(ORDER_CONSUMER_GROUP, "gone-pod"),
+            Duration.ofMinutes(5), 1),
+        new PendingMessage(RecordId.of("1-1"), Consumer.from(ORDER_CONSUMER_GROUP, "live-pod"),
+            Duration.ofSeconds(2), 1));
+    when(streamOperations.claim(STREAM, ORDER_CONSUMER_GROUP, "worker-1", Duration.ofMinutes(1),
+        RecordId.of("1-0"))).thenReturn(Flux.just(record("1-0", order(1L))));
+    givenInsert(Mono.just(1L));
+    givenAcknowledged();
+
+    StepVerifier.create(worker.drainOnce(STREAM))
+        .expectNext(1)
+        .verifyComplete();
+
+    assertThat(boundIds()).containsExactly(1L);
+    verifyRead(ReadOffset.lastConsumed(), never());
+    verify(streamOperations).acknowledge(STREAM, ORDER_CONSUMER_GROUP, RecordId.of("1-0"));
+  }
+
+  private void givenPending(PendingMessage... messages) {
+    when(streamOperations.pending(eq(STREAM), eq(ORDER_CONSUMER_GROUP), any(Range.class),
+        eq(500L))).thenReturn(Mono.just(new PendingMessages(ORDER_CONSUMER_GROUP,
+        List.of(messages))));
+  }
+
+  private String order(long id) throws Exception {
+    return objectMapper.writeValueAsString(new PendingOrder(id, "key-" + id, 130,
+        Instant.parse("2024-01-01T10:00:00Z"), Map.of(SKU_A, 3), Map.of(SKU_A, 130),
+        Map.of(SKU_A, new PriceSnapshot(50, 3, 130, 1L))));
+  }
+
+  private static MapRecord<String, String, String> record(String id, String order) {
+    return StreamRecords.newRecord().in(STREAM).withId(RecordId.of(id))
+        .ofMap(Map.of("order", order));
+  }
+
+  @SuppressWarnings("unchecked")
+  private void givenRead(ReadOffset offset, Flux<MapRecord<String, String, String>> records) {
+    when(streamOperations.read(eq(CONSUMER), any(StreamReadOptions.class),
+        eq(StreamOffset.create(STREAM, offset)))).thenReturn(records);
+  }
+
+  @SuppressWarnings("unchecked")
+  private void verifyRead(ReadOffset offset, VerificationMode mode) {
+    verify(streamOperations, mode).read(eq(CONSUMER), any(StreamReadOptions.class),
+        eq(StreamOffset.create(STREAM, offset)));
+  }
+
+  private void givenInsert(Mono<Long> lines) {
+    when(databaseClient.sql(anyString())).thenReturn(executeSpec);
+    when(executeSpec.bind(anyString(), any())).thenReturn(executeSpec);
+    when(executeSpec.map(ArgumentMatchers.<BiFunction<Row, RowMetadata, Long>>any()))
+        .thenReturn(insertedLines);
+    when(insertedLines.one()).thenReturn(lines);
+  }
+
+  private void givenAcknowledged() {
+    when(streamOperations.acknowledge(eq(STREAM), eq(ORDER_CONSUMER_GROUP),
+        any(RecordId[].class))).thenReturn(Mono.just(1L));
+    when(streamOperations.delete(eq(STREAM), any(RecordId[].class))).thenReturn(Mono.just(1L));
+  }
+
+  private Long[] boundIds() {
+    ArgumentCaptor<Object> ids = ArgumentCaptor.forClass(Object.class);
+    verify(executeSpec).bind(eq("ids"), ids.capture());
+    return (Long[]) ids.getValue();
+  }
+}